@@ -1,6 +1,7 @@
 package com.smartshop.config;
 
 import com.smartshop.interceptor.AuthInterceptor;
+import com.smartshop.interceptor.ConditionalGetInterceptor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -11,6 +12,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class WebConfig implements WebMvcConfigurer {
 
     private final AuthInterceptor authInterceptor;
+    private final ConditionalGetInterceptor conditionalGetInterceptor;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
@@ -22,5 +24,19 @@ public class WebConfig implements WebMvcConfigurer {
                         "/swagger-ui/**",
                         "/v3/api-docs/**"
                 );
+
+        // Après l'authentification : un 304 n'est jamais servi à un appelant non autorisé.
+        // Exclus : disponibilité en temps réel, flux borné par l'heure, suivi des imports,
+        // compteurs de ventes et validité dépendant de la date.
+        registry.addInterceptor(conditionalGetInterceptor)
+                .addPathPatterns("/api/products/**", "/api/promo-codes/**")
+                .excludePathPatterns(
+                        "/api/products/check-stock/**",
+                        "/api/products/changes",
+                        "/api/products/import/**",
+                        "/api/products/top-selling",
+                        "/api/products/*/sales",
+                        "/api/promo-codes/validate/**"
+                );
     }
 }
@@ -1,8 +1,10 @@
 package com.smartshop.controllers;
 
 import com.smartshop.dtos.ClientDTO;
+import com.smartshop.dtos.ClientTierJobDTO;
 import com.smartshop.entity.CustomerTier;
 import com.smartshop.services.ClientService;
+import com.smartshop.services.ClientTierRecalculationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @RestController
@@ -23,6 +26,7 @@ import java.util.List;
 public class ClientController {
 
     private final ClientService clientService;
+    private final ClientTierRecalculationService clientTierRecalculationService;
 
     @GetMapping
     public ResponseEntity<List<ClientDTO>> getAllClients() {
@@ -126,6 +130,46 @@ public class ClientController {
     }
 
 
+    @PostMapping("/tiers/recalculate")
+    public ResponseEntity<?> recalculateTiers(
+            @RequestParam(required = false) Integer tailleTranche,
+            @RequestParam(required = false) Long pauseMs) {
+        try {
+            log.info("POST /api/clients/tiers/recalculate - Recalcul des niveaux clients");
+            ClientTierJobDTO job = clientTierRecalculationService.start(tailleTranche, pauseMs);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/tiers/recalculate")
+    public ResponseEntity<?> getTierRecalculation() {
+        try {
+            log.info("GET /api/clients/tiers/recalculate - Suivi du recalcul des niveaux");
+            return ResponseEntity.ok(clientTierRecalculationService.getCurrentJob());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    @DeleteMapping("/tiers/recalculate")
+    public ResponseEntity<?> cancelTierRecalculation() {
+        try {
+            log.info("DELETE /api/clients/tiers/recalculate - Annulation du recalcul des niveaux");
+            return ResponseEntity.ok(clientTierRecalculationService.cancel());
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+
     @PutMapping("/{id}")
     public ResponseEntity<ClientDTO> updateClient(
             @PathVariable Long id,
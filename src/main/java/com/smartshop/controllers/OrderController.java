@@ -2,19 +2,26 @@ package com.smartshop.controllers;
 
 
 import com.smartshop.dtos.CreateOrderDTO;
+import com.smartshop.dtos.CursorPageDTO;
 import com.smartshop.dtos.OrderDTO;
 import com.smartshop.entity.OrderStatus;
+import com.smartshop.exceptions.ClientNotFoundException;
+import com.smartshop.services.OrderExportService;
 import com.smartshop.services.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +34,7 @@ import java.util.Map;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
 
     @PostMapping
     public ResponseEntity<?> createOrder(@Valid @RequestBody CreateOrderDTO createOrderDTO) {
@@ -49,6 +57,15 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders() {
+        log.info("GET /api/orders/export - Export NDJSON des commandes");
+        StreamingResponseBody body = orderExportService::exportOrders;
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("/paginated")
     public ResponseEntity<Page<OrderDTO>> getAllOrdersPaginated(Pageable pageable) {
         log.info("GET /api/orders/paginated - Récupération des commandes paginées");
@@ -56,6 +73,39 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<?> searchOrders(
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) OrderStatus statut,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            Pageable pageable) {
+        try {
+            log.info("GET /api/orders/search - Recherche des commandes filtrées");
+            Page<OrderDTO> orders = orderService.searchOrders(clientId, statut, startDate, endDate, pageable);
+            return ResponseEntity.ok(orders);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/cursor")
+    public ResponseEntity<?> getOrdersByCursor(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            log.info("GET /api/orders/cursor - Récupération des commandes par curseur");
+            CursorPageDTO<OrderDTO> orders = orderService.getOrdersByCursor(token, size);
+            return ResponseEntity.ok(orders);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getOrderById(@PathVariable Long id) {
         try {
@@ -109,6 +159,26 @@ public class OrderController {
     }
 
 
+    @GetMapping("/client/{clientId}/cursor")
+    public ResponseEntity<?> getOrdersByClientCursor(
+            @PathVariable Long clientId,
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            log.info("GET /api/orders/client/{}/cursor - Récupération des commandes du client par curseur", clientId);
+            CursorPageDTO<OrderDTO> orders = orderService.getOrdersByClientCursor(clientId, token, size);
+            return ResponseEntity.ok(orders);
+        } catch (ClientNotFoundException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
     @GetMapping("/status/{status}")
     public ResponseEntity<List<OrderDTO>> getOrdersByStatus(@PathVariable OrderStatus status) {
         log.info("GET /api/orders/status/{} - Récupération des commandes par statut", status);
@@ -1,15 +1,26 @@
 package com.smartshop.controllers;
 
+import com.smartshop.dtos.CursorPageDTO;
 import com.smartshop.dtos.ProductDTO;
+import com.smartshop.dtos.ProductImportJobDTO;
+import com.smartshop.dtos.ProductSalesDTO;
+import com.smartshop.dtos.StockBatchDTO;
+import com.smartshop.dtos.StockBatchResultDTO;
+import com.smartshop.services.ProductImportService;
 import com.smartshop.services.ProductService;
+import com.smartshop.services.SalesPeriod;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -24,6 +35,7 @@ import java.util.Map;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductImportService productImportService;
 
 
     @GetMapping
@@ -81,6 +93,15 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<String>> autocomplete(
+            @RequestParam String prefixe,
+            @RequestParam(defaultValue = "10") int limit) {
+        log.debug("GET /api/products/autocomplete - Préfixe: {}", prefixe);
+        List<String> noms = productService.autocomplete(prefixe, limit);
+        return ResponseEntity.ok(noms);
+    }
+
     @GetMapping("/price-range")
     public ResponseEntity<List<ProductDTO>> getProductsByPriceRange(
             @RequestParam BigDecimal minPrix,
@@ -90,6 +111,16 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/price-range/paginated")
+    public ResponseEntity<Page<ProductDTO>> getProductsByPriceRangePaginated(
+            @RequestParam BigDecimal minPrix,
+            @RequestParam BigDecimal maxPrix,
+            Pageable pageable) {
+        log.info("GET /api/products/price-range/paginated - Recherche entre {} et {}", minPrix, maxPrix);
+        Page<ProductDTO> products = productService.getProductsByPriceRangePaginated(minPrix, maxPrix, pageable);
+        return ResponseEntity.ok(products);
+    }
+
     @GetMapping("/low-stock")
     public ResponseEntity<List<ProductDTO>> getLowStockProducts(@RequestParam Integer seuil) {
         log.info("GET /api/products/low-stock - Seuil: {}", seuil);
@@ -113,6 +144,45 @@ public class ProductController {
         return ResponseEntity.ok(hasStock);
     }
 
+    @GetMapping("/changes")
+    public ResponseEntity<?> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "200") int size) {
+        try {
+            log.info("GET /api/products/changes - Synchronisation des produits");
+            CursorPageDTO<ProductDTO> changes = productService.getChangesSince(since, size);
+            return ResponseEntity.ok(changes);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/top-selling")
+    public ResponseEntity<?> getTopSellingProducts(
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "TOUT") SalesPeriod periode) {
+        try {
+            log.debug("GET /api/products/top-selling - Top {} ({})", limit, periode);
+            List<ProductSalesDTO> top = productService.getTopSellingProducts(limit, periode);
+            return ResponseEntity.ok(top);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/{id}/sales")
+    public ResponseEntity<ProductSalesDTO> getProductSales(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "TOUT") SalesPeriod periode) {
+        log.debug("GET /api/products/{}/sales - Ventes ({})", id, periode);
+        ProductSalesDTO sales = productService.getProductSales(id, periode);
+        return ResponseEntity.ok(sales);
+    }
+
     @GetMapping("/count/active")
     public ResponseEntity<Long> countActiveProducts() {
         log.info("GET /api/products/count/active - Comptage");
@@ -135,6 +205,48 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importProducts(@RequestParam("file") MultipartFile file) {
+        try {
+            log.info("POST /api/products/import - Import du fichier {}", file.getOriginalFilename());
+            ProductImportJobDTO job = productImportService.startImport(file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @GetMapping("/import/{jobId}")
+    public ResponseEntity<?> getImportJob(@PathVariable String jobId) {
+        try {
+            log.info("GET /api/products/import/{} - Suivi de l'import", jobId);
+            ProductImportJobDTO job = productImportService.getJob(jobId);
+            return ResponseEntity.ok(job);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
+    @GetMapping("/import/{jobId}/errors")
+    public ResponseEntity<?> getImportErrors(@PathVariable String jobId) {
+        try {
+            log.info("GET /api/products/import/{}/errors - Rapport d'erreurs", jobId);
+            FileSystemResource report = new FileSystemResource(productImportService.getErrorReport(jobId));
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"import-" + jobId + "-erreurs.csv\"")
+                    .body(report);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+        }
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateProduct(
             @PathVariable Long id,
@@ -166,6 +278,50 @@ public class ProductController {
     }
 
 
+    @PostMapping("/stock/batch")
+    public ResponseEntity<?> adjustStockBatch(@Valid @RequestBody StockBatchDTO batch) {
+        try {
+            log.info("POST /api/products/stock/batch - {} ajustements", batch.getLignes().size());
+            StockBatchResultDTO result = productService.adjustStockBatch(batch.getLignes());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+
+    @PutMapping("/{id}/stock-slots")
+    public ResponseEntity<?> enableStockSlots(
+            @PathVariable Long id,
+            @RequestParam int tranches) {
+        try {
+            log.info("PUT /api/products/{}/stock-slots - Tranches: {}", id, tranches);
+            ProductDTO product = productService.enableStockSlots(id, tranches);
+            return ResponseEntity.ok(product);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+
+    @DeleteMapping("/{id}/stock-slots")
+    public ResponseEntity<?> disableStockSlots(@PathVariable Long id) {
+        try {
+            log.info("DELETE /api/products/{}/stock-slots", id);
+            ProductDTO product = productService.disableStockSlots(id);
+            return ResponseEntity.ok(product);
+        } catch (Exception e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+
     @PutMapping("/{id}/decrement-stock")
     public ResponseEntity<Void> decrementStock(
             @PathVariable Long id,
@@ -1,6 +1,9 @@
 package com.smartshop.controllers;
 
+import com.smartshop.dtos.PromoCodeBatchDTO;
+import com.smartshop.dtos.PromoCodeBatchResultDTO;
 import com.smartshop.dtos.PromoCodeDto;
+import com.smartshop.dtos.PromoCodeSpaceDTO;
 import com.smartshop.services.PromoCodeService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -92,6 +95,13 @@ public class PromoCodeController {
     }
 
 
+    @GetMapping("/space")
+    public ResponseEntity<PromoCodeSpaceDTO> getPromoCodeSpace() {
+        log.info("GET /api/promo-codes/space - Remplissage de l'espace des codes");
+        return ResponseEntity.ok(promoCodeService.getPromoCodeSpace());
+    }
+
+
     @GetMapping("/validate/{code}")
     public ResponseEntity<Integer> validatePromoCode(@PathVariable String code) {
         log.info("GET /api/promo-codes/validate/{} - Validation du code", code);
@@ -106,6 +116,13 @@ public class PromoCodeController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdPromoCode);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<PromoCodeBatchResultDTO> generatePromoCodes(@Valid @RequestBody PromoCodeBatchDTO batchDTO) {
+        log.info("POST /api/promo-codes/batch - Génération de {} codes", batchDTO.getNombre());
+        PromoCodeBatchResultDTO result = promoCodeService.generatePromoCodes(batchDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).body(result);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<PromoCodeDto> updatePromoCode(
             @PathVariable Long id,
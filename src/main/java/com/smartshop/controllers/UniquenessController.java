@@ -0,0 +1,39 @@
+package com.smartshop.controllers;
+
+import com.smartshop.dtos.UniquenessFilterDTO;
+import com.smartshop.services.UniquenessGuard;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+
+@RestController
+@RequestMapping("/api/uniqueness")
+@RequiredArgsConstructor
+@Slf4j
+public class UniquenessController {
+
+    private final UniquenessGuard uniquenessGuard;
+
+
+    @GetMapping
+    public ResponseEntity<List<UniquenessFilterDTO>> getStats() {
+        log.info("GET /api/uniqueness - État des filtres d'unicité");
+        return ResponseEntity.ok(uniquenessGuard.getStats());
+    }
+
+
+    @PostMapping("/rebuild")
+    public ResponseEntity<List<UniquenessFilterDTO>> rebuild(
+            @RequestParam(required = false) UniquenessGuard.KeySpace space) {
+        log.info("POST /api/uniqueness/rebuild - Reconstruction des filtres d'unicité: {}", space != null ? space : "tous");
+        if (space != null) {
+            return ResponseEntity.ok(List.of(uniquenessGuard.rebuild(space)));
+        }
+        uniquenessGuard.rebuildAll();
+        return ResponseEntity.ok(uniquenessGuard.getStats());
+    }
+}
@@ -0,0 +1,58 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClientTierJobDTO {
+
+    private String id;
+
+    private Statut statut;
+
+    /**
+     * Largeur des tranches d'IDs clients, une transaction par tranche
+     */
+    private int tailleTranche;
+
+    private long pauseMs;
+
+    private long premierId;
+
+    private long dernierId;
+
+    /**
+     * Les clients d'ID inférieur sont traités
+     */
+    private long idCourant;
+
+    private int progression;
+
+    private long tranchesTraitees;
+
+    /**
+     * Agrégats client_order_stats recalculés depuis les commandes
+     */
+    private long agregatsCorriges;
+
+    private long clientsModifies;
+
+    private String message;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+
+    public enum Statut {
+        EN_COURS,
+        TERMINE,
+        ANNULE,
+        ECHOUE
+    }
+}
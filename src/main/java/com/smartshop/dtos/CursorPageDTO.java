@@ -0,0 +1,26 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageDTO<T> {
+
+    @Builder.Default
+    private List<T> content = new ArrayList<>();
+
+    private int size;
+
+    private boolean hasNext;
+
+    /**
+     * Jeton opaque à renvoyer pour obtenir la page suivante ; null sur la dernière page.
+     */
+    private String nextToken;
+}
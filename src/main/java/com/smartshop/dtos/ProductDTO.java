@@ -25,6 +25,11 @@ public class ProductDTO {
     @Min(value = 0, message = "Le stock ne peut pas être négatif")
     private Integer stock;
 
+    /**
+     * Nombre de tranches de stock (mode réparti), null en mode ligne unique. Lecture seule.
+     */
+    private Integer stockSlots;
+
     @Builder.Default
     private Boolean deleted = false;
 
@@ -0,0 +1,65 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductImportJobDTO {
+
+    private String id;
+
+    private String fichier;
+
+    private Statut statut;
+
+    private long tailleFichier;
+
+    private long octetsLus;
+
+    private int progression;
+
+    private long lignesLues;
+
+    private long importees;
+
+    private long rejetees;
+
+    private String message;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime finishedAt;
+
+    /**
+     * Premières erreurs ; le rapport complet est disponible en CSV.
+     */
+    @Builder.Default
+    private List<ErreurLigne> erreurs = new ArrayList<>();
+
+
+    public enum Statut {
+        EN_ATTENTE,
+        EN_COURS,
+        TERMINE,
+        ECHOUE
+    }
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ErreurLigne {
+
+        private long ligne;
+
+        private String message;
+    }
+}
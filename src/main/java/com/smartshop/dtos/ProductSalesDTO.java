@@ -0,0 +1,27 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductSalesDTO {
+
+    private Long productId;
+
+    private String nom;
+
+    /**
+     * Quantité vendue sur la période demandée (toutes commandes confirmées pour TOUT).
+     */
+    private long quantite;
+
+    /**
+     * Chiffre d'affaires cumulé ; seulement renseigné pour la période TOUT.
+     */
+    private BigDecimal chiffreAffaires;
+}
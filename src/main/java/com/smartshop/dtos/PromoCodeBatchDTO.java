@@ -0,0 +1,36 @@
+package com.smartshop.dtos;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromoCodeBatchDTO {
+
+    @NotNull(message = "Le nombre de codes est obligatoire")
+    @Min(value = 1, message = "Le lot doit contenir au moins un code")
+    @Max(value = 100000, message = "Le lot ne doit pas dépasser 100000 codes")
+    private Integer nombre;
+
+    @NotNull(message = "Le pourcentage de remise ne peut pas être null")
+    @Min(value = 1, message = "Le pourcentage doit être au minimum 1%")
+    @Max(value = 100, message = "Le pourcentage doit être maximum 100%")
+    private Integer discountPercentage;
+
+    /**
+     * Utilisations par code ; un code à usage unique par défaut
+     */
+    @Builder.Default
+    @Min(value = 1, message = "Le nombre d'utilisations doit être au minimum 1")
+    private Integer maxUses = 1;
+
+    private LocalDateTime expiresAt;
+
+    @Size(max = 255, message = "La description ne doit pas dépasser 255 caractères")
+    private String description;
+}
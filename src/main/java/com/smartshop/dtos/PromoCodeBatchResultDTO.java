@@ -0,0 +1,24 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromoCodeBatchResultDTO {
+
+    private int generes;
+
+    @Builder.Default
+    private List<String> codes = new ArrayList<>();
+
+    /**
+     * Remplissage de l'espace des codes après le lot
+     */
+    private PromoCodeSpaceDTO espace;
+}
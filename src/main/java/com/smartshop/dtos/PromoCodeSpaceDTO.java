@@ -0,0 +1,22 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PromoCodeSpaceDTO {
+
+    private long utilises;
+
+    private long libres;
+
+    private long capacite;
+
+    /**
+     * Part de l'espace PROMO-XXXX déjà prise, entre 0 et 1
+     */
+    private double tauxRemplissage;
+}
@@ -0,0 +1,32 @@
+package com.smartshop.dtos;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import lombok.*;
+import java.util.List;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockBatchDTO {
+
+    @NotEmpty(message = "Le lot doit contenir au moins un ajustement")
+    @Valid
+    private List<StockAdjustmentDTO> lignes;
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class StockAdjustmentDTO {
+
+        @NotNull(message = "L'ID du produit est obligatoire")
+        private Long productId;
+
+        @NotNull(message = "Le delta est obligatoire")
+        private Integer delta;
+    }
+}
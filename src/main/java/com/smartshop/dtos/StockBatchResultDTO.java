@@ -0,0 +1,47 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockBatchResultDTO {
+
+    private int appliquees;
+
+    private int rejetees;
+
+    /**
+     * Un résultat par ligne reçue, dans l'ordre de la requête.
+     */
+    @Builder.Default
+    private List<LigneResultat> lignes = new ArrayList<>();
+
+
+    public enum Statut {
+        APPLIQUE,
+        STOCK_INSUFFISANT,
+        PRODUIT_INTROUVABLE
+    }
+
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class LigneResultat {
+
+        private Long productId;
+
+        private Integer delta;
+
+        private Statut statut;
+
+        private String message;
+    }
+}
@@ -0,0 +1,42 @@
+package com.smartshop.dtos;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UniquenessFilterDTO {
+
+    private String espace;
+
+    private boolean charge;
+
+    /**
+     * Clés chargées à la dernière reconstruction, plus celles ajoutées depuis
+     */
+    private long cles;
+
+    private long bits;
+
+    private int fonctionsHachage;
+
+    /**
+     * Taux de faux positifs attendu d'après le remplissage du filtre
+     */
+    private double tauxFauxPositifsAttendu;
+
+    /**
+     * Part des clés absentes que le filtre a envoyées en base, depuis la dernière reconstruction
+     */
+    private double tauxFauxPositifsObserve;
+
+    private long requetesEvitees;
+
+    private long fauxPositifs;
+
+    private LocalDateTime reconstruitLe;
+}
@@ -12,13 +12,20 @@ import java.util.List;
 
 
 @Entity
-@Table(name = "clients")
+@Table(name = "clients", uniqueConstraints = {
+        @UniqueConstraint(name = Client.EMAIL_CONSTRAINT, columnNames = "email"),
+        @UniqueConstraint(name = Client.USER_CONSTRAINT, columnNames = "user_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Client {
 
+    // Noms des contraintes d'unicité, reconnus par ClientService quand l'insertion est refusée
+    public static final String EMAIL_CONSTRAINT = "uk_clients_email";
+    public static final String USER_CONSTRAINT = "uk_clients_user_id";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -26,7 +33,7 @@ public class Client {
     @Column(nullable = false, length = 150)
     private String nom;
 
-    @Column(nullable = false, unique = true, length = 100)
+    @Column(nullable = false, length = 100)
     private String email;
 
     @Enumerated(EnumType.STRING)
@@ -35,7 +42,7 @@ public class Client {
 
 
     @OneToOne(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "user_id", nullable = false, unique = true)
+    @JoinColumn(name = "user_id", nullable = false)
     @OnDelete(action = OnDeleteAction.CASCADE)
     private User user;
 
@@ -90,16 +97,7 @@ public class Client {
     }
 
     public CustomerTier calculateTier() {
-        if (this.totalOrders >= 20 || this.totalSpent.compareTo(new BigDecimal("15000")) >= 0) {
-            return CustomerTier.PLATINUM;
-        }
-        if (this.totalOrders >= 10 || this.totalSpent.compareTo(new BigDecimal("5000")) >= 0) {
-            return CustomerTier.GOLD;
-        }
-        if (this.totalOrders >= 3 || this.totalSpent.compareTo(new BigDecimal("1000")) >= 0) {
-            return CustomerTier.SILVER;
-        }
-        return CustomerTier.BASIC;
+        return CustomerTier.forStatistics(this.totalOrders, this.totalSpent);
     }
 
 
@@ -108,15 +106,14 @@ public class Client {
     }
 
 
-    public void updateStatisticsAfterOrder(BigDecimal orderAmount) {
-        this.totalOrders = this.totalOrders + 1;
-        this.totalSpent = this.totalSpent.add(orderAmount);
-
-        LocalDateTime now = LocalDateTime.now();
-        if (this.firstOrderDate == null) {
-            this.firstOrderDate = now;
-        }
-        this.lastOrderDate = now;
+    /**
+     * Reprend les statistiques de l'agrégat des commandes confirmées et recalcule le niveau.
+     */
+    public void applyOrderStatistics(ClientOrderStats stats) {
+        this.totalOrders = Math.toIntExact(stats.getConfirmedCount());
+        this.totalSpent = stats.getTotalConfirmedTTC();
+        this.firstOrderDate = stats.getFirstOrderDate();
+        this.lastOrderDate = stats.getLastOrderDate();
 
         updateTier();
     }
@@ -0,0 +1,124 @@
+package com.smartshop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Agrégat des commandes d'un client, tenu à jour à chaque changement de statut
+ * dans la même transaction que la commande.
+ * Montant et dates ne portent que sur les commandes confirmées.
+ */
+@Entity
+@Table(name = "client_order_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClientOrderStats {
+
+    @Id
+    @Column(name = "client_id")
+    private Long clientId;
+
+    @Column(name = "pending_count", nullable = false)
+    @Builder.Default
+    private long pendingCount = 0;
+
+    @Column(name = "confirmed_count", nullable = false)
+    @Builder.Default
+    private long confirmedCount = 0;
+
+    @Column(name = "canceled_count", nullable = false)
+    @Builder.Default
+    private long canceledCount = 0;
+
+    @Column(name = "rejected_count", nullable = false)
+    @Builder.Default
+    private long rejectedCount = 0;
+
+    @Column(name = "total_confirmed_ttc", nullable = false, precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal totalConfirmedTTC = BigDecimal.ZERO;
+
+    @Column(name = "first_order_date")
+    private LocalDateTime firstOrderDate;
+
+    @Column(name = "last_order_date")
+    private LocalDateTime lastOrderDate;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public static ClientOrderStats empty(Long clientId) {
+        return ClientOrderStats.builder().clientId(clientId).build();
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Ajoute (delta > 0) ou retire (delta < 0) des commandes d'un statut.
+     */
+    public void addToStatus(OrderStatus statut, long delta) {
+        switch (statut) {
+            case PENDING -> this.pendingCount += delta;
+            case CONFIRMED -> this.confirmedCount += delta;
+            case CANCELED -> this.canceledCount += delta;
+            case REJECTED -> this.rejectedCount += delta;
+        }
+    }
+
+    /**
+     * Prend en compte le montant et la date d'une commande confirmée.
+     */
+    public void addConfirmed(BigDecimal totalTTC, LocalDateTime orderDate) {
+        this.totalConfirmedTTC = this.totalConfirmedTTC.add(totalTTC);
+        if (orderDate != null) {
+            if (this.firstOrderDate == null || orderDate.isBefore(this.firstOrderDate)) {
+                this.firstOrderDate = orderDate;
+            }
+            if (this.lastOrderDate == null || orderDate.isAfter(this.lastOrderDate)) {
+                this.lastOrderDate = orderDate;
+            }
+        }
+    }
+
+    public long countFor(OrderStatus statut) {
+        return switch (statut) {
+            case PENDING -> pendingCount;
+            case CONFIRMED -> confirmedCount;
+            case CANCELED -> canceledCount;
+            case REJECTED -> rejectedCount;
+        };
+    }
+
+    /**
+     * Compare les compteurs avec un agrégat recalculé (la date de mise à jour est ignorée).
+     */
+    public boolean sameTotalsAs(ClientOrderStats other) {
+        return pendingCount == other.pendingCount
+                && confirmedCount == other.confirmedCount
+                && canceledCount == other.canceledCount
+                && rejectedCount == other.rejectedCount
+                && totalConfirmedTTC.compareTo(other.totalConfirmedTTC) == 0
+                && Objects.equals(firstOrderDate, other.firstOrderDate)
+                && Objects.equals(lastOrderDate, other.lastOrderDate);
+    }
+
+    public void copyTotalsFrom(ClientOrderStats other) {
+        this.pendingCount = other.pendingCount;
+        this.confirmedCount = other.confirmedCount;
+        this.canceledCount = other.canceledCount;
+        this.rejectedCount = other.rejectedCount;
+        this.totalConfirmedTTC = other.totalConfirmedTTC;
+        this.firstOrderDate = other.firstOrderDate;
+        this.lastOrderDate = other.lastOrderDate;
+    }
+}
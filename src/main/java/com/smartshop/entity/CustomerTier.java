@@ -1,8 +1,41 @@
 package com.smartshop.entity;
 
+import java.math.BigDecimal;
+
+/**
+ * Niveaux de fidélité, du plus bas au plus haut. Un niveau est atteint dès que l'un
+ * de ses deux seuils (commandes confirmées ou montant dépensé) l'est.
+ */
 public enum CustomerTier {
-    BASIC,
-    SILVER,
-    GOLD,
-    PLATINUM
+    BASIC(0, BigDecimal.ZERO),
+    SILVER(3, new BigDecimal("1000")),
+    GOLD(10, new BigDecimal("5000")),
+    PLATINUM(20, new BigDecimal("15000"));
+
+
+    private final int minOrders;
+    private final BigDecimal minSpent;
+
+    CustomerTier(int minOrders, BigDecimal minSpent) {
+        this.minOrders = minOrders;
+        this.minSpent = minSpent;
+    }
+
+    public int getMinOrders() {
+        return minOrders;
+    }
+
+    public BigDecimal getMinSpent() {
+        return minSpent;
+    }
+
+    public static CustomerTier forStatistics(int totalOrders, BigDecimal totalSpent) {
+        CustomerTier[] tiers = values();
+        for (int i = tiers.length - 1; i > 0; i--) {
+            if (totalOrders >= tiers[i].minOrders || totalSpent.compareTo(tiers[i].minSpent) >= 0) {
+                return tiers[i];
+            }
+        }
+        return BASIC;
+    }
 }
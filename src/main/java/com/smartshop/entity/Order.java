@@ -2,13 +2,28 @@ package com.smartshop.entity;
 
 import lombok.*;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.DynamicUpdate;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_date_id", columnList = "order_date, id"),
+        @Index(name = "idx_orders_client_date_id", columnList = "client_id, order_date, id"),
+        @Index(name = "idx_orders_client_statut_date", columnList = "client_id, statut, order_date"),
+        @Index(name = "idx_orders_statut_date", columnList = "statut, order_date"),
+        @Index(name = "idx_orders_reservation_expiry", columnList = "reservation_statut, reservation_expires_at")
+})
+@NamedEntityGraph(name = "Order.summary",
+        attributeNodes = {
+                @NamedAttributeNode(value = "client", subgraph = "client"),
+                @NamedAttributeNode("promoCode")
+        },
+        subgraphs = @NamedSubgraph(name = "client", attributeNodes = @NamedAttributeNode("user")))
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -28,6 +43,7 @@ public class Order {
 
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     @Builder.Default
     private List<OrderItem> orderItems = new ArrayList<>();
 
@@ -38,6 +54,7 @@ public class Order {
 
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     @Builder.Default
     private List<Payment> payments = new ArrayList<>();
 
@@ -116,6 +133,18 @@ public class Order {
     @Column(length = 500)
     private String notes;
 
+    /**
+     * Réservation du stock prise à la création ; null pour une commande sans réservation.
+     * Les transitions passent par OrderRepository.transitionReservation (UPDATE conditionnel),
+     * d'où le @DynamicUpdate : une entité chargée avant la transition ne réécrit pas l'ancien statut.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reservation_statut", length = 20)
+    private ReservationStatus reservationStatut;
+
+    @Column(name = "reservation_expires_at")
+    private LocalDateTime reservationExpiresAt;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
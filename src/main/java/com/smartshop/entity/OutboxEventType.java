@@ -0,0 +1,21 @@
+package com.smartshop.entity;
+
+public enum OutboxEventType {
+    ORDER_CREATED("Commande créée"),
+    ORDER_CONFIRMED("Commande confirmée"),
+    ORDER_CANCELED("Commande annulée"),
+    ORDER_REJECTED("Commande rejetée"),
+    PAYMENT_ENCAISSE("Paiement encaissé"),
+    PAYMENT_REJETE("Paiement rejeté");
+
+
+    private final String label;
+
+    OutboxEventType(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -114,7 +114,7 @@ public class Payment {
         this.statut = PaymentStatus.REJETÉ;
     }
 
-    public void generateReference(Long orderId) {
+    public void generateReference(Long orderId, long sequence) {
         String prefix;
         switch (this.typePaiement) {
             case ESPECES:
@@ -133,6 +133,6 @@ public class Payment {
                 prefix,
                 orderId,
                 this.numeroPaiement,
-                System.currentTimeMillis() % 10000);
+                sequence);
     }
 }
\ No newline at end of file
@@ -2,12 +2,24 @@ package com.smartshop.entity;
 
 import lombok.*;
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CurrentTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.SourceType;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 
+/**
+ * stock et reserved_stock sont déplacés par des UPDATE conditionnels (ProductStockRepositoryImpl) :
+ * d'où le @DynamicUpdate, une entité chargée avant un mouvement ne réécrit pas l'ancien stock.
+ */
 @Entity
-@Table(name = "products")
+@DynamicUpdate
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_updated_at_id", columnList = "updated_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -30,6 +42,34 @@ public class Product {
     private Integer stock;
 
 
+    /**
+     * Unités réservées par des commandes en attente (PENDING), non encore décrémentées du stock.
+     */
+    @Column(name = "reserved_stock", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer reservedStock = 0;
+
+
+    /**
+     * Nombre de tranches en mode réparti (product_stock_slots), null en mode ligne unique.
+     * En mode réparti, stock et reserved_stock de la ligne restent à 0 : tout est dans les tranches.
+     * Basculé uniquement en SQL (ProductStockRepository#enableStockSlots).
+     */
+    @Column(name = "stock_slots", insertable = false, updatable = false)
+    private Integer stockSlots;
+
+
+    /**
+     * Somme des tranches, lue au chargement (0 en mode ligne unique, sans sous-requête)
+     */
+    @Formula("(CASE WHEN stock_slots IS NULL THEN 0 " +
+            "ELSE (SELECT COALESCE(SUM(s.stock), 0) FROM product_stock_slots s WHERE s.product_id = id) END)")
+    @Setter(AccessLevel.NONE)
+    @Builder.Default
+    private Integer slotStock = 0;
+
+
     @Column(nullable = false)
     @Builder.Default
     private Boolean deleted = false;
@@ -39,7 +79,14 @@ public class Product {
     private LocalDateTime createdAt;
 
 
+    /**
+     * Marqueur de modification du flux de synchronisation, à l'heure de début de la transaction
+     * côté base : posé par Hibernate à chaque INSERT/UPDATE de l'entité, par les UPDATE JDBC
+     * de ProductStockRepositoryImpl (LOCALTIMESTAMP) et, pour les opérations sur tranches qui n'écrivent
+     * pas la ligne produit, par StockSlotChangeJob toutes les smartshop.stock-slots.mark-ms. Voir ChangeHorizon.
+     */
     @Column(name = "updated_at")
+    @CurrentTimestamp(source = SourceType.DB)
     private LocalDateTime updatedAt;
 
 
@@ -49,23 +96,32 @@ public class Product {
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
         if (this.deleted == null) {
             this.deleted = false;
         }
-    }
-
-    @PreUpdate
-    protected void onUpdate() {
-        this.updatedAt = LocalDateTime.now();
+        if (this.reservedStock == null) {
+            this.reservedStock = 0;
+        }
     }
 
     public boolean isActive() {
         return !this.deleted;
     }
 
+    public boolean isStockSharded() {
+        return this.stockSlots != null;
+    }
+
+    /**
+     * Stock physique total : ligne produit plus tranches
+     */
+    public int getTotalStock() {
+        return this.stock + (this.slotStock != null ? this.slotStock : 0);
+    }
+
     public boolean hasEnoughStock(Integer quantite) {
-        return this.stock >= quantite;
+        int reserve = this.reservedStock != null ? this.reservedStock : 0;
+        return this.stock - reserve >= quantite;
     }
 
     public void decrementStock(Integer quantite) {
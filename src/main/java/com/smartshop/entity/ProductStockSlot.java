@@ -0,0 +1,49 @@
+package com.smartshop.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+/**
+ * Tranche de stock d'un produit en mode réparti (voir Product#stockSlots).
+ * Le stock du produit est la somme de ses tranches : les décréments concurrents se répartissent
+ * sur plusieurs lignes au lieu de se sérialiser sur la ligne products.
+ * Écrite uniquement en SQL par ProductStockRepositoryImpl.
+ */
+@Entity
+@Table(name = "product_stock_slots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_product_stock_slots_product_slot", columnNames = {"product_id", "slot"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductStockSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer slot;
+
+    @Column(nullable = false)
+    private Integer stock;
+
+    @Column(name = "reserved_stock", nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private Integer reservedStock = 0;
+
+    /**
+     * Levé par chaque opération sur la tranche, rabaissé quand le changement est reporté
+     * sur updated_at du produit (ProductStockRepository#markChangedSlots)
+     */
+    @Column(nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private Boolean changed = false;
+}
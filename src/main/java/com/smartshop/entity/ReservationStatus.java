@@ -0,0 +1,18 @@
+package com.smartshop.entity;
+
+public enum ReservationStatus {
+    ACTIVE("Réservé"),
+    COMMITTED("Consommé"),
+    RELEASED("Libéré");
+
+
+    private final String label;
+
+    ReservationStatus(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,37 @@
+package com.smartshop.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Journal d'audit des événements métier : une ligne par événement dans le logger "smartshop.audit",
+ * et un compteur par type d'événement.
+ * Un événement rejoué (bail expiré sans acquittement) produit une seconde ligne avec le même ID d'événement.
+ */
+@Component
+@Slf4j(topic = "smartshop.audit")
+public class AuditLogListener implements DomainEventListener {
+
+    private final MeterRegistry meterRegistry;
+
+    public AuditLogListener(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supports(DomainEvent event) {
+        return true;
+    }
+
+    @Override
+    public void onEvent(DomainEvent event) {
+        log.info("{} événement={} agrégat={} le {}: {}",
+                event.type().getLabel(), event.id(), event.aggregateId(), event.createdAt(), event.payload());
+        Counter.builder("smartshop.events.audited")
+                .tag("type", event.type().name())
+                .register(meterRegistry)
+                .increment();
+    }
+}
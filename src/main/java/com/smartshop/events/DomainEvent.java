@@ -0,0 +1,19 @@
+package com.smartshop.events;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.entity.OutboxEventType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement transmis aux abonnés du bus, copie d'une ligne de l'outbox.
+ *
+ * @param payload contenu JSON de l'événement
+ */
+public record DomainEvent(Long id, OutboxEventType type, Long aggregateId, String payload, LocalDateTime createdAt) {
+
+    public static DomainEvent of(OutboxEvent event) {
+        return new DomainEvent(event.getId(), event.getEventType(), event.getAggregateId(),
+                event.getPayload(), event.getCreatedAt());
+    }
+}
@@ -0,0 +1,12 @@
+package com.smartshop.events;
+
+/**
+ * Abonné du bus d'événements. Appelé sur le thread du bus, hors transaction de la requête.
+ * Un événement peut être reçu plus d'une fois (bail expiré sans acquittement) : le traitement doit être idempotent.
+ */
+public interface DomainEventListener {
+
+    boolean supports(DomainEvent event);
+
+    void onEvent(DomainEvent event);
+}
@@ -0,0 +1,149 @@
+package com.smartshop.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bus d'événements en mémoire : un tampon circulaire alimenté par le dispatcher de l'outbox
+ * et vidé par un thread dédié qui appelle les abonnés.
+ * Après chaque lot, les IDs traités sont remis à l'accusé de réception (voir {@link #onProcessed}).
+ */
+@Component
+@Slf4j
+public class EventBus {
+
+    private static final int DRAIN_BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = Duration.ofMillis(1).toNanos();
+
+    private final RingBuffer<DomainEvent> ringBuffer;
+    private final List<DomainEventListener> listeners;
+    private final Timer processingLag;
+    private final Counter processed;
+    private final Counter failures;
+    private final Counter rejected;
+
+    private volatile Consumer<List<Long>> acknowledgement = ids -> { };
+    private volatile boolean running;
+    private Thread consumer;
+
+    public EventBus(ObjectProvider<DomainEventListener> listeners, MeterRegistry meterRegistry,
+                    @Value("${smartshop.outbox.ring-capacity:1024}") int capacity) {
+        this.ringBuffer = new RingBuffer<>(capacity);
+        this.listeners = listeners.orderedStream().toList();
+        this.processingLag = Timer.builder("smartshop.events.processing.lag")
+                .description("Délai entre l'écriture d'un événement et son traitement par les abonnés")
+                .register(meterRegistry);
+        this.processed = meterRegistry.counter("smartshop.events.processed");
+        this.failures = meterRegistry.counter("smartshop.events.listener.failures");
+        this.rejected = meterRegistry.counter("smartshop.events.ring.full");
+        Gauge.builder("smartshop.events.ring.size", ringBuffer, RingBuffer::size).register(meterRegistry);
+    }
+
+    /**
+     * Dépose un événement dans le tampon. Appelé par un seul producteur.
+     *
+     * @return false si le tampon est plein ; l'événement sera représenté plus tard
+     */
+    public synchronized boolean publish(DomainEvent event) {
+        if (!ringBuffer.offer(event)) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int remainingCapacity() {
+        return ringBuffer.capacity() - ringBuffer.size();
+    }
+
+    public void onProcessed(Consumer<List<Long>> acknowledgement) {
+        this.acknowledgement = acknowledgement;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        consumer = new Thread(this::consume, "event-bus");
+        consumer.setDaemon(true);
+        consumer.start();
+        log.info("Bus d'événements démarré: capacité={}, abonnés={}", ringBuffer.capacity(), listeners.size());
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (consumer != null) {
+            consumer.join(Duration.ofSeconds(5).toMillis());
+        }
+    }
+
+    /**
+     * Traite les événements en attente sur le thread appelant.
+     *
+     * @return le nombre d'événements traités
+     */
+    public int drain() {
+        List<DomainEvent> batch = new ArrayList<>(DRAIN_BATCH_SIZE);
+        if (ringBuffer.drainTo(batch, DRAIN_BATCH_SIZE) == 0) {
+            return 0;
+        }
+
+        List<Long> ids = new ArrayList<>(batch.size());
+        for (DomainEvent event : batch) {
+            dispatch(event);
+            ids.add(event.id());
+            processingLag.record(Duration.between(event.createdAt(), LocalDateTime.now()));
+        }
+        processed.increment(batch.size());
+
+        try {
+            acknowledgement.accept(ids);
+        } catch (RuntimeException e) {
+            // Non acquittés : ces événements seront rejoués à l'expiration de leur bail (smartshop.outbox.lease)
+            log.error("Échec de l'acquittement de {} événement(s): {}", ids.size(), e.getMessage());
+        }
+        return batch.size();
+    }
+
+    private void consume() {
+        while (running || ringBuffer.size() > 0) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void dispatch(DomainEvent event) {
+        for (DomainEventListener listener : listeners) {
+            if (!listener.supports(event)) {
+                continue;
+            }
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Abonné {} en échec sur l'événement {} ({}): {}",
+                        listener.getClass().getSimpleName(), event.id(), event.type(), e.getMessage());
+            }
+        }
+    }
+}
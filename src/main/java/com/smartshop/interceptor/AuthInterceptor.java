@@ -42,12 +42,17 @@ public class AuthInterceptor implements HandlerInterceptor {
                 path.startsWith("/swagger-resources");
     }
 
+    // Ventes et chiffre d'affaires par produit : réservés à l'administrateur
+    private boolean isSalesRoute(String path) {
+        return path.startsWith("/api/products/top-selling") || path.matches("/api/products/[^/]+/sales/?");
+    }
+
     private boolean hasPermission(String path, String method, UserRole role) {
         if (role == UserRole.ADMIN) {
             return true;
         }
         if (role == UserRole.CLIENT) {
-            if (path.startsWith("/api/products") && method.equals("GET")) {
+            if (path.startsWith("/api/products") && method.equals("GET") && !isSalesRoute(path)) {
                 return true;
             }
             if (path.startsWith("/api/clients/me") || path.startsWith("/api/clients/profile")) {
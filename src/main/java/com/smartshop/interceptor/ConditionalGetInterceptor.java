@@ -0,0 +1,79 @@
+package com.smartshop.interceptor;
+
+import com.smartshop.services.CatalogVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+
+/**
+ * GET conditionnel sur les lectures du catalogue produits et des codes promo.
+ * <p>
+ * L'ETag est la version du catalogue ({@link CatalogVersion}), lue avant le contrôleur :
+ * si elle correspond à {@code If-None-Match}, la réponse 304 part sans aucun accès au dépôt.
+ * La version est lue avant le corps, un corps plus récent que son ETag est donc au pire
+ * re-téléchargé une fois, jamais servi périmé.
+ * <p>
+ * {@code smartshop.http.conditional.requests} compte les 304 (not-modified) et les réponses
+ * complètes (modified) par catalogue : chaque 304 économise les requêtes du contrôleur et le corps.
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final CatalogVersion catalogVersion;
+    private final String cacheControl;
+    private final Counter productsNotModified;
+    private final Counter productsModified;
+    private final Counter promoCodesNotModified;
+    private final Counter promoCodesModified;
+
+    public ConditionalGetInterceptor(CatalogVersion catalogVersion,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${smartshop.http-cache.max-age:PT0S}") Duration maxAge) {
+        this.catalogVersion = catalogVersion;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePrivate().mustRevalidate().getHeaderValue();
+        this.productsNotModified = requests(meterRegistry, "products", "not-modified");
+        this.productsModified = requests(meterRegistry, "products", "modified");
+        this.promoCodesNotModified = requests(meterRegistry, "promo-codes", "not-modified");
+        this.promoCodesModified = requests(meterRegistry, "promo-codes", "modified");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String method = request.getMethod();
+        if (!HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method)) {
+            return true;
+        }
+
+        // Chemin sans le context-path (server.servlet.context-path=/smartshop)
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean products = path.startsWith("/api/products");
+        String etag = products
+                ? "\"products-" + catalogVersion.products() + "\""
+                : "\"promo-codes-" + catalogVersion.promoCodes() + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            (products ? productsNotModified : promoCodesNotModified).increment();
+            return false;
+        }
+        (products ? productsModified : promoCodesModified).increment();
+        return true;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String catalog, String result) {
+        return Counter.builder("smartshop.http.conditional.requests")
+                .tag("catalog", catalog)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -29,6 +29,8 @@ public interface OrderMapper {
     @Mapping(target = "payments", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "reservationStatut", ignore = true)
+    @Mapping(target = "reservationExpiresAt", ignore = true)
     @Mapping(source = "remisePromoMontant", target = "remisePromoPourcentage_montant")
     Order toEntity(OrderDTO orderDTO);
 
@@ -40,5 +42,7 @@ public interface OrderMapper {
     @Mapping(target = "payments", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "reservationStatut", ignore = true)
+    @Mapping(target = "reservationExpiresAt", ignore = true)
     void updateEntityFromDTO(OrderDTO dto, @MappingTarget Order entity);
 }
\ No newline at end of file
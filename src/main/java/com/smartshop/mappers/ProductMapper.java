@@ -14,10 +14,17 @@ public interface ProductMapper {
 
     ProductMapper INSTANCE = Mappers.getMapper(ProductMapper.class);
 
+    @org.mapstruct.Mapping(target = "stock", source = "totalStock")
     ProductDTO toDTO(Product product);
 
+    @org.mapstruct.Mapping(target = "reservedStock", ignore = true)
+    @org.mapstruct.Mapping(target = "stockSlots", ignore = true)
+    @org.mapstruct.Mapping(target = "slotStock", ignore = true)
     Product toEntity(ProductDTO productDTO);
     @org.mapstruct.Mapping(target = "id", ignore = true)
+    @org.mapstruct.Mapping(target = "reservedStock", ignore = true)
+    @org.mapstruct.Mapping(target = "stockSlots", ignore = true)
+    @org.mapstruct.Mapping(target = "slotStock", ignore = true)
     @org.mapstruct.Mapping(target = "createdAt", ignore = true)
     @org.mapstruct.Mapping(target = "updatedAt", ignore = true)
     void updateEntityFromDTO(ProductDTO productDTO, @MappingTarget Product product);
@@ -0,0 +1,58 @@
+package com.smartshop.repositories;
+
+import com.smartshop.entity.ClientOrderStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ClientOrderStatsRepository extends JpaRepository<ClientOrderStats, Long> {
+
+    /**
+     * Agrégat verrouillé jusqu'à la fin de la transaction : les mises à jour
+     * concurrentes d'un même client s'appliquent l'une après l'autre.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ClientOrderStats s WHERE s.clientId = :clientId")
+    Optional<ClientOrderStats> findForUpdate(@Param("clientId") Long clientId);
+
+    /**
+     * Agrégats d'une tranche verrouillés dans l'ordre des IDs, comme un à un par les commandes :
+     * pas d'interblocage avec une confirmation concurrente.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ClientOrderStats s WHERE s.clientId IN :clientIds ORDER BY s.clientId")
+    List<ClientOrderStats> findAllForUpdate(@Param("clientIds") Collection<Long> clientIds);
+
+    /**
+     * Crée un agrégat vide s'il n'existe pas encore.
+     * Attend une création concurrente du même agrégat au lieu d'échouer sur la clé primaire.
+     *
+     * @return 1 si la ligne a été créée par cette transaction, 0 sinon
+     */
+    @Modifying
+    @Query(value = "INSERT INTO client_order_stats (client_id, pending_count, confirmed_count, canceled_count, " +
+            "rejected_count, total_confirmed_ttc, updated_at) " +
+            "VALUES (:clientId, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP) ON CONFLICT (client_id) DO NOTHING",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("clientId") Long clientId);
+
+    /**
+     * Crée les agrégats vides manquants d'une tranche de clients existants (voir {@link #insertIfAbsent}).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO client_order_stats (client_id, pending_count, confirmed_count, canceled_count, " +
+            "rejected_count, total_confirmed_ttc, updated_at) " +
+            "SELECT c.id, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP FROM clients c WHERE c.id IN (:clientIds) ORDER BY c.id " +
+            "ON CONFLICT (client_id) DO NOTHING",
+            nativeQuery = true)
+    int insertMissing(@Param("clientIds") Collection<Long> clientIds);
+}
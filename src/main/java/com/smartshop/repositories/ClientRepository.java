@@ -2,6 +2,7 @@ package com.smartshop.repositories;
 
 import com.smartshop.entity.Client;
 import com.smartshop.entity.CustomerTier;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -49,4 +50,16 @@ public interface ClientRepository extends JpaRepository<Client, Long> {
 
 
     long countByIsActiveTrue();
+
+    @Query("SELECT c.email FROM Client c")
+    List<String> findAllEmails();
+
+    @Query("SELECT c.user.id FROM Client c")
+    List<Long> findAllUserIds();
+
+    /**
+     * IDs des clients après un ID donné, par ordre croissant (parcours par tranches).
+     */
+    @Query("SELECT c.id FROM Client c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
 }
\ No newline at end of file
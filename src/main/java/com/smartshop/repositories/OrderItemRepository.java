@@ -1,13 +1,17 @@
 package com.smartshop.repositories;
 
 import com.smartshop.entity.OrderItem;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
@@ -21,14 +25,23 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
     long countByProductId(Long productId);
 
-    @Query("SELECT COALESCE(SUM(oi.quantite), 0) FROM OrderItem oi " +
-            "JOIN oi.order o WHERE oi.product.id = :productId AND o.statut = 'CONFIRMED'")
-    Integer getTotalQuantitySoldByProduct(@Param("productId") Long productId);
-    @Query("SELECT COALESCE(SUM(oi.totalLigne), 0) FROM OrderItem oi " +
-            "JOIN oi.order o WHERE oi.product.id = :productId AND o.statut = 'CONFIRMED'")
-    BigDecimal getTotalRevenueByProduct(@Param("productId") Long productId);
-    @Query("SELECT oi.product.id, oi.product.nom, SUM(oi.quantite) as totalQty " +
-            "FROM OrderItem oi JOIN oi.order o WHERE o.statut = 'CONFIRMED' " +
-            "GROUP BY oi.product.id, oi.product.nom ORDER BY totalQty DESC")
-    List<Object[]> findTopSellingProducts();
-}
\ No newline at end of file
+    /**
+     * Ventes (commandes confirmées) par produit : [productId, nom, quantité, chiffre d'affaires].
+     * Lu au démarrage par les compteurs de ventes et l'autocomplétion ; les lectures courantes
+     * passent par ProductSalesCounters.
+     */
+    @Query("SELECT oi.product.id, MAX(oi.productNom), SUM(oi.quantite), SUM(oi.totalLigne) FROM OrderItem oi " +
+            "JOIN oi.order o WHERE o.statut = 'CONFIRMED' GROUP BY oi.product.id")
+    List<Object[]> sumSalesByProduct();
+
+    /**
+     * Lignes confirmées depuis la date : [productId, date de confirmation, quantité, orderId].
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT oi.product.id, COALESCE(o.confirmedAt, o.orderDate), oi.quantite, o.id FROM OrderItem oi " +
+            "JOIN oi.order o WHERE o.statut = 'CONFIRMED' AND COALESCE(o.confirmedAt, o.orderDate) > :since")
+    Stream<Object[]> streamConfirmedLines(@Param("since") LocalDateTime since);
+}
@@ -2,20 +2,50 @@ package com.smartshop.repositories;
 
 import com.smartshop.entity.Order;
 import com.smartshop.entity.OrderStatus;
+import com.smartshop.entity.ReservationStatus;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
+
+    /*
+     * Les listes de commandes chargent client et code promo par jointure (graphe "Order.summary"),
+     * lignes et paiements sont chargés par lots grâce au @BatchSize des collections de Order.
+     * Le nombre de requêtes ne dépend donc plus du nombre de commandes retournées.
+     */
+
+    /**
+     * Toutes les commandes
+     */
+    @Override
+    @EntityGraph("Order.summary")
+    List<Order> findAll();
+
+    /**
+     * Toutes les commandes avec pagination
+     */
+    @Override
+    @EntityGraph("Order.summary")
+    Page<Order> findAll(Pageable pageable);
 
     /**
      * Recherche par référence unique
@@ -30,21 +60,25 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     /**
      * Toutes les commandes d'un client
      */
+    @EntityGraph("Order.summary")
     List<Order> findByClientId(Long clientId);
 
     /**
      * Commandes d'un client avec pagination
      */
+    @EntityGraph("Order.summary")
     Page<Order> findByClientId(Long clientId, Pageable pageable);
 
     /**
      * Commandes par statut
      */
+    @EntityGraph("Order.summary")
     List<Order> findByStatut(OrderStatus statut);
 
     /**
      * Commandes par statut avec pagination
      */
+    @EntityGraph("Order.summary")
     Page<Order> findByStatut(OrderStatus statut, Pageable pageable);
 
     /**
@@ -65,6 +99,7 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     /**
      * Commandes en attente (PENDING)
      */
+    @EntityGraph("Order.summary")
     @Query("SELECT o FROM Order o WHERE o.statut = 'PENDING' ORDER BY o.orderDate DESC")
     List<Order> findPendingOrders();
 
@@ -75,16 +110,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findConfirmedOrdersByClient(@Param("clientId") Long clientId);
 
     /**
-     * Montant total dépensé par un client (commandes confirmées)
+     * Nombre, montant TTC et dates extrêmes des commandes par client et par statut.
+     * Chaque ligne : [clientId, statut, nombre, somme TTC, première date, dernière date].
      */
-    @Query("SELECT COALESCE(SUM(o.totalTTC), 0) FROM Order o WHERE o.client.id = :clientId AND o.statut = 'CONFIRMED'")
-    BigDecimal getTotalSpentByClient(@Param("clientId") Long clientId);
-
-    /**
-     * Nombre de commandes confirmées d'un client
-     */
-    @Query("SELECT COUNT(o) FROM Order o WHERE o.client.id = :clientId AND o.statut = 'CONFIRMED'")
-    long countConfirmedOrdersByClient(@Param("clientId") Long clientId);
+    @Query("SELECT o.client.id, o.statut, COUNT(o), COALESCE(SUM(o.totalTTC), 0), MIN(o.orderDate), MAX(o.orderDate) " +
+            "FROM Order o WHERE o.client.id IN :clientIds GROUP BY o.client.id, o.statut")
+    List<Object[]> aggregateByClients(@Param("clientIds") Collection<Long> clientIds);
 
     /**
      * Commandes dans une période
@@ -114,24 +145,90 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT o FROM Order o WHERE o.montantRestant > 0 AND o.statut = 'PENDING' ORDER BY o.orderDate")
     List<Order> findUnpaidOrders();
 
+    /*
+     * Pagination par clé sur (orderDate, id), du plus récent au plus ancien, sans count(*).
+     * La condition redondante "orderDate <= :orderDate" borne le parcours des index
+     * idx_orders_date_id / idx_orders_client_date_id au lieu de filtrer depuis le début.
+     */
+
+    /**
+     * Première page des commandes
+     */
+    @EntityGraph("Order.summary")
+    @Query("SELECT o FROM Order o ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findFirstPage(Limit limit);
+
+    /**
+     * Page des commandes situées après la position (orderDate, id)
+     */
+    @EntityGraph("Order.summary")
+    @Query("SELECT o FROM Order o WHERE o.orderDate <= :orderDate " +
+            "AND (o.orderDate < :orderDate OR o.id < :id) " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findPageAfter(@Param("orderDate") LocalDateTime orderDate, @Param("id") Long id, Limit limit);
+
+    /**
+     * Première page des commandes d'un client
+     */
+    @EntityGraph("Order.summary")
+    @Query("SELECT o FROM Order o WHERE o.client.id = :clientId ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findFirstPageByClient(@Param("clientId") Long clientId, Limit limit);
+
+    /**
+     * Page des commandes d'un client situées après la position (orderDate, id)
+     */
+    @EntityGraph("Order.summary")
+    @Query("SELECT o FROM Order o WHERE o.client.id = :clientId AND o.orderDate <= :orderDate " +
+            "AND (o.orderDate < :orderDate OR o.id < :id) " +
+            "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findPageAfterByClient(@Param("clientId") Long clientId,
+                                      @Param("orderDate") LocalDateTime orderDate,
+                                      @Param("id") Long id,
+                                      Limit limit);
+
+    /**
+     * Toutes les commandes lues par curseur côté serveur (export en flux).
+     * À consommer dans une transaction, puis fermer le Stream.
+     */
+    @EntityGraph("Order.summary")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM Order o ORDER BY o.id")
+    Stream<Order> streamAll();
+
+    /**
+     * Initialise en une requête les lignes des commandes déjà chargées (tranche d'un export en flux).
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.orderItems WHERE o.id IN :ids")
+    List<Order> fetchOrderItems(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Initialise en une requête les paiements des commandes déjà chargées (tranche d'un export en flux).
+     */
+    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.payments WHERE o.id IN :ids")
+    List<Order> fetchPayments(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Recherche avec filtres multiples : seuls les filtres fournis sont ajoutés à la requête
+     * (voir {@link OrderSpecifications#withFilters}).
+     */
+    @Override
+    @EntityGraph("Order.summary")
+    Page<Order> findAll(Specification<Order> spec, Pageable pageable);
+
     /**
-     * Générer le prochain numéro de référence
+     * Fait sortir la réservation de stock d'une commande de l'état ACTIVE.
+     * Renvoie 0 si la réservation a déjà été consommée ou libérée par un autre traitement.
      */
-    @Query("SELECT MAX(o.id) FROM Order o")
-    Long findMaxId();
+    @Modifying
+    @Query("UPDATE Order o SET o.reservationStatut = :statut WHERE o.id = :orderId AND o.reservationStatut = 'ACTIVE'")
+    int transitionReservation(@Param("orderId") Long orderId, @Param("statut") ReservationStatus statut);
 
     /**
-     * Recherche avec filtres multiples
+     * Commandes dont la réservation de stock est arrivée à expiration
      */
-    @Query("SELECT o FROM Order o WHERE " +
-            "(:clientId IS NULL OR o.client.id = :clientId) AND " +
-            "(:statut IS NULL OR o.statut = :statut) AND " +
-            "(:startDate IS NULL OR o.orderDate >= :startDate) AND " +
-            "(:endDate IS NULL OR o.orderDate <= :endDate)")
-    Page<Order> findWithFilters(
-            @Param("clientId") Long clientId,
-            @Param("statut") OrderStatus statut,
-            @Param("startDate") LocalDateTime startDate,
-            @Param("endDate") LocalDateTime endDate,
-            Pageable pageable);
+    @Query("SELECT o FROM Order o WHERE o.reservationStatut = 'ACTIVE' AND o.reservationExpiresAt < :now ORDER BY o.reservationExpiresAt")
+    List<Order> findExpiredReservations(@Param("now") LocalDateTime now, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.smartshop.repositories;
+
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderStatus;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Critères de recherche des commandes.
+ * Un filtre absent n'ajoute aucun prédicat, la requête générée reste ainsi
+ * exploitable par les index (client_id, statut, order_date), (statut, order_date) et (order_date, id).
+ */
+public final class OrderSpecifications {
+
+    private OrderSpecifications() {
+    }
+
+    public static Specification<Order> withFilters(Long clientId, OrderStatus statut,
+                                                   LocalDateTime startDate, LocalDateTime endDate) {
+        return Specification.allOf(
+                hasClient(clientId),
+                hasStatut(statut),
+                orderedFrom(startDate),
+                orderedUntil(endDate));
+    }
+
+    public static Specification<Order> hasClient(Long clientId) {
+        return clientId == null ? null
+                : (root, query, cb) -> cb.equal(root.get("client").get("id"), clientId);
+    }
+
+    public static Specification<Order> hasStatut(OrderStatus statut) {
+        return statut == null ? null
+                : (root, query, cb) -> cb.equal(root.get("statut"), statut);
+    }
+
+    public static Specification<Order> orderedFrom(LocalDateTime startDate) {
+        return startDate == null ? null
+                : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("orderDate"), startDate);
+    }
+
+    public static Specification<Order> orderedUntil(LocalDateTime endDate) {
+        return endDate == null ? null
+                : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("orderDate"), endDate);
+    }
+}
@@ -2,6 +2,7 @@ package com.smartshop.repositories;
 
 
 import com.smartshop.entity.Product;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,12 +10,13 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductStockRepository {
 
     @Query("SELECT p FROM Product p WHERE p.nom = :nom AND p.deleted = false")
     Optional<Product> findByNomAndActive(@Param("nom") String nom);
@@ -43,19 +45,20 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT COUNT(p) FROM Product p WHERE p.deleted = true")
     long countDeleted();
 
-    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.prix BETWEEN :minPrix AND :maxPrix ORDER BY p.prix")
-    List<Product> findByPrixBetweenAndActive(@Param("minPrix") BigDecimal minPrix, @Param("maxPrix") BigDecimal maxPrix);
+    /*
+     * Les requêtes de stock lisent stock + slotStock : en mode réparti la ligne produit est à 0
+     * et le stock vit dans product_stock_slots.
+     */
 
-
-    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock < :seuil ORDER BY p.stock")
+    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock + p.slotStock < :seuil ORDER BY p.stock + p.slotStock")
     List<Product> findLowStockProducts(@Param("seuil") Integer seuil);
 
 
-    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock <= :seuil ORDER BY p.stock")
+    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock + p.slotStock <= :seuil ORDER BY p.stock + p.slotStock")
     List<Product> findProductsNearOutOfStock(@Param("seuil") Integer seuil);
 
 
-    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock = 0 ORDER BY p.nom")
+    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.stock + p.slotStock = 0 ORDER BY p.nom")
     List<Product> findOutOfStockProducts();
 
 
@@ -66,6 +69,58 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> searchByNomPaginated(@Param("terme") String terme, Pageable pageable);
 
 
-    @Query("SELECT p FROM Product p WHERE p.deleted = false AND p.prix BETWEEN :minPrix AND :maxPrix ORDER BY p.prix")
-    Page<Product> findByPrixBetweenAndActivePaginated(@Param("minPrix") BigDecimal minPrix, @Param("maxPrix") BigDecimal maxPrix, Pageable pageable);
+    @Query("SELECT p.stock - p.reservedStock + COALESCE((SELECT SUM(s.stock - s.reservedStock) " +
+            "FROM ProductStockSlot s WHERE s.productId = p.id), 0) FROM Product p WHERE p.id = :id")
+    Integer findAvailableStock(@Param("id") Long id);
+
+
+    @Query("SELECT p.id, p.stock - p.reservedStock + COALESCE(SUM(s.stock - s.reservedStock), 0) " +
+            "FROM Product p LEFT JOIN ProductStockSlot s ON s.productId = p.id " +
+            "GROUP BY p.id, p.stock, p.reservedStock")
+    List<Object[]> findAllAvailableStock();
+
+
+    @Query("SELECT p.id, p.nom FROM Product p WHERE p.deleted = false")
+    List<Object[]> findAllActiveNames();
+
+
+    @Query("SELECT p.id, p.prix FROM Product p WHERE p.deleted = false")
+    List<Object[]> findAllActivePrices();
+
+
+    /*
+     * Flux de synchronisation par clé (updatedAt, id) croissante, servi par idx_products_updated_at_id.
+     * Seules les lignes strictement antérieures à l'horizon (ChangeHorizon) sont servies,
+     * les autres sont laissées pour l'appel suivant.
+     */
+
+    /**
+     * Première page des modifications (tous les produits, supprimés compris)
+     */
+    @Query("SELECT p FROM Product p WHERE p.updatedAt < :horizon ORDER BY p.updatedAt, p.id")
+    List<Product> findChangesUntil(@Param("horizon") LocalDateTime horizon, Limit limit);
+
+    /**
+     * Modifications situées après la position (updatedAt, id)
+     */
+    @Query("SELECT p FROM Product p WHERE p.updatedAt >= :updatedAt " +
+            "AND (p.updatedAt > :updatedAt OR p.id > :id) " +
+            "AND p.updatedAt < :horizon " +
+            "ORDER BY p.updatedAt, p.id")
+    List<Product> findChangesAfter(@Param("updatedAt") LocalDateTime updatedAt,
+                                   @Param("id") Long id,
+                                   @Param("horizon") LocalDateTime horizon,
+                                   Limit limit);
+
+    /**
+     * IDs et dates de modification des produits modifiés depuis une date (CatalogChangePoller)
+     */
+    @Query("SELECT p.id, p.updatedAt FROM Product p WHERE p.updatedAt >= :depuis")
+    List<Object[]> findUpdatedSince(@Param("depuis") LocalDateTime depuis);
+
+    @Query("SELECT p.id, p.stock + p.slotStock FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT p.id, p.nom, p.deleted, p.prix FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findIndexedFieldsByIds(@Param("ids") Collection<Long> ids);
 }
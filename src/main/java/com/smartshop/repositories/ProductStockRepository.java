@@ -0,0 +1,71 @@
+package com.smartshop.repositories;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opérations de stock exécutées directement en SQL, sans lecture préalable des produits.
+ * Chaque méthode envoie toutes les lignes en un seul lot JDBC et renvoie les IDs des produits
+ * pour lesquels la condition n'était pas remplie (aucune ligne modifiée).
+ * <p>
+ * Les produits en mode réparti (stock_slots non null) sont servis sur leurs tranches
+ * product_stock_slots, sans écrire la ligne products : le marqueur updated_at du produit
+ * est avancé ensuite par {@link #markChangedSlots()}.
+ */
+public interface ProductStockRepository {
+
+    /**
+     * Décrémente le stock sans réservation préalable.
+     * Une ligne n'est appliquée que si le stock disponible (stock - réservé) couvre la quantité.
+     */
+    List<Long> decrementStockIfAvailable(Map<Long, Integer> quantitesParProduit);
+
+    /**
+     * Ajoute un delta signé au stock (réception, inventaire).
+     * Une ligne n'est appliquée que si le stock disponible reste positif ou nul ;
+     * un produit inexistant est également renvoyé. Par tranche de 1000 produits : une lecture
+     * verrouillante et un seul UPDATE ensembliste, au lieu d'une instruction par ligne.
+     */
+    List<Long> adjustStock(Map<Long, Integer> deltaParProduit);
+
+    /**
+     * Fixe le stock total d'un produit (ligne ou tranches) sous verrou, si le réservé reste couvert.
+     * Renvoie le stock total remplacé, ou null si le produit n'existe pas ou si le nouveau stock
+     * est inférieur aux unités réservées.
+     */
+    Integer setStock(Long productId, int stock);
+
+    /**
+     * Réserve des unités pour une commande en attente, si le stock disponible les couvre.
+     */
+    List<Long> reserveStockIfAvailable(Map<Long, Integer> quantitesParProduit);
+
+    /**
+     * Consomme des unités réservées : décrémente à la fois le stock et le réservé.
+     */
+    List<Long> commitReservedStock(Map<Long, Integer> quantitesParProduit);
+
+    /**
+     * Rend au stock disponible des unités réservées.
+     */
+    void releaseReservedStock(Map<Long, Integer> quantitesParProduit);
+
+    /**
+     * Passe un produit en mode réparti : stock et réservé de la ligne sont répartis sur
+     * {@code tranches} lignes product_stock_slots (re-répartis s'il l'était déjà).
+     * Renvoie false si le produit n'existe pas.
+     */
+    boolean enableStockSlots(Long productId, int tranches);
+
+    /**
+     * Avance updated_at des produits dont une tranche a changé depuis le passage précédent.
+     * À appeler dans une transaction ; renvoie le nombre de produits marqués.
+     */
+    int markChangedSlots();
+
+    /**
+     * Rapatrie les tranches sur la ligne products et repasse le produit en mode ligne unique.
+     * Renvoie false si le produit n'existe pas.
+     */
+    boolean disableStockSlots(Long productId);
+}
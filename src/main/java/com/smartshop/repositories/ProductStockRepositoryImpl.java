@@ -0,0 +1,480 @@
+package com.smartshop.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+@RequiredArgsConstructor
+public class ProductStockRepositoryImpl implements ProductStockRepository {
+
+    // Paramètres communs : 1 = quantité, 2 = id, 3 = quantité (garde).
+    // updated_at prend l'heure de début de la transaction côté base (voir ChangeHorizon)
+    private static final String DECREMENT_STOCK_SQL =
+            "UPDATE products SET stock = stock - ?, updated_at = LOCALTIMESTAMP " +
+                    "WHERE id = ? AND stock - reserved_stock >= ?";
+
+    /*
+     * Ajustement signé : le stock disponible (stock - réservé) ne peut pas devenir négatif.
+     * Les lignes d'un lot sont verrouillées et lues en une requête, puis celles qui passent la garde
+     * sont écrites par un seul UPDATE ... FROM (VALUES ...) par tranche de IN_CLAUSE_CHUNK produits.
+     */
+    private static final String LOCK_ADJUSTED_SQL =
+            "SELECT id, stock - reserved_stock, stock_slots FROM products WHERE id IN (%s) ORDER BY id FOR UPDATE";
+
+    private static final String ADJUST_STOCK_SQL =
+            "UPDATE products p SET stock = p.stock + v.delta, updated_at = LOCALTIMESTAMP " +
+                    "FROM (VALUES %s) AS v(id, delta) WHERE p.id = v.id AND p.stock - p.reserved_stock + v.delta >= 0";
+
+    // Paramètres : stock, id, stock (garde)
+    private static final String SET_STOCK_SQL =
+            "UPDATE products SET stock = ?, updated_at = LOCALTIMESTAMP WHERE id = ? AND ? >= reserved_stock";
+
+    private static final String RESERVE_STOCK_SQL =
+            "UPDATE products SET reserved_stock = reserved_stock + ?, updated_at = LOCALTIMESTAMP " +
+                    "WHERE id = ? AND stock - reserved_stock >= ?";
+
+    private static final String COMMIT_RESERVED_STOCK_SQL =
+            "UPDATE products SET stock = stock - ?, reserved_stock = reserved_stock - ?, updated_at = LOCALTIMESTAMP " +
+                    "WHERE id = ? AND reserved_stock >= ?";
+
+    private static final String RELEASE_RESERVED_STOCK_SQL =
+            "UPDATE products SET reserved_stock = GREATEST(reserved_stock - ?, 0), updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    private static final String FIND_STOCK_SLOTS_SQL =
+            "SELECT id, stock_slots FROM products WHERE stock_slots IS NOT NULL AND id IN (%s)";
+
+    private static final String LOCK_PRODUCT_SQL =
+            "SELECT stock, reserved_stock FROM products WHERE id = ? FOR UPDATE";
+
+    private static final String LOCK_PRODUCT_MODE_SQL =
+            "SELECT stock, reserved_stock, stock_slots FROM products WHERE id = ? FOR UPDATE";
+
+    private static final String LOCK_SLOTS_SQL =
+            "SELECT slot, stock, reserved_stock FROM product_stock_slots WHERE product_id = ? ORDER BY slot FOR UPDATE";
+
+    private static final String INSERT_SLOT_SQL =
+            "INSERT INTO product_stock_slots (product_id, slot, stock, reserved_stock) VALUES (?, ?, ?, ?)";
+
+    private static final String DELETE_SLOTS_SQL = "DELETE FROM product_stock_slots WHERE product_id = ?";
+
+    private static final String ADD_SLOT_STOCK_SQL =
+            "UPDATE product_stock_slots SET stock = stock + ?, changed = TRUE WHERE product_id = ? AND slot = ?";
+
+    private static final String SET_SLOT_STOCK_SQL =
+            "UPDATE product_stock_slots SET stock = ?, changed = TRUE WHERE product_id = ? AND slot = ?";
+
+    private static final String ENABLE_SLOTS_SQL =
+            "UPDATE products SET stock = 0, reserved_stock = 0, stock_slots = ?, updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    private static final String DISABLE_SLOTS_SQL =
+            "UPDATE products SET stock = stock + ?, reserved_stock = reserved_stock + ?, stock_slots = NULL, " +
+                    "updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    /*
+     * Une opération sur tranche lève seulement le drapeau changed de sa tranche, sans toucher la ligne
+     * produit. markChangedSlots reporte ces drapeaux sur updated_at : produits d'abord (même ordre de
+     * verrous que enableStockSlots), puis les tranches levées qui ne sont pas en cours d'écriture.
+     */
+    private static final String CHANGED_SLOT_PRODUCTS_SQL =
+            "SELECT DISTINCT product_id FROM product_stock_slots WHERE changed ORDER BY product_id";
+
+    private static final String MARK_PRODUCTS_SQL =
+            "UPDATE products SET updated_at = LOCALTIMESTAMP WHERE id IN (%s)";
+
+    private static final String LOCK_CHANGED_SLOTS_SQL =
+            "SELECT id FROM product_stock_slots WHERE changed AND product_id IN (%s) FOR UPDATE SKIP LOCKED";
+
+    private static final String CLEAR_CHANGED_SLOTS_SQL =
+            "UPDATE product_stock_slots SET changed = FALSE WHERE id IN (%s)";
+
+    // Tranche tirée au hasard puis ses voisines, avant de prélever sur l'ensemble des tranches
+    private static final int SLOT_PROBES = 3;
+
+    private static final int IN_CLAUSE_CHUNK = 1000;
+
+    /**
+     * Opérations sur une tranche. Paramètres : quantité (deux fois pour COMMIT), product_id, slot, quantité (garde)
+     */
+    private enum SlotOperation {
+        DECREMENT("UPDATE product_stock_slots SET stock = stock - ?, changed = TRUE " +
+                "WHERE product_id = ? AND slot = ? AND stock - reserved_stock >= ?"),
+        RESERVE("UPDATE product_stock_slots SET reserved_stock = reserved_stock + ?, changed = TRUE " +
+                "WHERE product_id = ? AND slot = ? AND stock - reserved_stock >= ?"),
+        COMMIT("UPDATE product_stock_slots SET stock = stock - ?, reserved_stock = reserved_stock - ?, changed = TRUE " +
+                "WHERE product_id = ? AND slot = ? AND reserved_stock >= ?"),
+        RELEASE("UPDATE product_stock_slots SET reserved_stock = reserved_stock - ?, changed = TRUE " +
+                "WHERE product_id = ? AND slot = ? AND reserved_stock >= ?");
+
+        private final String sql;
+
+        SlotOperation(String sql) {
+            this.sql = sql;
+        }
+
+        // Unités qu'une tranche peut fournir à l'opération
+        int capacity(int stock, int reserve) {
+            return this == COMMIT || this == RELEASE ? reserve : stock - reserve;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /*
+     * Décrément, réservation et consommation passent d'abord par la ligne products : en mode réparti
+     * elle est à 0 et la garde échoue sans poser de verrou. Seules les lignes refusées paient la
+     * lecture du mode, puis sont rejouées sur les tranches.
+     */
+
+    @Override
+    public List<Long> decrementStockIfAvailable(Map<Long, Integer> quantitesParProduit) {
+        List<Long> refuses = executeGuarded(DECREMENT_STOCK_SQL, quantitesParProduit, false);
+        return retryOnSlots(SlotOperation.DECREMENT, quantitesParProduit, refuses);
+    }
+
+    @Override
+    public List<Long> adjustStock(Map<Long, Integer> deltaParProduit) {
+        List<Map.Entry<Long, Integer>> lignes = sortedLines(deltaParProduit);
+        List<Long> rejetes = new ArrayList<>();
+        Map<Long, Integer> tranches = new HashMap<>();
+
+        for (int debut = 0; debut < lignes.size(); debut += IN_CLAUSE_CHUNK) {
+            List<Map.Entry<Long, Integer>> lot = lignes.subList(debut, Math.min(debut + IN_CLAUSE_CHUNK, lignes.size()));
+            // Disponible et mode de chaque produit, lignes verrouillées jusqu'à la fin de la transaction
+            Map<Long, int[]> produits = new HashMap<>();
+            jdbcTemplate.query(String.format(LOCK_ADJUSTED_SQL, placeholders(lot.size())), rs -> {
+                int nombre = rs.getInt(3);
+                produits.put(rs.getLong(1), new int[]{rs.getInt(2), rs.wasNull() ? 0 : nombre});
+            }, lot.stream().map(Map.Entry::getKey).toArray());
+
+            List<Object> valeurs = new ArrayList<>(2 * lot.size());
+            for (Map.Entry<Long, Integer> ligne : lot) {
+                int[] produit = produits.get(ligne.getKey());
+                if (produit == null) {
+                    rejetes.add(ligne.getKey());
+                } else if (produit[1] > 0) {
+                    tranches.put(ligne.getKey(), produit[1]);
+                } else if (produit[0] + (long) ligne.getValue() < 0) {
+                    rejetes.add(ligne.getKey());
+                } else {
+                    valeurs.add(ligne.getKey());
+                    valeurs.add(ligne.getValue());
+                }
+            }
+            if (!valeurs.isEmpty()) {
+                String lignesValues = String.join(", ", Collections.nCopies(valeurs.size() / 2, "(?, ?)"));
+                jdbcTemplate.update(String.format(ADJUST_STOCK_SQL, lignesValues), valeurs.toArray());
+            }
+        }
+
+        for (Map.Entry<Long, Integer> ligne : lignes) {
+            Integer nombre = tranches.get(ligne.getKey());
+            if (nombre == null) {
+                continue;
+            }
+            if (ligne.getValue() > 0) {
+                spreadOverSlots(ligne.getKey(), nombre, ligne.getValue());
+            } else if (ligne.getValue() < 0
+                    && !takeFromSlots(SlotOperation.DECREMENT, ligne.getKey(), nombre, -ligne.getValue(), false)) {
+                rejetes.add(ligne.getKey());
+            }
+        }
+        Collections.sort(rejetes);
+        return rejetes;
+    }
+
+    @Override
+    public Integer setStock(Long productId, int stock) {
+        // La ligne verrouillée, le stock remplacé est celui qu'aucune opération concurrente ne peut déplacer
+        List<Integer[]> produit = jdbcTemplate.query(LOCK_PRODUCT_MODE_SQL,
+                (rs, i) -> new Integer[]{rs.getInt(1), rs.getInt(2), (Integer) rs.getObject(3)}, productId);
+        if (produit.isEmpty()) {
+            return null;
+        }
+        int ancienStock = produit.get(0)[0];
+        if (produit.get(0)[2] == null) {
+            return jdbcTemplate.update(SET_STOCK_SQL, stock, productId, stock) == 1 ? ancienStock : null;
+        }
+
+        List<int[]> tranches = lockSlots(productId);
+        int reserve = 0;
+        for (int[] tranche : tranches) {
+            ancienStock += tranche[1];
+            reserve += tranche[2];
+        }
+        if (stock < reserve) {
+            return null;
+        }
+        // Chaque tranche garde son réservé et reçoit une part égale du disponible
+        int disponible = stock - reserve;
+        List<Object[]> lignes = new ArrayList<>(tranches.size());
+        for (int i = 0; i < tranches.size(); i++) {
+            int part = disponible / tranches.size() + (i < disponible % tranches.size() ? 1 : 0);
+            lignes.add(new Object[]{tranches.get(i)[2] + part, productId, tranches.get(i)[0]});
+        }
+        jdbcTemplate.batchUpdate(SET_SLOT_STOCK_SQL, lignes);
+        return ancienStock;
+    }
+
+    @Override
+    public List<Long> reserveStockIfAvailable(Map<Long, Integer> quantitesParProduit) {
+        List<Long> refuses = executeGuarded(RESERVE_STOCK_SQL, quantitesParProduit, false);
+        return retryOnSlots(SlotOperation.RESERVE, quantitesParProduit, refuses);
+    }
+
+    @Override
+    public List<Long> commitReservedStock(Map<Long, Integer> quantitesParProduit) {
+        List<Long> refuses = executeGuarded(COMMIT_RESERVED_STOCK_SQL, quantitesParProduit, true);
+        return retryOnSlots(SlotOperation.COMMIT, quantitesParProduit, refuses);
+    }
+
+    @Override
+    public void releaseReservedStock(Map<Long, Integer> quantitesParProduit) {
+        if (quantitesParProduit.isEmpty()) {
+            return;
+        }
+        // La libération n'a pas de garde sur la ligne : le mode est lu avant d'écrire
+        Map<Long, Integer> tranches = findStockSlots(quantitesParProduit.keySet());
+        Map<Long, Integer> surLigne = new HashMap<>(quantitesParProduit);
+        surLigne.keySet().removeAll(tranches.keySet());
+        releaseOnProductRows(surLigne);
+
+        for (Map.Entry<Long, Integer> ligne : sortedLines(quantitesParProduit)) {
+            Integer nombre = tranches.get(ligne.getKey());
+            if (nombre != null) {
+                takeFromSlots(SlotOperation.RELEASE, ligne.getKey(), nombre, ligne.getValue(), true);
+            }
+        }
+    }
+
+    @Override
+    public boolean enableStockSlots(Long productId, int tranches) {
+        List<int[]> produit = jdbcTemplate.query(LOCK_PRODUCT_SQL,
+                (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, productId);
+        if (produit.isEmpty()) {
+            return false;
+        }
+        int stock = produit.get(0)[0];
+        int reserve = produit.get(0)[1];
+        for (int[] tranche : lockSlots(productId)) {
+            stock += tranche[1];
+            reserve += tranche[2];
+        }
+        jdbcTemplate.update(DELETE_SLOTS_SQL, productId);
+
+        List<Object[]> lignes = new ArrayList<>(tranches);
+        int reserveRestante = reserve;
+        for (int slot = 0; slot < tranches; slot++) {
+            int part = stock / tranches + (slot < stock % tranches ? 1 : 0);
+            // Le réservé suit le stock tranche par tranche : chaque tranche garde stock >= réservé
+            int partReservee = Math.min(part, reserveRestante);
+            reserveRestante -= partReservee;
+            lignes.add(new Object[]{productId, slot, part, partReservee});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SLOT_SQL, lignes);
+        jdbcTemplate.update(ENABLE_SLOTS_SQL, tranches, productId);
+        return true;
+    }
+
+    @Override
+    public int markChangedSlots() {
+        List<Long> produits = jdbcTemplate.queryForList(CHANGED_SLOT_PRODUCTS_SQL, Long.class);
+        for (int debut = 0; debut < produits.size(); debut += IN_CLAUSE_CHUNK) {
+            List<Long> lot = produits.subList(debut, Math.min(debut + IN_CLAUSE_CHUNK, produits.size()));
+            jdbcTemplate.update(String.format(MARK_PRODUCTS_SQL, placeholders(lot.size())), lot.toArray());
+            // Une tranche en cours d'écriture est sautée : son drapeau sera reporté au passage suivant
+            List<Long> tranches = jdbcTemplate.queryForList(
+                    String.format(LOCK_CHANGED_SLOTS_SQL, placeholders(lot.size())), Long.class, lot.toArray());
+            for (int i = 0; i < tranches.size(); i += IN_CLAUSE_CHUNK) {
+                List<Long> ids = tranches.subList(i, Math.min(i + IN_CLAUSE_CHUNK, tranches.size()));
+                jdbcTemplate.update(String.format(CLEAR_CHANGED_SLOTS_SQL, placeholders(ids.size())), ids.toArray());
+            }
+        }
+        return produits.size();
+    }
+
+    @Override
+    public boolean disableStockSlots(Long productId) {
+        List<int[]> produit = jdbcTemplate.query(LOCK_PRODUCT_SQL,
+                (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2)}, productId);
+        if (produit.isEmpty()) {
+            return false;
+        }
+        int stock = 0;
+        int reserve = 0;
+        for (int[] tranche : lockSlots(productId)) {
+            stock += tranche[1];
+            reserve += tranche[2];
+        }
+        jdbcTemplate.update(DELETE_SLOTS_SQL, productId);
+        jdbcTemplate.update(DISABLE_SLOTS_SQL, stock, reserve, productId);
+        return true;
+    }
+
+    private List<Long> retryOnSlots(SlotOperation operation, Map<Long, Integer> quantitesParProduit, List<Long> refuses) {
+        if (refuses.isEmpty()) {
+            return refuses;
+        }
+        Map<Long, Integer> tranches = findStockSlots(refuses);
+        if (tranches.isEmpty()) {
+            return refuses;
+        }
+        List<Long> enRupture = new ArrayList<>();
+        for (Long productId : refuses) {
+            Integer nombre = tranches.get(productId);
+            if (nombre == null
+                    || !takeFromSlots(operation, productId, nombre, quantitesParProduit.get(productId), false)) {
+                enRupture.add(productId);
+            }
+        }
+        return enRupture;
+    }
+
+    /**
+     * Applique l'opération sur une tranche tirée au hasard puis ses voisines ; si aucune ne couvre
+     * la quantité seule, verrouille toutes les tranches par slot croissant et prélève de proche en proche.
+     * En mode partiel (libération), prélève ce qui existe au lieu d'échouer.
+     * Sous PostgreSQL une garde qui échoue ne garde pas de verrou : la transaction n'en tient aucun
+     * sur ce produit quand elle verrouille les tranches dans l'ordre.
+     */
+    private boolean takeFromSlots(SlotOperation operation, long productId, int tranches, int quantite, boolean partiel) {
+        int depart = ThreadLocalRandom.current().nextInt(tranches);
+        for (int i = 0; i < Math.min(SLOT_PROBES, tranches); i++) {
+            if (updateSlot(operation, productId, (depart + i) % tranches, quantite)) {
+                return true;
+            }
+        }
+
+        List<int[]> lignes = lockSlots(productId);
+        int total = 0;
+        for (int[] tranche : lignes) {
+            total += operation.capacity(tranche[1], tranche[2]);
+        }
+        if (total < quantite && !partiel) {
+            return false;
+        }
+        int reste = Math.min(quantite, total);
+        for (int[] tranche : lignes) {
+            int part = Math.min(reste, operation.capacity(tranche[1], tranche[2]));
+            if (part > 0) {
+                updateSlot(operation, productId, tranche[0], part);
+                reste -= part;
+            }
+        }
+        return true;
+    }
+
+    private boolean updateSlot(SlotOperation operation, long productId, int slot, int quantite) {
+        Object[] args = operation == SlotOperation.COMMIT
+                ? new Object[]{quantite, quantite, productId, slot, quantite}
+                : new Object[]{quantite, productId, slot, quantite};
+        return jdbcTemplate.update(operation.sql, args) == 1;
+    }
+
+    // Un réassort est réparti à parts égales pour que les tranches restent équilibrées
+    private void spreadOverSlots(long productId, int tranches, int quantite) {
+        List<Object[]> lignes = new ArrayList<>(tranches);
+        for (int slot = 0; slot < tranches; slot++) {
+            int part = quantite / tranches + (slot < quantite % tranches ? 1 : 0);
+            if (part > 0) {
+                lignes.add(new Object[]{part, productId, slot});
+            }
+        }
+        jdbcTemplate.batchUpdate(ADD_SLOT_STOCK_SQL, lignes);
+    }
+
+    // Verrouille les tranches par slot croissant : slot, stock, réservé
+    private List<int[]> lockSlots(long productId) {
+        return jdbcTemplate.query(LOCK_SLOTS_SQL,
+                (rs, i) -> new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)}, productId);
+    }
+
+    // Nombre de tranches des produits en mode réparti parmi les IDs
+    private Map<Long, Integer> findStockSlots(Collection<Long> ids) {
+        Map<Long, Integer> tranches = new HashMap<>();
+        List<Long> liste = new ArrayList<>(ids);
+        for (int debut = 0; debut < liste.size(); debut += IN_CLAUSE_CHUNK) {
+            List<Long> lot = liste.subList(debut, Math.min(debut + IN_CLAUSE_CHUNK, liste.size()));
+            String sql = String.format(FIND_STOCK_SLOTS_SQL, placeholders(lot.size()));
+            jdbcTemplate.query(sql, rs -> {
+                tranches.put(rs.getLong(1), rs.getInt(2));
+            }, lot.toArray());
+        }
+        return tranches;
+    }
+
+    private static String placeholders(int nombre) {
+        return String.join(", ", Collections.nCopies(nombre, "?"));
+    }
+
+    private void releaseOnProductRows(Map<Long, Integer> quantitesParProduit) {
+        if (quantitesParProduit.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> lignes = sortedLines(quantitesParProduit);
+
+        jdbcTemplate.batchUpdate(RELEASE_RESERVED_STOCK_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> ligne = lignes.get(i);
+                ps.setInt(1, ligne.getValue());
+                ps.setLong(2, ligne.getKey());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lignes.size();
+            }
+        });
+    }
+
+    private List<Long> executeGuarded(String sql, Map<Long, Integer> quantitesParProduit, boolean quantiteDoublee) {
+        if (quantitesParProduit.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<Long, Integer>> lignes = sortedLines(quantitesParProduit);
+
+        int[] updateCounts = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> ligne = lignes.get(i);
+                int index = 1;
+                ps.setInt(index++, ligne.getValue());
+                if (quantiteDoublee) {
+                    ps.setInt(index++, ligne.getValue());
+                }
+                ps.setLong(index++, ligne.getKey());
+                ps.setInt(index, ligne.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lignes.size();
+            }
+        });
+
+        List<Long> enRupture = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] == 0) {
+                enRupture.add(lignes.get(i).getKey());
+            }
+        }
+        return enRupture;
+    }
+
+    // Ordre stable par ID : deux transactions concurrentes verrouillent les lignes dans le même ordre
+    private static List<Map.Entry<Long, Integer>> sortedLines(Map<Long, Integer> quantitesParProduit) {
+        List<Map.Entry<Long, Integer>> lignes = new ArrayList<>(quantitesParProduit.entrySet());
+        lignes.sort(Map.Entry.comparingByKey());
+        return lignes;
+    }
+}
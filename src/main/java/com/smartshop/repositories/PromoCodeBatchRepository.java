@@ -0,0 +1,18 @@
+package com.smartshop.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Insertion de codes promo en lots JDBC, sans passer par le contexte de persistance.
+ */
+public interface PromoCodeBatchRepository {
+
+    /**
+     * Insère des codes actifs et non utilisés, tous avec les mêmes conditions.
+     * Un code déjà présent en base (pris par une autre instance) est laissé tel quel et renvoyé,
+     * sans faire échouer la transaction.
+     */
+    List<String> insertCodes(List<String> codes, int discountPercentage, Integer maxUses,
+                            LocalDateTime expiresAt, String description);
+}
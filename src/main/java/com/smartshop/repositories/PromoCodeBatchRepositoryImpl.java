@@ -0,0 +1,64 @@
+package com.smartshop.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class PromoCodeBatchRepositoryImpl implements PromoCodeBatchRepository {
+
+    private static final int BATCH_SIZE = 1000;
+
+    // Une requête par tranche : RETURNING donne les codes insérés, là où un batch réécrit
+    // (reWriteBatchedInserts) ne renvoie pas de compte par ligne
+    private static final String INSERT_SQL =
+            "INSERT INTO promo_codes (code, active, discount_percentage, created_at, updated_at, " +
+                    "expires_at, max_uses, uses_count, description) " +
+                    "SELECT c.code, true, ?, ?, ?, ?, ?, 0, ? FROM unnest(?) AS c(code) " +
+                    "ON CONFLICT (code) DO NOTHING RETURNING code";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<String> insertCodes(List<String> codes, int discountPercentage, Integer maxUses,
+                                    LocalDateTime expiresAt, String description) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiration = expiresAt != null ? Timestamp.valueOf(expiresAt) : null;
+
+        List<String> dejaPris = new ArrayList<>();
+        for (int debut = 0; debut < codes.size(); debut += BATCH_SIZE) {
+            List<String> tranche = codes.subList(debut, Math.min(debut + BATCH_SIZE, codes.size()));
+            Set<String> inseres = new HashSet<>(jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(INSERT_SQL);
+                ps.setInt(1, discountPercentage);
+                ps.setTimestamp(2, now);
+                ps.setTimestamp(3, now);
+                ps.setTimestamp(4, expiration);
+                if (maxUses != null) {
+                    ps.setInt(5, maxUses);
+                } else {
+                    ps.setNull(5, Types.INTEGER);
+                }
+                ps.setString(6, description);
+                ps.setArray(7, con.createArrayOf("varchar", tranche.toArray()));
+                return ps;
+            }, (rs, rowNum) -> rs.getString(1)));
+
+            // Code absent du RETURNING : déjà présent en base
+            for (String code : tranche) {
+                if (!inseres.contains(code)) {
+                    dejaPris.add(code);
+                }
+            }
+        }
+        return dejaPris;
+    }
+}
@@ -2,15 +2,17 @@ package com.smartshop.repositories;
 
 import com.smartshop.entity.PromoCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface PromoCodeRepository extends JpaRepository<PromoCode, Long> {
+public interface PromoCodeRepository extends JpaRepository<PromoCode, Long>, PromoCodeBatchRepository {
 
     Optional<PromoCode> findByCode(String code);
     boolean existsByCode(String code);
@@ -23,4 +25,37 @@ public interface PromoCodeRepository extends JpaRepository<PromoCode, Long> {
     List<PromoCode> findByDiscountPercentageGreaterThanOrEqual(@Param("percentage") Integer percentage);
     @Query("SELECT p FROM PromoCode p WHERE p.active = true AND p.discountPercentage = :percentage")
     List<PromoCode> findActiveByDiscountPercentage(@Param("percentage") Integer percentage);
+
+    @Query("SELECT p.code FROM PromoCode p")
+    List<String> findAllCodes();
+
+    /**
+     * Codes créés ou modifiés depuis une date (relevé incrémental de PromoCodeSpace)
+     */
+    @Query("SELECT p.code FROM PromoCode p WHERE p.updatedAt >= :depuis")
+    List<String> findCodesUpdatedSince(@Param("depuis") LocalDateTime depuis);
+
+    /**
+     * IDs et dates de modification des codes modifiés depuis une date (CatalogChangePoller)
+     */
+    @Query("SELECT p.id, p.updatedAt FROM PromoCode p WHERE p.updatedAt >= :depuis")
+    List<Object[]> findUpdatedSince(@Param("depuis") LocalDateTime depuis);
+
+    /**
+     * Compte une utilisation si le code est encore actif, non expiré et sous son plafond.
+     * Renvoie 0 sinon : deux commandes concurrentes ne peuvent pas dépasser max_uses.
+     */
+    @Modifying
+    @Query("UPDATE PromoCode p SET p.usesCount = p.usesCount + 1, p.updatedAt = :now " +
+            "WHERE p.id = :id AND p.active = true " +
+            "AND (p.maxUses IS NULL OR p.usesCount < p.maxUses) " +
+            "AND (p.expiresAt IS NULL OR p.expiresAt > :now)")
+    int redeem(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Ajoute des utilisations déjà acceptées (codes sans plafond, compteur en mémoire).
+     */
+    @Modifying
+    @Query("UPDATE PromoCode p SET p.usesCount = p.usesCount + :uses, p.updatedAt = :now WHERE p.id = :id")
+    int addUses(@Param("id") Long id, @Param("uses") int uses, @Param("now") LocalDateTime now);
 }
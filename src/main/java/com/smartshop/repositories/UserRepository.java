@@ -3,6 +3,7 @@ package com.smartshop.repositories;
 import com.smartshop.entity.User;
 import com.smartshop.entity.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,4 +19,7 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findByRole(UserRole role);
 
     List<User> findByRoleOrderByCreatedAtDesc(UserRole role);
+
+    @Query("SELECT u.username FROM User u")
+    List<String> findAllUsernames();
 }
\ No newline at end of file
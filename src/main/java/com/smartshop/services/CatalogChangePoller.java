@@ -0,0 +1,138 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import com.smartshop.repositories.PromoCodeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Relève les écritures faites par les autres instances, pour le cache du catalogue et les ETags.
+ * <ul>
+ *   <li>produits : lignes datées depuis l'horizon du relevé précédent ({@link ChangeHorizon}),
+ *       retirées du cache du catalogue, ce qui fait avancer la version produits, puis relues
+ *       pour les index de recherche et de prix ;</li>
+ *   <li>codes promo : lignes modifiées dans les {@link #PROMO_WINDOW} dernières minutes, ou nombre
+ *       de codes changé (suppression) : la version des codes promo avance.</li>
+ * </ul>
+ * Les écritures de l'instance, déjà appliquées après leur transaction, sont relevées elles aussi :
+ * leur version avance une seconde fois, un client les re-télécharge au pire deux fois.
+ * Une modification de code promo validée plus de {@link #PROMO_WINDOW} après sa date n'est pas vue.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class CatalogChangePoller {
+
+    static final Duration PROMO_WINDOW = Duration.ofMinutes(5);
+
+    private final ProductRepository productRepository;
+    private final PromoCodeRepository promoCodeRepository;
+    private final ProductCatalogCache catalogCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductPriceIndex priceIndex;
+    private final CatalogVersion catalogVersion;
+    private final ChangeHorizon changeHorizon;
+
+    // null jusqu'au premier relevé
+    private LocalDateTime productHorizon;
+    private Map<Long, LocalDateTime> productsSeen = Map.of();
+    private Map<Long, LocalDateTime> promoCodesSeen;
+    private long promoCodesCount;
+
+    @Scheduled(initialDelayString = "${smartshop.http-cache.poll-ms:5000}",
+            fixedDelayString = "${smartshop.http-cache.poll-ms:5000}")
+    public synchronized void poll() {
+        try {
+            pollProducts();
+        } catch (RuntimeException e) {
+            log.warn("Relevé des modifications de produits impossible: {}", e.getMessage());
+        }
+        try {
+            pollPromoCodes();
+        } catch (RuntimeException e) {
+            log.warn("Relevé des modifications de codes promo impossible: {}", e.getMessage());
+        }
+    }
+
+    void pollProducts() {
+        LocalDateTime horizon = changeHorizon.current();
+        if (productHorizon == null) {
+            // Entrées mises en cache avant le premier relevé : leur fraîcheur n'est pas connue
+            catalogCache.clear();
+            productHorizon = horizon;
+            return;
+        }
+
+        // Tout ce qui est daté avant l'horizon précédent a été relevé ; au-delà, déjà vu ou nouveau
+        Map<Long, LocalDateTime> vus = new HashMap<>();
+        List<Long> modifies = new ArrayList<>();
+        for (Object[] ligne : productRepository.findUpdatedSince(productHorizon)) {
+            Long id = (Long) ligne[0];
+            LocalDateTime updatedAt = (LocalDateTime) ligne[1];
+            vus.put(id, updatedAt);
+            if (!updatedAt.equals(productsSeen.get(id))) {
+                modifies.add(id);
+            }
+        }
+        if (!modifies.isEmpty()) {
+            catalogCache.evict(modifies);
+            reindex(modifies);
+            log.debug("{} produit(s) modifié(s) relevé(s), retirés du cache du catalogue et réindexés", modifies.size());
+        }
+        productsSeen = vus;
+        productHorizon = horizon;
+    }
+
+    private void reindex(List<Long> ids) {
+        Set<Long> absents = new HashSet<>(ids);
+        for (int from = 0; from < ids.size(); from += ProductCatalogCache.IN_CLAUSE_CHUNK) {
+            List<Long> lot = ids.subList(from, Math.min(from + ProductCatalogCache.IN_CLAUSE_CHUNK, ids.size()));
+            for (Object[] ligne : productRepository.findIndexedFieldsByIds(lot)) {
+                Long id = (Long) ligne[0];
+                absents.remove(id);
+                if ((Boolean) ligne[2]) {
+                    searchIndex.remove(id);
+                    priceIndex.remove(id);
+                } else {
+                    searchIndex.index(id, (String) ligne[1]);
+                    priceIndex.index(id, (BigDecimal) ligne[3]);
+                }
+            }
+        }
+        for (Long id : absents) {
+            searchIndex.remove(id);
+            priceIndex.remove(id);
+        }
+    }
+
+    void pollPromoCodes() {
+        long nombre = promoCodeRepository.count();
+        Map<Long, LocalDateTime> vus = new HashMap<>();
+        boolean modifie = promoCodesSeen == null || nombre != promoCodesCount;
+        for (Object[] ligne : promoCodeRepository.findUpdatedSince(LocalDateTime.now().minus(PROMO_WINDOW))) {
+            Long id = (Long) ligne[0];
+            LocalDateTime updatedAt = (LocalDateTime) ligne[1];
+            vus.put(id, updatedAt);
+            if (promoCodesSeen != null && !updatedAt.equals(promoCodesSeen.get(id))) {
+                modifie = true;
+            }
+        }
+        if (modifie) {
+            catalogVersion.promoCodesChanged();
+        }
+        promoCodesSeen = vus;
+        promoCodesCount = nombre;
+    }
+}
@@ -0,0 +1,47 @@
+package com.smartshop.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions croissantes du catalogue produits et des codes promo, utilisées comme ETag.
+ * <p>
+ * Chaque écriture validée incrémente la version concernée : celles de l'instance après leur
+ * transaction, celles des autres instances quand {@link CatalogChangePoller} les relève. Les
+ * compteurs partent de l'heure de démarrage (en millisecondes) : après un redémarrage, une version
+ * déjà distribuée n'est pas réattribuée à un contenu différent. Une version est propre à son
+ * instance : un ETag présenté à une autre instance donne une réponse complète, jamais un 304 périmé.
+ */
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong products;
+    private final AtomicLong promoCodes;
+
+    public CatalogVersion() {
+        long depart = System.currentTimeMillis();
+        this.products = new AtomicLong(depart);
+        this.promoCodes = new AtomicLong(depart);
+    }
+
+    public long products() {
+        return products.get();
+    }
+
+    public long promoCodes() {
+        return promoCodes.get();
+    }
+
+    public void productsChanged() {
+        products.incrementAndGet();
+    }
+
+    public void promoCodesChanged() {
+        promoCodes.incrementAndGet();
+    }
+
+    public void promoCodesChangedAfterCommit() {
+        TransactionCallbacks.afterCommit(this::promoCodesChanged);
+    }
+}
@@ -0,0 +1,73 @@
+package com.smartshop.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Horizon des modifications validées, à l'horloge de la base.
+ * <p>
+ * Les écritures datent updated_at du début de leur transaction (LOCALTIMESTAMP). Une ligne
+ * datée avant le début de la plus ancienne transaction d'écriture encore ouverte vient donc d'une
+ * transaction terminée : tout ce qui est strictement antérieur à l'horizon est visible et
+ * plus rien ne s'y insérera.
+ * <p>
+ * Seules les transactions qui écrivent products retiennent l'horizon : elles s'inscrivent par
+ * {@link #registerWriter()} (verrou consultatif partagé, libéré à la fin de la transaction).
+ * Un export en flux ou un recalcul de niveaux n'y figurent pas ; un lot d'import ne le retient
+ * que le temps de son insertion.
+ * L'inscription doit être la première instruction de la transaction, pour qu'aucune date de
+ * début ne précède son apparition dans pg_locks ; une marge d'une seconde couvre le court
+ * instant entre le BEGIN et l'obtention du verrou.
+ * <p>
+ * xact_start n'est lisible dans pg_stat_activity que pour les sessions du même rôle : toutes les
+ * instances doivent se connecter avec le même rôle, ou ce rôle doit avoir pg_read_all_stats.
+ * Sinon l'horizon est refusé plutôt que d'avancer au-delà d'une écriture invisible.
+ * <p>
+ * Les opérations sur tranches de stock sont datées par la transaction de StockSlotChangeJob qui les
+ * reporte sur le produit, après leur validation : elles apparaissent avec ce délai.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChangeHorizon {
+
+    /** Clé du verrou consultatif des écrivains de products (classid 0, objid = clé). */
+    static final long WRITER_LOCK = 0x70726f64L;
+
+    private static final String REGISTRATION_MARGIN_SQL = "INTERVAL '1 second'";
+
+    private static final String REGISTER_WRITER_SQL = "SELECT pg_advisory_xact_lock_shared(?)";
+
+    private static final String HORIZON_SQL =
+            "SELECT LEAST(LOCALTIMESTAMP - " + REGISTRATION_MARGIN_SQL + ", " +
+                    "COALESCE(CAST(MIN(a.xact_start) AS timestamp), LOCALTIMESTAMP)), " +
+                    "COUNT(*) - COUNT(a.xact_start) " +
+                    "FROM pg_locks l JOIN pg_stat_activity a ON a.pid = l.pid " +
+                    "WHERE l.locktype = 'advisory' AND l.granted " +
+                    "AND l.database = (SELECT oid FROM pg_database WHERE datname = current_database()) " +
+                    "AND l.classid = 0 AND l.objid = CAST(? AS oid) AND l.objsubid = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inscrit la transaction courante parmi les écrivains de products jusqu'à sa fin.
+     * À appeler avant toute autre requête de la transaction.
+     */
+    public void registerWriter() {
+        jdbcTemplate.queryForList(REGISTER_WRITER_SQL, WRITER_LOCK);
+    }
+
+    public LocalDateTime current() {
+        return jdbcTemplate.queryForObject(HORIZON_SQL, (rs, i) -> {
+            if (rs.getLong(2) > 0) {
+                throw new IllegalStateException("Horizon des modifications indéterminé : " + rs.getLong(2) +
+                        " transaction(s) d'écriture sans xact_start visible (rôle sans pg_read_all_stats)");
+            }
+            Timestamp horizon = rs.getTimestamp(1);
+            return horizon.toLocalDateTime();
+        }, WRITER_LOCK);
+    }
+}
@@ -0,0 +1,161 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.Client;
+import com.smartshop.entity.ClientOrderStats;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderStatus;
+import com.smartshop.repositories.ClientOrderStatsRepository;
+import com.smartshop.repositories.ClientRepository;
+import com.smartshop.repositories.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Agrégats de commandes par client (voir {@link ClientOrderStats}).
+ * Les mises à jour rejoignent la transaction de la commande : l'agrégat et le statut
+ * de la commande sont validés ou annulés ensemble.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ClientOrderStatsService {
+
+    private final ClientOrderStatsRepository clientOrderStatsRepository;
+    private final OrderRepository orderRepository;
+    private final ClientRepository clientRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void initialize(Long clientId) {
+        clientOrderStatsRepository.save(ClientOrderStats.empty(clientId));
+    }
+
+    /**
+     * Compte une commande qui vient d'être enregistrée.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ClientOrderStats recordCreated(Order order) {
+        return record(order, null);
+    }
+
+    /**
+     * Déplace une commande de son ancien statut vers son statut courant.
+     * Une confirmation recopie aussi les statistiques sur le client.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ClientOrderStats recordTransition(Order order, OrderStatus ancienStatut) {
+        ClientOrderStats stats = record(order, ancienStatut);
+        if (order.getStatut() == OrderStatus.CONFIRMED) {
+            order.getClient().applyOrderStatistics(stats);
+        }
+        return stats;
+    }
+
+    @Transactional(readOnly = true)
+    public ClientOrderStats getStats(Long clientId) {
+        return clientOrderStatsRepository.findById(clientId)
+                .orElseGet(() -> rebuild(List.of(clientId)).get(clientId));
+    }
+
+    /**
+     * Recalcule les agrégats d'une tranche de clients depuis les commandes et corrige les écarts.
+     * Les agrégats sont verrouillés avant le recalcul : une confirmation concurrente est soit
+     * déjà validée et vue par le recalcul, soit appliquée ensuite sur l'agrégat corrigé.
+     *
+     * @return le nombre de clients dont l'agrégat ou les statistiques avaient dérivé
+     */
+    @Transactional
+    public int verify(List<Long> clientIds) {
+        clientOrderStatsRepository.insertMissing(clientIds);
+        Map<Long, ClientOrderStats> stockes = clientOrderStatsRepository.findAllForUpdate(clientIds).stream()
+                .collect(Collectors.toMap(ClientOrderStats::getClientId, Function.identity()));
+        Map<Long, ClientOrderStats> attendus = rebuild(clientIds);
+        Map<Long, Client> clients = clientRepository.findAllById(clientIds).stream()
+                .collect(Collectors.toMap(Client::getId, Function.identity()));
+
+        int derives = 0;
+        for (Long clientId : clientIds) {
+            ClientOrderStats attendu = attendus.get(clientId);
+            ClientOrderStats stocke = stockes.get(clientId);
+            Client client = clients.get(clientId);
+            if (stocke == null) {
+                // Client supprimé entre la lecture de la tranche et le verrouillage
+                continue;
+            }
+
+            boolean agregatDerive = !stocke.sameTotalsAs(attendu);
+            boolean clientDerive = client != null && clientDiffers(client, attendu);
+            if (!agregatDerive && !clientDerive) {
+                continue;
+            }
+
+            derives++;
+            log.warn("Écart détecté sur les statistiques du client {}: agrégat={}, attendu={}",
+                    clientId, stocke, attendu);
+            stocke.copyTotalsFrom(attendu);
+            if (client != null) {
+                client.applyOrderStatistics(attendu);
+            }
+        }
+        return derives;
+    }
+
+    private ClientOrderStats record(Order order, OrderStatus ancienStatut) {
+        Long clientId = order.getClient().getId();
+        ClientOrderStats stats = clientOrderStatsRepository.findForUpdate(clientId).orElse(null);
+        if (stats == null) {
+            // Client antérieur à l'agrégat : deux premières commandes concurrentes ne créent qu'une ligne
+            boolean creee = clientOrderStatsRepository.insertIfAbsent(clientId) == 1;
+            stats = clientOrderStatsRepository.findForUpdate(clientId)
+                    .orElseThrow(() -> new IllegalStateException("Agrégat du client " + clientId + " introuvable"));
+            if (creee) {
+                // Le recalcul inclut déjà cette commande
+                stats.copyTotalsFrom(rebuild(List.of(clientId)).get(clientId));
+                log.info("Agrégat de commandes initialisé pour le client {}", clientId);
+                return stats;
+            }
+        }
+
+        if (ancienStatut != null) {
+            stats.addToStatus(ancienStatut, -1);
+        }
+        stats.addToStatus(order.getStatut(), 1);
+        if (order.getStatut() == OrderStatus.CONFIRMED) {
+            stats.addConfirmed(order.getTotalTTC(), order.getOrderDate());
+        }
+        return stats;
+    }
+
+    private Map<Long, ClientOrderStats> rebuild(Collection<Long> clientIds) {
+        Map<Long, ClientOrderStats> agregats = new HashMap<>();
+        clientIds.forEach(id -> agregats.put(id, ClientOrderStats.empty(id)));
+
+        for (Object[] ligne : orderRepository.aggregateByClients(clientIds)) {
+            ClientOrderStats stats = agregats.get((Long) ligne[0]);
+            OrderStatus statut = (OrderStatus) ligne[1];
+            stats.addToStatus(statut, (Long) ligne[2]);
+            if (statut == OrderStatus.CONFIRMED) {
+                stats.setTotalConfirmedTTC((BigDecimal) ligne[3]);
+                stats.setFirstOrderDate((LocalDateTime) ligne[4]);
+                stats.setLastOrderDate((LocalDateTime) ligne[5]);
+            }
+        }
+        return agregats;
+    }
+
+    private static boolean clientDiffers(Client client, ClientOrderStats attendu) {
+        return client.getTotalOrders() != attendu.getConfirmedCount()
+                || client.getTotalSpent().compareTo(attendu.getTotalConfirmedTTC()) != 0;
+    }
+}
@@ -0,0 +1,46 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ClientRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Vérifie périodiquement les agrégats de commandes contre la table des commandes,
+ * une tranche de clients par transaction. Crée aussi les agrégats manquants.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ClientOrderStatsVerificationJob {
+
+    private static final int CHUNK_SIZE = 500;
+
+    private final ClientRepository clientRepository;
+    private final ClientOrderStatsService clientOrderStatsService;
+
+    @Scheduled(initialDelayString = "${smartshop.client-stats.verify-initial-delay-ms:60000}",
+            fixedDelayString = "${smartshop.client-stats.verify-interval-ms:21600000}")
+    public void verifyAll() {
+        long verifies = 0;
+        long derives = 0;
+        Long dernierId = 0L;
+
+        List<Long> tranche;
+        while (!(tranche = clientRepository.findIdsAfter(dernierId, Limit.of(CHUNK_SIZE))).isEmpty()) {
+            derives += clientOrderStatsService.verify(tranche);
+            verifies += tranche.size();
+            dernierId = tranche.get(tranche.size() - 1);
+        }
+
+        if (derives > 0) {
+            log.warn("Vérification des agrégats clients: {} écart(s) corrigé(s) sur {} client(s)", derives, verifies);
+        } else {
+            log.info("Vérification des agrégats clients: {} client(s), aucun écart", verifies);
+        }
+    }
+}
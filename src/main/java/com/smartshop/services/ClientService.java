@@ -13,6 +13,8 @@ import com.smartshop.repositories.ClientRepository;
 import com.smartshop.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -22,6 +24,9 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.smartshop.services.UniquenessGuard.KeySpace.CLIENT_EMAIL;
+import static com.smartshop.services.UniquenessGuard.KeySpace.CLIENT_USER;
+
 
 @Service
 @Slf4j
@@ -31,13 +36,15 @@ public class ClientService {
     private final ClientRepository clientRepository;
     private final UserRepository userRepository;
     private final ClientMapper clientMapper;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final UniquenessGuard uniquenessGuard;
 
 
     @Transactional
     public ClientDTO createClient(ClientDTO clientDTO, Long userId) {
         log.info("Création d'un nouveau client avec l'email: {} et userId: {}", clientDTO.getEmail(), userId);
         validateClientData(clientDTO);
-        if (clientRepository.existsByEmail(clientDTO.getEmail())) {
+        if (emailExists(clientDTO.getEmail())) {
             log.warn("Tentative de création avec un email qui existe déjà: {}", clientDTO.getEmail());
             throw new ClientEmailAlreadyExistsException(
                     "Un client avec l'email '" + clientDTO.getEmail() + "' existe déjà"
@@ -50,7 +57,7 @@ public class ClientService {
                     return new ClientUserNotFoundException("User non trouvé avec l'ID: " + userId);
                 });
 
-        if (clientRepository.existsByUserId(userId)) {
+        if (uniquenessGuard.exists(CLIENT_USER, String.valueOf(userId), () -> clientRepository.existsByUserId(userId))) {
             log.warn("Un client existe déjà pour le User avec l'ID: {}", userId);
             throw new ClientBusinessException("Un client existe déjà pour cet utilisateur");
         }
@@ -62,7 +69,27 @@ public class ClientService {
         client.setTotalSpent(BigDecimal.ZERO);
         client.setIsActive(client.getIsActive());
 
-        Client savedClient = clientRepository.save(client);
+        uniquenessGuard.add(CLIENT_EMAIL, client.getEmail());
+        uniquenessGuard.add(CLIENT_USER, String.valueOf(userId));
+        Client savedClient;
+        try {
+            savedClient = clientRepository.saveAndFlush(client);
+        } catch (DataIntegrityViolationException e) {
+            // Créé entre-temps par une autre instance, que le filtre d'unicité ne connaissait pas encore
+            String contrainte = violatedConstraint(e);
+            if (Client.USER_CONSTRAINT.equals(contrainte)) {
+                log.warn("Un client a été créé entre-temps pour le User avec l'ID: {}", userId);
+                throw new ClientBusinessException("Un client existe déjà pour cet utilisateur", e);
+            }
+            if (Client.EMAIL_CONSTRAINT.equals(contrainte)) {
+                log.warn("Email déjà pris par un client créé entre-temps: {}", clientDTO.getEmail());
+                throw new ClientEmailAlreadyExistsException(
+                        "Un client avec l'email '" + clientDTO.getEmail() + "' existe déjà", e
+                );
+            }
+            throw e;
+        }
+        clientOrderStatsService.initialize(savedClient.getId());
         log.info("Client créé avec succès: ID={}, email={}", savedClient.getId(), savedClient.getEmail());
 
         return clientMapper.toDTO(savedClient);
@@ -152,7 +179,7 @@ public class ClientService {
                 });
 
         if (!client.getEmail().equals(clientDTO.getEmail()) &&
-                clientRepository.existsByEmail(clientDTO.getEmail())) {
+                emailExists(clientDTO.getEmail())) {
             log.warn("Tentative de mise à jour avec un email qui existe déjà: {}", clientDTO.getEmail());
             throw new ClientEmailAlreadyExistsException(
                     "Un client avec l'email '" + clientDTO.getEmail() + "' existe déjà"
@@ -164,7 +191,16 @@ public class ClientService {
         client.setEmail(clientDTO.getEmail());
         client.setIsActive(clientDTO.getIsActive());
 
-        Client updatedClient = clientRepository.save(client);
+        uniquenessGuard.add(CLIENT_EMAIL, client.getEmail());
+        Client updatedClient;
+        try {
+            updatedClient = clientRepository.saveAndFlush(client);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Email déjà pris par un client modifié entre-temps: {}", clientDTO.getEmail());
+            throw new ClientEmailAlreadyExistsException(
+                    "Un client avec l'email '" + clientDTO.getEmail() + "' existe déjà", e
+            );
+        }
         log.info("Client mis à jour avec succès: ID={}", updatedClient.getId());
 
         return clientMapper.toDTO(updatedClient);
@@ -193,7 +229,11 @@ public class ClientService {
 
     @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
-        return clientRepository.existsByEmail(email);
+        return emailExists(email);
+    }
+
+    private boolean emailExists(String email) {
+        return uniquenessGuard.exists(CLIENT_EMAIL, email, () -> clientRepository.existsByEmail(email));
     }
 
     @Transactional(readOnly = true)
@@ -242,4 +282,14 @@ public class ClientService {
 
         log.debug("Validation des données du client réussie");
     }
+
+    // Nom de la contrainte violée, en minuscules, ou null si le pilote ne l'a pas donné
+    private static String violatedConstraint(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && violation.getConstraintName() != null) {
+                return violation.getConstraintName().toLowerCase();
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,273 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ClientTierJobDTO;
+import com.smartshop.entity.CustomerTier;
+import com.smartshop.entity.OrderStatus;
+import com.smartshop.exceptions.ClientBusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Recalcul de total_orders, total_spent et customer_tier de tous les clients depuis leurs
+ * commandes confirmées, après un changement des seuils de {@link CustomerTier} ou pour corriger
+ * des totaux qui ont dérivé.
+ * <p>
+ * Les clients sont parcourus par tranches d'IDs, une transaction par tranche : les agrégats
+ * client_order_stats sont recalculés depuis les commandes, puis les clients depuis les agrégats,
+ * chacun par un UPDATE ensembliste qui n'écrit que les lignes qui changent. Un agrégat dérivé
+ * est ainsi corrigé avant de servir aux confirmations suivantes. Une pause entre deux tranches laisse la place au trafic. Une tâche à la fois,
+ * exécutée en tâche de fond et annulable.
+ */
+@Service
+@Slf4j
+public class ClientTierRecalculationService {
+
+    static final int MAX_TAILLE_TRANCHE = 50_000;
+    static final long MAX_PAUSE_MS = 60_000;
+
+    private static final String TIER_CASE = tierCase();
+
+    private static final String INSERT_MISSING_STATS_SQL =
+            "INSERT INTO client_order_stats (client_id, pending_count, confirmed_count, canceled_count, " +
+                    "rejected_count, total_confirmed_ttc, updated_at) " +
+                    "SELECT c.id, 0, 0, 0, 0, 0, ? FROM clients c WHERE c.id >= ? AND c.id < ? ORDER BY c.id " +
+                    "ON CONFLICT DO NOTHING";
+
+    // Verrous d'une confirmation de commande, dans le même ordre : agrégat puis client
+    private static final String LOCK_STATS_SQL =
+            "SELECT client_id FROM client_order_stats WHERE client_id >= ? AND client_id < ? " +
+                    "ORDER BY client_id FOR UPDATE";
+
+    private static final String RECALCULATE_STATS_SQL =
+            "UPDATE client_order_stats s SET pending_count = a.pending, confirmed_count = a.nb, " +
+                    "canceled_count = a.canceled, rejected_count = a.rejected, total_confirmed_ttc = a.total, " +
+                    "first_order_date = a.premiere, last_order_date = a.derniere, updated_at = ? " +
+                    "FROM (SELECT s2.client_id, " +
+                    countOf(OrderStatus.PENDING) + " AS pending, " +
+                    countOf(OrderStatus.CONFIRMED) + " AS nb, " +
+                    countOf(OrderStatus.CANCELED) + " AS canceled, " +
+                    countOf(OrderStatus.REJECTED) + " AS rejected, " +
+                    "COALESCE(SUM(" + confirmed("o.total_ttc") + "), 0) AS total, " +
+                    "MIN(" + confirmed("o.order_date") + ") AS premiere, " +
+                    "MAX(" + confirmed("o.order_date") + ") AS derniere " +
+                    "FROM client_order_stats s2 LEFT JOIN orders o ON o.client_id = s2.client_id " +
+                    "WHERE s2.client_id >= ? AND s2.client_id < ? GROUP BY s2.client_id) a " +
+                    "WHERE s.client_id = a.client_id AND (s.pending_count <> a.pending OR s.confirmed_count <> a.nb " +
+                    "OR s.canceled_count <> a.canceled OR s.rejected_count <> a.rejected " +
+                    "OR s.total_confirmed_ttc <> a.total OR s.first_order_date IS DISTINCT FROM a.premiere " +
+                    "OR s.last_order_date IS DISTINCT FROM a.derniere)";
+
+    private static final String RECALCULATE_CLIENTS_SQL =
+            "UPDATE clients c SET total_orders = a.nb, total_spent = a.total, customer_tier = " + TIER_CASE +
+                    ", updated_at = ? " +
+                    "FROM (SELECT client_id AS id, confirmed_count AS nb, total_confirmed_ttc AS total " +
+                    "FROM client_order_stats WHERE client_id >= ? AND client_id < ?) a " +
+                    "WHERE c.id = a.id AND (c.total_orders <> a.nb OR c.total_spent <> a.total " +
+                    "OR c.customer_tier <> " + TIER_CASE + ")";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int defaultChunkSize;
+    private final long defaultPauseMs;
+
+    private final AtomicReference<RecalculationJob> current = new AtomicReference<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "client-tiers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ClientTierRecalculationService(JdbcTemplate jdbcTemplate,
+                                          PlatformTransactionManager transactionManager,
+                                          @Value("${smartshop.client-tiers.chunk-size:1000}") int defaultChunkSize,
+                                          @Value("${smartshop.client-tiers.pause-ms:100}") long defaultPauseMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultChunkSize = defaultChunkSize;
+        this.defaultPauseMs = defaultPauseMs;
+    }
+
+    /**
+     * Planifie le recalcul ; tailleTranche et pauseMs null prennent les valeurs configurées.
+     */
+    public ClientTierJobDTO start(Integer tailleTranche, Long pauseMs) {
+        int taille = tailleTranche != null ? tailleTranche : defaultChunkSize;
+        long pause = pauseMs != null ? pauseMs : defaultPauseMs;
+        if (taille < 1 || taille > MAX_TAILLE_TRANCHE) {
+            throw new ClientBusinessException("La taille de tranche doit être entre 1 et " + MAX_TAILLE_TRANCHE);
+        }
+        if (pause < 0 || pause > MAX_PAUSE_MS) {
+            throw new ClientBusinessException("La pause doit être entre 0 et " + MAX_PAUSE_MS + " ms");
+        }
+
+        RecalculationJob precedent = current.get();
+        if (precedent != null && precedent.statut == ClientTierJobDTO.Statut.EN_COURS) {
+            throw new ClientBusinessException("Un recalcul des niveaux clients est déjà en cours: " + precedent.id);
+        }
+
+        long[] bornes = jdbcTemplate.queryForObject("SELECT MIN(id), MAX(id) FROM clients",
+                (rs, rowNum) -> rs.getObject(1) == null ? new long[]{1, 0} : new long[]{rs.getLong(1), rs.getLong(2)});
+        RecalculationJob job = new RecalculationJob(UUID.randomUUID().toString(), taille, pause, bornes[0], bornes[1]);
+        if (!current.compareAndSet(precedent, job)) {
+            throw new ClientBusinessException("Un recalcul des niveaux clients est déjà en cours");
+        }
+
+        executor.submit(() -> run(job));
+        log.info("Recalcul des niveaux clients planifié: tâche {}, IDs {} à {}, tranches de {}, pause {} ms",
+                job.id, job.premierId, job.dernierId, taille, pause);
+        return job.toDTO();
+    }
+
+    public ClientTierJobDTO getCurrentJob() {
+        return currentJob().toDTO();
+    }
+
+    /**
+     * Arrête la tâche après la tranche en cours ; les tranches déjà traitées restent validées.
+     */
+    public ClientTierJobDTO cancel() {
+        RecalculationJob job = currentJob();
+        job.annule = true;
+        log.info("Annulation du recalcul des niveaux clients demandée: tâche {}", job.id);
+        return job.toDTO();
+    }
+
+    void run(RecalculationJob job) {
+        try {
+            for (long debut = job.premierId; debut <= job.dernierId && !job.annule; debut += job.tailleTranche) {
+                long depuis = debut;
+                long fin = debut + job.tailleTranche;
+                int[] modifies = transactionTemplate.execute(status -> recalculateRange(depuis, fin));
+                job.agregatsCorriges.addAndGet(modifies[0]);
+                job.clientsModifies.addAndGet(modifies[1]);
+                job.tranchesTraitees.incrementAndGet();
+                job.idCourant = fin;
+                if (job.pauseMs > 0 && fin <= job.dernierId) {
+                    Thread.sleep(job.pauseMs);
+                }
+            }
+            job.statut = job.annule ? ClientTierJobDTO.Statut.ANNULE : ClientTierJobDTO.Statut.TERMINE;
+            log.info("Recalcul des niveaux clients {} {}: {} agrégat(s) corrigé(s), {} client(s) modifié(s) en {} tranche(s)",
+                    job.id, job.annule ? "annulé" : "terminé", job.agregatsCorriges.get(), job.clientsModifies.get(),
+                    job.tranchesTraitees.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.statut = ClientTierJobDTO.Statut.ANNULE;
+            job.message = "Interrompu à l'arrêt de l'application";
+        } catch (RuntimeException e) {
+            job.statut = ClientTierJobDTO.Statut.ECHOUE;
+            job.message = e.getMessage();
+            log.error("Recalcul des niveaux clients {} échoué avant l'ID {}: {}", job.id, job.idCourant, e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    // [agrégats corrigés, clients modifiés]
+    private int[] recalculateRange(long debut, long fin) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_MISSING_STATS_SQL, now, debut, fin);
+        // Une confirmation en cours sur la tranche est attendue, puis vue validée par les UPDATE
+        jdbcTemplate.queryForList(LOCK_STATS_SQL, Long.class, debut, fin);
+        int agregats = jdbcTemplate.update(RECALCULATE_STATS_SQL, now, debut, fin);
+        int clients = jdbcTemplate.update(RECALCULATE_CLIENTS_SQL, now, debut, fin);
+        return new int[]{agregats, clients};
+    }
+
+    private RecalculationJob currentJob() {
+        RecalculationJob job = current.get();
+        if (job == null) {
+            throw new ClientBusinessException("Aucun recalcul des niveaux clients n'a été lancé");
+        }
+        return job;
+    }
+
+    private static String countOf(OrderStatus statut) {
+        return "COUNT(CASE WHEN o.statut = '" + statut + "' THEN 1 END)";
+    }
+
+    private static String confirmed(String colonne) {
+        return "CASE WHEN o.statut = '" + OrderStatus.CONFIRMED + "' THEN " + colonne + " END";
+    }
+
+    // Mêmes seuils que CustomerTier.forStatistics, sur les colonnes nb et total de l'agrégat
+    private static String tierCase() {
+        StringBuilder sql = new StringBuilder("CASE");
+        CustomerTier[] tiers = CustomerTier.values();
+        for (int i = tiers.length - 1; i > 0; i--) {
+            sql.append(" WHEN a.nb >= ").append(tiers[i].getMinOrders())
+                    .append(" OR a.total >= ").append(tiers[i].getMinSpent().toPlainString())
+                    .append(" THEN '").append(tiers[i].name()).append("'");
+        }
+        return sql.append(" ELSE '").append(CustomerTier.BASIC.name()).append("' END").toString();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * État d'une tâche, mis à jour par le thread de recalcul et lu par les requêtes de suivi.
+     */
+    static final class RecalculationJob {
+
+        final String id;
+        final int tailleTranche;
+        final long pauseMs;
+        final long premierId;
+        final long dernierId;
+        final AtomicLong tranchesTraitees = new AtomicLong();
+        final AtomicLong agregatsCorriges = new AtomicLong();
+        final AtomicLong clientsModifies = new AtomicLong();
+        final LocalDateTime startedAt = LocalDateTime.now();
+        volatile ClientTierJobDTO.Statut statut = ClientTierJobDTO.Statut.EN_COURS;
+        volatile long idCourant;
+        volatile boolean annule;
+        volatile String message;
+        volatile LocalDateTime finishedAt;
+
+        RecalculationJob(String id, int tailleTranche, long pauseMs, long premierId, long dernierId) {
+            this.id = id;
+            this.tailleTranche = tailleTranche;
+            this.pauseMs = pauseMs;
+            this.premierId = premierId;
+            this.dernierId = dernierId;
+            this.idCourant = premierId;
+        }
+
+        ClientTierJobDTO toDTO() {
+            long traites = idCourant - premierId;
+            long total = dernierId - premierId + 1;
+            return ClientTierJobDTO.builder()
+                    .id(id)
+                    .statut(statut)
+                    .tailleTranche(tailleTranche)
+                    .pauseMs(pauseMs)
+                    .premierId(premierId)
+                    .dernierId(dernierId)
+                    .idCourant(idCourant)
+                    .progression(total > 0 ? (int) Math.min(100, traites * 100 / total) : 100)
+                    .tranchesTraitees(tranchesTraitees.get())
+                    .agregatsCorriges(agregatsCorriges.get())
+                    .clientsModifies(clientsModifies.get())
+                    .message(message)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .build();
+        }
+    }
+}
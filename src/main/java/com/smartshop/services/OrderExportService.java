@@ -0,0 +1,86 @@
+package com.smartshop.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.Order;
+import com.smartshop.mappers.OrderMapper;
+import com.smartshop.repositories.OrderRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Export des commandes en JSON délimité par des retours à la ligne (NDJSON).
+ * Les commandes sont lues par curseur JDBC et écrites une à une : la mémoire utilisée
+ * ne dépend pas du nombre de commandes exportées.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private static final int CHUNK_SIZE = 500;
+    private static final byte NEW_LINE = '\n';
+
+    private final OrderRepository orderRepository;
+    private final OrderMapper orderMapper;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public long exportOrders(OutputStream out) {
+        log.info("Export NDJSON des commandes");
+
+        long count = 0;
+        List<Order> chunk = new ArrayList<>(CHUNK_SIZE);
+        try (Stream<Order> orders = orderRepository.streamAll()) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE) {
+                    count += writeChunk(chunk, out);
+                }
+            }
+            count += writeChunk(chunk, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erreur lors de l'écriture de l'export des commandes", e);
+        }
+
+        log.info("Export NDJSON terminé: {} commandes", count);
+        return count;
+    }
+
+    /**
+     * Lignes et paiements de la tranche chargés par deux requêtes IN, puis écriture et détachement.
+     * Le @BatchSize des collections ne suffit pas ici : seule la commande courante serait non initialisée.
+     */
+    private int writeChunk(List<Order> chunk, OutputStream out) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = chunk.stream().map(Order::getId).toList();
+        orderRepository.fetchOrderItems(ids);
+        orderRepository.fetchPayments(ids);
+
+        for (Order order : chunk) {
+            out.write(objectMapper.writeValueAsBytes(orderMapper.toDTO(order)));
+            out.write(NEW_LINE);
+        }
+        out.flush();
+
+        int written = chunk.size();
+        chunk.clear();
+        // Détache les commandes déjà écrites pour garder le contexte de persistance borné
+        entityManager.clear();
+        return written;
+    }
+}
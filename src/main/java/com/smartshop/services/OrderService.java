@@ -1,6 +1,7 @@
 package com.smartshop.services;
 
 import com.smartshop.dtos.CreateOrderDTO;
+import com.smartshop.dtos.CursorPageDTO;
 import com.smartshop.dtos.OrderDTO;
 import com.smartshop.entity.*;
 import com.smartshop.exceptions.*;
@@ -9,6 +10,7 @@ import com.smartshop.repositories.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -16,9 +18,13 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 @Service
 @Slf4j
@@ -30,18 +36,30 @@ public class OrderService {
     private final ClientRepository clientRepository;
     private final ProductRepository productRepository;
     private final PromoCodeRepository promoCodeRepository;
+    private final PromoCodeCache promoCodeCache;
+    private final PromoCodeRedemptions promoCodeRedemptions;
+    private final CatalogVersion catalogVersion;
+    private final ProductSalesCounters salesCounters;
     private final PaymentRepository paymentRepository;
     private final OrderMapper orderMapper;
+    private final ReferenceAllocator referenceAllocator;
+    private final StockReservationService stockReservationService;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final OutboxService outboxService;
+    private final ChangeHorizon changeHorizon;
 
     @Value("${smartshop.tva.rate:20}")
     private BigDecimal tauxTVA = new BigDecimal("20");
 
     private static final BigDecimal PROMO_CODE_DISCOUNT = new BigDecimal("5");
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
 
     @Transactional
     public OrderDTO createOrder(CreateOrderDTO createOrderDTO) {
         log.info("Création d'une nouvelle commande pour le client ID: {}", createOrderDTO.getClientId());
+        changeHorizon.registerWriter();
 
         Client client = clientRepository.findById(createOrderDTO.getClientId())
                 .orElseThrow(() -> new ClientNotFoundException(
@@ -56,9 +74,12 @@ public class OrderService {
             throw new OrderBusinessException("La commande doit contenir au moins un article");
         }
 
+        Map<Long, Product> products = loadOrderProducts(createOrderDTO.getItems());
+        PromoCode promoCode = resolvePromoCode(createOrderDTO.getPromoCode());
+
         Order order = Order.builder()
                 .client(client)
-                .reference(generateOrderReference())
+                .reference(referenceAllocator.nextOrderReference())
                 .orderDate(LocalDateTime.now())
                 .statut(OrderStatus.PENDING)
                 .tauxTVA(tauxTVA)
@@ -67,27 +88,18 @@ public class OrderService {
                 .payments(new ArrayList<>())
                 .build();
 
+        List<Long> enRupture = stockReservationService.reserve(order, quantitesParProduit(createOrderDTO.getItems()));
+        if (!enRupture.isEmpty()) {
+            log.warn("Stock insuffisant, commande rejetée: {}", enRupture.stream()
+                    .map(productId -> products.get(productId).getNom())
+                    .collect(Collectors.joining(", ")));
+            order.setStatut(OrderStatus.REJECTED);
+        }
+
         BigDecimal sousTotal = BigDecimal.ZERO;
-        List<Product> productsToUpdate = new ArrayList<>();
 
         for (CreateOrderDTO.CreateOrderItemDTO itemDTO : createOrderDTO.getItems()) {
-            Product product = productRepository.findById(itemDTO.getProductId())
-                    .orElseThrow(() -> new ProductNotFoundException(
-                            "Produit non trouvé avec l'ID: " + itemDTO.getProductId()));
-
-            if (product.getDeleted()) {
-                throw new OrderBusinessException(
-                        "Le produit '" + product.getNom() + "' n'est plus disponible");
-            }
-
-            if (!product.hasEnoughStock(itemDTO.getQuantite())) {
-                log.warn("Stock insuffisant pour le produit {}: demandé={}, disponible={}",
-                        product.getNom(), itemDTO.getQuantite(), product.getStock());
-
-                order.setStatut(OrderStatus.REJECTED);
-                order = orderRepository.save(order);
-
-            }
+            Product product = products.get(itemDTO.getProductId());
 
             OrderItem orderItem = OrderItem.builder()
                     .product(product)
@@ -99,7 +111,6 @@ public class OrderService {
 
             order.addOrderItem(orderItem);
             sousTotal = sousTotal.add(orderItem.getTotalLigne());
-            productsToUpdate.add(product);
         }
 
         order.setSousTotal(sousTotal.setScale(2, RoundingMode.HALF_UP));
@@ -120,17 +131,8 @@ public class OrderService {
         BigDecimal remisePromoPourcentage = BigDecimal.ZERO;
         BigDecimal remisePromoMontant = BigDecimal.ZERO;
 
-        if (createOrderDTO.getPromoCode() != null && !createOrderDTO.getPromoCode().isEmpty()) {
-            PromoCode promoCode = promoCodeRepository.findByCode(createOrderDTO.getPromoCode())
-                    .orElseThrow(() -> new PromocodeNotFoundException(
-                            "Code promo non trouvé: " + createOrderDTO.getPromoCode()));
-
-            if (!promoCode.isValid()) {
-                throw new PromocodeInvalidException(
-                        "Le code promo '" + promoCode.getCode() + "' n'est pas valide ou a expiré");
-            }
-
-            order.setPromoCode(promoCode);
+        if (promoCode != null) {
+            order.setPromoCode(promoCodeRepository.getReferenceById(promoCode.getId()));
             remisePromoPourcentage = BigDecimal.valueOf(promoCode.getDiscountPercentage());
 
             remisePromoMontant = sousTotal
@@ -140,8 +142,14 @@ public class OrderService {
             log.info("Code promo appliqué: {} - {}% = {} DH",
                     promoCode.getCode(), remisePromoPourcentage, remisePromoMontant);
 
-            promoCode.incrementUseCount();
-            promoCodeRepository.save(promoCode);
+            if (order.getStatut() == OrderStatus.PENDING) {
+                if (!promoCodeRedemptions.redeem(promoCode)) {
+                    throw new PromocodeInvalidException("Le code promo '" + promoCode.getCode() +
+                            "' n'est plus valide ou a atteint son nombre maximal d'utilisations");
+                }
+                catalogVersion.promoCodesChangedAfterCommit();
+                promoCodeCache.usedAfterCommit(promoCode.getCode());
+            }
         }
 
         order.setRemisePromoPourcentage(remisePromoPourcentage);
@@ -169,6 +177,8 @@ public class OrderService {
         order.setMontantRestant(totalTTC);
 
         Order savedOrder = orderRepository.save(order);
+        clientOrderStatsService.recordCreated(savedOrder);
+        outboxService.recordOrderEvent(OutboxEventType.ORDER_CREATED, savedOrder);
 
         log.info("Commande créée avec succès: ref={}, sous-total={}, remise={}, TVA={}, total={}",
                 savedOrder.getReference(), sousTotal, remiseTotale, montantTVA, totalTTC);
@@ -176,6 +186,91 @@ public class OrderService {
         return orderMapper.toDTO(savedOrder);
     }
 
+    /**
+     * Charge en une seule requête (IN) tous les produits référencés par la commande
+     * et vérifie leur existence et leur disponibilité.
+     */
+    private Map<Long, Product> loadOrderProducts(List<CreateOrderDTO.CreateOrderItemDTO> items) {
+        Set<Long> productIds = items.stream()
+                .map(CreateOrderDTO.CreateOrderItemDTO::getProductId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        for (Long productId : productIds) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId);
+            }
+            if (product.getDeleted()) {
+                throw new OrderBusinessException(
+                        "Le produit '" + product.getNom() + "' n'est plus disponible");
+            }
+        }
+        return products;
+    }
+
+    private Map<Long, Integer> quantitesParProduit(List<CreateOrderDTO.CreateOrderItemDTO> items) {
+        Map<Long, Integer> quantites = new LinkedHashMap<>();
+        for (CreateOrderDTO.CreateOrderItemDTO itemDTO : items) {
+            quantites.merge(itemDTO.getProductId(), itemDTO.getQuantite(), Integer::sum);
+        }
+        return quantites;
+    }
+
+    private Limit cursorLimit(int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new OrderBusinessException(
+                    "La taille de page doit être comprise entre 1 et " + MAX_CURSOR_PAGE_SIZE);
+        }
+        // Une ligne de plus que demandé pour savoir s'il existe une page suivante
+        return Limit.of(size + 1);
+    }
+
+    private KeysetToken decodeToken(String token) {
+        try {
+            return KeysetToken.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new OrderBusinessException("Jeton de pagination invalide", e);
+        }
+    }
+
+    private CursorPageDTO<OrderDTO> toCursorPage(List<Order> orders, int size) {
+        boolean hasNext = orders.size() > size;
+        List<Order> page = hasNext ? orders.subList(0, size) : orders;
+
+        String nextToken = null;
+        if (hasNext) {
+            Order last = page.get(page.size() - 1);
+            nextToken = new KeysetToken(last.getOrderDate(), last.getId()).encode();
+        }
+
+        return CursorPageDTO.<OrderDTO>builder()
+                .content(page.stream().map(orderMapper::toDTO).collect(Collectors.toList()))
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextToken(nextToken)
+                .build();
+    }
+
+    private PromoCode resolvePromoCode(String code) {
+        if (code == null || code.isEmpty()) {
+            return null;
+        }
+
+        // Code inconnu : refusé sans requête. Code connu : détail gardé quelques secondes (PromoCodeCache),
+        // relu en base ensuite. La copie rendue est détachée ; l'utilisation est comptée en SQL (PromoCodeRedemptions).
+        PromoCode promoCode = promoCodeCache.find(code)
+                .orElseThrow(() -> new PromocodeNotFoundException("Code promo non trouvé: " + code));
+
+        if (!promoCode.isValid()) {
+            throw new PromocodeInvalidException(
+                    "Le code promo '" + promoCode.getCode() + "' n'est pas valide ou a expiré");
+        }
+        return promoCode;
+    }
+
     @Transactional(readOnly = true)
     public OrderDTO getOrderById(Long id) {
         log.info("Récupération de la commande ID: {}", id);
@@ -214,6 +309,49 @@ public class OrderService {
     }
 
 
+    @Transactional(readOnly = true)
+    public Page<OrderDTO> searchOrders(Long clientId, OrderStatus statut,
+                                       LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
+        log.info("Recherche des commandes (client: {}, statut: {}, du {} au {})", clientId, statut, startDate, endDate);
+
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new OrderBusinessException("La date de début doit précéder la date de fin");
+        }
+
+        return orderRepository.findAll(OrderSpecifications.withFilters(clientId, statut, startDate, endDate), pageable)
+                .map(orderMapper::toDTO);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPageDTO<OrderDTO> getOrdersByCursor(String token, int size) {
+        log.info("Récupération des commandes par curseur (taille: {})", size);
+
+        Limit limit = cursorLimit(size);
+        if (token == null || token.isEmpty()) {
+            return toCursorPage(orderRepository.findFirstPage(limit), size);
+        }
+        KeysetToken position = decodeToken(token);
+        return toCursorPage(orderRepository.findPageAfter(position.date(), position.id(), limit), size);
+    }
+
+
+    @Transactional(readOnly = true)
+    public CursorPageDTO<OrderDTO> getOrdersByClientCursor(Long clientId, String token, int size) {
+        log.info("Récupération des commandes du client ID: {} par curseur (taille: {})", clientId, size);
+
+        if (!clientRepository.existsById(clientId)) {
+            throw new ClientNotFoundException("Client non trouvé avec l'ID: " + clientId);
+        }
+
+        Limit limit = cursorLimit(size);
+        if (token == null || token.isEmpty()) {
+            return toCursorPage(orderRepository.findFirstPageByClient(clientId, limit), size);
+        }
+        KeysetToken position = decodeToken(token);
+        return toCursorPage(orderRepository.findPageAfterByClient(clientId, position.date(), position.id(), limit), size);
+    }
+
+
     @Transactional(readOnly = true)
     public List<OrderDTO> getOrdersByClient(Long clientId) {
         log.info("Récupération des commandes du client ID: {}", clientId);
@@ -261,6 +399,7 @@ public class OrderService {
     @Transactional
     public OrderDTO confirmOrder(Long orderId) {
         log.info("Confirmation de la commande ID: {}", orderId);
+        changeHorizon.registerWriter();
 
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException("Commande non trouvée avec l'ID: " + orderId));
@@ -278,30 +417,34 @@ public class OrderService {
                             order.getMontantRestant()));
         }
 
-        for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-
-            if (!product.hasEnoughStock(item.getQuantite())) {
+        Map<Long, Integer> quantites = StockReservationService.quantitesOf(order);
+        List<Long> enRupture = stockReservationService.commit(order, quantites);
+        if (!enRupture.isEmpty()) {
+            String produits = order.getOrderItems().stream()
+                    .filter(item -> enRupture.contains(item.getProduct().getId()))
+                    .map(OrderItem::getProductNom)
+                    .distinct()
+                    .collect(Collectors.joining(", "));
+            log.warn("Confirmation de la commande {} annulée, stock insuffisant pour: {}",
+                    order.getReference(), produits);
+            throw new InsufficientStockException(
+                    "Stock insuffisant pour confirmer la commande " + order.getReference() + ": " + produits);
+        }
+        log.debug("Stock décrémenté pour {} produit(s) de la commande {}", quantites.size(), order.getReference());
 
-            }
+        order.setStatut(OrderStatus.CONFIRMED);
+        order.setConfirmedAt(LocalDateTime.now());
 
-            product.decrementStock(item.getQuantite());
-            productRepository.save(product);
-            log.debug("Stock décrémenté pour {}: -{} (nouveau stock: {})",
-                    product.getNom(), item.getQuantite(), product.getStock());
-        }
+        Order savedOrder = orderRepository.save(order);
+        clientOrderStatsService.recordTransition(savedOrder, OrderStatus.PENDING);
+        outboxService.recordOrderEvent(OutboxEventType.ORDER_CONFIRMED, savedOrder);
+        salesCounters.recordConfirmedAfterCommit(savedOrder);
 
-        Client client = order.getClient();
-        client.updateStatisticsAfterOrder(order.getTotalTTC());
+        Client client = savedOrder.getClient();
         clientRepository.save(client);
-
         log.info("Client {} mis à jour: totalOrders={}, totalSpent={}, tier={}",
                 client.getNom(), client.getTotalOrders(), client.getTotalSpent(), client.getCustomerTier());
 
-        order.setStatut(OrderStatus.CONFIRMED);
-        order.setConfirmedAt(LocalDateTime.now());
-
-        Order savedOrder = orderRepository.save(order);
         log.info("Commande {} confirmée avec succès", savedOrder.getReference());
 
         return orderMapper.toDTO(savedOrder);
@@ -310,6 +453,7 @@ public class OrderService {
     @Transactional
     public OrderDTO cancelOrder(Long orderId) {
         log.info("Annulation de la commande ID: {}", orderId);
+        changeHorizon.registerWriter();
 
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException("Commande non trouvée avec l'ID: " + orderId));
@@ -319,10 +463,13 @@ public class OrderService {
                     "Impossible d'annuler cette commande. Statut actuel: " + order.getStatut());
         }
 
+        stockReservationService.release(order);
         order.setStatut(OrderStatus.CANCELED);
         order.setCanceledAt(LocalDateTime.now());
 
         Order savedOrder = orderRepository.save(order);
+        clientOrderStatsService.recordTransition(savedOrder, OrderStatus.PENDING);
+        outboxService.recordOrderEvent(OutboxEventType.ORDER_CANCELED, savedOrder);
         log.info("Commande {} annulée avec succès", savedOrder.getReference());
 
         return orderMapper.toDTO(savedOrder);
@@ -331,6 +478,7 @@ public class OrderService {
     @Transactional
     public OrderDTO rejectOrder(Long orderId, String reason) {
         log.info("Rejet de la commande ID: {} - Raison: {}", orderId, reason);
+        changeHorizon.registerWriter();
 
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new OrderNotFoundException("Commande non trouvée avec l'ID: " + orderId));
@@ -340,12 +488,15 @@ public class OrderService {
                     "Impossible de rejeter une commande qui n'est pas en attente. Statut actuel: " + order.getStatut());
         }
 
+        stockReservationService.release(order);
         order.setStatut(OrderStatus.REJECTED);
         if (reason != null && !reason.isEmpty()) {
             order.setNotes(order.getNotes() != null ? order.getNotes() + " | Rejet: " + reason : "Rejet: " + reason);
         }
 
         Order savedOrder = orderRepository.save(order);
+        clientOrderStatsService.recordTransition(savedOrder, OrderStatus.PENDING);
+        outboxService.recordOrderEvent(OutboxEventType.ORDER_REJECTED, savedOrder);
         log.info("Commande {} rejetée avec succès", savedOrder.getReference());
 
         return orderMapper.toDTO(savedOrder);
@@ -359,19 +510,12 @@ public class OrderService {
 
     @Transactional(readOnly = true)
     public BigDecimal getTotalSpentByClient(Long clientId) {
-        return orderRepository.getTotalSpentByClient(clientId);
+        return clientOrderStatsService.getStats(clientId).getTotalConfirmedTTC();
     }
 
     @Transactional(readOnly = true)
     public long countConfirmedOrdersByClient(Long clientId) {
-        return orderRepository.countConfirmedOrdersByClient(clientId);
-    }
-
-    private String generateOrderReference() {
-        String year = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy"));
-        Long maxId = orderRepository.findMaxId();
-        long nextId = (maxId != null ? maxId : 0) + 1;
-        return String.format("CMD-%s-%05d", year, nextId);
+        return clientOrderStatsService.getStats(clientId).getConfirmedCount();
     }
 
     @Transactional
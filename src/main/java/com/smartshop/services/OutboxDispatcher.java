@@ -0,0 +1,126 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.events.DomainEvent;
+import com.smartshop.events.EventBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transmet par lots les événements de l'outbox au bus en mémoire.
+ * Chaque lot est réservé en base pour cette instance (bail, voir {@link OutboxService#claim}) :
+ * avec plusieurs instances, un événement n'est transmis qu'à un seul bus.
+ * Un événement reste non publié en base tant que les abonnés ne l'ont pas traité :
+ * après un arrêt brutal il est relu et retransmis à l'expiration de son bail.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxService outboxService;
+    private final EventBus eventBus;
+    private final int batchSize;
+    private final Duration retention;
+    private final Duration lease;
+
+    /**
+     * Événements transmis au bus et pas encore acquittés. Une réservation ne rend ni les événements
+     * publiés ni ceux dont le bail court : cet ensemble ne sert qu'à ne pas retransmettre un événement
+     * encore dans le tampon quand son bail a expiré.
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Timer dispatchLag;
+    private final Counter dispatched;
+
+    public OutboxDispatcher(OutboxService outboxService,
+                            EventBus eventBus,
+                            MeterRegistry meterRegistry,
+                            @Value("${smartshop.outbox.batch-size:200}") int batchSize,
+                            @Value("${smartshop.outbox.retention:P7D}") Duration retention,
+                            @Value("${smartshop.outbox.lease:PT30S}") Duration lease) {
+        this.outboxService = outboxService;
+        this.eventBus = eventBus;
+        this.batchSize = batchSize;
+        this.retention = retention;
+        this.lease = lease;
+        this.dispatchLag = Timer.builder("smartshop.outbox.dispatch.lag")
+                .description("Délai entre l'écriture d'un événement et sa transmission au bus")
+                .register(meterRegistry);
+        this.dispatched = meterRegistry.counter("smartshop.outbox.dispatched");
+        Gauge.builder("smartshop.outbox.in-flight", inFlight, Set::size).register(meterRegistry);
+
+        eventBus.onProcessed(this::acknowledge);
+    }
+
+    /**
+     * @return le nombre d'événements transmis au bus
+     */
+    @Scheduled(fixedDelayString = "${smartshop.outbox.poll-ms:200}")
+    public int dispatch() {
+        int capacity = eventBus.remainingCapacity();
+        if (capacity == 0) {
+            return 0;
+        }
+
+        // Les IDs ne sont pas validés dans l'ordre : chaque passage réserve les plus anciens
+        // non publiés et non réservés plutôt que de suivre un ID maximal.
+        List<OutboxEvent> batch = outboxService.claim(Math.min(batchSize, capacity), lease);
+
+        int count = 0;
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent event = batch.get(i);
+            if (!inFlight.add(event.getId())) {
+                continue;
+            }
+            if (!eventBus.publish(DomainEvent.of(event))) {
+                inFlight.remove(event.getId());
+                releaseRemaining(batch.subList(i, batch.size()));
+                break;
+            }
+            dispatchLag.record(Duration.between(event.getCreatedAt(), now));
+            count++;
+        }
+
+        if (count > 0) {
+            dispatched.increment(count);
+            log.debug("{} événement(s) transmis au bus", count);
+        }
+        return count;
+    }
+
+    @Scheduled(cron = "${smartshop.outbox.purge-cron:0 30 3 * * *}")
+    public void purgePublished() {
+        int supprimes = outboxService.purgePublishedBefore(LocalDateTime.now().minus(retention));
+        log.info("Outbox: {} événement(s) publié(s) supprimé(s)", supprimes);
+    }
+
+    private void releaseRemaining(List<OutboxEvent> events) {
+        List<Long> ids = events.stream().map(OutboxEvent::getId).filter(id -> !inFlight.contains(id)).toList();
+        if (!ids.isEmpty()) {
+            outboxService.releaseClaims(ids);
+        }
+    }
+
+    private void acknowledge(List<Long> ids) {
+        try {
+            outboxService.markPublished(ids);
+        } finally {
+            // En cas d'échec, les événements redeviennent éligibles à l'expiration de leur bail
+            ids.forEach(inFlight::remove);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.smartshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.entity.OutboxEventType;
+import com.smartshop.entity.Payment;
+import com.smartshop.repositories.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Écriture des événements métier dans l'outbox.
+ * L'événement est validé ou annulé avec le changement d'état qui l'a produit ;
+ * {@link OutboxDispatcher} le transmet ensuite au bus en mémoire.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordOrderEvent(OutboxEventType type, Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("reference", order.getReference());
+        payload.put("clientId", order.getClient().getId());
+        payload.put("statut", order.getStatut());
+        payload.put("totalTTC", order.getTotalTTC());
+        record(type, order.getId(), payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordPaymentEvent(OutboxEventType type, Payment payment) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("reference", payment.getReference());
+        payload.put("orderId", payment.getOrder().getId());
+        payload.put("montant", payment.getMontant());
+        payload.put("statut", payment.getStatut());
+        record(type, payment.getId(), payload);
+    }
+
+    /**
+     * Réserve jusqu'à {@code limit} événements pour cette instance pendant la durée du bail.
+     * Deux instances ne reçoivent jamais les mêmes événements ; un événement dont le bail expire
+     * sans acquittement (instance arrêtée) redevient disponible pour toutes.
+     */
+    @Transactional
+    public List<OutboxEvent> claim(int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxEventRepository.findClaimable(now, Limit.of(limit));
+        if (!events.isEmpty()) {
+            outboxEventRepository.claim(events.stream().map(OutboxEvent::getId).toList(), now.plus(lease));
+        }
+        return events;
+    }
+
+    /**
+     * Rend des événements réservés mais non transmis, sans attendre la fin du bail.
+     */
+    @Transactional
+    public void releaseClaims(Collection<Long> ids) {
+        outboxEventRepository.claim(ids, null);
+    }
+
+    @Transactional
+    public void markPublished(Collection<Long> ids) {
+        outboxEventRepository.markPublished(ids, LocalDateTime.now());
+    }
+
+    @Transactional
+    public int purgePublishedBefore(LocalDateTime before) {
+        return outboxEventRepository.deletePublishedBefore(before);
+    }
+
+    private void record(OutboxEventType type, Long aggregateId, Map<String, Object> payload) {
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .eventType(type)
+                    .aggregateId(aggregateId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .build());
+            log.debug("Événement {} enregistré pour l'ID {}", type, aggregateId);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Impossible de sérialiser l'événement " + type, e);
+        }
+    }
+}
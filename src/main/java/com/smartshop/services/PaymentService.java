@@ -28,6 +28,8 @@ public class PaymentService {
     private final OrderRepository orderRepository;
     private final PaymentMapper paymentMapper;
     private final OrderService orderService;
+    private final ReferenceAllocator referenceAllocator;
+    private final OutboxService outboxService;
 
     public static final BigDecimal LIMITE_ESPECES = new BigDecimal("20000.00");
 
@@ -75,7 +77,7 @@ public class PaymentService {
             payment.setStatut(PaymentStatus.EN_ATTENTE);
         }
 
-        payment.generateReference(order.getId());
+        payment.generateReference(order.getId(), referenceAllocator.nextPaymentNumber());
 
         if (paymentDTO.getReference() != null && !paymentDTO.getReference().isEmpty()) {
             payment.setReference(paymentDTO.getReference());
@@ -202,6 +204,7 @@ public class PaymentService {
         Payment savedPayment = paymentRepository.save(payment);
 
         updateOrderPaymentAmounts(payment.getOrder());
+        outboxService.recordPaymentEvent(OutboxEventType.PAYMENT_ENCAISSE, savedPayment);
 
         log.info("Paiement {} encaissé avec succès", savedPayment.getReference());
         return paymentMapper.toDTO(savedPayment);
@@ -225,6 +228,7 @@ public class PaymentService {
         }
 
         Payment savedPayment = paymentRepository.save(payment);
+        outboxService.recordPaymentEvent(OutboxEventType.PAYMENT_REJETE, savedPayment);
 
         log.info("Paiement {} rejeté", savedPayment.getReference());
         return paymentMapper.toDTO(savedPayment);
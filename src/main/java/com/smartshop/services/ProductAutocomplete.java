@@ -0,0 +1,511 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.OrderItemRepository;
+import com.smartshop.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongPredicate;
+
+/**
+ * Autocomplétion sur le nom des produits actifs.
+ * <p>
+ * Structure à la manière d'un FST : les noms normalisés sont rangés dans un tableau trié,
+ * les complétions d'un préfixe forment donc une plage contiguë trouvée par deux recherches
+ * dichotomiques. Un arbre de segments sur la popularité (quantité vendue) donne le produit
+ * le plus populaire de n'importe quelle plage ; les K meilleurs s'obtiennent en K découpages,
+ * soit O(K log n) par requête quelle que soit la taille du catalogue.
+ * <p>
+ * Les lectures se font sans verrou sur un index immuable : une base triée, plus les écritures
+ * récentes (création, renommage, suppression, restauration) tenues à part dans un petit instantané
+ * des ajouts et un ensemble d'IDs masqués dans la base. Une écriture ne coûte que la taille de ce
+ * delta ; au-delà de {@link #MAX_PENDING} écritures, il est fusionné dans la base par un thread
+ * de fond (fusion linéaire, sans nouveau tri) pendant que les écritures suivantes vont dans un
+ * nouveau delta. La reconstruction périodique ({@code smartshop.autocomplete.refresh-ms})
+ * recharge noms et popularité et repart d'un delta vide ; les écritures arrivées pendant sa lecture
+ * de la base sont rejouées sur les noms relus.
+ */
+@Component
+@Slf4j
+public class ProductAutocomplete {
+
+    public static final int MAX_LIMIT = 20;
+    static final int MAX_PENDING = 1024;
+
+    private static final Comparator<Entry> ORDRE = Comparator.comparingLong(Entry::score).reversed()
+            .thenComparing(Entry::key)
+            .thenComparingLong(Entry::id);
+
+    private final ProductRepository productRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final int maxPending;
+
+    private volatile Index index = Index.EMPTY;
+    private final Map<Long, String> names = new HashMap<>();
+    private final Map<Long, Long> popularity = new HashMap<>();
+
+    // Sérialise les reconstructions ; les écritures passent pendant la lecture de la base
+    private final Object buildLock = new Object();
+    private boolean building;
+    private final List<Write> writesDuringBuild = new ArrayList<>();
+
+    private final ExecutorService compaction = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autocomplete-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ProductAutocomplete(ProductRepository productRepository, OrderItemRepository orderItemRepository) {
+        this(productRepository, orderItemRepository, MAX_PENDING);
+    }
+
+    ProductAutocomplete(ProductRepository productRepository, OrderItemRepository orderItemRepository, int maxPending) {
+        this.productRepository = productRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Recharge noms et popularité depuis la base.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${smartshop.autocomplete.refresh-ms:3600000}",
+            fixedDelayString = "${smartshop.autocomplete.refresh-ms:3600000}")
+    public void build() {
+        synchronized (buildLock) {
+            synchronized (this) {
+                building = true;
+                writesDuringBuild.clear();
+            }
+            List<Object[]> produits;
+            List<Object[]> ventes;
+            try {
+                produits = productRepository.findAllActiveNames();
+                ventes = orderItemRepository.sumSalesByProduct();
+            } catch (RuntimeException e) {
+                stopBuilding();
+                throw e;
+            }
+            synchronized (this) {
+                names.clear();
+                popularity.clear();
+                for (Object[] row : produits) {
+                    names.put((Long) row[0], (String) row[1]);
+                }
+                for (Object[] row : ventes) {
+                    popularity.put((Long) row[0], ((Number) row[2]).longValue());
+                }
+                // Validées après la lecture, ces écritures manquent aux lignes relues
+                for (Write write : writesDuringBuild) {
+                    if (write.nom() != null) {
+                        names.put(write.productId(), write.nom());
+                    } else {
+                        names.remove(write.productId());
+                    }
+                }
+                building = false;
+                writesDuringBuild.clear();
+                index = new Index(Snapshot.of(names, popularity), Delta.EMPTY, Delta.EMPTY);
+                log.info("Autocomplétion construite: {} produits", names.size());
+            }
+        }
+    }
+
+    private synchronized void stopBuilding() {
+        building = false;
+        writesDuringBuild.clear();
+    }
+
+    public void indexAfterCommit(Long productId, String nom) {
+        TransactionCallbacks.afterCommit(() -> index(productId, nom));
+    }
+
+    public void removeAfterCommit(Long productId) {
+        TransactionCallbacks.afterCommit(() -> remove(productId));
+    }
+
+    public synchronized void index(Long productId, String nom) {
+        if (building) {
+            writesDuringBuild.add(new Write(productId, nom));
+        }
+        String ancien = names.put(productId, nom);
+        if (nom.equals(ancien)) {
+            return;
+        }
+        Delta active = index.active();
+        Snapshot ajouts = ancien == null ? active.added() : active.added().without(productId, normalize(ancien));
+        publishActive(new Delta(ajouts.with(productId, nom, popularity.getOrDefault(productId, 0L)),
+                masked(active.masked(), productId)));
+    }
+
+    public synchronized void remove(Long productId) {
+        if (building) {
+            writesDuringBuild.add(new Write(productId, null));
+        }
+        String ancien = names.remove(productId);
+        if (ancien != null) {
+            Delta active = index.active();
+            publishActive(new Delta(active.added().without(productId, normalize(ancien)),
+                    masked(active.masked(), productId)));
+        }
+    }
+
+    /**
+     * Noms des produits commençant par le préfixe (sans tenir compte de la casse),
+     * du plus vendu au moins vendu, puis par ordre alphabétique.
+     */
+    public List<String> complete(String prefixe, int limit) {
+        String key = normalize(prefixe);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        int k = Math.min(limit, MAX_LIMIT);
+        Index courant = index;
+        Set<Long> masquesGel = courant.frozen().masked();
+        Set<Long> masquesActifs = courant.active().masked();
+
+        List<Entry> candidats = new ArrayList<>(3 * k);
+        candidats.addAll(courant.base().topK(key, k, id -> masquesGel.contains(id) || masquesActifs.contains(id)));
+        candidats.addAll(courant.frozen().added().topK(key, k, masquesActifs::contains));
+        candidats.addAll(courant.active().added().topK(key, k, id -> false));
+        if (courant.frozen().isEmpty() && courant.active().isEmpty()) {
+            return candidats.stream().map(Entry::label).toList();
+        }
+        return candidats.stream().sorted(ORDRE).limit(k).map(Entry::label).toList();
+    }
+
+    /**
+     * Fusionne les écritures en attente dans la base. Appelé par le thread de fond ;
+     * les écritures arrivées pendant la fusion restent dans le nouveau delta.
+     */
+    void compact() {
+        Index gele;
+        synchronized (this) {
+            gele = index;
+            if (gele.frozen().isEmpty()) {
+                if (gele.active().isEmpty()) {
+                    return;
+                }
+                gele = new Index(gele.base(), gele.active(), Delta.EMPTY);
+                index = gele;
+            }
+        }
+
+        Snapshot fusion = gele.base().merge(gele.frozen());
+
+        synchronized (this) {
+            Index courant = index;
+            // Une reconstruction complète a pu remplacer l'index pendant la fusion
+            if (courant.base() == gele.base() && courant.frozen() == gele.frozen()) {
+                index = new Index(fusion, Delta.EMPTY, courant.active());
+            }
+        }
+    }
+
+    private void publishActive(Delta active) {
+        Index courant = index;
+        index = new Index(courant.base(), courant.frozen(), active);
+        if (active.size() >= maxPending && courant.frozen().isEmpty()) {
+            compaction.execute(this::compact);
+        }
+    }
+
+    private static Set<Long> masked(Set<Long> masques, Long productId) {
+        if (masques.contains(productId)) {
+            return masques;
+        }
+        Set<Long> copie = new HashSet<>(masques);
+        copie.add(productId);
+        return Collections.unmodifiableSet(copie);
+    }
+
+    synchronized int size() {
+        return names.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        compaction.shutdownNow();
+    }
+
+    static String normalize(String nom) {
+        return nom == null ? "" : nom.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Tableaux parallèles triés par clé, et arbre de segments (indice du max de popularité).
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new String[0], new long[0], new long[0]);
+
+        private final String[] keys;
+        private final String[] labels;
+        private final long[] ids;
+        private final long[] scores;
+        private final int[] tree;
+        private final int n;
+
+        private Snapshot(String[] keys, String[] labels, long[] ids, long[] scores) {
+            this.keys = keys;
+            this.labels = labels;
+            this.ids = ids;
+            this.scores = scores;
+            this.n = keys.length;
+            this.tree = new int[2 * n];
+            for (int i = 0; i < n; i++) {
+                tree[n + i] = i;
+            }
+            for (int i = n - 1; i > 0; i--) {
+                tree[i] = best(tree[2 * i], tree[2 * i + 1]);
+            }
+        }
+
+        static Snapshot of(Map<Long, String> names, Map<Long, Long> popularity) {
+            int size = names.size();
+            Long[] ids = new Long[size];
+            String[] normalized = new String[size];
+            Integer[] order = new Integer[size];
+            int i = 0;
+            for (Map.Entry<Long, String> entry : names.entrySet()) {
+                ids[i] = entry.getKey();
+                normalized[i] = normalize(entry.getValue());
+                order[i] = i;
+                i++;
+            }
+            Arrays.sort(order, Comparator.comparing((Integer j) -> normalized[j]).thenComparing(j -> ids[j]));
+
+            String[] keys = new String[size];
+            String[] labels = new String[size];
+            long[] sortedIds = new long[size];
+            long[] scores = new long[size];
+            for (int k = 0; k < size; k++) {
+                int j = order[k];
+                keys[k] = normalized[j];
+                labels[k] = names.get(ids[j]);
+                sortedIds[k] = ids[j];
+                scores[k] = popularity.getOrDefault(ids[j], 0L);
+            }
+            return new Snapshot(keys, labels, sortedIds, scores);
+        }
+
+        /**
+         * Copie avec le produit inséré à sa place : O(n) sans nouveau tri.
+         */
+        Snapshot with(long id, String label, long score) {
+            String key = normalize(label);
+            int pos = position(key, id);
+            return new Snapshot(
+                    insert(keys, pos, key, new String[n + 1]),
+                    insert(labels, pos, label, new String[n + 1]),
+                    insert(ids, pos, id),
+                    insert(scores, pos, score));
+        }
+
+        /**
+         * Copie sans le produit (clé telle qu'indexée).
+         */
+        Snapshot without(long id, String key) {
+            int pos = position(key, id);
+            if (pos >= n || ids[pos] != id) {
+                return this;
+            }
+            return new Snapshot(
+                    delete(keys, pos, new String[n - 1]),
+                    delete(labels, pos, new String[n - 1]),
+                    delete(ids, pos),
+                    delete(scores, pos));
+        }
+
+        /**
+         * Première position dont (clé, id) n'est pas inférieur à (key, id).
+         */
+        private int position(String key, long id) {
+            int pos = lowerBound(key);
+            while (pos < n && keys[pos].equals(key) && ids[pos] < id) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private static <T> T[] insert(T[] source, int pos, T value, T[] target) {
+            System.arraycopy(source, 0, target, 0, pos);
+            target[pos] = value;
+            System.arraycopy(source, pos, target, pos + 1, source.length - pos);
+            return target;
+        }
+
+        private static long[] insert(long[] source, int pos, long value) {
+            long[] target = new long[source.length + 1];
+            System.arraycopy(source, 0, target, 0, pos);
+            target[pos] = value;
+            System.arraycopy(source, pos, target, pos + 1, source.length - pos);
+            return target;
+        }
+
+        private static <T> T[] delete(T[] source, int pos, T[] target) {
+            System.arraycopy(source, 0, target, 0, pos);
+            System.arraycopy(source, pos + 1, target, pos, source.length - pos - 1);
+            return target;
+        }
+
+        private static long[] delete(long[] source, int pos) {
+            long[] target = new long[source.length - 1];
+            System.arraycopy(source, 0, target, 0, pos);
+            System.arraycopy(source, pos + 1, target, pos, source.length - pos - 1);
+            return target;
+        }
+
+        /**
+         * Copie où les produits masqués du delta sont retirés et ses ajouts insérés : une passe de fusion.
+         */
+        Snapshot merge(Delta delta) {
+            Snapshot ajouts = delta.added();
+            int capacite = n + ajouts.n;
+            String[] mergedKeys = new String[capacite];
+            String[] mergedLabels = new String[capacite];
+            long[] mergedIds = new long[capacite];
+            long[] mergedScores = new long[capacite];
+
+            int i = 0;
+            int j = 0;
+            int m = 0;
+            while (i < n || j < ajouts.n) {
+                if (i < n && delta.masked().contains(ids[i])) {
+                    i++;
+                    continue;
+                }
+                boolean base = j >= ajouts.n || (i < n && (keys[i].compareTo(ajouts.keys[j]) < 0
+                        || (keys[i].equals(ajouts.keys[j]) && ids[i] < ajouts.ids[j])));
+                Snapshot source = base ? this : ajouts;
+                int pos = base ? i++ : j++;
+                mergedKeys[m] = source.keys[pos];
+                mergedLabels[m] = source.labels[pos];
+                mergedIds[m] = source.ids[pos];
+                mergedScores[m] = source.scores[pos];
+                m++;
+            }
+            return new Snapshot(Arrays.copyOf(mergedKeys, m), Arrays.copyOf(mergedLabels, m),
+                    Arrays.copyOf(mergedIds, m), Arrays.copyOf(mergedScores, m));
+        }
+
+        /**
+         * Les k meilleures complétions du préfixe, en sautant les produits exclus.
+         */
+        List<Entry> topK(String prefixe, int k, LongPredicate exclus) {
+            int lo = lowerBound(prefixe);
+            int hi = lowerBound(prefixe + Character.MAX_VALUE);
+            if (lo >= hi) {
+                return List.of();
+            }
+
+            // Plages candidates, ordonnées par la popularité de leur meilleur élément
+            PriorityQueue<int[]> plages = new PriorityQueue<>((a, b) -> compare(a[2], b[2]));
+            plages.add(new int[]{lo, hi, argmax(lo, hi)});
+            List<Entry> result = new ArrayList<>(k);
+            while (result.size() < k && !plages.isEmpty()) {
+                int[] plage = plages.poll();
+                int best = plage[2];
+                if (!exclus.test(ids[best])) {
+                    result.add(new Entry(keys[best], ids[best], labels[best], scores[best]));
+                }
+                if (plage[0] < best) {
+                    plages.add(new int[]{plage[0], best, argmax(plage[0], best)});
+                }
+                if (best + 1 < plage[1]) {
+                    plages.add(new int[]{best + 1, plage[1], argmax(best + 1, plage[1])});
+                }
+            }
+            return result;
+        }
+
+        private int lowerBound(String key) {
+            int lo = 0;
+            int hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Indice du meilleur élément de [from, to).
+         */
+        private int argmax(int from, int to) {
+            int best = -1;
+            for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    best = best < 0 ? tree[l] : best(best, tree[l]);
+                    l++;
+                }
+                if ((r & 1) == 1) {
+                    --r;
+                    best = best < 0 ? tree[r] : best(best, tree[r]);
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Le plus populaire, puis le premier dans l'ordre alphabétique.
+         */
+        private int best(int a, int b) {
+            return compare(a, b) <= 0 ? a : b;
+        }
+
+        private int compare(int a, int b) {
+            int parScore = Long.compare(scores[b], scores[a]);
+            return parScore != 0 ? parScore : Integer.compare(a, b);
+        }
+    }
+
+    /**
+     * Écriture reçue pendant une reconstruction ; un nom null retire le produit.
+     */
+    private record Write(Long productId, String nom) {
+    }
+
+    /**
+     * Complétion candidate, avant fusion des résultats de la base et des deltas.
+     */
+    private record Entry(String key, long id, String label, long score) {
+    }
+
+    /**
+     * Écritures récentes : produits ajoutés ou renommés, et IDs masqués dans les niveaux inférieurs.
+     */
+    private record Delta(Snapshot added, Set<Long> masked) {
+
+        static final Delta EMPTY = new Delta(Snapshot.EMPTY, Set.of());
+
+        int size() {
+            return added.n + masked.size();
+        }
+
+        boolean isEmpty() {
+            return this == EMPTY || size() == 0;
+        }
+    }
+
+    /**
+     * Base triée et deltas, du plus ancien au plus récent ; le delta gelé est en cours de fusion.
+     */
+    private record Index(Snapshot base, Delta frozen, Delta active) {
+
+        static final Index EMPTY = new Index(Snapshot.EMPTY, Delta.EMPTY, Delta.EMPTY);
+    }
+}
@@ -0,0 +1,451 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductDTO;
+import com.smartshop.entity.Product;
+import com.smartshop.mappers.ProductMapper;
+import com.smartshop.repositories.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache en mémoire du catalogue produits, en lecture traversante.
+ * <ul>
+ *   <li>les champs descriptifs (nom, prix, description...) par ID, bornés en nombre et en durée : au-delà
+ *       de max-entries, les entrées les moins récemment lues sont retirées par lots ;</li>
+ *   <li>la liste ordonnée des produits actifs, avec leurs champs descriptifs : elle ne dépend pas de la borne
+ *       ci-dessus et sert aussi les lectures par ID des produits actifs ;</li>
+ *   <li>le stock à part, avec une durée courte : un mouvement de stock n'invalide que lui ;</li>
+ *   <li>l'index nom → ID.</li>
+ * </ul>
+ * Les lectures d'IDs manquants en base sont faites par lots de {@link #IN_CLAUSE_CHUNK}.
+ * Les invalidations sont appliquées après validation de la transaction qui modifie le produit.
+ * Une lecture commencée avant l'invalidation d'un produit ne remplit pas son entrée (date d'invalidation
+ * par tranche d'IDs, séparée pour les descriptions et le stock) : les mouvements de stock n'empêchent
+ * pas de mettre en cache les descriptions, ni le stock des autres produits.
+ * Toute invalidation fait aussi avancer la version du catalogue ({@link CatalogVersion}).
+ */
+@Component
+@Slf4j
+public class ProductCatalogCache {
+
+    private static final int STRIPES = 1024;
+    static final int IN_CLAUSE_CHUNK = 1000;
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final CatalogVersion catalogVersion;
+    private final long ttlNanos;
+    private final long stockTtlNanos;
+    private final int maxEntries;
+
+    private final Map<Long, Description> descriptions = new ConcurrentHashMap<>();
+    private final Map<Long, Timed<Integer>> stocks = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByNom = new ConcurrentHashMap<>();
+    private volatile Timed<ActiveList> activeList;
+    private final AtomicBoolean trimming = new AtomicBoolean();
+
+    // Dernière invalidation (System.nanoTime) par tranche d'IDs, et de la liste des actifs
+    private final AtomicLongArray descriptionsEvictedAt = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray stocksEvictedAt = new AtomicLongArray(STRIPES);
+    private volatile long listEvictedAt;
+
+    private final Counter productHits;
+    private final Counter productMisses;
+    private final Counter stockHits;
+    private final Counter stockMisses;
+    private final Counter listHits;
+    private final Counter listMisses;
+
+    public ProductCatalogCache(ProductRepository productRepository,
+                               ProductMapper productMapper,
+                               CatalogVersion catalogVersion,
+                               MeterRegistry meterRegistry,
+                               @Value("${smartshop.catalog-cache.max-entries:10000}") int maxEntries,
+                               @Value("${smartshop.catalog-cache.ttl:PT10M}") Duration ttl,
+                               @Value("${smartshop.catalog-cache.stock-ttl:PT30S}") Duration stockTtl) {
+        this.productRepository = productRepository;
+        this.productMapper = productMapper;
+        this.catalogVersion = catalogVersion;
+        this.ttlNanos = ttl.toNanos();
+        this.stockTtlNanos = stockTtl.toNanos();
+        this.maxEntries = maxEntries;
+        markAllEvicted(System.nanoTime() - 1);
+
+        this.productHits = requests(meterRegistry, "product", "hit");
+        this.productMisses = requests(meterRegistry, "product", "miss");
+        this.stockHits = requests(meterRegistry, "stock", "hit");
+        this.stockMisses = requests(meterRegistry, "stock", "miss");
+        this.listHits = requests(meterRegistry, "list", "hit");
+        this.listMisses = requests(meterRegistry, "list", "miss");
+        Gauge.builder("smartshop.catalog.cache.size", descriptions, Map::size).register(meterRegistry);
+    }
+
+    public Optional<ProductDTO> getById(Long id) {
+        ProductDTO description = description(id);
+        if (description != null) {
+            productHits.increment();
+            return Optional.of(withStock(description, stockOf(id)));
+        }
+
+        productMisses.increment();
+        long startedAt = System.nanoTime();
+        return productRepository.findById(id).map(product -> put(product, startedAt));
+    }
+
+    public Optional<ProductDTO> getByNom(String nom) {
+        Long id = idsByNom.get(nom);
+        ProductDTO description = id != null ? description(id) : null;
+        if (description != null && !description.getDeleted() && nom.equals(description.getNom())) {
+            productHits.increment();
+            return Optional.of(withStock(description, stockOf(id)));
+        }
+
+        productMisses.increment();
+        long startedAt = System.nanoTime();
+        return productRepository.findByNomAndActive(nom).map(product -> put(product, startedAt));
+    }
+
+    /**
+     * Produits actifs triés par nom.
+     */
+    public List<ProductDTO> getAllActive() {
+        Timed<ActiveList> liste = fresh(activeList, ttlNanos);
+        if (liste == null) {
+            listMisses.increment();
+            return loadActive();
+        }
+
+        listHits.increment();
+        List<ProductDTO> descriptionsActives = liste.value().produits();
+        Map<Long, Integer> stocksCourants = stocksOf(liste.value().parId().keySet(), System.nanoTime());
+        List<ProductDTO> result = new ArrayList<>(descriptionsActives.size());
+        for (ProductDTO description : descriptionsActives) {
+            result.add(withStock(description, stocksCourants.get(description.getId())));
+        }
+        return result;
+    }
+
+    /**
+     * Produits dans l'ordre des IDs demandés ; les IDs inconnus sont ignorés.
+     */
+    public List<ProductDTO> getByIds(List<Long> ids) {
+        return ids.isEmpty() ? List.of() : resolve(ids);
+    }
+
+    /**
+     * Page de produits actifs dans l'ordre par nom. Les tris explicites ne sont pas servis
+     * par le cache : renvoie vide pour laisser la requête à la base.
+     */
+    public Optional<Page<ProductDTO>> getActivePage(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            return Optional.empty();
+        }
+        List<ProductDTO> actifs = getAllActive();
+        if (pageable.isUnpaged()) {
+            return Optional.of(new PageImpl<>(actifs, pageable, actifs.size()));
+        }
+        int from = (int) Math.min(pageable.getOffset(), actifs.size());
+        int to = Math.min(from + pageable.getPageSize(), actifs.size());
+        return Optional.of(new PageImpl<>(actifs.subList(from, to), pageable, actifs.size()));
+    }
+
+    /**
+     * Retire un produit (champs descriptifs, stock, nom) et la liste des actifs
+     * après validation de la transaction courante.
+     */
+    public void evictAfterCommit(Long productId) {
+        TransactionCallbacks.afterCommit(() -> evict(List.of(productId)));
+    }
+
+    /**
+     * Retire immédiatement des produits modifiés hors de cette instance.
+     */
+    public void evict(Collection<Long> productIds) {
+        long now = System.nanoTime();
+        for (Long productId : productIds) {
+            descriptionsEvictedAt.accumulateAndGet(stripe(productId), now, Math::max);
+            stocksEvictedAt.accumulateAndGet(stripe(productId), now, Math::max);
+        }
+        listEvictedAt = now;
+        catalogVersion.productsChanged();
+        for (Long productId : productIds) {
+            Description retire = descriptions.remove(productId);
+            if (retire != null) {
+                idsByNom.remove(retire.value().getNom(), productId);
+            }
+            stocks.remove(productId);
+        }
+        activeList = null;
+    }
+
+    /**
+     * Retire uniquement le stock des produits après validation de la transaction courante.
+     */
+    public void evictStockAfterCommit(Collection<Long> productIds) {
+        TransactionCallbacks.afterCommit(() -> {
+            long now = System.nanoTime();
+            productIds.forEach(id -> stocksEvictedAt.accumulateAndGet(stripe(id), now, Math::max));
+            catalogVersion.productsChanged();
+            productIds.forEach(stocks::remove);
+        });
+    }
+
+    public void clear() {
+        markAllEvicted(System.nanoTime());
+        catalogVersion.productsChanged();
+        descriptions.clear();
+        stocks.clear();
+        idsByNom.clear();
+        activeList = null;
+        log.info("Cache du catalogue vidé");
+    }
+
+    private List<ProductDTO> loadActive() {
+        long startedAt = System.nanoTime();
+        List<Product> actifs = productRepository.findAllActive();
+        List<ProductDTO> produits = new ArrayList<>(actifs.size());
+        List<ProductDTO> descriptionsActives = new ArrayList<>(actifs.size());
+        Map<Long, ProductDTO> parId = new HashMap<>(actifs.size() * 2);
+        for (Product product : actifs) {
+            ProductDTO dto = productMapper.toDTO(product);
+            produits.add(dto);
+            ProductDTO description = withStock(dto, null);
+            descriptionsActives.add(description);
+            parId.put(product.getId(), description);
+        }
+        if (startedAt - listEvictedAt > 0) {
+            activeList = new Timed<>(new ActiveList(List.copyOf(descriptionsActives), parId), System.nanoTime());
+            long now = System.nanoTime();
+            for (Product product : actifs) {
+                if (startedAt - stocksEvictedAt.get(stripe(product.getId())) > 0) {
+                    stocks.put(product.getId(), new Timed<>(product.getTotalStock(), now));
+                }
+            }
+        }
+        return produits;
+    }
+
+    private List<ProductDTO> resolve(List<Long> ids) {
+        long startedAt = System.nanoTime();
+
+        List<Long> manquants = new ArrayList<>();
+        Map<Long, ProductDTO> trouves = new HashMap<>();
+        for (Long id : ids) {
+            ProductDTO description = description(id);
+            if (description != null) {
+                trouves.put(id, description);
+            } else {
+                manquants.add(id);
+            }
+        }
+        if (!manquants.isEmpty()) {
+            productMisses.increment(manquants.size());
+            for (List<Long> lot : chunks(manquants)) {
+                for (Product product : productRepository.findAllById(lot)) {
+                    trouves.put(product.getId(), put(product, startedAt));
+                }
+            }
+        }
+        productHits.increment(ids.size() - manquants.size());
+
+        Map<Long, Integer> stocksCourants = stocksOf(ids, startedAt);
+        List<ProductDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductDTO description = trouves.get(id);
+            if (description != null) {
+                result.add(withStock(description, stocksCourants.get(id)));
+            }
+        }
+        return result;
+    }
+
+    private Integer stockOf(Long id) {
+        Timed<Integer> stock = fresh(stocks.get(id), stockTtlNanos);
+        if (stock != null) {
+            stockHits.increment();
+            return stock.value();
+        }
+        return stocksOf(List.of(id), System.nanoTime()).get(id);
+    }
+
+    private Map<Long, Integer> stocksOf(Collection<Long> ids, long startedAt) {
+        Map<Long, Integer> result = new HashMap<>();
+        List<Long> manquants = new ArrayList<>();
+        for (Long id : ids) {
+            Timed<Integer> stock = fresh(stocks.get(id), stockTtlNanos);
+            if (stock != null) {
+                result.put(id, stock.value());
+            } else {
+                manquants.add(id);
+            }
+        }
+        if (!manquants.isEmpty()) {
+            stockMisses.increment(manquants.size());
+            long now = System.nanoTime();
+            for (List<Long> lot : chunks(manquants)) {
+                for (Object[] ligne : productRepository.findStockByIds(lot)) {
+                    Long id = (Long) ligne[0];
+                    Integer stock = (Integer) ligne[1];
+                    result.put(id, stock);
+                    if (startedAt - stocksEvictedAt.get(stripe(id)) > 0 && isCached(id)) {
+                        stocks.put(id, new Timed<>(stock, now));
+                    }
+                }
+            }
+        }
+        stockHits.increment(ids.size() - manquants.size());
+        return result;
+    }
+
+    private ProductDTO put(Product product, long startedAt) {
+        ProductDTO dto = productMapper.toDTO(product);
+        int stripe = stripe(product.getId());
+        if (startedAt - descriptionsEvictedAt.get(stripe) > 0) {
+            long now = System.nanoTime();
+            descriptions.put(product.getId(), new Description(withStock(dto, null), now));
+            if (startedAt - stocksEvictedAt.get(stripe) > 0) {
+                stocks.put(product.getId(), new Timed<>(product.getTotalStock(), now));
+            }
+            if (!product.getDeleted()) {
+                idsByNom.put(product.getNom(), product.getId());
+            }
+            if (descriptions.size() > maxEntries) {
+                trim();
+            }
+        }
+        return dto;
+    }
+
+    /**
+     * Champs descriptifs d'un produit : entrée par ID, sinon liste des actifs, si elles sont encore fraîches.
+     */
+    private ProductDTO description(Long id) {
+        Description description = descriptions.get(id);
+        long now = System.nanoTime();
+        if (description != null && now - description.loadedAt() < ttlNanos) {
+            description.usedAt = now;
+            return description.value();
+        }
+        Timed<ActiveList> liste = fresh(activeList, ttlNanos);
+        return liste != null ? liste.value().parId().get(id) : null;
+    }
+
+    private boolean isCached(Long id) {
+        Timed<ActiveList> liste = activeList;
+        return descriptions.containsKey(id) || (liste != null && liste.value().parId().containsKey(id));
+    }
+
+    /**
+     * Ramène les descriptions sous la borne en retirant les moins récemment lues ; un seul appelant
+     * trie à la fois, par lots d'un dixième de la borne pour ne pas trier à chaque ajout.
+     */
+    private void trim() {
+        if (!trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int cible = maxEntries - maxEntries / 10;
+            List<Map.Entry<Long, Description>> entrees = new ArrayList<>(descriptions.entrySet());
+            if (entrees.size() <= maxEntries) {
+                return;
+            }
+            entrees.sort(Comparator.comparingLong(entree -> entree.getValue().usedAt));
+            for (Map.Entry<Long, Description> entree : entrees.subList(0, entrees.size() - cible)) {
+                Long id = entree.getKey();
+                if (descriptions.remove(id, entree.getValue())) {
+                    idsByNom.remove(entree.getValue().value().getNom(), id);
+                    if (!isCached(id)) {
+                        stocks.remove(id);
+                    }
+                }
+            }
+        } finally {
+            trimming.set(false);
+        }
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> lots = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK) {
+            lots.add(ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK, ids.size())));
+        }
+        return lots;
+    }
+
+    private void markAllEvicted(long now) {
+        for (int i = 0; i < STRIPES; i++) {
+            descriptionsEvictedAt.set(i, now);
+            stocksEvictedAt.set(i, now);
+        }
+        listEvictedAt = now;
+    }
+
+    private static int stripe(Long id) {
+        return Long.hashCode(id) & (STRIPES - 1);
+    }
+
+    private static ProductDTO withStock(ProductDTO description, Integer stock) {
+        return ProductDTO.builder()
+                .id(description.getId())
+                .nom(description.getNom())
+                .prix(description.getPrix())
+                .stock(stock)
+                .stockSlots(description.getStockSlots())
+                .deleted(description.getDeleted())
+                .description(description.getDescription())
+                .createdAt(description.getCreatedAt())
+                .updatedAt(description.getUpdatedAt())
+                .build();
+    }
+
+    private static <T> Timed<T> fresh(Timed<T> entry, long ttlNanos) {
+        return entry != null && System.nanoTime() - entry.loadedAt() < ttlNanos ? entry : null;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String cache, String result) {
+        return Counter.builder("smartshop.catalog.cache.requests")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Timed<T>(T value, long loadedAt) {
+    }
+
+    private record ActiveList(List<ProductDTO> produits, Map<Long, ProductDTO> parId) {
+    }
+
+    private static final class Description {
+        private final ProductDTO value;
+        private final long loadedAt;
+        // Dernière lecture (System.nanoTime), écrite sans verrou : sert seulement à choisir quoi retirer
+        private volatile long usedAt;
+
+        private Description(ProductDTO value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+            this.usedAt = loadedAt;
+        }
+
+        private ProductDTO value() {
+            return value;
+        }
+
+        private long loadedAt() {
+            return loadedAt;
+        }
+    }
+}
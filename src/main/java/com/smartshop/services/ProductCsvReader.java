@@ -0,0 +1,119 @@
+package com.smartshop.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecteur CSV en flux (RFC 4180) : séparateur virgule, champs entre guillemets pouvant contenir
+ * virgules, sauts de ligne et guillemets doublés. Seul l'enregistrement courant est en mémoire.
+ */
+final class ProductCsvReader {
+
+    static final int MAX_RECORD_LENGTH = 10_000;
+
+    private final Reader reader;
+    private final StringBuilder field = new StringBuilder();
+    private int pending = -2;
+    private long line = 1;
+    private long recordLine;
+
+    ProductCsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Numéro de ligne (dans le fichier) du début du dernier enregistrement lu.
+     */
+    long recordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Enregistrement suivant, ou null en fin de fichier. Les lignes vides sont ignorées.
+     *
+     * @throws IllegalStateException si un enregistrement dépasse {@link #MAX_RECORD_LENGTH}
+     *                               caractères (guillemet jamais refermé)
+     */
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        recordLine = line;
+        boolean quoted = false;
+        boolean fieldStarted = false;
+        int length = 0;
+
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                if (quoted) {
+                    throw new IllegalStateException("Guillemet non fermé à partir de la ligne " + recordLine);
+                }
+                if (fieldStarted || !fields.isEmpty()) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                return null;
+            }
+            if (++length > MAX_RECORD_LENGTH) {
+                throw new IllegalStateException("Enregistrement trop long à partir de la ligne " + recordLine);
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    int suivant = read();
+                    if (suivant == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(suivant);
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+                fieldStarted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldStarted = true;
+            } else if (c == '\r' || c == '\n') {
+                if (c == '\r') {
+                    int suivant = read();
+                    if (suivant != '\n') {
+                        unread(suivant);
+                    }
+                }
+                line++;
+                if (!fieldStarted && fields.isEmpty()) {
+                    recordLine = line;
+                    length = 0;
+                    continue;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+                fieldStarted = true;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pending != -2) {
+            int c = pending;
+            pending = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c) {
+        pending = c;
+    }
+}
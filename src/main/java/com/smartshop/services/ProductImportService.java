@@ -0,0 +1,469 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductDTO;
+import com.smartshop.dtos.ProductImportJobDTO;
+import com.smartshop.exceptions.ProductBusinessException;
+import com.smartshop.exceptions.ProductNotFoundException;
+import com.smartshop.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import de produits depuis un CSV ({@code nom,prix,stock,description}, en-tête obligatoire).
+ * <p>
+ * Le fichier est copié sur disque puis traité en tâche de fond, une tâche à la fois :
+ * lecture en flux, validation ligne par ligne ({@link ProductService#validateProductData}),
+ * unicité du nom contrôlée contre l'ensemble des noms actifs chargé au départ, et insertion par
+ * lots JDBC de {@value #CHUNK_SIZE} lignes, chaque lot dans sa propre transaction. Chaque lot
+ * relit d'abord en base les noms qu'il introduit : un produit créé par l'API pendant l'import
+ * fait rejeter la ligne de même nom. Comme pour une création par l'API (pas de contrainte unique
+ * sur le nom), une création validée entre cette relecture et l'insertion du lot n'est pas vue. Seuls le lot
+ * courant et les empreintes des noms restent en mémoire, quelle que soit la taille du fichier.
+ * Les lignes rejetées sont écrites dans un rapport CSV propre à la tâche.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_ERREURS_AFFICHEES = 100;
+    static final int MAX_TACHES_CONSERVEES = 50;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (nom, prix, stock, reserved_stock, deleted, created_at, updated_at, description) " +
+                    "VALUES (?, ?, ?, 0, false, ?, LOCALTIMESTAMP, ?)";
+
+    private static final String ACTIVE_NAMES_IN_SQL =
+            "SELECT nom FROM products WHERE deleted = false AND nom IN (%s)";
+
+    private final ProductService productService;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductCatalogCache catalogCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductAutocomplete autocomplete;
+    private final ProductPriceIndex priceIndex;
+    private final ChangeHorizon changeHorizon;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Enregistre le fichier et planifie son import ; la tâche renvoyée est suivie par son ID.
+     */
+    public ProductImportJobDTO startImport(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new ProductBusinessException("Le fichier d'import est vide");
+        }
+        Path csv;
+        try {
+            csv = Files.createTempFile("smartshop-import-", ".csv");
+            file.transferTo(csv);
+        } catch (IOException e) {
+            throw new ProductBusinessException("Impossible d'enregistrer le fichier d'import", e);
+        }
+
+        ImportJob job = register(file.getOriginalFilename(), file.getSize());
+        executor.submit(() -> run(job, csv));
+        log.info("Import de produits planifié: tâche {} ({} octets)", job.id, file.getSize());
+        return job.toDTO();
+    }
+
+    public ProductImportJobDTO getJob(String jobId) {
+        return job(jobId).toDTO();
+    }
+
+    /**
+     * Rapport complet des lignes rejetées ({@code ligne,message}).
+     */
+    public Path getErrorReport(String jobId) {
+        ImportJob job = job(jobId);
+        if (job.report == null) {
+            throw new ProductBusinessException("Le rapport d'erreurs n'est pas encore disponible");
+        }
+        return job.report;
+    }
+
+    ImportJob register(String fichier, long taille) {
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fichier, taille);
+        jobs.put(job.id, job);
+        purgeOldJobs();
+        return job;
+    }
+
+    void run(ImportJob job, Path csv) {
+        job.statut = ProductImportJobDTO.Statut.EN_COURS;
+        job.startedAt = LocalDateTime.now();
+        try {
+            job.report = Files.createTempFile("smartshop-import-", "-erreurs.csv");
+            try (CountingInputStream input = new CountingInputStream(Files.newInputStream(csv));
+                 Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+                 BufferedWriter report = Files.newBufferedWriter(job.report, StandardCharsets.UTF_8)) {
+                report.write("ligne,message");
+                report.newLine();
+                importRows(job, new ProductCsvReader(reader), input, report);
+            }
+            job.statut = ProductImportJobDTO.Statut.TERMINE;
+            log.info("Import {} terminé: {} importés, {} rejetés", job.id, job.importees.get(), job.rejetees.get());
+        } catch (Exception e) {
+            job.statut = ProductImportJobDTO.Statut.ECHOUE;
+            job.message = e.getMessage();
+            log.error("Import {} échoué après {} produits importés: {}", job.id, job.importees.get(), e.getMessage());
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            deleteQuietly(csv);
+            if (job.importees.get() > 0) {
+                refreshCatalog();
+            }
+        }
+    }
+
+    private void importRows(ImportJob job, ProductCsvReader csv, CountingInputStream input, Writer report)
+            throws IOException {
+        List<String> header = csv.next();
+        if (header == null) {
+            throw new ProductBusinessException("Le fichier ne contient pas d'en-tête");
+        }
+        Map<String, Integer> colonnes = columns(header);
+
+        NameHashes noms = new NameHashes();
+        for (Object[] row : productRepository.findAllActiveNames()) {
+            noms.add((String) row[1]);
+        }
+
+        List<Row> lot = new ArrayList<>(CHUNK_SIZE);
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            job.lignesLues.incrementAndGet();
+            try {
+                ProductDTO produit = parse(fields, colonnes);
+                productService.validateProductData(produit);
+                if (!noms.add(produit.getNom())) {
+                    throw new ProductBusinessException("Un produit '" + produit.getNom() + "' existe déjà");
+                }
+                lot.add(new Row(csv.recordLine(), produit));
+            } catch (ProductBusinessException | IllegalArgumentException e) {
+                job.reject(csv.recordLine(), e.getMessage(), report);
+            }
+
+            if (lot.size() == CHUNK_SIZE) {
+                insert(job, lot, report);
+                lot.clear();
+            }
+            job.octetsLus = input.count();
+        }
+        if (!lot.isEmpty()) {
+            insert(job, lot, report);
+        }
+        job.octetsLus = input.count();
+    }
+
+    private Map<String, Integer> columns(List<String> header) {
+        Map<String, Integer> colonnes = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            colonnes.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String requise : List.of("nom", "prix", "stock")) {
+            if (!colonnes.containsKey(requise)) {
+                throw new ProductBusinessException("Colonne obligatoire absente de l'en-tête: " + requise);
+            }
+        }
+        return colonnes;
+    }
+
+    private ProductDTO parse(List<String> fields, Map<String, Integer> colonnes) {
+        ProductDTO produit = new ProductDTO();
+        produit.setNom(field(fields, colonnes.get("nom")));
+        String prix = field(fields, colonnes.get("prix"));
+        String stock = field(fields, colonnes.get("stock"));
+        try {
+            produit.setPrix(prix == null ? null : new BigDecimal(prix));
+        } catch (NumberFormatException e) {
+            throw new ProductBusinessException("Prix invalide: " + prix);
+        }
+        try {
+            produit.setStock(stock == null ? null : Integer.valueOf(stock));
+        } catch (NumberFormatException e) {
+            throw new ProductBusinessException("Stock invalide: " + stock);
+        }
+        produit.setDescription(field(fields, colonnes.get("description")));
+
+        // Contraintes de ProductDTO non couvertes par validateProductData
+        if (produit.getPrix() != null && produit.getPrix().stripTrailingZeros().scale() > 2) {
+            throw new ProductBusinessException("Le prix doit avoir maximum 2 décimales");
+        }
+        if (produit.getDescription() != null && produit.getDescription().length() > 500) {
+            throw new ProductBusinessException("La description ne doit pas dépasser 500 caractères");
+        }
+        return produit;
+    }
+
+    private static String field(List<String> fields, Integer index) {
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private void insert(ImportJob job, List<Row> lot, Writer report) throws IOException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Row> doublons = transactionTemplate.execute(status -> {
+            changeHorizon.registerWriter();
+            // Noms créés depuis le chargement de l'ensemble de départ (API, autre instance)
+            Set<String> existants = new HashSet<>(jdbcTemplate.queryForList(
+                    String.format(ACTIVE_NAMES_IN_SQL, String.join(", ", Collections.nCopies(lot.size(), "?"))),
+                    String.class, lot.stream().map(row -> row.produit().getNom()).toArray()));
+            List<Row> rejetes = new ArrayList<>();
+            List<ProductDTO> produits = new ArrayList<>(lot.size());
+            for (Row row : lot) {
+                if (existants.contains(row.produit().getNom())) {
+                    rejetes.add(row);
+                } else {
+                    produits.add(row.produit());
+                }
+            }
+            if (!produits.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, produits, produits.size(), (ps, produit) -> {
+                    ps.setString(1, produit.getNom());
+                    ps.setBigDecimal(2, produit.getPrix());
+                    ps.setInt(3, produit.getStock());
+                    ps.setTimestamp(4, now);
+                    ps.setString(5, produit.getDescription());
+                });
+            }
+            return rejetes;
+        });
+        job.importees.addAndGet(lot.size() - doublons.size());
+        for (Row row : doublons) {
+            job.reject(row.ligne(), "Un produit '" + row.produit().getNom() + "' existe déjà", report);
+        }
+    }
+
+    /**
+     * Les index en mémoire sont reconstruits une fois en fin d'import plutôt qu'à chaque ligne ;
+     * chaque reconstruction rejoue les écritures de l'API reçues pendant sa lecture de la base.
+     */
+    private void refreshCatalog() {
+        try {
+            catalogCache.clear();
+            searchIndex.build();
+            autocomplete.build();
+            priceIndex.build();
+        } catch (RuntimeException e) {
+            log.error("Reconstruction des index du catalogue après import échouée: {}", e.getMessage());
+        }
+    }
+
+    private ImportJob job(String jobId) {
+        ImportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ProductNotFoundException("Tâche d'import non trouvée: " + jobId);
+        }
+        return job;
+    }
+
+    private void purgeOldJobs() {
+        if (jobs.size() <= MAX_TACHES_CONSERVEES) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(job -> job.finishedAt != null)
+                .min(Comparator.comparing(job -> job.finishedAt))
+                .ifPresent(job -> {
+                    jobs.remove(job.id);
+                    if (job.report != null) {
+                        deleteQuietly(job.report);
+                    }
+                });
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Suppression du fichier temporaire {} impossible", path);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * État d'une tâche, mis à jour par le thread d'import et lu par les requêtes de suivi.
+     */
+    static final class ImportJob {
+
+        final String id;
+        final String fichier;
+        final long tailleFichier;
+        final AtomicLong lignesLues = new AtomicLong();
+        final AtomicLong importees = new AtomicLong();
+        final AtomicLong rejetees = new AtomicLong();
+        final List<ProductImportJobDTO.ErreurLigne> premieresErreurs = Collections.synchronizedList(new ArrayList<>());
+        volatile ProductImportJobDTO.Statut statut = ProductImportJobDTO.Statut.EN_ATTENTE;
+        volatile long octetsLus;
+        volatile String message;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile Path report;
+
+        ImportJob(String id, String fichier, long tailleFichier) {
+            this.id = id;
+            this.fichier = fichier;
+            this.tailleFichier = tailleFichier;
+        }
+
+        void reject(long ligne, String message, Writer report) throws IOException {
+            rejetees.incrementAndGet();
+            if (premieresErreurs.size() < MAX_ERREURS_AFFICHEES) {
+                premieresErreurs.add(new ProductImportJobDTO.ErreurLigne(ligne, message));
+            }
+            report.write(ligne + ",\"" + message.replace("\"", "\"\"") + "\"");
+            report.write(System.lineSeparator());
+        }
+
+        ProductImportJobDTO toDTO() {
+            long lus = octetsLus;
+            return ProductImportJobDTO.builder()
+                    .id(id)
+                    .fichier(fichier)
+                    .statut(statut)
+                    .tailleFichier(tailleFichier)
+                    .octetsLus(lus)
+                    .progression(tailleFichier > 0 ? (int) Math.min(100, lus * 100 / tailleFichier) : 0)
+                    .lignesLues(lignesLues.get())
+                    .importees(importees.get())
+                    .rejetees(rejetees.get())
+                    .message(message)
+                    .startedAt(startedAt)
+                    .finishedAt(finishedAt)
+                    .erreurs(List.copyOf(premieresErreurs))
+                    .build();
+        }
+    }
+
+    /**
+     * Ensemble d'empreintes 64 bits des noms (adressage ouvert sur un long[]) :
+     * environ 16 octets par nom au lieu d'une chaîne entière. Une collision, très improbable,
+     * se traduit par un rejet « existe déjà » visible dans le rapport, jamais par un doublon.
+     */
+    static final class NameHashes {
+
+        private long[] table = new long[1 << 16];
+        private int size;
+
+        boolean add(String nom) {
+            long hash = hash(nom);
+            if ((size + 1) * 2 > table.length) {
+                resize();
+            }
+            if (!insert(table, hash)) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+
+        private boolean insert(long[] into, long hash) {
+            int mask = into.length - 1;
+            int slot = (int) hash & mask;
+            while (into[slot] != 0) {
+                if (into[slot] == hash) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            into[slot] = hash;
+            return true;
+        }
+
+        private void resize() {
+            long[] ancienne = table;
+            table = new long[ancienne.length * 2];
+            for (long hash : ancienne) {
+                if (hash != 0) {
+                    insert(table, hash);
+                }
+            }
+        }
+
+        private static long hash(String nom) {
+            // FNV-1a 64 bits puis mélange final de MurmurHash3 ; 0 est réservé aux cases vides
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < nom.length(); i++) {
+                h ^= nom.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h == 0 ? 1 : h;
+        }
+    }
+
+    /**
+     * Ligne valide en attente d'insertion, avec son numéro pour le rapport.
+     */
+    private record Row(long ligne, ProductDTO produit) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+}
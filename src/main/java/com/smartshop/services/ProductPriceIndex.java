@@ -0,0 +1,500 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Index en mémoire des prix des produits actifs.
+ * <p>
+ * Deux tableaux primitifs parallèles (prix en centimes, ID produit) triés par prix puis par ID :
+ * une recherche par fourchette de prix se résume à deux recherches dichotomiques et une tranche,
+ * la pagination se fait dans la tranche. Les lectures se font sans verrou sur un index immuable.
+ * <p>
+ * Comme pour l'autocomplétion, les écritures récentes (prix modifié, création, suppression) sont
+ * tenues à part dans un petit delta d'entrées ajoutées et retirées : une écriture ne coûte que la
+ * taille du delta. Au-delà de {@link #MAX_PENDING} écritures, il est fusionné dans la base par un
+ * thread de fond pendant que les écritures suivantes vont dans un nouveau delta.
+ * <p>
+ * Les écritures des autres instances arrivent par {@link CatalogChangePoller} ; l'index est aussi
+ * reconstruit périodiquement ({@code smartshop.price-index.refresh-ms}), en rejouant les écritures
+ * reçues pendant la lecture de la base.
+ */
+@Component
+@Slf4j
+public class ProductPriceIndex {
+
+    static final int MAX_PENDING = 1024;
+
+    private final ProductRepository productRepository;
+    private final int maxPending;
+
+    private volatile Index index = Index.of(Sorted.EMPTY, Delta.EMPTY, Delta.EMPTY);
+    private final Map<Long, Long> centsById = new HashMap<>();
+    private final Object buildLock = new Object();
+
+    // Écritures reçues pendant la lecture de la base par build() (centimes null : retrait)
+    private boolean building;
+    private final List<Write> writesDuringBuild = new ArrayList<>();
+
+    private final ExecutorService compaction = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "price-index-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    public ProductPriceIndex(ProductRepository productRepository) {
+        this(productRepository, MAX_PENDING);
+    }
+
+    ProductPriceIndex(ProductRepository productRepository, int maxPending) {
+        this.productRepository = productRepository;
+        this.maxPending = maxPending;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${smartshop.price-index.refresh-ms:3600000}",
+            fixedDelayString = "${smartshop.price-index.refresh-ms:3600000}")
+    public void build() {
+        synchronized (buildLock) {
+            synchronized (this) {
+                building = true;
+                writesDuringBuild.clear();
+            }
+
+            List<Object[]> rows;
+            try {
+                rows = productRepository.findAllActivePrices();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    building = false;
+                    writesDuringBuild.clear();
+                }
+                throw e;
+            }
+            long[][] entries = new long[rows.size()][];
+            for (int i = 0; i < entries.length; i++) {
+                Object[] row = rows.get(i);
+                entries[i] = new long[]{toCents((BigDecimal) row[1], RoundingMode.HALF_UP), (Long) row[0]};
+            }
+            Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+            long[] cents = new long[entries.length];
+            long[] ids = new long[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                cents[i] = entries[i][0];
+                ids[i] = entries[i][1];
+            }
+
+            int size;
+            synchronized (this) {
+                centsById.clear();
+                for (int i = 0; i < ids.length; i++) {
+                    centsById.put(ids[i], cents[i]);
+                }
+                index = Index.of(new Sorted(cents, ids), Delta.EMPTY, Delta.EMPTY);
+                // Écritures validées après la lecture : la base lue ne les contient peut-être pas
+                for (Write write : writesDuringBuild) {
+                    apply(write.productId(), write.cents());
+                }
+                building = false;
+                writesDuringBuild.clear();
+                size = centsById.size();
+            }
+            log.info("Index des prix construit: {} produits", size);
+        }
+    }
+
+    public void indexAfterCommit(Long productId, BigDecimal prix) {
+        TransactionCallbacks.afterCommit(() -> index(productId, prix));
+    }
+
+    public void removeAfterCommit(Long productId) {
+        TransactionCallbacks.afterCommit(() -> remove(productId));
+    }
+
+    public synchronized void index(Long productId, BigDecimal prix) {
+        long cents = toCents(prix, RoundingMode.HALF_UP);
+        if (building) {
+            writesDuringBuild.add(new Write(productId, cents));
+        }
+        apply(productId, cents);
+    }
+
+    public synchronized void remove(Long productId) {
+        if (building) {
+            writesDuringBuild.add(new Write(productId, null));
+        }
+        apply(productId, null);
+    }
+
+    /**
+     * IDs des produits dont le prix est dans [minPrix, maxPrix], par prix croissant.
+     */
+    public List<Long> range(BigDecimal minPrix, BigDecimal maxPrix) {
+        return range(minPrix, maxPrix, Pageable.unpaged()).getContent();
+    }
+
+    /**
+     * Page d'IDs par prix croissant, ou décroissant si le Pageable trie sur {@code prix} DESC.
+     * Les autres critères de tri sont ignorés ; une borne nulle n'est pas appliquée.
+     */
+    public Page<Long> range(BigDecimal minPrix, BigDecimal maxPrix, Pageable pageable) {
+        Index courant = index;
+        long minCents = minPrix == null ? Long.MIN_VALUE : toCents(minPrix, RoundingMode.CEILING);
+        long maxCents = maxPrix == null ? Long.MAX_VALUE : toCents(maxPrix, RoundingMode.FLOOR);
+        if (minCents > maxCents) {
+            return new PageImpl<>(List.of(), pageable, 0);
+        }
+        View view = courant.view(minCents, maxCents);
+        int total = view.size();
+
+        int offset = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), total) : 0;
+        int size = pageable.isPaged() ? Math.min(pageable.getPageSize(), total - offset) : total;
+        Sort.Order tri = pageable.getSort().getOrderFor("prix");
+        boolean desc = tri != null && tri.isDescending();
+
+        List<Long> ids = view.slice(desc ? total - offset - size : offset, size);
+        if (desc) {
+            Collections.reverse(ids);
+        }
+        return new PageImpl<>(ids, pageable, total);
+    }
+
+    /**
+     * Vrai si le Pageable ne trie que sur le prix : la page peut être servie par l'index.
+     */
+    public static boolean sortsByPrix(Pageable pageable) {
+        Sort sort = pageable.getSort();
+        return sort.isSorted() && sort.stream().allMatch(order -> order.getProperty().equals("prix"));
+    }
+
+    public int size() {
+        Index courant = index;
+        return courant.base().size() - courant.removed().size() + courant.added().size();
+    }
+
+    /**
+     * Fusionne les écritures en attente dans la base. Appelé par le thread de fond ;
+     * les écritures arrivées pendant la fusion restent dans le nouveau delta.
+     */
+    void compact() {
+        Index gele;
+        synchronized (this) {
+            gele = index;
+            if (gele.frozen().isEmpty()) {
+                if (gele.active().isEmpty()) {
+                    return;
+                }
+                gele = Index.of(gele.base(), gele.active(), Delta.EMPTY);
+                index = gele;
+            }
+        }
+
+        Sorted fusion = gele.base().merge(gele.frozen().removed(), gele.frozen().added());
+
+        synchronized (this) {
+            Index courant = index;
+            // Une reconstruction complète a pu remplacer l'index pendant la fusion
+            if (courant.base() == gele.base() && courant.frozen() == gele.frozen()) {
+                index = Index.of(fusion, Delta.EMPTY, courant.active());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        compaction.shutdownNow();
+    }
+
+    static long toCents(BigDecimal prix, RoundingMode arrondi) {
+        return prix.movePointRight(2).setScale(0, arrondi).longValueExact();
+    }
+
+    private void apply(Long productId, Long cents) {
+        Long ancien = cents == null ? centsById.remove(productId) : centsById.put(productId, cents);
+        if (Objects.equals(ancien, cents)) {
+            return;
+        }
+        Delta active = index.active();
+        if (ancien != null) {
+            active = active.minus(ancien, productId);
+        }
+        if (cents != null) {
+            active = active.plus(cents, productId);
+        }
+        Index courant = index;
+        index = Index.of(courant.base(), courant.frozen(), active);
+        if (active.size() >= maxPending && courant.frozen().isEmpty()) {
+            compaction.execute(this::compact);
+        }
+    }
+
+    private static int compare(long cents, long id, long autresCents, long autreId) {
+        return cents != autresCents ? Long.compare(cents, autresCents) : Long.compare(id, autreId);
+    }
+
+    private record Write(Long productId, Long cents) {
+    }
+
+    /**
+     * Base, delta gelé en cours de fusion, delta actif, et leur effet combiné sur la base
+     * (entrées retirées de la base, entrées ajoutées), calculé une fois par écriture.
+     */
+    private record Index(Sorted base, Delta frozen, Delta active, Sorted removed, Sorted added) {
+
+        static Index of(Sorted base, Delta frozen, Delta active) {
+            Sorted retiresDuGel = frozen.added().intersect(active.removed());
+            Sorted removed = frozen.removed().union(active.removed().minus(retiresDuGel));
+            Sorted added = frozen.added().minus(retiresDuGel).union(active.added());
+            return new Index(base, frozen, active, removed, added);
+        }
+
+        View view(long minCents, long maxCents) {
+            return new View(this,
+                    base.lowerBound(minCents, Long.MIN_VALUE), base.lowerBound(maxCents, Long.MAX_VALUE),
+                    removed.lowerBound(minCents, Long.MIN_VALUE), removed.lowerBound(maxCents, Long.MAX_VALUE),
+                    added.lowerBound(minCents, Long.MIN_VALUE), added.lowerBound(maxCents, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Fourchette de prix vue à travers le delta : positions [from, to) dans la base, les entrées
+     * retirées et les entrées ajoutées.
+     */
+    private record View(Index index, int from, int to, int removedFrom, int removedTo, int addedFrom, int addedTo) {
+
+        int size() {
+            return (to - from) - (removedTo - removedFrom) + (addedTo - addedFrom);
+        }
+
+        /**
+         * IDs des positions [offset, offset + count) de la fourchette, par prix croissant.
+         */
+        List<Long> slice(int offset, int count) {
+            Sorted base = index.base();
+            Sorted removed = index.removed();
+            Sorted added = index.added();
+
+            int b = from;
+            int r = removedFrom;
+            int a = addedFrom;
+            int skip = offset;
+            if (from < to && before(from) <= offset) {
+                // Dernière position de la base précédée d'au plus offset entrées de la fourchette
+                int lo = from;
+                int hi = to - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi + 1) >>> 1;
+                    if (before(mid) <= offset) {
+                        lo = mid;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                b = lo;
+                skip = offset - before(b);
+                r = removed.lowerBound(base.cents[b], base.ids[b]);
+                a = added.lowerBound(base.cents[b], base.ids[b]);
+            }
+
+            List<Long> ids = new ArrayList<>(count);
+            while (ids.size() < count && (b < to || a < addedTo)) {
+                boolean fromBase = b < to && (a >= addedTo
+                        || compare(base.cents[b], base.ids[b], added.cents[a], added.ids[a]) < 0);
+                long id;
+                if (fromBase) {
+                    id = base.ids[b];
+                    boolean retire = r < removedTo && removed.cents[r] == base.cents[b] && removed.ids[r] == id;
+                    b++;
+                    if (retire) {
+                        r++;
+                        continue;
+                    }
+                } else {
+                    id = added.ids[a++];
+                }
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * Nombre d'entrées de la fourchette avant la position {@code b} de la base.
+         */
+        private int before(int b) {
+            Sorted base = index.base();
+            long cents = base.cents[b];
+            long id = base.ids[b];
+            return (b - from)
+                    - (index.removed().lowerBound(cents, id) - removedFrom)
+                    + (index.added().lowerBound(cents, id) - addedFrom);
+        }
+    }
+
+    /**
+     * Entrées ajoutées et retirées depuis la base (ou depuis le delta gelé pour le delta actif).
+     */
+    private record Delta(Sorted added, Sorted removed) {
+
+        static final Delta EMPTY = new Delta(Sorted.EMPTY, Sorted.EMPTY);
+
+        boolean isEmpty() {
+            return added.size() == 0 && removed.size() == 0;
+        }
+
+        int size() {
+            return added.size() + removed.size();
+        }
+
+        Delta plus(long cents, long id) {
+            return removed.contains(cents, id)
+                    ? new Delta(added, removed.without(cents, id))
+                    : new Delta(added.with(cents, id), removed);
+        }
+
+        Delta minus(long cents, long id) {
+            return added.contains(cents, id)
+                    ? new Delta(added.without(cents, id), removed)
+                    : new Delta(added, removed.with(cents, id));
+        }
+    }
+
+    /**
+     * Entrées (prix en centimes, ID) triées.
+     */
+    private record Sorted(long[] cents, long[] ids) {
+
+        static final Sorted EMPTY = new Sorted(new long[0], new long[0]);
+
+        int size() {
+            return ids.length;
+        }
+
+        /**
+         * Première position dont (prix, id) n'est pas inférieur à (cents, id).
+         */
+        int lowerBound(long cents, long id) {
+            int lo = 0;
+            int hi = ids.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(this.cents[mid], ids[mid], cents, id) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        boolean contains(long cents, long id) {
+            int pos = lowerBound(cents, id);
+            return pos < ids.length && this.cents[pos] == cents && ids[pos] == id;
+        }
+
+        Sorted with(long cents, long id) {
+            int pos = lowerBound(cents, id);
+            return new Sorted(insert(this.cents, pos, cents), insert(ids, pos, id));
+        }
+
+        Sorted without(long cents, long id) {
+            if (!contains(cents, id)) {
+                return this;
+            }
+            int pos = lowerBound(cents, id);
+            return new Sorted(delete(this.cents, pos), delete(ids, pos));
+        }
+
+        Sorted union(Sorted other) {
+            return other.size() == 0 ? this : merge(EMPTY, other);
+        }
+
+        Sorted minus(Sorted other) {
+            return other.size() == 0 ? this : merge(other, EMPTY);
+        }
+
+        Sorted intersect(Sorted other) {
+            if (size() == 0 || other.size() == 0) {
+                return EMPTY;
+            }
+            Sorted petit = size() <= other.size() ? this : other;
+            Sorted grand = petit == this ? other : this;
+            long[] c = new long[petit.size()];
+            long[] i = new long[petit.size()];
+            int n = 0;
+            for (int k = 0; k < petit.size(); k++) {
+                if (grand.contains(petit.cents[k], petit.ids[k])) {
+                    c[n] = petit.cents[k];
+                    i[n++] = petit.ids[k];
+                }
+            }
+            return new Sorted(Arrays.copyOf(c, n), Arrays.copyOf(i, n));
+        }
+
+        /**
+         * Copie sans les entrées de {@code retirees} et avec celles de {@code ajoutees} : une passe de fusion.
+         */
+        Sorted merge(Sorted retirees, Sorted ajoutees) {
+            long[] c = new long[size() + ajoutees.size()];
+            long[] i = new long[c.length];
+            int n = 0;
+            int r = 0;
+            int a = 0;
+            for (int k = 0; k < size(); k++) {
+                while (r < retirees.size() && compare(retirees.cents[r], retirees.ids[r], cents[k], ids[k]) < 0) {
+                    r++;
+                }
+                if (r < retirees.size() && retirees.cents[r] == cents[k] && retirees.ids[r] == ids[k]) {
+                    continue;
+                }
+                while (a < ajoutees.size() && compare(ajoutees.cents[a], ajoutees.ids[a], cents[k], ids[k]) < 0) {
+                    c[n] = ajoutees.cents[a];
+                    i[n++] = ajoutees.ids[a++];
+                }
+                c[n] = cents[k];
+                i[n++] = ids[k];
+            }
+            while (a < ajoutees.size()) {
+                c[n] = ajoutees.cents[a];
+                i[n++] = ajoutees.ids[a++];
+            }
+            return new Sorted(n == c.length ? c : Arrays.copyOf(c, n), n == i.length ? i : Arrays.copyOf(i, n));
+        }
+
+        private static long[] insert(long[] source, int pos, long value) {
+            long[] target = new long[source.length + 1];
+            System.arraycopy(source, 0, target, 0, pos);
+            target[pos] = value;
+            System.arraycopy(source, pos, target, pos + 1, source.length - pos);
+            return target;
+        }
+
+        private static long[] delete(long[] source, int pos) {
+            long[] target = new long[source.length - 1];
+            System.arraycopy(source, 0, target, 0, pos);
+            System.arraycopy(source, pos + 1, target, pos, source.length - pos - 1);
+            return target;
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductSalesDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.repositories.OrderItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Compteurs de ventes par produit, tenus en mémoire et mis à jour à la validation de
+ * chaque confirmation de commande, au lieu d'agréger tout l'historique à chaque lecture.
+ * <ul>
+ *   <li>totaux (quantité, chiffre d'affaires) : une commande confirmée est définitive,
+ *   les totaux ne font donc que croître ;</li>
+ *   <li>top {@value #TOP_K} tous temps : tableau trié par quantité, réordonné à chaque vente
+ *   (O(K)), lu en O(N) ;</li>
+ *   <li>fenêtres glissantes (heure, jour, 30 jours) : anneaux de tranches horodatées, alloués
+ *   au premier achat du produit.</li>
+ * </ul>
+ * Les compteurs sont propres à l'instance : chacune ne comptabilise en direct que les confirmations
+ * qu'elle a elle-même validées. Ils sont chargés depuis la base au démarrage puis rechargés
+ * périodiquement ({@code smartshop.sales-counters.reload-ms}) : avec plusieurs instances, les ventes
+ * confirmées ailleurs apparaissent avec au plus ce retard.
+ */
+@Component
+@Slf4j
+public class ProductSalesCounters {
+
+    static final int TOP_K = 100;
+
+    private final OrderItemRepository orderItemRepository;
+    private final Clock clock;
+
+    // Tout l'état est protégé par le moniteur de l'instance
+    private Map<Long, Sales> sales = new HashMap<>();
+    private final long[] top = new long[TOP_K];
+    private int topSize;
+    private boolean loading;
+    private final List<Sale> pendingDuringLoad = new ArrayList<>();
+
+    @Autowired
+    public ProductSalesCounters(OrderItemRepository orderItemRepository) {
+        this(orderItemRepository, Clock.systemDefaultZone());
+    }
+
+    ProductSalesCounters(OrderItemRepository orderItemRepository, Clock clock) {
+        this.orderItemRepository = orderItemRepository;
+        this.clock = clock;
+    }
+
+    /**
+     * Recharge totaux et fenêtres depuis toutes les commandes confirmées. Les deux lectures partagent
+     * l'instantané de la transaction (REPEATABLE READ) ; les ventes enregistrées pendant le chargement
+     * dont la commande n'y figure pas (validée après l'instantané) sont rejouées, quelle que soit leur
+     * date de confirmation.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${smartshop.sales-counters.reload-ms:600000}",
+            fixedDelayString = "${smartshop.sales-counters.reload-ms:600000}")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void load() {
+        synchronized (this) {
+            loading = true;
+            pendingDuringLoad.clear();
+        }
+        Map<Long, Sales> charges = new HashMap<>();
+        Set<Long> commandesChargees = new HashSet<>();
+        try {
+            for (Object[] row : orderItemRepository.sumSalesByProduct()) {
+                Sales s = new Sales((String) row[1]);
+                s.quantite = ((Number) row[2]).longValue();
+                s.cents = toCents((BigDecimal) row[3]);
+                charges.put((Long) row[0], s);
+            }
+            // Une vente enregistrée pendant le chargement a été confirmée dans la fenêtre :
+            // sa commande figure parmi ces lignes si l'instantané la contient
+            try (Stream<Object[]> lignes = orderItemRepository.streamConfirmedLines(
+                    LocalDateTime.now(clock).minus(SalesPeriod.MOIS.length()))) {
+                lignes.forEach(row -> {
+                    commandesChargees.add((Long) row[3]);
+                    Sales s = charges.get((Long) row[0]);
+                    if (s != null) {
+                        s.addToWindows(epochSecond((LocalDateTime) row[1]), ((Number) row[2]).intValue());
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingDuringLoad.clear();
+                loading = false;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            sales = charges;
+            topSize = 0;
+            sales.keySet().forEach(this::updateTop);
+            for (Sale sale : pendingDuringLoad) {
+                if (sale.orderId() == null || !commandesChargees.contains(sale.orderId())) {
+                    apply(sale);
+                }
+            }
+            pendingDuringLoad.clear();
+            loading = false;
+        }
+        log.info("Compteurs de ventes chargés pour {} produits", charges.size());
+    }
+
+    /**
+     * Comptabilise les lignes de la commande une fois sa confirmation validée.
+     */
+    public void recordConfirmedAfterCommit(Order order) {
+        LocalDateTime confirmedAt = order.getConfirmedAt() != null ? order.getConfirmedAt() : LocalDateTime.now(clock);
+        long epochSecond = epochSecond(confirmedAt);
+        List<Sale> lignes = new ArrayList<>(order.getOrderItems().size());
+        for (OrderItem item : order.getOrderItems()) {
+            lignes.add(new Sale(order.getId(), item.getProduct().getId(), item.getProductNom(), item.getQuantite(),
+                    toCents(item.getTotalLigne()), epochSecond));
+        }
+        TransactionCallbacks.afterCommit(() -> record(lignes));
+    }
+
+    synchronized void record(List<Sale> lignes) {
+        for (Sale sale : lignes) {
+            apply(sale);
+            if (loading) {
+                pendingDuringLoad.add(sale);
+            }
+        }
+    }
+
+    /**
+     * Les N produits les plus vendus sur la période. TOUT est servi par le top maintenu
+     * (N plafonné à {@value #TOP_K}) ; une fenêtre parcourt les produits ayant des ventes récentes.
+     */
+    public synchronized List<ProductSalesDTO> top(int n, SalesPeriod period) {
+        if (n <= 0) {
+            return List.of();
+        }
+        if (!period.isWindow()) {
+            List<ProductSalesDTO> result = new ArrayList<>(Math.min(n, topSize));
+            for (int i = 0; i < Math.min(n, topSize); i++) {
+                result.add(toDTO(top[i], period));
+            }
+            return result;
+        }
+
+        long now = epochSecond(LocalDateTime.now(clock));
+        PriorityQueue<long[]> plusPetits = new PriorityQueue<>(
+                Comparator.<long[]>comparingLong(e -> e[1]).thenComparingLong(e -> -e[0]));
+        for (Map.Entry<Long, Sales> entry : sales.entrySet()) {
+            long quantite = entry.getValue().inWindow(period, now);
+            if (quantite == 0) {
+                continue;
+            }
+            plusPetits.add(new long[]{entry.getKey(), quantite});
+            if (plusPetits.size() > n) {
+                plusPetits.poll();
+            }
+        }
+        List<ProductSalesDTO> result = new ArrayList<>(plusPetits.size());
+        while (!plusPetits.isEmpty()) {
+            long[] e = plusPetits.poll();
+            result.add(toDTO(e[0], period, e[1]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public synchronized ProductSalesDTO getSales(Long productId, SalesPeriod period) {
+        return toDTO(productId, period);
+    }
+
+    public synchronized long getTotalQuantitySoldByProduct(Long productId) {
+        Sales s = sales.get(productId);
+        return s == null ? 0 : s.quantite;
+    }
+
+    public synchronized BigDecimal getTotalRevenueByProduct(Long productId) {
+        Sales s = sales.get(productId);
+        return BigDecimal.valueOf(s == null ? 0 : s.cents, 2);
+    }
+
+    private void apply(Sale sale) {
+        Sales s = sales.computeIfAbsent(sale.productId(), id -> new Sales(sale.nom()));
+        s.nom = sale.nom();
+        s.quantite += sale.quantite();
+        s.cents += sale.cents();
+        s.addToWindows(sale.epochSecond(), sale.quantite());
+        updateTop(sale.productId());
+    }
+
+    /**
+     * Remonte le produit à sa place dans le top ; valable car les totaux ne décroissent jamais.
+     */
+    private void updateTop(Long productId) {
+        int pos = -1;
+        for (int i = 0; i < topSize; i++) {
+            if (top[i] == productId) {
+                pos = i;
+                break;
+            }
+        }
+        if (pos < 0) {
+            if (topSize < TOP_K) {
+                pos = topSize++;
+            } else if (before(productId, top[TOP_K - 1])) {
+                pos = TOP_K - 1;
+            } else {
+                return;
+            }
+            top[pos] = productId;
+        }
+        while (pos > 0 && before(top[pos], top[pos - 1])) {
+            long tmp = top[pos - 1];
+            top[pos - 1] = top[pos];
+            top[pos] = tmp;
+            pos--;
+        }
+    }
+
+    private boolean before(long a, long b) {
+        long qa = sales.get(a).quantite;
+        long qb = sales.get(b).quantite;
+        return qa != qb ? qa > qb : a < b;
+    }
+
+    private ProductSalesDTO toDTO(long productId, SalesPeriod period) {
+        Sales s = sales.get(productId);
+        long quantite = s == null ? 0
+                : period.isWindow() ? s.inWindow(period, epochSecond(LocalDateTime.now(clock))) : s.quantite;
+        return toDTO(productId, period, quantite);
+    }
+
+    private ProductSalesDTO toDTO(long productId, SalesPeriod period, long quantite) {
+        Sales s = sales.get(productId);
+        return ProductSalesDTO.builder()
+                .productId(productId)
+                .nom(s == null ? null : s.nom)
+                .quantite(quantite)
+                .chiffreAffaires(period.isWindow() ? null : BigDecimal.valueOf(s == null ? 0 : s.cents, 2))
+                .build();
+    }
+
+    private static long toCents(BigDecimal montant) {
+        return montant == null ? 0 : montant.movePointRight(2).longValue();
+    }
+
+    private long epochSecond(LocalDateTime date) {
+        return date.atZone(clock.getZone()).toEpochSecond();
+    }
+
+    record Sale(Long orderId, Long productId, String nom, int quantite, long cents, long epochSecond) {
+    }
+
+    private static final class Sales {
+
+        String nom;
+        long quantite;
+        long cents;
+        private Ring heure;
+        private Ring jour;
+        private Ring mois;
+
+        Sales(String nom) {
+            this.nom = nom;
+        }
+
+        void addToWindows(long epochSecond, int quantite) {
+            if (mois == null) {
+                heure = new Ring(SalesPeriod.HEURE);
+                jour = new Ring(SalesPeriod.JOUR);
+                mois = new Ring(SalesPeriod.MOIS);
+            }
+            heure.add(epochSecond, quantite);
+            jour.add(epochSecond, quantite);
+            mois.add(epochSecond, quantite);
+        }
+
+        long inWindow(SalesPeriod period, long now) {
+            if (mois == null) {
+                return 0;
+            }
+            return switch (period) {
+                case HEURE -> heure.sum(now);
+                case JOUR -> jour.sum(now);
+                case MOIS -> mois.sum(now);
+                case TOUT -> quantite;
+            };
+        }
+    }
+
+    /**
+     * Anneau de tranches : chaque case garde le numéro de tranche qu'elle compte,
+     * une case d'une tranche plus ancienne est remise à zéro à sa réutilisation.
+     */
+    private static final class Ring {
+
+        private final long bucketSeconds;
+        private final long[] tranches;
+        private final long[] quantites;
+
+        Ring(SalesPeriod period) {
+            this.bucketSeconds = period.bucketSeconds;
+            this.tranches = new long[period.buckets];
+            this.quantites = new long[period.buckets];
+            Arrays.fill(tranches, -1);
+        }
+
+        void add(long epochSecond, int quantite) {
+            long tranche = epochSecond / bucketSeconds;
+            int slot = (int) (tranche % tranches.length);
+            if (tranches[slot] > tranche) {
+                return;
+            }
+            if (tranches[slot] != tranche) {
+                tranches[slot] = tranche;
+                quantites[slot] = 0;
+            }
+            quantites[slot] += quantite;
+        }
+
+        long sum(long now) {
+            long courante = now / bucketSeconds;
+            long total = 0;
+            for (int i = 0; i < tranches.length; i++) {
+                if (tranches[i] > courante - tranches.length && tranches[i] <= courante) {
+                    total += quantites[i];
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index inversé de trigrammes sur le nom des produits actifs.
+ * <p>
+ * Chaque nom (en minuscules) reçoit un numéro de document croissant ; chaque trigramme
+ * pointe vers la liste triée des documents qui le contiennent, stockée dans un tableau d'int.
+ * Une recherche intersecte les listes des trigrammes du terme puis vérifie la sous-chaîne,
+ * ce qui reproduit la sémantique de {@code LOWER(nom) LIKE '%terme%'}.
+ * Un produit retiré ou renommé laisse un document mort, purgé à la prochaine compaction.
+ * <p>
+ * Les écritures de l'instance sont indexées après validation ; celles des autres instances arrivent
+ * par {@link CatalogChangePoller}. L'index est aussi reconstruit périodiquement
+ * ({@code smartshop.search-index.refresh-ms}) : les écritures indexées pendant la lecture de la base
+ * sont rejouées sur le nouvel index.
+ */
+@Component
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int MIN_COMPACTION = 1024;
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object buildLock = new Object();
+
+    private long[] productIds = new long[MIN_COMPACTION];
+    private String[] names = new String[MIN_COMPACTION];
+    private int docCount;
+    private int liveCount;
+    private final Map<Long, Integer> docByProduct = new HashMap<>();
+    private final Map<Long, PostingList> postings = new HashMap<>();
+
+    // Écritures reçues pendant la lecture de la base par build() (nom null : retrait)
+    private boolean building;
+    private final List<Write> writesDuringBuild = new ArrayList<>();
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${smartshop.search-index.refresh-ms:3600000}",
+            fixedDelayString = "${smartshop.search-index.refresh-ms:3600000}")
+    public void build() {
+        synchronized (buildLock) {
+            lock.writeLock().lock();
+            try {
+                building = true;
+                writesDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            List<Object[]> rows;
+            try {
+                rows = productRepository.findAllActiveNames();
+            } catch (RuntimeException e) {
+                stopBuilding();
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                for (Object[] row : rows) {
+                    add((Long) row[0], (String) row[1]);
+                }
+                // Écritures validées après la lecture : la base lue ne les contient peut-être pas
+                for (Write write : writesDuringBuild) {
+                    apply(write.productId(), write.nom());
+                }
+                compactIfNeeded();
+                building = false;
+                writesDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Index de recherche construit: {} produits, {} trigrammes", liveCount, postings.size());
+        }
+    }
+
+    /**
+     * Indexe (ou réindexe) un produit actif une fois la transaction courante validée.
+     */
+    public void indexAfterCommit(Long productId, String nom) {
+        TransactionCallbacks.afterCommit(() -> index(productId, nom));
+    }
+
+    public void removeAfterCommit(Long productId) {
+        TransactionCallbacks.afterCommit(() -> remove(productId));
+    }
+
+    public void index(Long productId, String nom) {
+        write(productId, nom);
+    }
+
+    public void remove(Long productId) {
+        write(productId, null);
+    }
+
+    private void write(Long productId, String nom) {
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                writesDuringBuild.add(new Write(productId, nom));
+            }
+            apply(productId, nom);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void stopBuilding() {
+        lock.writeLock().lock();
+        try {
+            building = false;
+            writesDuringBuild.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Long productId, String nom) {
+        if (nom == null) {
+            removeDoc(productId);
+            return;
+        }
+        Integer doc = docByProduct.get(productId);
+        if (doc != null && normalize(nom).equals(names[doc])) {
+            return;
+        }
+        removeDoc(productId);
+        add(productId, nom);
+    }
+
+    /**
+     * IDs des produits dont le nom contient le terme, du plus pertinent au moins pertinent :
+     * nom identique, puis nom commençant par le terme, puis terme en début de mot, puis le reste ;
+     * à pertinence égale, le nom le plus court puis l'ordre alphabétique.
+     */
+    public List<Long> search(String terme) {
+        String q = normalize(terme);
+        lock.readLock().lock();
+        try {
+            int[] candidates = q.length() < GRAM ? null : candidates(q);
+            List<Hit> hits = new ArrayList<>();
+            if (candidates == null) {
+                for (int doc = 0; doc < docCount; doc++) {
+                    collect(doc, q, hits);
+                }
+            } else {
+                for (int doc : candidates) {
+                    collect(doc, q, hits);
+                }
+            }
+            hits.sort(Hit.ORDER);
+
+            List<Long> result = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                result.add(hit.productId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void collect(int doc, String q, List<Hit> hits) {
+        String name = names[doc];
+        if (name == null) {
+            return;
+        }
+        int at = name.indexOf(q);
+        if (at >= 0) {
+            hits.add(new Hit(productIds[doc], name, score(name, q, at)));
+        }
+    }
+
+    /**
+     * Documents contenant tous les trigrammes du terme ; tableau vide si l'un d'eux est absent.
+     */
+    private int[] candidates(String q) {
+        List<PostingList> lists = new ArrayList<>();
+        for (long gram : grams(q)) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        int[] result = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    private void add(Long productId, String nom) {
+        String name = normalize(nom);
+        if (docCount == names.length) {
+            productIds = Arrays.copyOf(productIds, docCount * 2);
+            names = Arrays.copyOf(names, docCount * 2);
+        }
+        int doc = docCount++;
+        productIds[doc] = productId;
+        names[doc] = name;
+        liveCount++;
+        docByProduct.put(productId, doc);
+        for (long gram : grams(name)) {
+            postings.computeIfAbsent(gram, g -> new PostingList()).add(doc);
+        }
+    }
+
+    private void removeDoc(Long productId) {
+        Integer doc = docByProduct.remove(productId);
+        if (doc != null) {
+            names[doc] = null;
+            liveCount--;
+        }
+    }
+
+    private void compactIfNeeded() {
+        int dead = docCount - liveCount;
+        if (dead < Math.max(MIN_COMPACTION, liveCount / 4)) {
+            return;
+        }
+        long[] liveIds = new long[liveCount];
+        String[] liveNames = new String[liveCount];
+        int n = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (names[doc] != null) {
+                liveIds[n] = productIds[doc];
+                liveNames[n++] = names[doc];
+            }
+        }
+        clear();
+        for (int i = 0; i < n; i++) {
+            add(liveIds[i], liveNames[i]);
+        }
+        log.debug("Index de recherche compacté: {} documents morts purgés", dead);
+    }
+
+    private void clear() {
+        productIds = new long[MIN_COMPACTION];
+        names = new String[MIN_COMPACTION];
+        docCount = 0;
+        liveCount = 0;
+        docByProduct.clear();
+        postings.clear();
+    }
+
+    private static int score(String name, String q, int at) {
+        if (at == 0) {
+            return name.length() == q.length() ? 3 : 2;
+        }
+        return Character.isLetterOrDigit(name.charAt(at - 1)) ? 0 : 1;
+    }
+
+    private static String normalize(String nom) {
+        return nom == null ? "" : nom.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<Long> grams(String name) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            grams.add(((long) name.charAt(i) << 32) | ((long) name.charAt(i + 1) << 16) | name.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * Intersection d'une liste courte avec une liste plus longue, par recherche dichotomique
+     * à partir de la dernière position trouvée.
+     */
+    private static int[] intersect(int[] small, PostingList large) {
+        int[] out = new int[small.length];
+        int n = 0;
+        int from = 0;
+        for (int doc : small) {
+            int at = Arrays.binarySearch(large.docs, from, large.size, doc);
+            if (at >= 0) {
+                out[n++] = doc;
+                from = at + 1;
+            } else {
+                from = -at - 1;
+            }
+            if (from >= large.size) {
+                break;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Liste de documents triée, dans un tableau d'int agrandi au besoin.
+     */
+    private static final class PostingList {
+
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    private record Write(Long productId, String nom) {
+    }
+
+    private record Hit(long productId, String name, int score) {
+
+        static final Comparator<Hit> ORDER = Comparator.comparingInt(Hit::score).reversed()
+                .thenComparingInt(hit -> hit.name().length())
+                .thenComparing(Hit::name);
+    }
+}
@@ -2,7 +2,11 @@ package com.smartshop.services;
 
 
 
+import com.smartshop.dtos.CursorPageDTO;
 import com.smartshop.dtos.ProductDTO;
+import com.smartshop.dtos.ProductSalesDTO;
+import com.smartshop.dtos.StockBatchDTO;
+import com.smartshop.dtos.StockBatchResultDTO;
 import com.smartshop.entity.Product;
 import com.smartshop.exceptions.ProductNotFoundException;
 import com.smartshop.exceptions.ProductAlreadyExistsException;
@@ -12,34 +16,53 @@ import com.smartshop.mappers.ProductMapper;
 import com.smartshop.repositories.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.stream.Collectors;
 
 
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ProductService {
 
+    public static final int MAX_CHANGES_PAGE_SIZE = 500;
+
+    public static final int MAX_STOCK_BATCH_SIZE = 50_000;
+
+    public static final int MAX_STOCK_SLOTS = 64;
+
+
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final StockAvailability stockAvailability;
+    private final ProductCatalogCache catalogCache;
+    private final ProductSearchIndex searchIndex;
+    private final ProductAutocomplete autocomplete;
+    private final ProductPriceIndex priceIndex;
+    private final ProductSalesCounters salesCounters;
+    private final ChangeHorizon changeHorizon;
 
 
     @Transactional
     public ProductDTO createProduct(ProductDTO productDTO) {
         log.info("Création d'un nouveau produit: {}", productDTO.getNom());
+        changeHorizon.registerWriter();
 
 
         validateProductData(productDTO);
 
 
-        if (productRepository.existsByNomAndActive(productDTO.getNom())) {
+        if (nomExists(productDTO.getNom())) {
             log.warn("Tentative de création avec un produit qui existe déjà: {}", productDTO.getNom());
             throw new ProductAlreadyExistsException(
                     "Un produit '" + productDTO.getNom() + "' existe déjà"
@@ -50,56 +73,54 @@ public class ProductService {
         product.setDeleted(false);
 
         Product savedProduct = productRepository.save(product);
+        stockAvailability.track(savedProduct.getId(), savedProduct.getStock() - savedProduct.getReservedStock());
+        catalogCache.evictAfterCommit(savedProduct.getId());
+        searchIndex.indexAfterCommit(savedProduct.getId(), savedProduct.getNom());
+        autocomplete.indexAfterCommit(savedProduct.getId(), savedProduct.getNom());
+        priceIndex.indexAfterCommit(savedProduct.getId(), savedProduct.getPrix());
         log.info("Produit créé avec succès: ID={}, nom={}", savedProduct.getId(), savedProduct.getNom());
 
         return productMapper.toDTO(savedProduct);
     }
 
 
-    @Transactional(readOnly = true)
     public ProductDTO getProductById(Long id) {
         log.info("Récupération du produit avec l'ID: {}", id);
 
-        Product product = productRepository.findById(id)
+        return catalogCache.getById(id)
                 .orElseThrow(() -> {
                     log.warn("Produit non trouvé avec l'ID: {}", id);
                     return new ProductNotFoundException("Produit non trouvé avec l'ID: " + id);
                 });
-
-        return productMapper.toDTO(product);
     }
 
 
-    @Transactional(readOnly = true)
     public ProductDTO getProductByNom(String nom) {
         log.info("Récupération du produit: {}", nom);
 
-        Product product = productRepository.findByNomAndActive(nom)
+        return catalogCache.getByNom(nom)
                 .orElseThrow(() -> {
                     log.warn("Produit non trouvé: {}", nom);
                     return new ProductNotFoundException("Produit non trouvé: " + nom);
                 });
-
-        return productMapper.toDTO(product);
     }
 
 
-    @Transactional(readOnly = true)
     public List<ProductDTO> getAllProducts() {
         log.info("Récupération de tous les produits actifs");
 
-        return productRepository.findAllActive()
-                .stream()
-                .map(productMapper::toDTO)
-                .collect(Collectors.toList());
+        return catalogCache.getAllActive();
     }
 
-    @Transactional(readOnly = true)
     public Page<ProductDTO> getAllProductsPaginated(Pageable pageable) {
         log.info("Récupération de tous les produits avec pagination");
 
-        return productRepository.findAllActivePaginated(pageable)
-                .map(productMapper::toDTO);
+        if (ProductPriceIndex.sortsByPrix(pageable)) {
+            Page<Long> ids = priceIndex.range(null, null, pageable);
+            return new PageImpl<>(catalogCache.getByIds(ids.getContent()), pageable, ids.getTotalElements());
+        }
+        return catalogCache.getActivePage(pageable)
+                .orElseGet(() -> productRepository.findAllActivePaginated(pageable).map(productMapper::toDTO));
     }
 
 
@@ -117,6 +138,7 @@ public class ProductService {
     @Transactional
     public ProductDTO updateProduct(Long id, ProductDTO productDTO) {
         log.info("Mise à jour du produit avec l'ID: {}", id);
+        changeHorizon.registerWriter();
 
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> {
@@ -125,25 +147,48 @@ public class ProductService {
                 });
 
         if (!product.getNom().equals(productDTO.getNom()) &&
-                productRepository.existsByNomAndActive(productDTO.getNom())) {
+                nomExists(productDTO.getNom())) {
             log.warn("Tentative de mise à jour avec un nom qui existe déjà: {}", productDTO.getNom());
             throw new ProductAlreadyExistsException(
                     "Un produit '" + productDTO.getNom() + "' existe déjà"
             );
         }
 
+        int stockLigne = product.getStock();
         productMapper.updateEntityFromDTO(productDTO, product);
 
+        // Le stock est fixé sous verrou par le dépôt (ligne ou tranches) : l'écart publié vers le
+        // disponible en mémoire part du stock réellement remplacé, pas de celui lu au chargement
+        product.setStock(stockLigne);
         Product updatedProduct = productRepository.save(product);
+        Integer ancienStock = productRepository.setStock(id, productDTO.getStock());
+        if (ancienStock == null) {
+            throw new InsufficientStockException(
+                    "Le stock du produit '" + product.getNom() + "' ne peut pas descendre sous les unités réservées");
+        }
+        int delta = productDTO.getStock() - ancienStock;
+        if (delta != 0) {
+            stockAvailability.addAfterCommit(Map.of(id, delta));
+        }
+        catalogCache.evictAfterCommit(id);
+        if (!updatedProduct.getDeleted()) {
+            searchIndex.indexAfterCommit(id, updatedProduct.getNom());
+            autocomplete.indexAfterCommit(id, updatedProduct.getNom());
+            priceIndex.indexAfterCommit(id, updatedProduct.getPrix());
+        }
         log.info("Produit mis à jour avec succès: ID={}", updatedProduct.getId());
 
-        return productMapper.toDTO(updatedProduct);
+        ProductDTO result = productMapper.toDTO(updatedProduct);
+        // L'entité ne voit pas le stock fixé en SQL
+        result.setStock(productDTO.getStock());
+        return result;
     }
 
 
     @Transactional
     public void deleteProduct(Long id) {
         log.info("Suppression du produit avec l'ID: {}", id);
+        changeHorizon.registerWriter();
 
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> {
@@ -153,6 +198,10 @@ public class ProductService {
 
         product.setDeleted(true);
         productRepository.save(product);
+        catalogCache.evictAfterCommit(id);
+        searchIndex.removeAfterCommit(id);
+        autocomplete.removeAfterCommit(id);
+        priceIndex.removeAfterCommit(id);
         log.info("Produit supprimé (soft delete) avec succès: ID={}", id);
     }
 
@@ -160,6 +209,7 @@ public class ProductService {
     @Transactional
     public void restoreProduct(Long id) {
         log.info("Restauration du produit avec l'ID: {}", id);
+        changeHorizon.registerWriter();
 
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> {
@@ -174,38 +224,61 @@ public class ProductService {
 
         product.setDeleted(false);
         productRepository.save(product);
+        catalogCache.evictAfterCommit(id);
+        searchIndex.indexAfterCommit(id, product.getNom());
+        autocomplete.indexAfterCommit(id, product.getNom());
+        priceIndex.indexAfterCommit(id, product.getPrix());
         log.info("Produit restauré avec succès: ID={}", id);
     }
 
 
-    @Transactional(readOnly = true)
     public List<ProductDTO> searchByNom(String terme) {
         log.info("Recherche de produits avec le terme: {}", terme);
 
-        return productRepository.searchByNom(terme)
-                .stream()
-                .map(productMapper::toDTO)
-                .collect(Collectors.toList());
+        return catalogCache.getByIds(searchIndex.search(terme));
     }
 
 
-    @Transactional(readOnly = true)
+    /**
+     * Complétions du préfixe, des produits les plus vendus aux moins vendus.
+     */
+    public List<String> autocomplete(String prefixe, int limit) {
+        return autocomplete.complete(prefixe, limit);
+    }
+
+
+    /**
+     * Résultats classés par pertinence (voir {@link ProductSearchIndex#search}) ;
+     * le tri éventuel du Pageable n'est pas appliqué.
+     */
     public Page<ProductDTO> searchByNomPaginated(String terme, Pageable pageable) {
         log.info("Recherche de produits avec le terme: {} (paginé)", terme);
 
-        return productRepository.searchByNomPaginated(terme, pageable)
-                .map(productMapper::toDTO);
+        List<Long> ids = searchIndex.search(terme);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(catalogCache.getByIds(ids), pageable, ids.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(catalogCache.getByIds(ids.subList(from, to)), pageable, ids.size());
     }
 
 
-    @Transactional(readOnly = true)
     public List<ProductDTO> getProductsByPriceRange(BigDecimal minPrix, BigDecimal maxPrix) {
         log.info("Recherche de produits entre {} et {}", minPrix, maxPrix);
 
-        return productRepository.findByPrixBetweenAndActive(minPrix, maxPrix)
-                .stream()
-                .map(productMapper::toDTO)
-                .collect(Collectors.toList());
+        return catalogCache.getByIds(priceIndex.range(minPrix, maxPrix));
+    }
+
+
+    /**
+     * Trié par prix (croissant, ou décroissant avec {@code sort=prix,desc}).
+     */
+    public Page<ProductDTO> getProductsByPriceRangePaginated(BigDecimal minPrix, BigDecimal maxPrix, Pageable pageable) {
+        log.info("Recherche de produits entre {} et {} (paginé)", minPrix, maxPrix);
+
+        Page<Long> ids = priceIndex.range(minPrix, maxPrix, pageable);
+        return new PageImpl<>(catalogCache.getByIds(ids.getContent()), pageable, ids.getTotalElements());
     }
 
 
@@ -231,49 +304,232 @@ public class ProductService {
     }
 
 
-    @Transactional(readOnly = true)
     public boolean hasEnoughStock(Long productId, Integer quantite) {
         log.debug("Vérification du stock: productId={}, quantite={}", productId, quantite);
 
-        Product product = productRepository.findById(productId)
+        int disponible = stockAvailability.getAvailable(productId)
                 .orElseThrow(() -> new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId));
 
-        return product.hasEnoughStock(quantite);
+        return disponible >= quantite;
     }
 
 
     @Transactional
     public void decrementStock(Long productId, Integer quantite) {
         log.info("Décrémentation du stock: productId={}, quantite={}", productId, quantite);
-
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId));
-
-        if (!product.hasEnoughStock(quantite)) {
-            log.error("Stock insuffisant: productId={}, stock={}, demande={}",
-                    productId, product.getStock(), quantite);
+        changeHorizon.registerWriter();
+
+        // Décrément gardé en SQL : sert aussi les produits en mode réparti
+        if (!productRepository.decrementStockIfAvailable(Map.of(productId, quantite)).isEmpty()) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId));
+            Integer disponible = productRepository.findAvailableStock(productId);
+            log.error("Stock insuffisant: productId={}, disponible={}, demande={}",
+                    productId, disponible, quantite);
             throw new InsufficientStockException(
                     "Stock insuffisant pour le produit '" + product.getNom() +
-                            "': " + product.getStock() + " disponibles, " + quantite + " demandé"
+                            "': " + disponible + " disponibles, " + quantite + " demandé"
             );
         }
 
-        product.decrementStock(quantite);
-        productRepository.save(product);
-        log.info("Stock décrémenté avec succès: productId={}, nouveau stock={}", productId, product.getStock());
+        stockAvailability.addAfterCommit(Map.of(productId, -quantite));
+        catalogCache.evictStockAfterCommit(List.of(productId));
+        log.info("Stock décrémenté avec succès: productId={}, quantite={}", productId, quantite);
     }
 
 
     @Transactional
     public void incrementStock(Long productId, Integer quantite) {
         log.info("Incrémentation du stock: productId={}, quantite={}", productId, quantite);
+        changeHorizon.registerWriter();
+
+        if (!productRepository.adjustStock(Map.of(productId, quantite)).isEmpty()) {
+            throw new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId);
+        }
+
+        stockAvailability.addAfterCommit(Map.of(productId, quantite));
+        catalogCache.evictStockAfterCommit(List.of(productId));
+        log.info("Stock incrémenté avec succès: productId={}, quantite={}", productId, quantite);
+    }
 
-        Product product = productRepository.findById(productId)
+
+    /**
+     * Passe le stock d'un produit en mode réparti sur {@code tranches} lignes, pour les produits
+     * très disputés (ventes flash) : les décréments se répartissent entre tranches au lieu de se
+     * sérialiser sur la ligne produit. Bascule à chaud, stock et réservé conservés.
+     */
+    @Transactional
+    public ProductDTO enableStockSlots(Long productId, int tranches) {
+        log.info("Passage du stock en mode réparti: productId={}, tranches={}", productId, tranches);
+        changeHorizon.registerWriter();
+
+        if (tranches < 2 || tranches > MAX_STOCK_SLOTS) {
+            throw new ProductBusinessException(
+                    "Le nombre de tranches doit être compris entre 2 et " + MAX_STOCK_SLOTS);
+        }
+        if (!productRepository.enableStockSlots(productId, tranches)) {
+            throw new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId);
+        }
+        catalogCache.evictAfterCommit(productId);
+        return productMapper.toDTO(findProduct(productId));
+    }
+
+    /**
+     * Rapatrie les tranches sur la ligne produit (mode ligne unique).
+     */
+    @Transactional
+    public ProductDTO disableStockSlots(Long productId) {
+        log.info("Retour du stock en mode ligne unique: productId={}", productId);
+        changeHorizon.registerWriter();
+
+        if (!productRepository.disableStockSlots(productId)) {
+            throw new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId);
+        }
+        catalogCache.evictAfterCommit(productId);
+        return productMapper.toDTO(findProduct(productId));
+    }
+
+    private Product findProduct(Long productId) {
+        return productRepository.findById(productId)
                 .orElseThrow(() -> new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId));
+    }
 
-        product.incrementStock(quantite);
-        productRepository.save(product);
-        log.info("Stock incrémenté avec succès: productId={}, nouveau stock={}", productId, product.getStock());
+
+    /**
+     * Produits créés, modifiés, supprimés ou restaurés après le jeton, par (updatedAt, id) croissant.
+     * Sans jeton, tout le catalogue. Le jeton renvoyé est à repasser tel quel au prochain appel,
+     * même quand la page est vide.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductDTO> getChangesSince(String since, int size) {
+        log.info("Récupération des modifications produits depuis le jeton (taille: {})", size);
+
+        if (size < 1 || size > MAX_CHANGES_PAGE_SIZE) {
+            throw new ProductBusinessException(
+                    "La taille de page doit être comprise entre 1 et " + MAX_CHANGES_PAGE_SIZE);
+        }
+        // Une ligne de plus que demandé pour savoir s'il reste des modifications
+        Limit limit = Limit.of(size + 1);
+        // Toute transaction qui peut encore dater une ligne avant l'horizon est déjà validée
+        LocalDateTime horizon = changeHorizon.current();
+
+        List<Product> products;
+        if (since == null || since.isEmpty()) {
+            products = productRepository.findChangesUntil(horizon, limit);
+        } else {
+            KeysetToken position = decodeToken(since);
+            products = productRepository.findChangesAfter(position.date(), position.id(), horizon, limit);
+        }
+
+        boolean hasNext = products.size() > size;
+        List<Product> page = hasNext ? products.subList(0, size) : products;
+        String nextToken = since;
+        if (!page.isEmpty()) {
+            Product last = page.get(page.size() - 1);
+            nextToken = new KeysetToken(last.getUpdatedAt(), last.getId()).encode();
+        }
+
+        return CursorPageDTO.<ProductDTO>builder()
+                .content(page.stream().map(productMapper::toDTO).collect(Collectors.toList()))
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextToken(nextToken)
+                .build();
+    }
+
+    private KeysetToken decodeToken(String token) {
+        try {
+            return KeysetToken.decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new ProductBusinessException("Jeton de synchronisation invalide", e);
+        }
+    }
+
+
+    /**
+     * Applique un lot d'ajustements de stock en une transaction, par UPDATE ensembliste (voir
+     * {@link com.smartshop.repositories.ProductStockRepository#adjustStock}).
+     * Les lignes qui laisseraient un stock disponible négatif, ou visant un produit inconnu,
+     * sont rejetées sans bloquer les autres. Plusieurs lignes d'un même produit sont cumulées
+     * et appliquées (ou rejetées) ensemble.
+     */
+    @Transactional
+    public StockBatchResultDTO adjustStockBatch(List<StockBatchDTO.StockAdjustmentDTO> lignes) {
+        log.info("Ajustement de stock par lot: {} lignes", lignes.size());
+        changeHorizon.registerWriter();
+
+        if (lignes.size() > MAX_STOCK_BATCH_SIZE) {
+            throw new ProductBusinessException(
+                    "Un lot ne peut pas dépasser " + MAX_STOCK_BATCH_SIZE + " ajustements");
+        }
+
+        // Les lignes d'un même produit sont cumulées en un seul UPDATE
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (StockBatchDTO.StockAdjustmentDTO ligne : lignes) {
+            try {
+                deltas.merge(ligne.getProductId(), ligne.getDelta(), Math::addExact);
+            } catch (ArithmeticException e) {
+                throw new ProductBusinessException("Le cumul des ajustements du produit ID=" + ligne.getProductId() +
+                        " dépasse la limite d'un ajustement (" + Integer.MAX_VALUE + " unités)", e);
+            }
+        }
+
+        Set<Long> rejetes = new HashSet<>(productRepository.adjustStock(deltas));
+        Map<Long, Integer> stocksRejetes = new HashMap<>();
+        if (!rejetes.isEmpty()) {
+            for (Object[] row : productRepository.findStockByIds(rejetes)) {
+                stocksRejetes.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+        }
+
+        Map<Long, Integer> appliques = new HashMap<>(deltas);
+        appliques.keySet().removeAll(rejetes);
+        stockAvailability.addAfterCommit(appliques);
+        catalogCache.evictStockAfterCommit(appliques.keySet());
+
+        List<StockBatchResultDTO.LigneResultat> resultats = new ArrayList<>(lignes.size());
+        int rejetees = 0;
+        for (StockBatchDTO.StockAdjustmentDTO ligne : lignes) {
+            StockBatchResultDTO.LigneResultat.LigneResultatBuilder resultat = StockBatchResultDTO.LigneResultat.builder()
+                    .productId(ligne.getProductId())
+                    .delta(ligne.getDelta());
+            if (!rejetes.contains(ligne.getProductId())) {
+                resultat.statut(StockBatchResultDTO.Statut.APPLIQUE);
+            } else if (stocksRejetes.containsKey(ligne.getProductId())) {
+                rejetees++;
+                resultat.statut(StockBatchResultDTO.Statut.STOCK_INSUFFISANT)
+                        .message("Stock disponible insuffisant: stock actuel " + stocksRejetes.get(ligne.getProductId()));
+            } else {
+                rejetees++;
+                resultat.statut(StockBatchResultDTO.Statut.PRODUIT_INTROUVABLE)
+                        .message("Produit non trouvé avec l'ID: " + ligne.getProductId());
+            }
+            resultats.add(resultat.build());
+        }
+
+        log.info("Ajustement de stock par lot terminé: {} appliquées, {} rejetées",
+                lignes.size() - rejetees, rejetees);
+        return StockBatchResultDTO.builder()
+                .appliquees(lignes.size() - rejetees)
+                .rejetees(rejetees)
+                .lignes(resultats)
+                .build();
+    }
+
+
+    /**
+     * Produits les plus vendus, lus dans les compteurs de ventes (aucune requête).
+     */
+    public List<ProductSalesDTO> getTopSellingProducts(int limit, SalesPeriod periode) {
+        if (limit < 1 || limit > ProductSalesCounters.TOP_K) {
+            throw new ProductBusinessException(
+                    "La limite doit être comprise entre 1 et " + ProductSalesCounters.TOP_K);
+        }
+        return salesCounters.top(limit, periode);
+    }
+
+    public ProductSalesDTO getProductSales(Long productId, SalesPeriod periode) {
+        return salesCounters.getSales(productId, periode);
     }
 
 
@@ -282,6 +538,11 @@ public class ProductService {
         return productRepository.existsById(id);
     }
 
+    // Unicité parmi les produits actifs, sans contrainte en base : toujours vérifiée par requête
+    private boolean nomExists(String nom) {
+        return productRepository.existsByNomAndActive(nom);
+    }
+
 
     @Transactional(readOnly = true)
     public long countActiveProducts() {
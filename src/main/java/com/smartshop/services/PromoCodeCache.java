@@ -0,0 +1,167 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.PromoCode;
+import com.smartshop.repositories.PromoCodeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table en mémoire des codes promo, par code, pour la validation et la commande.
+ * <ul>
+ *   <li>les codes existants, tenus par PromoCodeSpace (bitset de l'espace PROMO-XXXX et codes hors
+ *       format, relevés périodiquement) : un code absent est refusé sans requête ;</li>
+ *   <li>le détail des codes lus (actif, expiration, plafond et utilisations), gardé une durée courte :
+ *       isValid() est évalué sur ces valeurs ;</li>
+ *   <li>les codes connus mais introuvables en base (supprimés par une autre instance),
+ *       mémorisés en négatif pour une durée courte.</li>
+ * </ul>
+ * Les écritures de PromoCodeService et les utilisations comptées par cette instance retirent le détail
+ * après validation de leur transaction. Celles des autres instances sont vues au plus tard après la durée
+ * du détail ; un code créé par une autre instance est refusé comme inconnu jusqu'au relevé
+ * suivant de PromoCodeSpace (refresh-ms). Le plafond d'utilisations reste arbitré par la base (PromoCodeRedemptions).
+ * Les valeurs rendues sont des copies détachées : les modifier ne touche ni le cache ni la base.
+ */
+@Component
+public class PromoCodeCache {
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final PromoCodeSpace promoCodeSpace;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    // Détail des codes lus, avec leur date de lecture (System.nanoTime)
+    private final Map<String, Loaded> found = new ConcurrentHashMap<>();
+    // Codes connus mais introuvables en base, avec leur date de lecture (System.nanoTime)
+    private final Map<String, Long> missing = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter lookups;
+    private final Counter negativeHits;
+    private final Counter unknown;
+
+    public PromoCodeCache(PromoCodeRepository promoCodeRepository,
+                          PromoCodeSpace promoCodeSpace,
+                          MeterRegistry meterRegistry,
+                          @Value("${smartshop.promo-codes.cache.ttl:PT5S}") Duration ttl,
+                          @Value("${smartshop.promo-codes.cache.negative-ttl:PT30S}") Duration negativeTtl) {
+        this.promoCodeRepository = promoCodeRepository;
+        this.promoCodeSpace = promoCodeSpace;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+
+        this.hits = requests(meterRegistry, "hit");
+        this.lookups = requests(meterRegistry, "lookup");
+        this.negativeHits = requests(meterRegistry, "negative");
+        this.unknown = requests(meterRegistry, "unknown");
+        Gauge.builder("smartshop.promo-codes.cache.codes", promoCodeSpace, PromoCodeSpace::known)
+                .register(meterRegistry);
+    }
+
+    public Optional<PromoCode> find(String code) {
+        if (!promoCodeSpace.mayExist(code)) {
+            unknown.increment();
+            return Optional.empty();
+        }
+
+        Loaded charge = found.get(code);
+        if (charge != null && System.nanoTime() - charge.loadedAt() < ttlNanos) {
+            hits.increment();
+            return Optional.of(copy(charge.promoCode()));
+        }
+
+        Long absentDepuis = missing.get(code);
+        if (absentDepuis != null && System.nanoTime() - absentDepuis < negativeTtlNanos) {
+            negativeHits.increment();
+            return Optional.empty();
+        }
+
+        lookups.increment();
+        long gen = generation.get();
+        Optional<PromoCode> promoCode = promoCodeRepository.findByCode(code);
+        if (promoCode.isPresent()) {
+            missing.remove(code);
+            if (generation.get() == gen) {
+                found.put(code, new Loaded(copy(promoCode.get()), System.nanoTime()));
+            }
+        } else if (generation.get() == gen) {
+            missing.put(code, System.nanoTime());
+        }
+        return promoCode.map(PromoCodeCache::copy);
+    }
+
+    /**
+     * Création, modification, suppression : détail et entrée négative des deux codes oubliés
+     * (les codes connus sont tenus à jour par PromoCodeSpace). Un des deux peut être null.
+     */
+    public void changedAfterCommit(String ancienCode, String nouveauCode) {
+        TransactionCallbacks.afterCommit(() -> {
+            generation.incrementAndGet();
+            if (ancienCode != null) {
+                found.remove(ancienCode);
+                missing.remove(ancienCode);
+            }
+            if (nouveauCode != null) {
+                found.remove(nouveauCode);
+                missing.remove(nouveauCode);
+            }
+        });
+    }
+
+    /**
+     * Lot de codes créés : déjà connus de PromoCodeSpace dès leur tirage, un code cherché avant
+     * la validation a pu être mémorisé en négatif.
+     */
+    public void createdAfterCommit(Collection<String> nouveauxCodes) {
+        TransactionCallbacks.afterCommit(() -> {
+            generation.incrementAndGet();
+            if (!missing.isEmpty()) {
+                nouveauxCodes.forEach(missing::remove);
+            }
+        });
+    }
+
+    /**
+     * Utilisation comptée : le détail du code (nombre d'utilisations) est relu après validation.
+     */
+    public void usedAfterCommit(String code) {
+        TransactionCallbacks.afterCommit(() -> {
+            generation.incrementAndGet();
+            found.remove(code);
+        });
+    }
+
+    private static PromoCode copy(PromoCode source) {
+        return PromoCode.builder()
+                .id(source.getId())
+                .code(source.getCode())
+                .active(source.getActive())
+                .discountPercentage(source.getDiscountPercentage())
+                .createdAt(source.getCreatedAt())
+                .updatedAt(source.getUpdatedAt())
+                .expiresAt(source.getExpiresAt())
+                .maxUses(source.getMaxUses())
+                .usesCount(source.getUsesCount())
+                .description(source.getDescription())
+                .build();
+    }
+
+    private record Loaded(PromoCode promoCode, long loadedAt) {
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("smartshop.promo-codes.cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,88 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.PromoCode;
+import com.smartshop.repositories.PromoCodeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Comptage des utilisations de codes promo, sans lecture-modification-écriture de la ligne.
+ * <ul>
+ *   <li>code plafonné (max_uses) : UPDATE conditionnel, la base arbitre les commandes concurrentes ;</li>
+ *   <li>code sans plafond, si smartshop.promo-codes.striped-counter est activé : compteur en mémoire
+ *       réparti (LongAdder), versé en base périodiquement. Aucune commande n'attend sur la ligne du code ;
+ *       un arrêt brutal perd au plus les utilisations d'un intervalle.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class PromoCodeRedemptions {
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean stripedCounter;
+
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public PromoCodeRedemptions(PromoCodeRepository promoCodeRepository,
+                                CatalogVersion catalogVersion,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${smartshop.promo-codes.striped-counter:false}") boolean stripedCounter) {
+        this.promoCodeRepository = promoCodeRepository;
+        this.catalogVersion = catalogVersion;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.stripedCounter = stripedCounter;
+    }
+
+    /**
+     * Compte une utilisation dans la transaction courante.
+     * Renvoie false si le code n'est plus utilisable (plafond atteint, désactivé ou expiré entre-temps).
+     */
+    public boolean redeem(PromoCode promoCode) {
+        if (promoCode.getMaxUses() == null && stripedCounter) {
+            TransactionCallbacks.afterCommit(() ->
+                    pending.computeIfAbsent(promoCode.getId(), id -> new LongAdder()).increment());
+            return true;
+        }
+        return promoCodeRepository.redeem(promoCode.getId(), LocalDateTime.now()) == 1;
+    }
+
+    /**
+     * Utilisations acceptées mais pas encore versées en base
+     */
+    public long pendingUses(Long promoCodeId) {
+        LongAdder compteur = pending.get(promoCodeId);
+        return compteur != null ? compteur.sum() : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${smartshop.promo-codes.flush-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long utilisations = entry.getValue().sumThenReset();
+            if (utilisations == 0) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> promoCodeRepository.addUses(
+                        entry.getKey(), Math.toIntExact(utilisations), LocalDateTime.now()));
+                catalogVersion.promoCodesChanged();
+            } catch (RuntimeException e) {
+                // Remis en attente pour le prochain passage
+                entry.getValue().add(utilisations);
+                log.error("Échec du versement de {} utilisations du code promo ID={}", utilisations, entry.getKey(), e);
+            }
+        }
+    }
+}
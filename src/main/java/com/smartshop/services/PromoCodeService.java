@@ -1,7 +1,10 @@
 package com.smartshop.services;
 
 
+import com.smartshop.dtos.PromoCodeBatchDTO;
+import com.smartshop.dtos.PromoCodeBatchResultDTO;
 import com.smartshop.dtos.PromoCodeDto;
+import com.smartshop.dtos.PromoCodeSpaceDTO;
 import com.smartshop.entity.PromoCode;
 import com.smartshop.exceptions.PromocodeNotFoundException;
 import com.smartshop.exceptions.PromocodeAlreadyExistsException;
@@ -11,19 +14,30 @@ import com.smartshop.mappers.PromoCodeMapper;
 import com.smartshop.repositories.PromoCodeRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.smartshop.services.UniquenessGuard.KeySpace.PROMO_CODE;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class PromoCodeService {
 
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+
     private final PromoCodeRepository promoCodeRepository;
     private final PromoCodeMapper promoCodeMapper;
+    private final CatalogVersion catalogVersion;
+    private final PromoCodeCache promoCodeCache;
+    private final PromoCodeSpace promoCodeSpace;
+    private final UniquenessGuard uniquenessGuard;
 
     @Transactional
     public PromoCodeDto createPromoCode(PromoCodeDto promoCodeDTO) {
@@ -32,7 +46,7 @@ public class PromoCodeService {
         validatePromoCodeData(promoCodeDTO);
 
 
-        if (promoCodeRepository.existsByCode(promoCodeDTO.getCode())) {
+        if (codeExists(promoCodeDTO.getCode())) {
             log.warn("Tentative de création avec un code qui existe déjà: {}", promoCodeDTO.getCode());
             throw new PromocodeAlreadyExistsException(
                     "Un code promo '" + promoCodeDTO.getCode() + "' existe déjà"
@@ -42,13 +56,88 @@ public class PromoCodeService {
         PromoCode promoCode = promoCodeMapper.toEntity(promoCodeDTO);
         promoCode.setActive(true);
 
-        PromoCode savedPromoCode = promoCodeRepository.save(promoCode);
+        uniquenessGuard.add(PROMO_CODE, promoCode.getCode());
+        PromoCode savedPromoCode;
+        try {
+            savedPromoCode = promoCodeRepository.saveAndFlush(promoCode);
+        } catch (DataIntegrityViolationException e) {
+            // Créé entre-temps par une autre instance, que le filtre d'unicité ne connaissait pas encore
+            log.warn("Code promo créé entre-temps: {}", promoCodeDTO.getCode());
+            throw new PromocodeAlreadyExistsException(
+                    "Un code promo '" + promoCodeDTO.getCode() + "' existe déjà", e
+            );
+        }
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.changedAfterCommit(null, savedPromoCode.getCode());
+        promoCodeSpace.markTakenAfterCommit(savedPromoCode.getCode());
         log.info("Code promo créé avec succès: ID={}, code={}", savedPromoCode.getId(), savedPromoCode.getCode());
 
         return promoCodeMapper.toDTO(savedPromoCode);
     }
 
 
+    /**
+     * Génère un lot de codes tirés au hasard parmi les codes libres de l'espace PROMO-XXXX,
+     * insérés en lots JDBC. Aucun test d'existence : le bitset de PromoCodeSpace écarte les codes pris.
+     */
+    @Transactional
+    public PromoCodeBatchResultDTO generatePromoCodes(PromoCodeBatchDTO batchDTO) {
+        log.info("Génération d'un lot de {} codes promo à {}%", batchDTO.getNombre(), batchDTO.getDiscountPercentage());
+
+        if (batchDTO.getExpiresAt() != null && !batchDTO.getExpiresAt().isAfter(LocalDateTime.now())) {
+            throw new PromocodeBusinessException("La date d'expiration doit être dans le futur");
+        }
+
+        List<String> codes = new ArrayList<>(promoCodeSpace.allocate(batchDTO.getNombre()));
+        List<String> tires = new ArrayList<>(codes);
+        // Transaction annulée : les codes insérés retournent dans l'espace libre, pas ceux pris ailleurs
+        TransactionCallbacks.afterCommit(() -> promoCodeSpace.settle(tires, List.of()));
+        TransactionCallbacks.afterRollback(() -> promoCodeSpace.settle(tires, codes));
+
+        List<String> aInserer = codes;
+        for (int tentative = 1; ; tentative++) {
+            uniquenessGuard.addAll(PROMO_CODE, aInserer);
+            List<String> dejaPris = promoCodeRepository.insertCodes(aInserer, batchDTO.getDiscountPercentage(),
+                    batchDTO.getMaxUses(), batchDTO.getExpiresAt(), batchDTO.getDescription());
+            if (dejaPris.isEmpty()) {
+                break;
+            }
+            if (tentative == MAX_BATCH_ATTEMPTS) {
+                throw new PromocodeBusinessException("Impossible de générer le lot: " + dejaPris.size() +
+                        " codes encore pris par une autre instance après " + tentative + " tentatives");
+            }
+            // Codes créés entre-temps par une autre instance : espace relevé, codes retirés
+            log.warn("{} codes du lot déjà pris par une autre instance, nouveau tirage", dejaPris.size());
+            promoCodeSpace.refresh();
+            aInserer = promoCodeSpace.allocate(dejaPris.size());
+            tires.addAll(aInserer);
+            codes.removeAll(dejaPris);
+            codes.addAll(aInserer);
+        }
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.createdAfterCommit(codes);
+
+        PromoCodeSpaceDTO espace = getPromoCodeSpace();
+        log.info("Lot de {} codes promo généré, espace rempli à {}%", codes.size(),
+                String.format("%.2f", espace.getTauxRemplissage() * 100));
+        return PromoCodeBatchResultDTO.builder()
+                .generes(codes.size())
+                .codes(codes)
+                .espace(espace)
+                .build();
+    }
+
+    public PromoCodeSpaceDTO getPromoCodeSpace() {
+        long utilises = promoCodeSpace.used();
+        long capacite = promoCodeSpace.capacity();
+        return PromoCodeSpaceDTO.builder()
+                .utilises(utilises)
+                .libres(capacite - utilises)
+                .capacite(capacite)
+                .tauxRemplissage((double) utilises / capacite)
+                .build();
+    }
+
     @Transactional(readOnly = true)
     public PromoCodeDto getPromoCodeById(Long id) {
         log.info("Récupération du code promo avec l'ID: {}", id);
@@ -132,18 +221,34 @@ public class PromoCodeService {
                 });
 
         if (!promoCode.getCode().equals(promoCodeDTO.getCode()) &&
-                promoCodeRepository.existsByCode(promoCodeDTO.getCode())) {
+                codeExists(promoCodeDTO.getCode())) {
             log.warn("Tentative de mise à jour avec un code qui existe déjà: {}", promoCodeDTO.getCode());
             throw new PromocodeAlreadyExistsException(
                     "Un code promo '" + promoCodeDTO.getCode() + "' existe déjà"
             );
         }
 
+        String ancienCode = promoCode.getCode();
         promoCode.setCode(promoCodeDTO.getCode());
         promoCode.setActive(promoCodeDTO.getActive());
         promoCode.setDiscountPercentage(promoCodeDTO.getDiscountPercentage());
 
-        PromoCode updatedPromoCode = promoCodeRepository.save(promoCode);
+        uniquenessGuard.add(PROMO_CODE, promoCode.getCode());
+        PromoCode updatedPromoCode;
+        try {
+            updatedPromoCode = promoCodeRepository.saveAndFlush(promoCode);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Code promo créé entre-temps: {}", promoCodeDTO.getCode());
+            throw new PromocodeAlreadyExistsException(
+                    "Un code promo '" + promoCodeDTO.getCode() + "' existe déjà", e
+            );
+        }
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.changedAfterCommit(ancienCode, updatedPromoCode.getCode());
+        if (!ancienCode.equals(updatedPromoCode.getCode())) {
+            promoCodeSpace.releaseAfterCommit(ancienCode);
+            promoCodeSpace.markTakenAfterCommit(updatedPromoCode.getCode());
+        }
         log.info("Code promo mis à jour avec succès: ID={}", updatedPromoCode.getId());
 
         return promoCodeMapper.toDTO(updatedPromoCode);
@@ -161,6 +266,9 @@ public class PromoCodeService {
                 });
 
         promoCodeRepository.delete(promoCode);
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.changedAfterCommit(promoCode.getCode(), null);
+        promoCodeSpace.releaseAfterCommit(promoCode.getCode());
         log.info("Code promo supprimé avec succès: ID={}", id);
     }
 
@@ -181,6 +289,8 @@ public class PromoCodeService {
 
         promoCode.setActive(true);
         promoCodeRepository.save(promoCode);
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.changedAfterCommit(promoCode.getCode(), promoCode.getCode());
         log.info("Code promo activé avec succès: ID={}", id);
     }
 
@@ -201,14 +311,19 @@ public class PromoCodeService {
 
         promoCode.setActive(false);
         promoCodeRepository.save(promoCode);
+        catalogVersion.promoCodesChangedAfterCommit();
+        promoCodeCache.changedAfterCommit(promoCode.getCode(), promoCode.getCode());
         log.info("Code promo désactivé avec succès: ID={}", id);
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Validation servie par la table en mémoire : un code inconnu est refusé sans requête,
+     * un code connu est évalué sur son détail gardé quelques secondes.
+     */
     public Integer validatePromoCodeAndGetDiscount(String code) {
         log.info("Validation du code promo: {}", code);
 
-        PromoCode promoCode = promoCodeRepository.findByCode(code)
+        PromoCode promoCode = promoCodeCache.find(code)
                 .orElseThrow(() -> {
                     log.warn("Code promo non trouvé: {}", code);
                     return new PromocodeNotFoundException("Code promo non trouvé: " + code);
@@ -225,7 +340,11 @@ public class PromoCodeService {
 
     @Transactional(readOnly = true)
     public boolean existsByCode(String code) {
-        return promoCodeRepository.existsByCode(code);
+        return codeExists(code);
+    }
+
+    private boolean codeExists(String code) {
+        return uniquenessGuard.exists(PROMO_CODE, code, () -> promoCodeRepository.existsByCode(code));
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,335 @@
+package com.smartshop.services;
+
+import com.smartshop.exceptions.PromocodeBusinessException;
+import com.smartshop.repositories.PromoCodeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Espace des codes PROMO-XXXX (36^4 = 1 679 616 codes) et bitset des codes pris, pour la génération par lot.
+ * <p>
+ * Un lot parcourt une permutation pseudo-aléatoire de l'espace (Feistel à clés tirées pour chaque lot,
+ * ramené à l'espace par cycle-walking) et saute les codes déjà pris : pas de requête d'existence,
+ * pas de collision dans le lot, et des codes consécutifs d'un lot ne se devinent pas l'un l'autre.
+ * Les codes hors format (saisis à la création) sont gardés à part : l'ensemble sert aussi de table
+ * des codes connus à PromoCodeCache ({@link #mayExist(String)}).
+ * <p>
+ * La contrainte unique de promo_codes.code reste l'arbitre face aux autres instances. Leurs codes sont
+ * relevés toutes les {@code smartshop.promo-codes.refresh-ms} par les lignes modifiées depuis le relevé
+ * précédent (moins {@link #REFRESH_OVERLAP}) ; la table entière n'est relue que toutes les
+ * {@code smartshop.promo-codes.full-reload-ms}, ce qui oublie les codes supprimés ailleurs.
+ * Un code pris à l'insertion est remplacé par PromoCodeService après un relevé.
+ * <p>
+ * Les codes tirés par un lot dont la transaction est en cours restent pris à travers les rechargements,
+ * jusqu'à {@link #settle} : ils ne sont ni redonnés à un autre lot, ni libérés à tort par son annulation.
+ */
+@Component
+@Slf4j
+public class PromoCodeSpace {
+
+    static final String PREFIX = "PROMO-";
+    static final int CAPACITY = 36 * 36 * 36 * 36;
+
+    // Marge du relevé : écritures validées après leur date, horloges des instances décalées
+    static final Duration REFRESH_OVERLAP = Duration.ofMinutes(5);
+
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    // Domaine du Feistel : 2^22 >= CAPACITY, deux moitiés de 11 bits
+    private static final int HALF_BITS = 11;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final PromoCodeRepository promoCodeRepository;
+    private final long fullReloadNanos;
+    private final SecureRandom random = new SecureRandom();
+
+    // Protège aussi lastRefresh et lastFullLoad
+    private final Object loadLock = new Object();
+    private LocalDateTime lastRefresh;
+    private long lastFullLoad;
+
+    private volatile long[] taken;
+    private int used;
+    private Set<String> others = new HashSet<>();
+    // Tirés par un lot pas encore terminé
+    private final Set<Integer> inFlight = new HashSet<>();
+    // Codes pris localement pendant la lecture de la base, reportés sur le bitset rechargé
+    private boolean loading;
+    private final List<Integer> takenDuringLoad = new ArrayList<>();
+    private final List<String> othersDuringLoad = new ArrayList<>();
+
+    public PromoCodeSpace(PromoCodeRepository promoCodeRepository,
+                          @Value("${smartshop.promo-codes.full-reload-ms:3600000}") long fullReloadMs) {
+        this.promoCodeRepository = promoCodeRepository;
+        this.fullReloadNanos = Duration.ofMillis(fullReloadMs).toNanos();
+    }
+
+    /**
+     * Relève les codes modifiés depuis le relevé précédent, ou recharge tout au premier passage
+     * et une fois full-reload-ms écoulé. Un relevé ne fait qu'ajouter des codes pris.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${smartshop.promo-codes.refresh-ms:60000}",
+            initialDelayString = "${smartshop.promo-codes.refresh-ms:60000}")
+    public void refresh() {
+        synchronized (loadLock) {
+            if (taken == null || System.nanoTime() - lastFullLoad >= fullReloadNanos) {
+                load();
+                return;
+            }
+            LocalDateTime debut = LocalDateTime.now();
+            List<String> codes = promoCodeRepository.findCodesUpdatedSince(lastRefresh.minus(REFRESH_OVERLAP));
+            int pris;
+            synchronized (this) {
+                codes.forEach(this::markTaken);
+                pris = used;
+            }
+            lastRefresh = debut;
+            log.debug("Espace des codes promo relevé: {} code(s) modifié(s), {} / {} codes pris",
+                    codes.size(), pris, CAPACITY);
+        }
+    }
+
+    /**
+     * Recharge les codes pris depuis la base. Lue hors du verrou : les allocations continuent
+     * pendant la lecture et sont reportées sur le nouveau bitset, comme les lots en cours.
+     */
+    public void load() {
+        synchronized (loadLock) {
+            synchronized (this) {
+                loading = true;
+                takenDuringLoad.clear();
+                othersDuringLoad.clear();
+            }
+            LocalDateTime debut = LocalDateTime.now();
+            long debutNanos = System.nanoTime();
+            long[] bits = new long[(CAPACITY + 63) / 64];
+            Set<String> horsFormat = new HashSet<>();
+            int count = 0;
+            try {
+                for (String code : promoCodeRepository.findAllCodes()) {
+                    int index = indexOf(code);
+                    if (index >= 0) {
+                        count += set(bits, index);
+                    } else {
+                        horsFormat.add(code);
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    loading = false;
+                }
+            }
+            synchronized (this) {
+                for (int index : takenDuringLoad) {
+                    count += set(bits, index);
+                }
+                for (int index : inFlight) {
+                    count += set(bits, index);
+                }
+                horsFormat.addAll(othersDuringLoad);
+                takenDuringLoad.clear();
+                othersDuringLoad.clear();
+                taken = bits;
+                used = count;
+                others = horsFormat;
+            }
+            lastRefresh = debut;
+            lastFullLoad = debutNanos;
+            log.debug("Espace des codes promo chargé: {} / {} codes pris", count, CAPACITY);
+        }
+    }
+
+    /**
+     * Réserve {@code nombre} codes libres, tirés dans une nouvelle permutation de l'espace.
+     */
+    public List<String> allocate(int nombre) {
+        ensureLoaded();
+        int[] keys = new int[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            keys[i] = random.nextInt();
+        }
+
+        synchronized (this) {
+            if (nombre > CAPACITY - used) {
+                throw new PromocodeBusinessException("Espace de codes insuffisant: " + (CAPACITY - used) +
+                        " codes libres pour " + nombre + " demandés");
+            }
+            List<String> codes = new ArrayList<>(nombre);
+            for (int position = 0; codes.size() < nombre && position < CAPACITY; position++) {
+                int index = permute(position, keys);
+                if (take(index)) {
+                    inFlight.add(index);
+                    codes.add(codeOf(index));
+                }
+            }
+            return codes;
+        }
+    }
+
+    public synchronized void markTaken(String code) {
+        if (taken == null) {
+            return;
+        }
+        int index = indexOf(code);
+        if (index >= 0) {
+            take(index);
+        } else if (others.add(code) && loading) {
+            othersDuringLoad.add(code);
+        }
+    }
+
+    public synchronized void release(Collection<String> codes) {
+        if (taken == null) {
+            return;
+        }
+        for (String code : codes) {
+            int index = indexOf(code);
+            if (index < 0) {
+                others.remove(code);
+                othersDuringLoad.remove(code);
+            } else if ((taken[index >>> 6] & (1L << index)) != 0) {
+                taken[index >>> 6] &= ~(1L << index);
+                used--;
+                takenDuringLoad.remove(Integer.valueOf(index));
+            }
+        }
+    }
+
+    /**
+     * Fin de la transaction d'un lot : tous les codes tirés quittent les lots en cours,
+     * ceux de {@code rendus} (lot annulé) retournent dans l'espace libre.
+     */
+    public synchronized void settle(Collection<String> tires, Collection<String> rendus) {
+        release(rendus);
+        for (String code : tires) {
+            inFlight.remove(indexOf(code));
+        }
+    }
+
+    /**
+     * Faux seulement si le code n'existe sûrement pas : absent des codes connus, une fois chargés.
+     * Un code tiré par un lot encore en cours est donné comme existant.
+     */
+    public synchronized boolean mayExist(String code) {
+        if (taken == null) {
+            return true;
+        }
+        int index = indexOf(code);
+        return index >= 0 ? (taken[index >>> 6] & (1L << index)) != 0 : others.contains(code);
+    }
+
+    public void markTakenAfterCommit(String code) {
+        TransactionCallbacks.afterCommit(() -> markTaken(code));
+    }
+
+    public void releaseAfterCommit(String code) {
+        TransactionCallbacks.afterCommit(() -> release(List.of(code)));
+    }
+
+    public int used() {
+        ensureLoaded();
+        synchronized (this) {
+            return used;
+        }
+    }
+
+    public synchronized int known() {
+        return taken == null ? 0 : used + others.size();
+    }
+
+    public int capacity() {
+        return CAPACITY;
+    }
+
+    // Hors du moniteur : refresh() prend loadLock puis ce moniteur
+    private void ensureLoaded() {
+        if (taken == null) {
+            refresh();
+        }
+    }
+
+    private boolean take(int index) {
+        if (set(taken, index) == 0) {
+            return false;
+        }
+        used++;
+        if (loading) {
+            takenDuringLoad.add(index);
+        }
+        return true;
+    }
+
+    // 1 si le bit vient d'être posé, 0 s'il l'était déjà ou si le code est hors format
+    private static int set(long[] bits, int index) {
+        if (index < 0 || (bits[index >>> 6] & (1L << index)) != 0) {
+            return 0;
+        }
+        bits[index >>> 6] |= 1L << index;
+        return 1;
+    }
+
+    // Position → index de code : bijection sur [0, CAPACITY) (cycle-walking sur le Feistel de 22 bits)
+    static int permute(int position, int[] keys) {
+        int x = position;
+        do {
+            x = feistel(x, keys);
+        } while (x >= CAPACITY);
+        return x;
+    }
+
+    private static int feistel(int x, int[] keys) {
+        int left = x >>> HALF_BITS;
+        int right = x & HALF_MASK;
+        for (int key : keys) {
+            int next = left ^ (round(right, key) & HALF_MASK);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static int round(int value, int key) {
+        int h = (value ^ key) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    static int indexOf(String code) {
+        if (code == null || code.length() != PREFIX.length() + 4 || !code.startsWith(PREFIX)) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = PREFIX.length(); i < code.length(); i++) {
+            int chiffre = ALPHABET.indexOf(code.charAt(i));
+            if (chiffre < 0) {
+                return -1;
+            }
+            index = index * 36 + chiffre;
+        }
+        return index;
+    }
+
+    static String codeOf(int index) {
+        char[] chiffres = new char[4];
+        for (int i = 3; i >= 0; i--) {
+            chiffres[i] = ALPHABET.charAt(index % 36);
+            index /= 36;
+        }
+        return PREFIX + new String(chiffres);
+    }
+}
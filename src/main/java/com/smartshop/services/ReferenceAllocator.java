@@ -0,0 +1,102 @@
+package com.smartshop.services;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Year;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Attribution des numéros de référence (commandes, paiements) à partir de séquences PostgreSQL.
+ * Chaque appel à nextval réserve un bloc de {@code blockSize} numéros (optimisation hi/lo) :
+ * les références sont ensuite distribuées en mémoire, sans requête par commande.
+ * Tous les nœuds doivent partager la même taille de bloc ; un redémarrage laisse un trou
+ * dans la numérotation, jamais un doublon.
+ * <p>
+ * Les séquences sont créées à l'initialisation du bean, après le schéma Hibernate (table orders)
+ * et avant que le serveur web n'accepte des requêtes.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class ReferenceAllocator {
+
+    public static final String ORDER_SEQUENCE = "order_reference_seq";
+    public static final String PAYMENT_SEQUENCE = "payment_reference_seq";
+
+    // Les noms de séquence entrent dans le DDL, qui ne prend pas de paramètres
+    private static final Pattern SEQUENCE_NAME = Pattern.compile("[a-z][a-z0-9_]*");
+
+    private static final String SEQUENCE_INCREMENT_SQL =
+            "SELECT increment FROM information_schema.sequences " +
+                    "WHERE sequence_schema = CURRENT_SCHEMA AND LOWER(sequence_name) = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public ReferenceAllocator(JdbcTemplate jdbcTemplate,
+                              @Value("${smartshop.reference.block-size:50}") int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = blockSize;
+    }
+
+    @PostConstruct
+    public void initSequences() {
+        // Reprend après la plus grande référence CMD-yyyy-NNNNN déjà attribuée
+        Long nextOrderNumber = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(CAST(SUBSTRING(reference FROM 10) AS BIGINT)), 0) + 1 " +
+                        "FROM orders WHERE reference ~ '^CMD-[0-9]{4}-[0-9]+$'", Long.class);
+        createSequenceIfMissing(ORDER_SEQUENCE, nextOrderNumber);
+        createSequenceIfMissing(PAYMENT_SEQUENCE, 1L);
+    }
+
+    public String nextOrderReference() {
+        return String.format("CMD-%d-%05d", Year.now().getValue(), next(ORDER_SEQUENCE));
+    }
+
+    public long nextPaymentNumber() {
+        return next(PAYMENT_SEQUENCE);
+    }
+
+    long next(String sequence) {
+        Block block = blocks.computeIfAbsent(sequence, s -> new Block());
+        synchronized (block) {
+            if (block.next >= block.limit) {
+                Long hi = jdbcTemplate.queryForObject("SELECT nextval(?)", Long.class, sequence);
+                block.next = hi;
+                block.limit = hi + blockSize;
+                log.debug("Nouveau bloc réservé sur {}: [{}, {})", sequence, block.next, block.limit);
+            }
+            return block.next++;
+        }
+    }
+
+    private void createSequenceIfMissing(String sequence, long startWith) {
+        if (!SEQUENCE_NAME.matcher(sequence).matches()) {
+            throw new IllegalArgumentException("Nom de séquence invalide: " + sequence);
+        }
+        List<String> increment = jdbcTemplate.queryForList(SEQUENCE_INCREMENT_SQL, String.class, sequence);
+        if (increment.isEmpty()) {
+            jdbcTemplate.execute(String.format("CREATE SEQUENCE IF NOT EXISTS %s START WITH %d INCREMENT BY %d",
+                    sequence, startWith, blockSize));
+        } else if (Long.parseLong(increment.get(0)) != blockSize) {
+            // Changement de taille de bloc : tous les nœuds doivent être redémarrés avec la nouvelle valeur
+            jdbcTemplate.execute(String.format("ALTER SEQUENCE %s INCREMENT BY %d", sequence, blockSize));
+            log.warn("Séquence {} : taille de bloc passée de {} à {}", sequence, increment.get(0), blockSize);
+        }
+        log.info("Séquence {} prête (taille de bloc: {})", sequence, blockSize);
+    }
+
+    private static final class Block {
+        private long next;
+        private long limit;
+    }
+}
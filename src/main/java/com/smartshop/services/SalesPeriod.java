@@ -0,0 +1,31 @@
+package com.smartshop.services;
+
+import java.time.Duration;
+
+/**
+ * Périodes des compteurs de ventes. Les fenêtres glissantes sont découpées en tranches :
+ * une vente sort de la fenêtre quand sa tranche est recyclée (précision = une tranche).
+ */
+public enum SalesPeriod {
+
+    TOUT(null, 0),
+    HEURE(Duration.ofMinutes(5), 12),
+    JOUR(Duration.ofHours(1), 24),
+    MOIS(Duration.ofDays(1), 30);
+
+    final long bucketSeconds;
+    final int buckets;
+
+    SalesPeriod(Duration bucket, int buckets) {
+        this.bucketSeconds = bucket == null ? 0 : bucket.getSeconds();
+        this.buckets = buckets;
+    }
+
+    boolean isWindow() {
+        return buckets > 0;
+    }
+
+    Duration length() {
+        return Duration.ofSeconds(bucketSeconds * buckets);
+    }
+}
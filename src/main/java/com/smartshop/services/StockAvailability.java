@@ -0,0 +1,126 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock disponible à la promesse (stock - réservé) par produit, tenu en mémoire.
+ * Un compteur atomique par produit : les réservations concurrentes sur des produits différents
+ * ne se bloquent jamais, et celles sur un même produit se résolvent par CAS.
+ * La base (products.reserved_stock, mise à jour par UPDATE conditionnel) reste l'arbitre :
+ * cette vue sert à répondre sans requête et à refuser tôt une commande en rupture.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StockAvailability {
+
+    private final ProductRepository productRepository;
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Object[] row : productRepository.findAllAvailableStock()) {
+            available.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+        }
+        log.info("Stock disponible chargé en mémoire pour {} produits", available.size());
+    }
+
+    public OptionalInt getAvailable(Long productId) {
+        AtomicInteger counter = counter(productId);
+        return counter != null ? OptionalInt.of(counter.get()) : OptionalInt.empty();
+    }
+
+    /**
+     * Retire les quantités du disponible, tout ou rien.
+     *
+     * @return les IDs des produits en rupture ; vide si toutes les quantités ont été retirées
+     */
+    public List<Long> tryReserve(Map<Long, Integer> quantitesParProduit) {
+        List<Map.Entry<Long, Integer>> appliquees = new ArrayList<>();
+        List<Long> enRupture = new ArrayList<>();
+
+        for (Map.Entry<Long, Integer> ligne : quantitesParProduit.entrySet()) {
+            AtomicInteger counter = counter(ligne.getKey());
+            if (counter != null && tryDecrement(counter, ligne.getValue())) {
+                appliquees.add(ligne);
+            } else {
+                enRupture.add(ligne.getKey());
+            }
+        }
+
+        if (!enRupture.isEmpty()) {
+            appliquees.forEach(ligne -> add(ligne.getKey(), ligne.getValue()));
+        }
+        return enRupture;
+    }
+
+    public void add(Long productId, int delta) {
+        AtomicInteger counter = counter(productId);
+        if (counter != null) {
+            counter.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Applique les deltas une fois la transaction courante validée (immédiatement hors transaction).
+     */
+    public void addAfterCommit(Map<Long, Integer> deltas) {
+        TransactionCallbacks.afterCommit(() -> deltas.forEach(this::add));
+    }
+
+    /**
+     * Rend les quantités réservées en mémoire si la transaction courante est annulée.
+     */
+    public void restoreOnRollback(Map<Long, Integer> quantitesParProduit) {
+        TransactionCallbacks.afterRollback(() -> quantitesParProduit.forEach(this::add));
+    }
+
+    public void track(Long productId, int disponible) {
+        TransactionCallbacks.afterCommit(() -> available.put(productId, new AtomicInteger(disponible)));
+    }
+
+    /**
+     * Relit le disponible depuis la base (utile quand un autre nœud a libéré des unités).
+     */
+    public void reload(Collection<Long> productIds) {
+        for (Long productId : productIds) {
+            Integer disponible = productRepository.findAvailableStock(productId);
+            if (disponible != null) {
+                available.put(productId, new AtomicInteger(disponible));
+            } else {
+                available.remove(productId);
+            }
+        }
+    }
+
+    private AtomicInteger counter(Long productId) {
+        return available.computeIfAbsent(productId, id -> {
+            Integer disponible = productRepository.findAvailableStock(id);
+            return disponible != null ? new AtomicInteger(disponible) : null;
+        });
+    }
+
+    private static boolean tryDecrement(AtomicInteger counter, int quantite) {
+        int current;
+        do {
+            current = counter.get();
+            if (current < quantite) {
+                return false;
+            }
+        } while (!counter.compareAndSet(current, current - quantite));
+        return true;
+    }
+}
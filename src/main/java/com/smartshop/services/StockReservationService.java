@@ -0,0 +1,144 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.ReservationStatus;
+import com.smartshop.repositories.OrderRepository;
+import com.smartshop.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Réservation du stock entre la création d'une commande et sa confirmation.
+ * Cycle de vie : ACTIVE à la création, COMMITTED à la confirmation,
+ * RELEASED à l'annulation, au rejet ou à l'expiration.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    private static final int EXPIRY_BATCH_SIZE = 200;
+
+    private final ProductRepository productRepository;
+    private final OrderRepository orderRepository;
+    private final StockAvailability stockAvailability;
+    private final ProductCatalogCache catalogCache;
+    private final ChangeHorizon changeHorizon;
+
+    @Value("${smartshop.reservation.ttl:PT72H}")
+    private Duration reservationTtl = Duration.ofHours(72);
+
+    /**
+     * Réserve les quantités pour une commande en cours de création.
+     * En cas de succès la commande est marquée ACTIVE ; sinon rien n'est réservé.
+     *
+     * @return les IDs des produits en rupture
+     */
+    @Transactional
+    public List<Long> reserve(Order order, Map<Long, Integer> quantitesParProduit) {
+        List<Long> enRupture = stockAvailability.tryReserve(quantitesParProduit);
+        if (!enRupture.isEmpty()) {
+            // La vue mémoire peut ignorer des unités libérées par un autre nœud
+            stockAvailability.reload(enRupture);
+            enRupture = stockAvailability.tryReserve(quantitesParProduit);
+            if (!enRupture.isEmpty()) {
+                return enRupture;
+            }
+        }
+
+        List<Long> refuses = productRepository.reserveStockIfAvailable(quantitesParProduit);
+        if (!refuses.isEmpty()) {
+            Map<Long, Integer> appliquees = new LinkedHashMap<>(quantitesParProduit);
+            appliquees.keySet().removeAll(refuses);
+            productRepository.releaseReservedStock(appliquees);
+            quantitesParProduit.forEach(stockAvailability::add);
+            stockAvailability.reload(refuses);
+            return refuses;
+        }
+
+        stockAvailability.restoreOnRollback(quantitesParProduit);
+        order.setReservationStatut(ReservationStatus.ACTIVE);
+        order.setReservationExpiresAt(LocalDateTime.now().plus(reservationTtl));
+        return List.of();
+    }
+
+    /**
+     * Décrémente le stock d'une commande confirmée : consomme sa réservation si elle est
+     * toujours active, sinon (commande sans réservation ou réservation expirée) retire
+     * directement du stock disponible.
+     *
+     * @return les IDs des produits en rupture
+     */
+    @Transactional
+    public List<Long> commit(Order order, Map<Long, Integer> quantitesParProduit) {
+        catalogCache.evictStockAfterCommit(quantitesParProduit.keySet());
+
+        if (order.getReservationStatut() == ReservationStatus.ACTIVE
+                && orderRepository.transitionReservation(order.getId(), ReservationStatus.COMMITTED) == 1) {
+            order.setReservationStatut(ReservationStatus.COMMITTED);
+            return productRepository.commitReservedStock(quantitesParProduit);
+        }
+
+        List<Long> enRupture = productRepository.decrementStockIfAvailable(quantitesParProduit);
+        if (enRupture.isEmpty()) {
+            stockAvailability.addAfterCommit(negate(quantitesParProduit));
+        }
+        return enRupture;
+    }
+
+    /**
+     * Rend au stock disponible les unités réservées par une commande annulée, rejetée ou expirée.
+     */
+    @Transactional
+    public void release(Order order) {
+        if (order.getReservationStatut() != ReservationStatus.ACTIVE
+                || orderRepository.transitionReservation(order.getId(), ReservationStatus.RELEASED) == 0) {
+            return;
+        }
+        order.setReservationStatut(ReservationStatus.RELEASED);
+
+        Map<Long, Integer> quantites = quantitesOf(order);
+        productRepository.releaseReservedStock(quantites);
+        stockAvailability.addAfterCommit(quantites);
+        log.debug("Réservation libérée pour la commande {}", order.getReference());
+    }
+
+    @Scheduled(fixedDelayString = "${smartshop.reservation.expiry-check-ms:60000}")
+    @Transactional
+    public void releaseExpiredReservations() {
+        changeHorizon.registerWriter();
+        List<Order> expirees = orderRepository.findExpiredReservations(
+                LocalDateTime.now(), PageRequest.of(0, EXPIRY_BATCH_SIZE));
+        if (expirees.isEmpty()) {
+            return;
+        }
+        expirees.forEach(this::release);
+        log.info("{} réservation(s) de stock expirée(s) libérée(s)", expirees.size());
+    }
+
+    public static Map<Long, Integer> quantitesOf(Order order) {
+        Map<Long, Integer> quantites = new LinkedHashMap<>();
+        for (OrderItem item : order.getOrderItems()) {
+            quantites.merge(item.getProduct().getId(), item.getQuantite(), Integer::sum);
+        }
+        return quantites;
+    }
+
+    private static Map<Long, Integer> negate(Map<Long, Integer> quantites) {
+        return quantites.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> -e.getValue()));
+    }
+}
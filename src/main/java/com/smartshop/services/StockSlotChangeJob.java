@@ -0,0 +1,32 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reporte périodiquement les opérations sur tranches de stock sur le marqueur updated_at
+ * des produits, pour le flux de modifications et les caches des autres instances.
+ * Les confirmations sur un produit disputé n'écrivent ainsi jamais sa ligne products.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StockSlotChangeJob {
+
+    private final ProductRepository productRepository;
+    private final ChangeHorizon changeHorizon;
+
+    @Scheduled(fixedDelayString = "${smartshop.stock-slots.mark-ms:1000}")
+    @Transactional
+    public void markChangedSlots() {
+        changeHorizon.registerWriter();
+        int produits = productRepository.markChangedSlots();
+        if (produits > 0) {
+            log.debug("Mouvements sur tranches reportés sur {} produit(s)", produits);
+        }
+    }
+}
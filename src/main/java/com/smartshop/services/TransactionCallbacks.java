@@ -0,0 +1,39 @@
+package com.smartshop.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Actions à exécuter à la fin de la transaction courante.
+ * Hors transaction, une action « après validation » s'exécute immédiatement.
+ */
+final class TransactionCallbacks {
+
+    private TransactionCallbacks() {
+    }
+
+    static void afterCommit(Runnable action) {
+        runAfterCompletion(TransactionSynchronization.STATUS_COMMITTED, action);
+    }
+
+    static void afterRollback(Runnable action) {
+        runAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK, action);
+    }
+
+    private static void runAfterCompletion(int expectedStatus, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (expectedStatus == TransactionSynchronization.STATUS_COMMITTED) {
+                action.run();
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == expectedStatus) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
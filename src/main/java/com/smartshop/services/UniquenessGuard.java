@@ -0,0 +1,253 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.UniquenessFilterDTO;
+import com.smartshop.repositories.ClientRepository;
+import com.smartshop.repositories.PromoCodeRepository;
+import com.smartshop.repositories.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Filtres de Bloom des clés uniques, un par espace de clés, devant les requêtes d'existence
+ * faites avant chaque création ou modification.
+ * <ul>
+ *   <li>réponse négative du filtre : la clé n'existe pas, la requête est évitée ;</li>
+ *   <li>réponse positive : doublon probable, confirmé ou infirmé par la requête habituelle.</li>
+ * </ul>
+ * Une clé est ajoutée avant l'écriture qui l'introduit : une annulation ne laisse qu'un faux positif.
+ * Une suppression ou un renommage laisse l'ancienne clé jusqu'à la reconstruction suivante
+ * (au démarrage, sur demande, ou quand le remplissage dépasse le double du taux visé).
+ * Tant qu'un filtre n'est pas chargé, les vérifications vont en base. Seules les clés protégées
+ * par une contrainte unique ont un filtre : une réponse négative périmée (clé créée par une autre
+ * instance) est alors rattrapée par la contrainte, traduite en conflit par le service appelant.
+ */
+@Component
+@Slf4j
+public class UniquenessGuard {
+
+    public enum KeySpace {
+        CLIENT_EMAIL,
+        CLIENT_USER,
+        USERNAME,
+        PROMO_CODE
+    }
+
+    // Marge de croissance : le filtre est dimensionné pour le double des clés chargées
+    private static final long MIN_EXPECTED_KEYS = 10_000;
+    // Clés rejouées dans un filtre reconstruit : leur transaction pouvait être en cours pendant la lecture
+    private static final long RECENT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final ClientRepository clientRepository;
+    private final UserRepository userRepository;
+    private final PromoCodeRepository promoCodeRepository;
+    private final double fpp;
+
+    private final Map<KeySpace, Guard> guards = new EnumMap<>(KeySpace.class);
+
+    public UniquenessGuard(ClientRepository clientRepository,
+                           UserRepository userRepository,
+                           PromoCodeRepository promoCodeRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${smartshop.uniqueness.fpp:0.01}") double fpp) {
+        this.clientRepository = clientRepository;
+        this.userRepository = userRepository;
+        this.promoCodeRepository = promoCodeRepository;
+        this.fpp = fpp;
+        for (KeySpace space : KeySpace.values()) {
+            guards.put(space, new Guard(space, meterRegistry));
+        }
+    }
+
+    /**
+     * Existence de la clé : la requête n'est exécutée que si le filtre ne peut pas l'exclure.
+     */
+    public boolean exists(KeySpace space, String key, BooleanSupplier query) {
+        Guard guard = guards.get(space);
+        BloomFilter filter = guard.filter;
+        if (filter == null) {
+            guard.unloaded.increment();
+            return query.getAsBoolean();
+        }
+        if (!filter.mightContain(key)) {
+            guard.skipped.increment();
+            guard.skippedSinceRebuild.increment();
+            return false;
+        }
+        boolean exists = query.getAsBoolean();
+        if (exists) {
+            guard.confirmed.increment();
+        } else {
+            guard.falsePositives.increment();
+            guard.falsePositivesSinceRebuild.increment();
+        }
+        return exists;
+    }
+
+    /**
+     * À appeler avant l'écriture qui introduit la clé.
+     */
+    public void add(KeySpace space, String key) {
+        Guard guard = guards.get(space);
+        guard.recent.put(key, System.nanoTime());
+        BloomFilter filter = guard.filter;
+        if (filter != null) {
+            filter.put(key);
+            guard.keys.incrementAndGet();
+        }
+    }
+
+    public void addAll(KeySpace space, Collection<String> keys) {
+        for (String key : keys) {
+            add(space, key);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        Arrays.stream(KeySpace.values()).forEach(this::rebuild);
+    }
+
+    public UniquenessFilterDTO rebuild(KeySpace space) {
+        Guard guard = guards.get(space);
+        synchronized (guard) {
+            long start = System.nanoTime();
+            List<String> keys = loadKeys(space);
+            BloomFilter rebuilt = new BloomFilter(Math.max(MIN_EXPECTED_KEYS, keys.size() * 2L), fpp);
+            keys.forEach(rebuilt::put);
+
+            // Avant la bascule pour ne pas ouvrir de trou, après pour les ajouts faits sur l'ancien filtre
+            replayRecent(guard, rebuilt, start);
+            guard.filter = rebuilt;
+            replayRecent(guard, rebuilt, start);
+
+            guard.keys.set(keys.size());
+            guard.skippedSinceRebuild.reset();
+            guard.falsePositivesSinceRebuild.reset();
+            guard.rebuiltAt = LocalDateTime.now();
+            log.info("Filtre d'unicité {} reconstruit: {} clés, {} bits, {} fonctions de hachage",
+                    space, keys.size(), rebuilt.bitCount(), rebuilt.hashes());
+            return stats(guard);
+        }
+    }
+
+    /**
+     * Reconstruit les filtres dont le taux de faux positifs attendu a dépassé le double du taux visé.
+     */
+    @Scheduled(fixedDelayString = "${smartshop.uniqueness.check-ms:600000}",
+            initialDelayString = "${smartshop.uniqueness.check-ms:600000}")
+    public void rebuildSaturated() {
+        for (Guard guard : guards.values()) {
+            BloomFilter filter = guard.filter;
+            if (filter != null && filter.expectedFpp() > 2 * fpp) {
+                log.warn("Filtre d'unicité {} saturé, reconstruction", guard.space);
+                rebuild(guard.space);
+            } else {
+                long now = System.nanoTime();
+                guard.recent.entrySet().removeIf(entry -> now - entry.getValue() > RECENT_NANOS);
+            }
+        }
+    }
+
+    public List<UniquenessFilterDTO> getStats() {
+        return guards.values().stream().map(this::stats).toList();
+    }
+
+    private List<String> loadKeys(KeySpace space) {
+        return switch (space) {
+            case CLIENT_EMAIL -> clientRepository.findAllEmails();
+            case CLIENT_USER -> clientRepository.findAllUserIds().stream().map(String::valueOf).toList();
+            case USERNAME -> userRepository.findAllUsernames();
+            case PROMO_CODE -> promoCodeRepository.findAllCodes();
+        };
+    }
+
+    private static void replayRecent(Guard guard, BloomFilter filter, long since) {
+        guard.recent.forEach((key, addedAt) -> {
+            if (addedAt - since > -RECENT_NANOS) {
+                filter.put(key);
+            } else {
+                guard.recent.remove(key, addedAt);
+            }
+        });
+    }
+
+    private UniquenessFilterDTO stats(Guard guard) {
+        BloomFilter filter = guard.filter;
+        return UniquenessFilterDTO.builder()
+                .espace(guard.space.name())
+                .charge(filter != null)
+                .cles(guard.keys.get())
+                .bits(filter != null ? filter.bitCount() : 0)
+                .fonctionsHachage(filter != null ? filter.hashes() : 0)
+                .tauxFauxPositifsAttendu(filter != null ? filter.expectedFpp() : 0)
+                .tauxFauxPositifsObserve(guard.observedFpp())
+                .requetesEvitees((long) guard.skipped.count())
+                .fauxPositifs((long) guard.falsePositives.count())
+                .reconstruitLe(guard.rebuiltAt)
+                .build();
+    }
+
+    private static final class Guard {
+
+        final KeySpace space;
+        volatile BloomFilter filter;
+        volatile LocalDateTime rebuiltAt;
+        final AtomicLong keys = new AtomicLong();
+        final Map<String, Long> recent = new ConcurrentHashMap<>();
+
+        final Counter skipped;
+        final Counter confirmed;
+        final Counter falsePositives;
+        final Counter unloaded;
+        final LongAdder skippedSinceRebuild = new LongAdder();
+        final LongAdder falsePositivesSinceRebuild = new LongAdder();
+
+        Guard(KeySpace space, MeterRegistry meterRegistry) {
+            this.space = space;
+            this.skipped = checks(meterRegistry, "skipped");
+            this.confirmed = checks(meterRegistry, "confirmed");
+            this.falsePositives = checks(meterRegistry, "false-positive");
+            this.unloaded = checks(meterRegistry, "unloaded");
+            Gauge.builder("smartshop.uniqueness.false-positive-rate", this, Guard::observedFpp)
+                    .tag("space", space.name())
+                    .register(meterRegistry);
+            Gauge.builder("smartshop.uniqueness.expected-false-positive-rate", this,
+                            guard -> guard.filter != null ? guard.filter.expectedFpp() : 0)
+                    .tag("space", space.name())
+                    .register(meterRegistry);
+        }
+
+        // Parmi les clés absentes vérifiées, part que le filtre n'a pas su exclure
+        double observedFpp() {
+            long fauxPositifs = falsePositivesSinceRebuild.sum();
+            long absentes = fauxPositifs + skippedSinceRebuild.sum();
+            return absentes == 0 ? 0 : (double) fauxPositifs / absentes;
+        }
+
+        private Counter checks(MeterRegistry meterRegistry, String result) {
+            return Counter.builder("smartshop.uniqueness.checks")
+                    .tag("space", space.name())
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+}
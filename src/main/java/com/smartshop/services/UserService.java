@@ -10,6 +10,7 @@ import com.smartshop.mappers.UserMapper;
 import com.smartshop.repositories.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -17,6 +18,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static com.smartshop.services.UniquenessGuard.KeySpace.USERNAME;
+
 @Service
 @Slf4j
 @RequiredArgsConstructor
@@ -24,6 +27,7 @@ public class UserService  {
 
     private final UserRepository userRepository;
     private final UserMapper userMapper;
+    private final UniquenessGuard uniquenessGuard;
 
 
     @Transactional
@@ -33,7 +37,7 @@ public class UserService  {
 
         validateUserData(userDTO);
 
-        if (userRepository.existsByUsername(userDTO.getUsername())) {
+        if (usernameExists(userDTO.getUsername())) {
             log.warn("Tentative de création avec un username qui existe déjà: {}", userDTO.getUsername());
             throw new UserAlreadyExistsException(
                     "Un utilisateur avec le username '" + userDTO.getUsername() + "' existe déjà"
@@ -45,7 +49,17 @@ public class UserService  {
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
 
-        User savedUser = userRepository.save(user);
+        uniquenessGuard.add(USERNAME, user.getUsername());
+        User savedUser;
+        try {
+            savedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            // Créé entre-temps par une autre instance, que le filtre d'unicité ne connaissait pas encore
+            log.warn("Username déjà pris par un utilisateur créé entre-temps: {}", userDTO.getUsername());
+            throw new UserAlreadyExistsException(
+                    "Un utilisateur avec le username '" + userDTO.getUsername() + "' existe déjà", e
+            );
+        }
         log.info("Utilisateur créé avec succès: ID={}, username={}", savedUser.getId(), savedUser.getUsername());
 
         return userMapper.toDTO(savedUser);
@@ -114,7 +128,7 @@ public class UserService  {
                 });
 
         if (!user.getUsername().equals(userDTO.getUsername()) &&
-                userRepository.existsByUsername(userDTO.getUsername())) {
+                usernameExists(userDTO.getUsername())) {
             log.warn("Tentative de mise à jour avec un username qui existe déjà: {}", userDTO.getUsername());
             throw new UserAlreadyExistsException(
                     "Un utilisateur avec le username '" + userDTO.getUsername() + "' existe déjà"
@@ -126,7 +140,16 @@ public class UserService  {
         user.setRole(userDTO.getRole());
         user.setUpdatedAt(LocalDateTime.now());
 
-        User updatedUser = userRepository.save(user);
+        uniquenessGuard.add(USERNAME, user.getUsername());
+        User updatedUser;
+        try {
+            updatedUser = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Username déjà pris par un utilisateur modifié entre-temps: {}", userDTO.getUsername());
+            throw new UserAlreadyExistsException(
+                    "Un utilisateur avec le username '" + userDTO.getUsername() + "' existe déjà", e
+            );
+        }
         log.info("Utilisateur mis à jour avec succès: ID={}", updatedUser.getId());
 
         return userMapper.toDTO(updatedUser);
@@ -150,7 +173,11 @@ public class UserService  {
 
     @Transactional(readOnly = true)
     public boolean existsByUsername(String username) {
-        return userRepository.existsByUsername(username);
+        return usernameExists(username);
+    }
+
+    private boolean usernameExists(String username) {
+        return uniquenessGuard.exists(USERNAME, username, () -> userRepository.existsByUsername(username));
     }
 
 
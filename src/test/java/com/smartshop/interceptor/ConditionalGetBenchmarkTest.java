@@ -0,0 +1,125 @@
+package com.smartshop.interceptor;
+
+import com.smartshop.controllers.ProductController;
+import com.smartshop.mappers.ProductMapperImpl;
+import com.smartshop.repositories.ProductRepository;
+import com.smartshop.services.CatalogVersion;
+import com.smartshop.services.ProductImportService;
+import com.smartshop.services.ProductService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.web.servlet.setup.StandaloneMockMvcBuilder;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Mesure ce que les GET conditionnels économisent sur des clients qui interrogent le catalogue en boucle :
+ * octets de corps envoyés et requêtes en base, avec et sans If-None-Match.
+ * Lancement : mvn test -Dtest=ConditionalGetBenchmarkTest -Dsmartshop.benchmark=true
+ * Les lectures passent par les requêtes réelles (H2 en mémoire) de /api/products et /api/products/deleted.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+@Slf4j
+class ConditionalGetBenchmarkTest {
+
+    private static final int PRODUITS = 5_000;
+    private static final int CLIENTS = 20;
+    private static final int INTERROGATIONS = 120;
+    // Une écriture du catalogue toutes les 30 interrogations (une toutes les 30 s pour un client par seconde)
+    private static final int ECRITURE_TOUTES_LES = 30;
+    private static final String[] URIS = {"/api/products", "/api/products/deleted"};
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void benchmark() throws Exception {
+        insertProducts();
+        for (boolean conditionnel : new boolean[]{false, true}) {
+            run(conditionnel);
+        }
+    }
+
+    private void run(boolean conditionnel) throws Exception {
+        CatalogVersion catalogVersion = new CatalogVersion();
+        AtomicLong requetes = new AtomicLong();
+        ProductMapperImpl mapper = new ProductMapperImpl();
+        ProductService productService = mock(ProductService.class);
+        given(productService.getAllProducts()).willAnswer(invocation -> {
+            requetes.incrementAndGet();
+            return productRepository.findAllActive().stream().map(mapper::toDTO).toList();
+        });
+        given(productService.getAllDeletedProducts()).willAnswer(invocation -> {
+            requetes.incrementAndGet();
+            return productRepository.findAllDeleted().stream().map(mapper::toDTO).toList();
+        });
+
+        StandaloneMockMvcBuilder builder = MockMvcBuilders.standaloneSetup(
+                new ProductController(productService, mock(ProductImportService.class)));
+        if (conditionnel) {
+            builder.addMappedInterceptors(new String[]{"/api/products/**", "/api/products"},
+                    new ConditionalGetInterceptor(catalogVersion, new SimpleMeterRegistry(), Duration.ZERO));
+        }
+        MockMvc mockMvc = builder.build();
+
+        String[][] etags = new String[CLIENTS][URIS.length];
+        long octets = 0;
+        long reponses304 = 0;
+        long debut = System.nanoTime();
+        for (int tour = 1; tour <= INTERROGATIONS; tour++) {
+            if (tour % ECRITURE_TOUTES_LES == 0) {
+                catalogVersion.productsChanged();
+            }
+            for (int client = 0; client < CLIENTS; client++) {
+                for (int u = 0; u < URIS.length; u++) {
+                    var requete = get(URIS[u]);
+                    if (etags[client][u] != null) {
+                        requete.header("If-None-Match", etags[client][u]);
+                    }
+                    MockHttpServletResponse response = mockMvc.perform(requete).andReturn().getResponse();
+                    octets += response.getContentAsByteArray().length;
+                    if (response.getStatus() == 304) {
+                        reponses304++;
+                    }
+                    etags[client][u] = response.getHeader("ETag");
+                }
+            }
+        }
+        long total = (long) INTERROGATIONS * CLIENTS * URIS.length;
+        log.info("{}: {} GET, {} réponses 304, {} Mo de corps envoyés, {} requêtes en base, {} ms",
+                conditionnel ? "avec ETag" : "sans ETag", total, reponses304,
+                String.format("%.1f", octets / 1_048_576.0), requetes.get(),
+                (System.nanoTime() - debut) / 1_000_000);
+    }
+
+    private void insertProducts() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> lot = new ArrayList<>();
+        for (int i = 0; i < PRODUITS; i++) {
+            lot.add(new Object[]{"Produit de démonstration " + i, i % 10 == 0, now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO products (nom, prix, stock, reserved_stock, deleted, created_at, updated_at, "
+                + "description) VALUES (?, 9.99, 10, 0, ?, ?, ?, 'Description du produit pour la mesure')", lot);
+    }
+}
@@ -0,0 +1,80 @@
+package com.smartshop.interceptor;
+
+import com.smartshop.services.CatalogVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionalGetInterceptorTest {
+
+    private CatalogVersion catalogVersion;
+    private SimpleMeterRegistry meterRegistry;
+    private ConditionalGetInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = new CatalogVersion();
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new ConditionalGetInterceptor(catalogVersion, meterRegistry, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void preHandle_MatchingEtag_Returns304WithoutCallingController() {
+        MockHttpServletResponse premiere = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(get("/api/products/12", null), premiere, null)).isTrue();
+        String etag = premiere.getHeader("ETag");
+
+        MockHttpServletResponse seconde = new MockHttpServletResponse();
+        boolean continuer = interceptor.preHandle(get("/api/products/12", etag), seconde, null);
+
+        assertThat(etag).isEqualTo("\"products-" + catalogVersion.products() + "\"");
+        assertThat(premiere.getHeader("Cache-Control")).isEqualTo("max-age=30, must-revalidate, private");
+        assertThat(continuer).isFalse();
+        assertThat(seconde.getStatus()).isEqualTo(304);
+        assertThat(meterRegistry.get("smartshop.http.conditional.requests")
+                .tag("catalog", "products").tag("result", "not-modified").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void preHandle_AfterWrite_EtagChangesOnlyForThatCatalog() {
+        String produits = etagOf("/api/products");
+        String promos = etagOf("/api/promo-codes/active");
+
+        catalogVersion.promoCodesChangedAfterCommit();
+
+        assertThat(interceptor.preHandle(get("/api/promo-codes/active", promos), new MockHttpServletResponse(), null))
+                .isTrue();
+        assertThat(interceptor.preHandle(get("/api/products", produits), new MockHttpServletResponse(), null))
+                .isFalse();
+    }
+
+    @Test
+    void preHandle_NonGet_IsNotConditional() {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/products/12");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(request, response, null)).isTrue();
+        assertThat(response.getHeader("ETag")).isNull();
+    }
+
+    private String etagOf(String uri) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(get(uri, null), response, null);
+        return response.getHeader("ETag");
+    }
+
+    private static MockHttpServletRequest get(String uri, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/smartshop" + uri);
+        request.setContextPath("/smartshop");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,161 @@
+package com.smartshop.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartshop.dtos.OrderDTO;
+import com.smartshop.entity.*;
+import com.smartshop.mappers.OrderItemMapperImpl;
+import com.smartshop.mappers.OrderMapper;
+import com.smartshop.mappers.OrderMapperImpl;
+import com.smartshop.mappers.PaymentMapperImpl;
+import com.smartshop.services.OrderExportService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderMapperImpl.class, OrderItemMapperImpl.class, PaymentMapperImpl.class})
+class OrderRepositoryQueryCountTest {
+
+    private static final long MAX_QUERIES = 3;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+    private Long firstClientId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        PromoCode promoCode = PromoCode.builder().code("PROMO-TEST").discountPercentage(5).build();
+        entityManager.persist(promoCode);
+        Product product = Product.builder().nom("Produit").prix(new BigDecimal("10.00")).stock(1000).build();
+        entityManager.persist(product);
+
+        for (int c = 0; c < 5; c++) {
+            User user = User.builder().username("client" + c).password("secret").role(UserRole.CLIENT).build();
+            Client client = Client.builder()
+                    .nom("Client " + c)
+                    .email("client" + c + "@smartshop.ma")
+                    .customerTier(CustomerTier.BASIC)
+                    .isActive(true)
+                    .user(user)
+                    .build();
+            entityManager.persist(client);
+            if (firstClientId == null) {
+                firstClientId = client.getId();
+            }
+
+            for (int o = 0; o < 6; o++) {
+                Order order = Order.builder()
+                        .reference("CMD-" + c + "-" + o)
+                        .client(client)
+                        .promoCode(promoCode)
+                        .orderDate(LocalDateTime.now())
+                        .statut(o % 2 == 0 ? OrderStatus.PENDING : OrderStatus.CONFIRMED)
+                        .build();
+                for (int i = 0; i < 3; i++) {
+                    OrderItem item = OrderItem.builder().quantite(1).prixUnitaire(product.getPrix()).productNom(product.getNom()).build();
+                    item.setProduct(product);
+                    order.addOrderItem(item);
+                }
+                for (int p = 1; p <= 2; p++) {
+                    order.addPayment(Payment.builder().numeroPaiement(p).montant(BigDecimal.ONE)
+                            .typePaiement(PaymentType.ESPECES).build());
+                }
+                entityManager.persist(order);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findAll_MappingToDto_UsesConstantQueryCount() {
+        assertThat(countQueries(() -> orderRepository.findAll())).isLessThanOrEqualTo(MAX_QUERIES);
+    }
+
+    @Test
+    void findAllPaginated_MappingToDto_UsesConstantQueryCount() {
+        long queries = countQueries(() -> orderRepository.findAll(PageRequest.of(0, 20)).getContent());
+
+        // + 1 pour le count(*) de la page
+        assertThat(queries).isLessThanOrEqualTo(MAX_QUERIES + 1);
+    }
+
+    @Test
+    void findByStatut_MappingToDto_UsesConstantQueryCount() {
+        assertThat(countQueries(() -> orderRepository.findByStatut(OrderStatus.CONFIRMED))).isLessThanOrEqualTo(MAX_QUERIES);
+    }
+
+    @Test
+    void findPendingOrders_MappingToDto_UsesConstantQueryCount() {
+        assertThat(countQueries(() -> orderRepository.findPendingOrders())).isLessThanOrEqualTo(MAX_QUERIES);
+    }
+
+    @Test
+    void findByClientId_MappingToDto_UsesConstantQueryCount() {
+        assertThat(countQueries(() -> orderRepository.findByClientId(firstClientId))).isLessThanOrEqualTo(MAX_QUERIES);
+    }
+
+    @Test
+    void exportOrders_LoadsItemsAndPaymentsPerChunk() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        OrderExportService exportService = new OrderExportService(orderRepository, orderMapper, objectMapper, entityManager);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.clear();
+
+        long exported = exportService.exportOrders(out);
+
+        // Curseur des commandes, puis lignes et paiements de l'unique tranche
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(MAX_QUERIES);
+        assertThat(exported).isEqualTo(30);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertThat(lines).hasSize(30);
+        for (String line : lines) {
+            OrderDTO dto = objectMapper.readValue(line, OrderDTO.class);
+            assertThat(dto.getOrderItems()).hasSize(3);
+            assertThat(dto.getPayments()).hasSize(2);
+        }
+    }
+
+    private long countQueries(Supplier<List<Order>> query) {
+        statistics.clear();
+
+        List<OrderDTO> dtos = query.get().stream().map(orderMapper::toDTO).toList();
+
+        assertThat(dtos).isNotEmpty();
+        assertThat(dtos).allSatisfy(dto -> {
+            assertThat(dto.getClientNom()).isNotNull();
+            assertThat(dto.getPromoCodeValue()).isEqualTo("PROMO-TEST");
+            assertThat(dto.getOrderItems()).hasSize(3);
+            assertThat(dto.getPayments()).hasSize(2);
+        });
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,139 @@
+package com.smartshop.repositories;
+
+import com.smartshop.entity.*;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.smartshop.repositories.OrderSpecificationsTest$SqlRecorder"
+})
+class OrderSpecificationsTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long firstClientId;
+
+    @BeforeEach
+    void setUp() {
+        for (int c = 0; c < 2; c++) {
+            User user = User.builder().username("client" + c).password("secret").role(UserRole.CLIENT).build();
+            Client client = Client.builder()
+                    .nom("Client " + c)
+                    .email("client" + c + "@smartshop.ma")
+                    .customerTier(CustomerTier.BASIC)
+                    .isActive(true)
+                    .user(user)
+                    .build();
+            entityManager.persist(client);
+            if (firstClientId == null) {
+                firstClientId = client.getId();
+            }
+
+            // 10 commandes par client, une par jour, statut alterné
+            for (int o = 0; o < 10; o++) {
+                Order order = Order.builder()
+                        .reference("CMD-" + c + "-" + o)
+                        .client(client)
+                        .statut(o % 2 == 0 ? OrderStatus.PENDING : OrderStatus.CONFIRMED)
+                        .build();
+                entityManager.persist(order);
+                // @PrePersist impose la date du jour, on la fixe après coup
+                order.setOrderDate(START.plusDays(o));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void withFilters_NoFilter_EmitsNoPredicate() {
+        assertThat(search(null, null, null, null).getTotalElements()).isEqualTo(20);
+        assertThat(lastWhereClause()).doesNotContain("client_id", "statut", "order_date");
+    }
+
+    @Test
+    void withFilters_ClientOnly() {
+        assertThat(search(firstClientId, null, null, null).getTotalElements()).isEqualTo(10);
+        assertThat(lastWhereClause()).contains("client_id").doesNotContain("statut", "order_date", " is null");
+    }
+
+    @Test
+    void withFilters_ClientAndStatut() {
+        assertThat(search(firstClientId, OrderStatus.CONFIRMED, null, null).getTotalElements()).isEqualTo(5);
+        assertThat(lastWhereClause()).contains("client_id", "statut").doesNotContain("order_date", " is null");
+    }
+
+    @Test
+    void withFilters_StatutAndDateRange() {
+        Page<Order> page = search(null, OrderStatus.PENDING, START.plusDays(2), START.plusDays(5));
+
+        // jours 2 et 4 pour chacun des deux clients
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(lastWhereClause()).contains("statut", "order_date").doesNotContain("client_id", " is null");
+    }
+
+    @Test
+    void withFilters_AllFilters() {
+        Page<Order> page = search(firstClientId, OrderStatus.CONFIRMED, START, START.plusDays(3));
+
+        assertThat(page.getContent()).extracting(Order::getReference).containsExactlyInAnyOrder("CMD-0-1", "CMD-0-3");
+        assertThat(lastWhereClause()).contains("client_id", "statut", "order_date").doesNotContain(" is null");
+    }
+
+    private Page<Order> search(Long clientId, OrderStatus statut, LocalDateTime startDate, LocalDateTime endDate) {
+        SqlRecorder.STATEMENTS.clear();
+        return orderRepository.findAll(
+                OrderSpecifications.withFilters(clientId, statut, startDate, endDate), PageRequest.of(0, 50));
+    }
+
+    /**
+     * Clause WHERE de la requête de sélection des commandes, sans la pagination.
+     */
+    private String lastWhereClause() {
+        String sql = SqlRecorder.STATEMENTS.stream()
+                .map(statement -> statement.toLowerCase(Locale.ROOT))
+                .filter(statement -> statement.contains("from orders"))
+                .findFirst()
+                .orElseThrow();
+        int where = sql.indexOf(" where ");
+        if (where < 0) {
+            return "";
+        }
+        int pagination = sql.indexOf(" offset ", where);
+        if (pagination < 0) {
+            pagination = sql.indexOf(" fetch ", where);
+        }
+        return sql.substring(where, pagination < 0 ? sql.length() : pagination);
+    }
+
+    public static class SqlRecorder implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
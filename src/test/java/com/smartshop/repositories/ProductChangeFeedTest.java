@@ -0,0 +1,93 @@
+package com.smartshop.repositories;
+
+import com.smartshop.entity.Product;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class ProductChangeFeedTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // 6 produits, deux par seconde : les égalités sur updatedAt sont départagées par l'ID
+        for (int i = 0; i < 6; i++) {
+            Product product = Product.builder()
+                    .nom("Produit " + i)
+                    .prix(BigDecimal.TEN)
+                    .stock(10)
+                    .deleted(i == 3)
+                    .build();
+            entityManager.persist(product);
+            ids.add(product.getId());
+            markUpdated(product.getId(), START.plusSeconds(i / 2));
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void findChangesAfter_WalksTiesByIdWithoutSkippingOrRepeating() {
+        LocalDateTime horizon = START.plusDays(1);
+        List<Long> vus = new ArrayList<>();
+
+        List<Product> page = productRepository.findChangesUntil(horizon, Limit.of(3));
+        while (!page.isEmpty()) {
+            page.forEach(p -> vus.add(p.getId()));
+            Product last = page.get(page.size() - 1);
+            page = productRepository.findChangesAfter(last.getUpdatedAt(), last.getId(), horizon, Limit.of(3));
+        }
+
+        assertThat(vus).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void findChangesAfter_ReturnsLaterUpdatesAndStopsAtHorizon() {
+        markUpdated(ids.get(0), START.plusSeconds(10));
+        markUpdated(ids.get(1), START.plusSeconds(60));
+
+        List<Product> changes = productRepository.findChangesAfter(
+                START.plusSeconds(2), ids.get(5), START.plusSeconds(30), Limit.of(10));
+
+        assertThat(changes).extracting(Product::getId).containsExactly(ids.get(0));
+    }
+
+    @Test
+    void persist_StampsUpdatedAtWithDatabaseClock() {
+        Product product = Product.builder().nom("Horodaté").prix(BigDecimal.ONE).stock(1).build();
+        entityManager.persist(product);
+        entityManager.flush();
+
+        // Valeur générée par la base et relue par Hibernate, sans @PrePersist
+        assertThat(product.getUpdatedAt()).isNotNull();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getUpdatedAt())
+                .isEqualTo(product.getUpdatedAt());
+    }
+
+    private void markUpdated(Long id, LocalDateTime updatedAt) {
+        // UPDATE JPQL : contourne l'horodatage par la base qui imposerait l'heure courante
+        entityManager.createQuery("UPDATE Product p SET p.updatedAt = :updatedAt WHERE p.id = :id")
+                .setParameter("updatedAt", updatedAt)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,104 @@
+package com.smartshop.repositories;
+
+import com.smartshop.services.ProductSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compare la recherche par nom via l'index de trigrammes et via la requête LIKE.
+ * Lancement : mvn test -Dtest=ProductSearchBenchmarkTest -Dsmartshop.benchmark=true
+ * Mesures sur H2 en mémoire : elles donnent l'ordre de grandeur, pas les temps PostgreSQL.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+@Slf4j
+class ProductSearchBenchmarkTest {
+
+    private static final String[] MOTS = {"souris", "clavier", "écran", "câble", "chargeur", "casque",
+            "sans", "fil", "usb", "hdmi", "gaming", "pro", "mini", "noir", "blanc", "rgb", "portable", "support"};
+    /** Termes larges : une part importante du catalogue correspond, le coût vient du volume de résultats. */
+    private static final String[] TERMES_LARGES = {"souris", "sans fil", "gaming pro"};
+    /** Termes sélectifs : quelques produits correspondent, cas d'une recherche précise. */
+    private static final String[] TERMES_SELECTIFS = {"rgb 4242", "usb 777", "noir 9090"};
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void benchmark() {
+        int inseres = 0;
+        for (int taille : new int[]{10_000, 100_000, 1_000_000}) {
+            insertProducts(inseres, taille);
+            inseres = taille;
+
+            ProductSearchIndex index = new ProductSearchIndex(productRepository);
+            long debut = System.nanoTime();
+            index.build();
+            long construction = System.nanoTime() - debut;
+
+            for (String terme : TERMES_LARGES) {
+                assertThat(index.search(terme)).hasSameSizeAs(productRepository.searchByNom(terme));
+            }
+            for (String terme : TERMES_SELECTIFS) {
+                assertThat(index.search(terme)).hasSameSizeAs(productRepository.searchByNom(terme));
+            }
+
+            log.info("{} produits | construction {} ms", taille, construction / 1_000_000);
+            log.info("    larges    : index {} µs | LIKE {} µs",
+                    String.format("%.1f", average(TERMES_LARGES, terme -> index.search(terme).size())),
+                    String.format("%.1f", average(TERMES_LARGES, terme -> productRepository.searchByNom(terme).size())));
+            log.info("    sélectifs : index {} µs | LIKE {} µs",
+                    String.format("%.1f", average(TERMES_SELECTIFS, terme -> index.search(terme).size())),
+                    String.format("%.1f", average(TERMES_SELECTIFS, terme -> productRepository.searchByNom(terme).size())));
+        }
+    }
+
+    private double average(String[] termes, ToIntFunction<String> recherche) {
+        recherche.applyAsInt(termes[0]);
+        long debut = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String terme : termes) {
+                recherche.applyAsInt(terme);
+            }
+        }
+        return (System.nanoTime() - debut) / 1_000.0 / (ITERATIONS * termes.length);
+    }
+
+    private void insertProducts(int from, int to) {
+        Random random = new Random(from);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> lot = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            String nom = MOTS[random.nextInt(MOTS.length)] + " " + MOTS[random.nextInt(MOTS.length)]
+                    + " " + MOTS[random.nextInt(MOTS.length)] + " " + i;
+            lot.add(new Object[]{nom, 10, now, now});
+            if (lot.size() == 10_000) {
+                flush(lot);
+            }
+        }
+        flush(lot);
+    }
+
+    private void flush(List<Object[]> lot) {
+        jdbcTemplate.batchUpdate("INSERT INTO products (nom, prix, stock, reserved_stock, deleted, created_at, updated_at) "
+                + "VALUES (?, 9.99, ?, 0, false, ?, ?)", lot);
+        lot.clear();
+    }
+}
@@ -0,0 +1,308 @@
+package com.smartshop.repositories;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class ProductStockRepositoryImplTest {
+
+    private static final long HOT_PRODUCT_ID = 1L;
+    private static final long OTHER_PRODUCT_ID = 2L;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ProductStockRepositoryImpl repository;
+    private final AtomicInteger deadlocks = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:stock;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        repository = new ProductStockRepositoryImpl(jdbcTemplate);
+
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, stock INT NOT NULL, reserved_stock INT DEFAULT 0 NOT NULL, stock_slots INT, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE product_stock_slots (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, product_id BIGINT NOT NULL, slot INT NOT NULL, stock INT NOT NULL, reserved_stock INT DEFAULT 0 NOT NULL, changed BOOLEAN DEFAULT FALSE NOT NULL, UNIQUE (product_id, slot))");
+        jdbcTemplate.update("INSERT INTO products (id, stock) VALUES (?, ?)", HOT_PRODUCT_ID, 100);
+        jdbcTemplate.update("INSERT INTO products (id, stock) VALUES (?, ?)", OTHER_PRODUCT_ID, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE product_stock_slots");
+        jdbcTemplate.execute("DROP TABLE products");
+    }
+
+    @Test
+    void decrementStockIfAvailable_ReportsLinesWithoutEnoughStock() {
+        List<Long> enRupture = repository.decrementStockIfAvailable(Map.of(HOT_PRODUCT_ID, 101, OTHER_PRODUCT_ID, 10));
+
+        assertThat(enRupture).containsExactly(HOT_PRODUCT_ID);
+        assertThat(stockOf(HOT_PRODUCT_ID)).isEqualTo(100);
+        assertThat(stockOf(OTHER_PRODUCT_ID)).isEqualTo(990);
+    }
+
+    @Test
+    void adjustStock_RejectsNegativeAvailableAndUnknownProducts() {
+        jdbcTemplate.update("UPDATE products SET reserved_stock = 40 WHERE id = ?", HOT_PRODUCT_ID);
+
+        List<Long> rejetes = repository.adjustStock(Map.of(HOT_PRODUCT_ID, -61, OTHER_PRODUCT_ID, -1000, 99L, 5));
+
+        assertThat(rejetes).containsExactly(HOT_PRODUCT_ID, 99L);
+        assertThat(stockOf(HOT_PRODUCT_ID)).isEqualTo(100);
+        assertThat(stockOf(OTHER_PRODUCT_ID)).isEqualTo(0);
+    }
+
+    @Test
+    void setStock_ReturnsReplacedStockAndKeepsReservationsCovered() {
+        jdbcTemplate.update("UPDATE products SET reserved_stock = 40 WHERE id = ?", HOT_PRODUCT_ID);
+
+        assertThat(repository.setStock(HOT_PRODUCT_ID, 39)).isNull();
+        assertThat(repository.setStock(99L, 5)).isNull();
+        assertThat(repository.setStock(HOT_PRODUCT_ID, 70)).isEqualTo(100);
+        assertThat(stockOf(HOT_PRODUCT_ID)).isEqualTo(70);
+
+        transactionTemplate.executeWithoutResult(status -> repository.enableStockSlots(HOT_PRODUCT_ID, 4));
+        transactionTemplate.executeWithoutResult(status -> {
+            assertThat(repository.setStock(HOT_PRODUCT_ID, 39)).isNull();
+            assertThat(repository.setStock(HOT_PRODUCT_ID, 45)).isEqualTo(70);
+        });
+        assertThat(totalStockOf(HOT_PRODUCT_ID)).isEqualTo(45);
+        // Le réservé reste couvert tranche par tranche
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM product_stock_slots WHERE stock < reserved_stock", Integer.class)).isZero();
+        assertThat(repository.reserveStockIfAvailable(Map.of(HOT_PRODUCT_ID, 5))).isEmpty();
+        assertThat(repository.reserveStockIfAvailable(Map.of(HOT_PRODUCT_ID, 1))).containsExactly(HOT_PRODUCT_ID);
+    }
+
+    /**
+     * Débit d'ajustements par lot (désactivé par défaut) :
+     * mvn test -Dtest=ProductStockRepositoryImplTest -Dsmartshop.benchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+    void adjustStock_FiftyThousandLines_Throughput() {
+        int lignes = 50_000;
+        jdbcTemplate.batchUpdate("INSERT INTO products (id, stock) VALUES (?, 10)",
+                LongStream.rangeClosed(3, lignes + 2)
+                        .mapToObj(id -> new Object[]{id})
+                        .toList());
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (long id = 3; id < lignes + 3; id++) {
+            deltas.put(id, id % 2 == 0 ? 5 : -5);
+        }
+
+        long debut = System.nanoTime();
+        List<Long> rejetes = transactionTemplate.execute(status -> repository.adjustStock(deltas));
+        long ms = (System.nanoTime() - debut) / 1_000_000;
+        log.info("adjustStock: {} lignes en {} ms ({} lignes/s)", lignes, ms, lignes * 1000L / Math.max(ms, 1));
+
+        assertThat(rejetes).isEmpty();
+    }
+
+    @Test
+    void decrementStockIfAvailable_ConcurrentConfirmations_NeverOversell() throws InterruptedException {
+        assertConcurrentConfirmationsNeverOversell();
+    }
+
+    @Test
+    void stockSlots_ConcurrentConfirmations_NeverOversellAndFoldBack() throws InterruptedException {
+        transactionTemplate.executeWithoutResult(status -> repository.enableStockSlots(HOT_PRODUCT_ID, 8));
+        assertThat(stockOf(HOT_PRODUCT_ID)).isZero();
+
+        assertConcurrentConfirmationsNeverOversell();
+
+        transactionTemplate.executeWithoutResult(status -> repository.disableStockSlots(HOT_PRODUCT_ID));
+        assertThat(stockOf(HOT_PRODUCT_ID)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_stock_slots", Integer.class)).isZero();
+    }
+
+    @Test
+    void stockSlots_KeepReservationsAndServeStockSpreadOverSlots() {
+        jdbcTemplate.update("UPDATE products SET reserved_stock = 40 WHERE id = ?", HOT_PRODUCT_ID);
+        transactionTemplate.executeWithoutResult(status -> repository.enableStockSlots(HOT_PRODUCT_ID, 8));
+
+        // 40 réservés puis 60 disponibles : aucune tranche ne couvre seule ces quantités
+        transactionTemplate.executeWithoutResult(status -> {
+            assertThat(repository.commitReservedStock(Map.of(HOT_PRODUCT_ID, 40))).isEmpty();
+            assertThat(repository.decrementStockIfAvailable(Map.of(HOT_PRODUCT_ID, 60))).isEmpty();
+            assertThat(repository.reserveStockIfAvailable(Map.of(HOT_PRODUCT_ID, 1))).containsExactly(HOT_PRODUCT_ID);
+            assertThat(repository.adjustStock(Map.of(HOT_PRODUCT_ID, 16, OTHER_PRODUCT_ID, 5))).isEmpty();
+            assertThat(repository.reserveStockIfAvailable(Map.of(HOT_PRODUCT_ID, 10))).isEmpty();
+            repository.releaseReservedStock(Map.of(HOT_PRODUCT_ID, 4));
+        });
+
+        assertThat(totalStockOf(HOT_PRODUCT_ID)).isEqualTo(16);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT SUM(reserved_stock) FROM product_stock_slots WHERE product_id = ?", Integer.class, HOT_PRODUCT_ID))
+                .isEqualTo(6);
+        assertThat(stockOf(OTHER_PRODUCT_ID)).isEqualTo(1005);
+    }
+
+    @Test
+    void stockSlots_LeaveProductRowAloneAndAreMarkedByMarkChangedSlots() {
+        transactionTemplate.executeWithoutResult(status -> repository.enableStockSlots(HOT_PRODUCT_ID, 4));
+        Timestamp ancien = Timestamp.valueOf(LocalDateTime.now().minusMinutes(5).withNano(0));
+        jdbcTemplate.update("UPDATE products SET updated_at = ? WHERE id = ?", ancien, HOT_PRODUCT_ID);
+
+        transactionTemplate.executeWithoutResult(status -> repository.decrementStockIfAvailable(Map.of(HOT_PRODUCT_ID, 1)));
+        transactionTemplate.executeWithoutResult(status -> repository.adjustStock(Map.of(HOT_PRODUCT_ID, 4)));
+        assertThat(updatedAtOf(HOT_PRODUCT_ID)).isEqualTo(ancien);
+        assertThat(totalStockOf(HOT_PRODUCT_ID)).isEqualTo(103);
+
+        assertThat(markChangedSlots()).isEqualTo(1);
+        assertThat(updatedAtOf(HOT_PRODUCT_ID)).isAfter(ancien);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM product_stock_slots WHERE changed", Integer.class)).isZero();
+        assertThat(markChangedSlots()).isZero();
+    }
+
+    /**
+     * Débit de confirmation sur un seul produit très disputé, ligne unique puis 16 tranches
+     * (désactivé par défaut) :
+     * mvn test -Dtest=ProductStockRepositoryImplTest -Dsmartshop.benchmark=true
+     * Chaque transaction garde son verrou 2 ms, le temps du reste de la confirmation (commande, paiement).
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+    void commitReservedStock_HotProduct_Throughput() throws InterruptedException {
+        int confirmations = 2_000;
+        jdbcTemplate.update("UPDATE products SET stock = ?, reserved_stock = ? WHERE id = ?",
+                2 * confirmations, 2 * confirmations, HOT_PRODUCT_ID);
+
+        long ligneUnique = confirmThroughput(confirmations);
+        transactionTemplate.executeWithoutResult(status -> repository.enableStockSlots(HOT_PRODUCT_ID, 16));
+        long tranches = confirmThroughput(confirmations);
+        log.info("commitReservedStock produit unique: ligne unique {} confirmations/s, " +
+                "16 tranches {} confirmations/s ({} deadlocks H2 rejoués)", ligneUnique, tranches, deadlocks.get());
+
+        assertThat(totalStockOf(HOT_PRODUCT_ID)).isZero();
+    }
+
+    private int markChangedSlots() {
+        Integer produits = transactionTemplate.execute(status -> repository.markChangedSlots());
+        return produits;
+    }
+
+    private long confirmThroughput(int confirmations) throws InterruptedException {
+        int threads = 32;
+        AtomicInteger restantes = new AtomicInteger(confirmations);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                while (restantes.getAndDecrement() > 0) {
+                    inTransaction(status -> {
+                        assertThat(repository.commitReservedStock(Map.of(HOT_PRODUCT_ID, 1))).isEmpty();
+                        try {
+                            Thread.sleep(2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                }
+                return null;
+            });
+        }
+        long debut = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(300, TimeUnit.SECONDS)).isTrue();
+        long ms = (System.nanoTime() - debut) / 1_000_000;
+        return confirmations * 1000L / Math.max(ms, 1);
+    }
+
+    /*
+     * H2 garde le verrou d'une ligne dont la garde échoue après attente (PostgreSQL non) :
+     * les sondages de tranches peuvent y former un deadlock, la victime est rejouée comme
+     * le ferait l'appelant.
+     */
+    private void inTransaction(Consumer<TransactionStatus> action) {
+        for (int tentative = 1; ; tentative++) {
+            try {
+                transactionTemplate.executeWithoutResult(action);
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (tentative == 10) {
+                    throw e;
+                }
+                deadlocks.incrementAndGet();
+            }
+        }
+    }
+
+    private void assertConcurrentConfirmationsNeverOversell() throws InterruptedException {
+        int threads = 32;
+        int confirmationsPerThread = 10;
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < confirmationsPerThread; i++) {
+                    inTransaction(status -> {
+                        List<Long> enRupture = repository.decrementStockIfAvailable(
+                                Map.of(HOT_PRODUCT_ID, 3, OTHER_PRODUCT_ID, 1));
+                        if (enRupture.isEmpty()) {
+                            confirmed.incrementAndGet();
+                        } else {
+                            status.setRollbackOnly();
+                            rejected.incrementAndGet();
+                        }
+                    });
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(confirmed.get()).isEqualTo(33);
+        assertThat(confirmed.get() + rejected.get()).isEqualTo(threads * confirmationsPerThread);
+        assertThat(totalStockOf(HOT_PRODUCT_ID)).isEqualTo(1);
+        assertThat(stockOf(OTHER_PRODUCT_ID)).isEqualTo(1000 - confirmed.get());
+    }
+
+    private int stockOf(long productId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private Timestamp updatedAtOf(long productId) {
+        return jdbcTemplate.queryForObject("SELECT updated_at FROM products WHERE id = ?", Timestamp.class, productId);
+    }
+
+    private int totalStockOf(long productId) {
+        return stockOf(productId) + jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(stock), 0) FROM product_stock_slots WHERE product_id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,97 @@
+package com.smartshop.repositories;
+
+import com.smartshop.entity.PromoCode;
+import com.smartshop.services.CatalogVersion;
+import com.smartshop.services.PromoCodeRedemptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 1000 commandes concurrentes sur un même code, chacune dans sa transaction.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PromoCodeRedemptionTest {
+
+    private static final int ORDERS = 1000;
+
+    @Autowired
+    private PromoCodeRepository promoCodeRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        promoCodeRepository.deleteAll();
+    }
+
+    @Test
+    void redeem_CappedCode_NeverOverRedeems() throws InterruptedException {
+        PromoCode promoCode = promoCodeRepository.save(
+                PromoCode.builder().code("PROMO-FLSH").discountPercentage(20).maxUses(100).build());
+        PromoCodeRedemptions redemptions = new PromoCodeRedemptions(
+                promoCodeRepository, new CatalogVersion(), transactionManager, true);
+
+        int acceptees = redeemConcurrently(redemptions, promoCode);
+
+        assertThat(acceptees).isEqualTo(100);
+        assertThat(promoCodeRepository.findById(promoCode.getId()).orElseThrow().getUsesCount()).isEqualTo(100);
+    }
+
+    @Test
+    void redeem_UnlimitedCodeWithStripedCounter_FlushesEveryUse() throws InterruptedException {
+        PromoCode promoCode = promoCodeRepository.save(
+                PromoCode.builder().code("PROMO-ILLI").discountPercentage(5).build());
+        PromoCodeRedemptions redemptions = new PromoCodeRedemptions(
+                promoCodeRepository, new CatalogVersion(), transactionManager, true);
+
+        int acceptees = redeemConcurrently(redemptions, promoCode);
+        assertThat(promoCodeRepository.findById(promoCode.getId()).orElseThrow().getUsesCount()).isZero();
+        assertThat(redemptions.pendingUses(promoCode.getId())).isEqualTo(ORDERS);
+
+        redemptions.flush();
+
+        assertThat(acceptees).isEqualTo(ORDERS);
+        assertThat(redemptions.pendingUses(promoCode.getId())).isZero();
+        assertThat(promoCodeRepository.findById(promoCode.getId()).orElseThrow().getUsesCount()).isEqualTo(ORDERS);
+    }
+
+    private int redeemConcurrently(PromoCodeRedemptions redemptions, PromoCode promoCode) throws InterruptedException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        AtomicInteger acceptees = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        for (int i = 0; i < ORDERS; i++) {
+            executor.submit(() -> {
+                start.await();
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (redemptions.redeem(promoCode)) {
+                        acceptees.incrementAndGet();
+                    } else {
+                        status.setRollbackOnly();
+                    }
+                });
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(60, TimeUnit.SECONDS)).isTrue();
+        return acceptees.get();
+    }
+}
@@ -0,0 +1,98 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import com.smartshop.repositories.PromoCodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogChangePollerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @Mock
+    private ProductCatalogCache catalogCache;
+
+    @Mock
+    private ProductSearchIndex searchIndex;
+
+    @Mock
+    private ProductPriceIndex priceIndex;
+
+    @Mock
+    private ChangeHorizon changeHorizon;
+
+    private CatalogVersion catalogVersion;
+    private CatalogChangePoller poller;
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = new CatalogVersion();
+        poller = new CatalogChangePoller(productRepository, promoCodeRepository, catalogCache, searchIndex, priceIndex,
+                catalogVersion, changeHorizon);
+    }
+
+    @Test
+    void pollProducts_EvictsRowsWrittenElsewhereOnlyOnce() {
+        given(changeHorizon.current()).willReturn(T0, T0.plusSeconds(5), T0.plusSeconds(10));
+        poller.pollProducts();
+        verify(catalogCache).clear();
+
+        given(productRepository.findUpdatedSince(T0)).willReturn(List.<Object[]>of(new Object[]{7L, T0.plusSeconds(2)}));
+        given(productRepository.findIndexedFieldsByIds(List.of(7L)))
+                .willReturn(List.<Object[]>of(new Object[]{7L, "Clavier renommé", false, new BigDecimal("89.90")}));
+        poller.pollProducts();
+        verify(catalogCache).evict(List.of(7L));
+        verify(searchIndex).index(7L, "Clavier renommé");
+        verify(priceIndex).index(7L, new BigDecimal("89.90"));
+
+        // Même ligne relue depuis l'horizon suivant (transaction encore ouverte au relevé précédent) : déjà vue
+        given(productRepository.findUpdatedSince(T0.plusSeconds(5)))
+                .willReturn(List.<Object[]>of(new Object[]{7L, T0.plusSeconds(2)}));
+        poller.pollProducts();
+        verify(catalogCache, never()).evict(List.of());
+        verify(catalogCache).evict(any());
+    }
+
+    @Test
+    void pollPromoCodes_BumpsVersionOnRemoteUpdateOrDeletion() {
+        given(promoCodeRepository.count()).willReturn(3L, 3L, 3L, 2L);
+        given(promoCodeRepository.findUpdatedSince(any())).willReturn(
+                List.<Object[]>of(new Object[]{1L, T0}),
+                List.<Object[]>of(new Object[]{1L, T0}),
+                List.<Object[]>of(new Object[]{1L, T0.plusSeconds(3)}),
+                List.<Object[]>of(new Object[]{1L, T0.plusSeconds(3)}));
+
+        poller.pollPromoCodes();
+        long apresPremierReleve = catalogVersion.promoCodes();
+
+        poller.pollPromoCodes();
+        assertThat(catalogVersion.promoCodes()).isEqualTo(apresPremierReleve);
+
+        poller.pollPromoCodes();
+        long apresModification = catalogVersion.promoCodes();
+        assertThat(apresModification).isGreaterThan(apresPremierReleve);
+
+        poller.pollPromoCodes();
+        assertThat(catalogVersion.promoCodes()).isGreaterThan(apresModification);
+    }
+}
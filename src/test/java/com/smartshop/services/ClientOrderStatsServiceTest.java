@@ -0,0 +1,130 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.*;
+import com.smartshop.repositories.ClientOrderStatsRepository;
+import com.smartshop.repositories.ClientRepository;
+import com.smartshop.repositories.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ClientOrderStatsServiceTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2025, 3, 10, 14, 0);
+
+    @Mock
+    private ClientOrderStatsRepository clientOrderStatsRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @InjectMocks
+    private ClientOrderStatsService clientOrderStatsService;
+
+    private Client client;
+    private Order order;
+
+    @BeforeEach
+    void setUp() {
+        client = Client.builder().id(1L).nom("Client").customerTier(CustomerTier.BASIC).build();
+        order = Order.builder()
+                .id(10L)
+                .client(client)
+                .orderDate(DATE)
+                .totalTTC(new BigDecimal("1200.00"))
+                .statut(OrderStatus.CONFIRMED)
+                .build();
+    }
+
+    @Test
+    void recordTransition_Confirmed_MovesCountAndUpdatesClient() {
+        ClientOrderStats stats = ClientOrderStats.builder().clientId(1L).pendingCount(2).build();
+        given(clientOrderStatsRepository.findForUpdate(1L)).willReturn(Optional.of(stats));
+
+        clientOrderStatsService.recordTransition(order, OrderStatus.PENDING);
+
+        assertThat(stats.getPendingCount()).isEqualTo(1);
+        assertThat(stats.getConfirmedCount()).isEqualTo(1);
+        assertThat(stats.getTotalConfirmedTTC()).isEqualByComparingTo("1200.00");
+        assertThat(stats.getFirstOrderDate()).isEqualTo(DATE);
+        assertThat(stats.getLastOrderDate()).isEqualTo(DATE);
+        assertThat(client.getTotalOrders()).isEqualTo(1);
+        assertThat(client.getTotalSpent()).isEqualByComparingTo("1200.00");
+        assertThat(client.getCustomerTier()).isEqualTo(CustomerTier.SILVER);
+    }
+
+    @Test
+    void recordCreated_MissingAggregate_RebuildsFromOrders() {
+        order.setStatut(OrderStatus.PENDING);
+        given(clientOrderStatsRepository.findForUpdate(1L))
+                .willReturn(Optional.empty(), Optional.of(ClientOrderStats.empty(1L)));
+        given(clientOrderStatsRepository.insertIfAbsent(1L)).willReturn(1);
+        given(orderRepository.aggregateByClients(List.of(1L))).willReturn(List.of(
+                new Object[]{1L, OrderStatus.PENDING, 1L, new BigDecimal("1200.00"), DATE, DATE},
+                new Object[]{1L, OrderStatus.CONFIRMED, 4L, new BigDecimal("900.00"), DATE.minusDays(30), DATE.minusDays(1)}));
+
+        ClientOrderStats stats = clientOrderStatsService.recordCreated(order);
+
+        // la commande courante est déjà comptée par le recalcul
+        assertThat(stats.getPendingCount()).isEqualTo(1);
+        assertThat(stats.getConfirmedCount()).isEqualTo(4);
+        assertThat(stats.getTotalConfirmedTTC()).isEqualByComparingTo("900.00");
+        assertThat(stats.getFirstOrderDate()).isEqualTo(DATE.minusDays(30));
+    }
+
+    @Test
+    void recordCreated_AggregateCreatedConcurrently_IncrementsIt() {
+        order.setStatut(OrderStatus.PENDING);
+        ClientOrderStats creeAilleurs = ClientOrderStats.builder().clientId(1L).confirmedCount(4).build();
+        given(clientOrderStatsRepository.findForUpdate(1L)).willReturn(Optional.empty(), Optional.of(creeAilleurs));
+        given(clientOrderStatsRepository.insertIfAbsent(1L)).willReturn(0);
+
+        ClientOrderStats stats = clientOrderStatsService.recordCreated(order);
+
+        // l'autre transaction a recalculé sans voir cette commande : elle est ajoutée
+        assertThat(stats.getPendingCount()).isEqualTo(1);
+        assertThat(stats.getConfirmedCount()).isEqualTo(4);
+        verify(orderRepository, never()).aggregateByClients(any());
+    }
+
+    @Test
+    void verify_DriftedAggregate_IsRepaired() {
+        ClientOrderStats stocke = ClientOrderStats.builder()
+                .clientId(1L).confirmedCount(2).totalConfirmedTTC(new BigDecimal("50.00")).build();
+        client.applyOrderStatistics(stocke);
+        given(orderRepository.aggregateByClients(List.of(1L))).willReturn(List.<Object[]>of(
+                new Object[]{1L, OrderStatus.CONFIRMED, 3L, new BigDecimal("75.00"), DATE, DATE}));
+        given(clientOrderStatsRepository.findAllForUpdate(List.of(1L))).willReturn(List.of(stocke));
+        given(clientRepository.findAllById(List.of(1L))).willReturn(List.of(client));
+
+        int derives = clientOrderStatsService.verify(List.of(1L));
+
+        assertThat(derives).isEqualTo(1);
+        assertThat(stocke.getConfirmedCount()).isEqualTo(3);
+        assertThat(stocke.getTotalConfirmedTTC()).isEqualByComparingTo("75.00");
+        assertThat(client.getTotalOrders()).isEqualTo(3);
+        InOrder ordre = inOrder(clientOrderStatsRepository, orderRepository);
+        ordre.verify(clientOrderStatsRepository).findAllForUpdate(List.of(1L));
+        ordre.verify(orderRepository).aggregateByClients(List.of(1L));
+    }
+}
@@ -0,0 +1,139 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ClientTierJobDTO;
+import com.smartshop.entity.CustomerTier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ClientTierRecalculationServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ClientTierRecalculationService service;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:tiers;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE clients (id BIGINT PRIMARY KEY, total_orders INT NOT NULL, " +
+                "total_spent DECIMAL(12, 2) NOT NULL, customer_tier VARCHAR(20) NOT NULL, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE orders (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, client_id BIGINT NOT NULL, " +
+                "statut VARCHAR(20) NOT NULL, total_ttc DECIMAL(12, 2) NOT NULL, " +
+                "order_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX idx_orders_client_statut ON orders (client_id, statut)");
+        jdbcTemplate.execute("CREATE TABLE client_order_stats (client_id BIGINT PRIMARY KEY, " +
+                "pending_count BIGINT NOT NULL, confirmed_count BIGINT NOT NULL, canceled_count BIGINT NOT NULL, " +
+                "rejected_count BIGINT NOT NULL, total_confirmed_ttc DECIMAL(14, 2) NOT NULL, " +
+                "first_order_date TIMESTAMP, last_order_date TIMESTAMP, updated_at TIMESTAMP)");
+        service = new ClientTierRecalculationService(jdbcTemplate, new DataSourceTransactionManager(dataSource), 1000, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void start_RecomputesDriftedClientsByIdRange() throws InterruptedException {
+        // 2500 clients, IDs espacés de 2 : tranches partiellement vides
+        List<Object[]> clients = new ArrayList<>();
+        List<Object[]> orders = new ArrayList<>();
+        for (long id = 1; id <= 5000; id += 2) {
+            int confirmees = (int) (id % 25);
+            for (int i = 0; i < confirmees; i++) {
+                orders.add(new Object[]{id, "CONFIRMED", new BigDecimal("120.00")});
+            }
+            orders.add(new Object[]{id, "CANCELED", new BigDecimal("9000.00")});
+            BigDecimal total = new BigDecimal("120.00").multiply(BigDecimal.valueOf(confirmees));
+            // Un client sur cinq a dérivé : compteur faux, niveau resté à BASIC
+            boolean derive = id % 5 == 0;
+            CustomerTier tier = CustomerTier.forStatistics(confirmees, total);
+            clients.add(new Object[]{id, derive ? 0 : confirmees, total, derive ? "BASIC" : tier.name()});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO clients (id, total_orders, total_spent, customer_tier) VALUES (?, ?, ?, ?)", clients);
+        jdbcTemplate.batchUpdate("INSERT INTO orders (client_id, statut, total_ttc) VALUES (?, ?, ?)", orders);
+
+        ClientTierJobDTO job = awaitEnd(service.start(null, null));
+
+        assertThat(job.getStatut()).isEqualTo(ClientTierJobDTO.Statut.TERMINE);
+        assertThat(job.getProgression()).isEqualTo(100);
+        assertThat(job.getTranchesTraitees()).isEqualTo(5);
+        assertThat(job.getClientsModifies()).isEqualTo(clients.stream().filter(c -> (long) c[0] % 5 == 0
+                && (long) c[0] % 25 != 0).count());
+        jdbcTemplate.query("SELECT id, total_orders, total_spent, customer_tier FROM clients", rs -> {
+            int confirmees = (int) (rs.getLong("id") % 25);
+            assertThat(rs.getInt("total_orders")).isEqualTo(confirmees);
+            assertThat(rs.getString("customer_tier")).isEqualTo(
+                    CustomerTier.forStatistics(confirmees, rs.getBigDecimal("total_spent")).name());
+        });
+
+        assertThat(awaitEnd(service.start(500, 0L)).getClientsModifies()).isZero();
+    }
+
+    @Test
+    void start_RecomputesDriftedStatsBeforeDerivingClients() throws InterruptedException {
+        LocalDateTime premiere = LocalDateTime.of(2025, 3, 1, 10, 0);
+        LocalDateTime derniere = LocalDateTime.of(2025, 3, 9, 18, 30);
+        // Client 1 à jour mais agrégat faux ; client 2 recopié depuis un agrégat faux
+        for (long id = 1; id <= 2; id++) {
+            jdbcTemplate.update("INSERT INTO orders (client_id, statut, total_ttc, order_date) VALUES (?, 'CONFIRMED', 400.00, ?)",
+                    id, Timestamp.valueOf(premiere));
+            jdbcTemplate.update("INSERT INTO orders (client_id, statut, total_ttc, order_date) VALUES (?, 'CONFIRMED', 700.00, ?)",
+                    id, Timestamp.valueOf(derniere));
+            jdbcTemplate.update("INSERT INTO orders (client_id, statut, total_ttc) VALUES (?, 'PENDING', 50.00)", id);
+            jdbcTemplate.update("INSERT INTO client_order_stats (client_id, pending_count, confirmed_count, canceled_count, " +
+                    "rejected_count, total_confirmed_ttc, first_order_date) VALUES (?, 0, 1, 1, 0, 400.00, ?)",
+                    id, Timestamp.valueOf(premiere));
+        }
+        BigDecimal total = new BigDecimal("1100.00");
+        jdbcTemplate.update("INSERT INTO clients (id, total_orders, total_spent, customer_tier) VALUES (1, 2, ?, ?)",
+                total, CustomerTier.forStatistics(2, total).name());
+        jdbcTemplate.update("INSERT INTO clients (id, total_orders, total_spent, customer_tier) VALUES (2, 1, 400.00, 'BASIC')");
+
+        ClientTierJobDTO job = awaitEnd(service.start(null, null));
+
+        assertThat(job.getStatut()).isEqualTo(ClientTierJobDTO.Statut.TERMINE);
+        assertThat(job.getAgregatsCorriges()).isEqualTo(2);
+        assertThat(job.getClientsModifies()).isEqualTo(1);
+        jdbcTemplate.query("SELECT * FROM client_order_stats", rs -> {
+            assertThat(rs.getLong("pending_count")).isEqualTo(1);
+            assertThat(rs.getLong("confirmed_count")).isEqualTo(2);
+            assertThat(rs.getLong("canceled_count")).isZero();
+            assertThat(rs.getBigDecimal("total_confirmed_ttc")).isEqualByComparingTo(total);
+            assertThat(rs.getTimestamp("last_order_date").toLocalDateTime()).isEqualTo(derniere);
+        });
+        jdbcTemplate.query("SELECT * FROM clients", rs -> {
+            assertThat(rs.getInt("total_orders")).isEqualTo(2);
+            assertThat(rs.getBigDecimal("total_spent")).isEqualByComparingTo(total);
+            assertThat(rs.getString("customer_tier")).isEqualTo(CustomerTier.forStatistics(2, total).name());
+        });
+    }
+
+    @Test
+    void start_RefusesInvalidThrottling() {
+        assertThatThrownBy(() -> service.start(0, null)).hasMessageContaining("taille de tranche");
+        assertThatThrownBy(() -> service.start(null, -1L)).hasMessageContaining("pause");
+        assertThatThrownBy(service::getCurrentJob).hasMessageContaining("Aucun recalcul");
+    }
+
+    private ClientTierJobDTO awaitEnd(ClientTierJobDTO job) throws InterruptedException {
+        for (int i = 0; i < 300 && job.getStatut() == ClientTierJobDTO.Statut.EN_COURS; i++) {
+            Thread.sleep(50);
+            job = service.getCurrentJob();
+        }
+        return job;
+    }
+}
@@ -0,0 +1,126 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.Product;
+import com.smartshop.exceptions.OrderBusinessException;
+import com.smartshop.exceptions.ProductNotFoundException;
+import com.smartshop.repositories.ProductRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chargement des produits d'une commande selon le nombre de lignes : ancien chemin (un findById
+ * par ligne) contre le chemin actuel de OrderService.createOrder (un seul findAllById).
+ * Lancement : mvn test -Dtest=OrderProductLoadingBenchmarkTest -Dsmartshop.benchmark=true
+ * H2 en mémoire n'a pas d'aller-retour réseau : l'estimation ajoute le nombre de requêtes
+ * multiplié par -Dsmartshop.benchmark.rtt-ms (0,5 ms par défaut).
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+@Slf4j
+class OrderProductLoadingBenchmarkTest {
+
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics statistics;
+
+    @Test
+    void benchmark() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 160; i++) {
+            ids.add(productRepository.save(Product.builder()
+                    .nom("Produit " + i).prix(new BigDecimal("10.00")).stock(1000).build()).getId());
+        }
+        entityManager.flush();
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        double rttMs = Double.parseDouble(System.getProperty("smartshop.benchmark.rtt-ms", "0.5"));
+
+        for (int lignes : new int[]{10, 40, 80, 160}) {
+            List<Long> commande = ids.subList(0, lignes);
+            assertThat(loadPerLine(commande)).isEqualTo(lignes);
+            assertThat(loadInOneQuery(commande)).isEqualTo(lignes);
+
+            double ancien = average(commande, this::loadPerLine);
+            long requetesAncien = statistics.getPrepareStatementCount() / ITERATIONS;
+            double nouveau = average(commande, this::loadInOneQuery);
+            long requetesNouveau = statistics.getPrepareStatementCount() / ITERATIONS;
+
+            log.info("{} lignes | par ligne: {} requêtes, {} ms (estimé {} ms) | IN: {} requête(s), {} ms (estimé {} ms)",
+                    lignes,
+                    requetesAncien, String.format("%.3f", ancien), String.format("%.2f", ancien + requetesAncien * rttMs),
+                    requetesNouveau, String.format("%.3f", nouveau), String.format("%.2f", nouveau + requetesNouveau * rttMs));
+        }
+    }
+
+    private double average(List<Long> commande, ToIntFunction<List<Long>> chargement) {
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            chargement.applyAsInt(commande);
+        }
+        statistics.clear();
+        long debut = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            chargement.applyAsInt(commande);
+        }
+        return (System.nanoTime() - debut) / 1_000_000.0 / ITERATIONS;
+    }
+
+    // Ancien chemin : un aller-retour par ligne de commande
+    private int loadPerLine(List<Long> productIds) {
+        entityManager.clear();
+        Map<Long, Product> products = new HashMap<>();
+        for (Long productId : productIds) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId));
+            if (product.getDeleted()) {
+                throw new OrderBusinessException("Le produit '" + product.getNom() + "' n'est plus disponible");
+            }
+            products.put(productId, product);
+        }
+        return products.size();
+    }
+
+    // Chemin actuel (OrderService.loadOrderProducts) : une requête IN puis les contrôles en mémoire
+    private int loadInOneQuery(List<Long> productIds) {
+        entityManager.clear();
+        Set<Long> ids = new LinkedHashSet<>(productIds);
+        Map<Long, Product> products = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : ids) {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ProductNotFoundException("Produit non trouvé avec l'ID: " + productId);
+            }
+            if (product.getDeleted()) {
+                throw new OrderBusinessException("Le produit '" + product.getNom() + "' n'est plus disponible");
+            }
+        }
+        return products.size();
+    }
+}
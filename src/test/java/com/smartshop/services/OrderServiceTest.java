@@ -1,6 +1,7 @@
 package com.smartshop.services;
 
 import com.smartshop.dtos.CreateOrderDTO;
+import com.smartshop.dtos.CursorPageDTO;
 import com.smartshop.dtos.OrderDTO;
 import com.smartshop.entity.*;
 import com.smartshop.exceptions.*;
@@ -14,6 +15,7 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -25,6 +27,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.*;
@@ -49,12 +52,39 @@ class OrderServiceTest {
     @Mock
     private PromoCodeRepository promoCodeRepository;
 
+    @Mock
+    private PromoCodeCache promoCodeCache;
+
+    @Mock
+    private PromoCodeRedemptions promoCodeRedemptions;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private ProductSalesCounters salesCounters;
+
     @Mock
     private PaymentRepository paymentRepository;
 
     @Mock
     private OrderMapper orderMapper;
 
+    @Mock
+    private ReferenceAllocator referenceAllocator;
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private ClientOrderStatsService clientOrderStatsService;
+
+    @Mock
+    private ChangeHorizon changeHorizon;
+
+    @Mock
+    private OutboxService outboxService;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -136,8 +166,8 @@ class OrderServiceTest {
     @Test
     void createOrder_Success() {
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.of(testProduct));
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(referenceAllocator.nextOrderReference()).willReturn("CMD-2025-00001");
         given(orderRepository.save(any(Order.class))).willAnswer(invocation -> {
             Order order = invocation.getArgument(0);
             order.setId(1L);
@@ -150,6 +180,7 @@ class OrderServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getReference()).isEqualTo("CMD-2025-00001");
         verify(orderRepository).save(any(Order.class));
+        verify(clientOrderStatsService).recordCreated(any(Order.class));
     }
 
     @Test
@@ -184,8 +215,7 @@ class OrderServiceTest {
     @Test
     void createOrder_ProductNotFound_ThrowsException() {
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.empty());
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(Collections.emptyList());
 
         assertThatThrownBy(() -> orderService.createOrder(createOrderDTO))
                 .isInstanceOf(ProductNotFoundException.class)
@@ -196,8 +226,7 @@ class OrderServiceTest {
     void createOrder_ProductDeleted_ThrowsException() {
         testProduct.setDeleted(true);
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.of(testProduct));
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
 
         assertThatThrownBy(() -> orderService.createOrder(createOrderDTO))
                 .isInstanceOf(OrderBusinessException.class)
@@ -208,26 +237,45 @@ class OrderServiceTest {
     void createOrder_WithValidPromoCode_Success() {
         createOrderDTO.setPromoCode("PROMO10");
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.of(testProduct));
-        given(promoCodeRepository.findByCode("PROMO10")).willReturn(Optional.of(testPromoCode));
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(promoCodeCache.find("PROMO10")).willReturn(Optional.of(testPromoCode));
+        given(promoCodeRepository.getReferenceById(testPromoCode.getId())).willReturn(testPromoCode);
+        given(referenceAllocator.nextOrderReference()).willReturn("CMD-2025-00001");
         given(orderRepository.save(any(Order.class))).willAnswer(invocation -> invocation.getArgument(0));
         given(orderMapper.toDTO(any(Order.class))).willReturn(testOrderDTO);
 
+        given(promoCodeRedemptions.redeem(testPromoCode)).willReturn(true);
+
         orderService.createOrder(createOrderDTO);
 
-        verify(promoCodeRepository).save(any(PromoCode.class));
+        verify(promoCodeRedemptions).redeem(testPromoCode);
+        verify(promoCodeRepository, never()).save(any(PromoCode.class));
         verify(orderRepository).save(orderCaptor.capture());
         assertThat(orderCaptor.getValue().getPromoCode()).isEqualTo(testPromoCode);
     }
 
+    @Test
+    void createOrder_PromoCodeExhaustedConcurrently_ThrowsException() {
+        createOrderDTO.setPromoCode("PROMO10");
+        given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(promoCodeCache.find("PROMO10")).willReturn(Optional.of(testPromoCode));
+        given(promoCodeRepository.getReferenceById(testPromoCode.getId())).willReturn(testPromoCode);
+        given(referenceAllocator.nextOrderReference()).willReturn("CMD-2025-00001");
+        given(promoCodeRedemptions.redeem(testPromoCode)).willReturn(false);
+
+        assertThatThrownBy(() -> orderService.createOrder(createOrderDTO))
+                .isInstanceOf(PromocodeInvalidException.class)
+                .hasMessageContaining("nombre maximal d'utilisations");
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
     @Test
     void createOrder_PromoCodeNotFound_ThrowsException() {
         createOrderDTO.setPromoCode("INVALID");
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.of(testProduct));
-        given(promoCodeRepository.findByCode("INVALID")).willReturn(Optional.empty());
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(promoCodeCache.find("INVALID")).willReturn(Optional.empty());
 
         assertThatThrownBy(() -> orderService.createOrder(createOrderDTO))
                 .isInstanceOf(PromocodeNotFoundException.class)
@@ -239,9 +287,8 @@ class OrderServiceTest {
         testPromoCode.setActive(false);
         createOrderDTO.setPromoCode("PROMO10");
         given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
-        given(productRepository.findById(1L)).willReturn(Optional.of(testProduct));
-        given(promoCodeRepository.findByCode("PROMO10")).willReturn(Optional.of(testPromoCode));
-        given(orderRepository.findMaxId()).willReturn(0L);
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(promoCodeCache.find("PROMO10")).willReturn(Optional.of(testPromoCode));
 
         assertThatThrownBy(() -> orderService.createOrder(createOrderDTO))
                 .isInstanceOf(PromocodeInvalidException.class)
@@ -249,6 +296,50 @@ class OrderServiceTest {
     }
 
 
+    @Test
+    void createOrder_ManyLines_LoadsProductsInSingleQuery() {
+        List<CreateOrderDTO.CreateOrderItemDTO> items = new ArrayList<>();
+        List<Product> products = new ArrayList<>();
+        for (long id = 1; id <= 80; id++) {
+            products.add(Product.builder().id(id).nom("Produit " + id)
+                    .prix(new BigDecimal("10.00")).stock(100).deleted(false).build());
+            items.add(new CreateOrderDTO.CreateOrderItemDTO(id, 1));
+        }
+        createOrderDTO.setItems(items);
+        given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
+        given(productRepository.findAllById(anyIterable())).willReturn(products);
+        given(referenceAllocator.nextOrderReference()).willReturn("CMD-2025-00001");
+        given(orderRepository.save(any(Order.class))).willAnswer(invocation -> invocation.getArgument(0));
+        given(orderMapper.toDTO(any(Order.class))).willReturn(testOrderDTO);
+
+        orderService.createOrder(createOrderDTO);
+
+        verify(productRepository, times(1)).findAllById(anyIterable());
+        verify(productRepository, never()).findById(anyLong());
+        verify(orderRepository, times(1)).save(orderCaptor.capture());
+        assertThat(orderCaptor.getValue().getOrderItems()).hasSize(80);
+    }
+
+    @Test
+    void createOrder_InsufficientStock_SavesRejectedOrderOnce() {
+        createOrderDTO.setPromoCode("PROMO10");
+        given(clientRepository.findById(1L)).willReturn(Optional.of(testClient));
+        given(productRepository.findAllById(anyIterable())).willReturn(List.of(testProduct));
+        given(stockReservationService.reserve(any(Order.class), eq(Map.of(1L, 2)))).willReturn(List.of(1L));
+        given(promoCodeCache.find("PROMO10")).willReturn(Optional.of(testPromoCode));
+        given(promoCodeRepository.getReferenceById(testPromoCode.getId())).willReturn(testPromoCode);
+        given(referenceAllocator.nextOrderReference()).willReturn("CMD-2025-00001");
+        given(orderRepository.save(any(Order.class))).willAnswer(invocation -> invocation.getArgument(0));
+        given(orderMapper.toDTO(any(Order.class))).willReturn(testOrderDTO);
+
+        orderService.createOrder(createOrderDTO);
+
+        verify(orderRepository, times(1)).save(orderCaptor.capture());
+        assertThat(orderCaptor.getValue().getStatut()).isEqualTo(OrderStatus.REJECTED);
+        verify(promoCodeRedemptions, never()).redeem(any(PromoCode.class));
+    }
+
+
     @Test
     void getOrderById_Success() {
         given(orderRepository.findById(1L)).willReturn(Optional.of(testOrder));
@@ -310,6 +401,16 @@ class OrderServiceTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    void searchOrders_StartAfterEnd_ThrowsException() {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 0, 0);
+
+        assertThatThrownBy(() -> orderService.searchOrders(null, null, start, start.minusDays(1), PageRequest.of(0, 10)))
+                .isInstanceOf(OrderBusinessException.class)
+                .hasMessageContaining("date de début");
+        verifyNoInteractions(orderRepository);
+    }
+
     @Test
     void getAllOrdersPaginated_Success() {
         Pageable pageable = PageRequest.of(0, 10);
@@ -324,6 +425,43 @@ class OrderServiceTest {
     }
 
 
+    @Test
+    void getOrdersByCursor_FullPage_ReturnsTokenOfLastOrder() {
+        Order older = Order.builder().id(2L).orderDate(LocalDateTime.of(2025, 1, 1, 10, 0)).build();
+        Order oldest = Order.builder().id(1L).orderDate(LocalDateTime.of(2025, 1, 1, 9, 0)).build();
+        testOrder.setId(3L);
+        given(orderRepository.findFirstPage(Limit.of(3))).willReturn(List.of(testOrder, older, oldest));
+        given(orderMapper.toDTO(any(Order.class))).willReturn(testOrderDTO);
+
+        CursorPageDTO<OrderDTO> page = orderService.getOrdersByCursor(null, 2);
+
+        assertThat(page.getContent()).hasSize(2);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(KeysetToken.decode(page.getNextToken())).isEqualTo(new KeysetToken(older.getOrderDate(), 2L));
+    }
+
+    @Test
+    void getOrdersByCursor_WithToken_SeeksAfterPosition() {
+        LocalDateTime date = LocalDateTime.of(2025, 1, 1, 10, 0);
+        String token = new KeysetToken(date, 2L).encode();
+        given(orderRepository.findPageAfter(date, 2L, Limit.of(21))).willReturn(List.of(testOrder));
+        given(orderMapper.toDTO(testOrder)).willReturn(testOrderDTO);
+
+        CursorPageDTO<OrderDTO> page = orderService.getOrdersByCursor(token, 20);
+
+        assertThat(page.getContent()).hasSize(1);
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextToken()).isNull();
+    }
+
+    @Test
+    void getOrdersByCursor_InvalidToken_ThrowsException() {
+        assertThatThrownBy(() -> orderService.getOrdersByCursor("pas-un-jeton", 20))
+                .isInstanceOf(OrderBusinessException.class)
+                .hasMessageContaining("Jeton de pagination invalide");
+    }
+
+
     @Test
     void getOrdersByClient_Success() {
         given(clientRepository.existsById(1L)).willReturn(true);
@@ -405,9 +543,34 @@ class OrderServiceTest {
         OrderDTO result = orderService.confirmOrder(1L);
 
         assertThat(result).isNotNull();
+        verify(stockReservationService).commit(testOrder, Map.of(1L, 2));
+        verify(productRepository, never()).save(any(Product.class));
         verify(orderRepository).save(orderCaptor.capture());
         assertThat(orderCaptor.getValue().getStatut()).isEqualTo(OrderStatus.CONFIRMED);
         assertThat(orderCaptor.getValue().getConfirmedAt()).isNotNull();
+        verify(clientOrderStatsService).recordTransition(testOrder, OrderStatus.PENDING);
+        verify(outboxService).recordOrderEvent(OutboxEventType.ORDER_CONFIRMED, testOrder);
+    }
+
+    @Test
+    void confirmOrder_InsufficientStock_ThrowsException() {
+        testOrder.setMontantPaye(new BigDecimal("240.00"));
+        testOrder.setMontantRestant(BigDecimal.ZERO);
+        testOrder.addOrderItem(OrderItem.builder()
+                .id(1L)
+                .product(testProduct)
+                .productNom("Produit Test")
+                .quantite(2)
+                .prixUnitaire(new BigDecimal("100.00"))
+                .build());
+
+        given(orderRepository.findById(1L)).willReturn(Optional.of(testOrder));
+        given(stockReservationService.commit(eq(testOrder), anyMap())).willReturn(List.of(1L));
+
+        assertThatThrownBy(() -> orderService.confirmOrder(1L))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Produit Test");
+        verify(orderRepository, never()).save(any(Order.class));
     }
 
     @Test
@@ -448,9 +611,11 @@ class OrderServiceTest {
         OrderDTO result = orderService.cancelOrder(1L);
 
         assertThat(result).isNotNull();
+        verify(stockReservationService).release(testOrder);
         verify(orderRepository).save(orderCaptor.capture());
         assertThat(orderCaptor.getValue().getStatut()).isEqualTo(OrderStatus.CANCELED);
         assertThat(orderCaptor.getValue().getCanceledAt()).isNotNull();
+        verify(clientOrderStatsService).recordTransition(testOrder, OrderStatus.PENDING);
     }
 
     @Test
@@ -530,7 +695,8 @@ class OrderServiceTest {
     @Test
     void getTotalSpentByClient_Success() {
         BigDecimal expectedTotal = new BigDecimal("1500.00");
-        given(orderRepository.getTotalSpentByClient(1L)).willReturn(expectedTotal);
+        given(clientOrderStatsService.getStats(1L)).willReturn(
+                ClientOrderStats.builder().clientId(1L).confirmedCount(3).totalConfirmedTTC(expectedTotal).build());
 
         BigDecimal result = orderService.getTotalSpentByClient(1L);
 
@@ -540,7 +706,8 @@ class OrderServiceTest {
 
     @Test
     void countConfirmedOrdersByClient_Success() {
-        given(orderRepository.countConfirmedOrdersByClient(1L)).willReturn(10L);
+        given(clientOrderStatsService.getStats(1L)).willReturn(
+                ClientOrderStats.builder().clientId(1L).confirmedCount(10).build());
 
         long count = orderService.countConfirmedOrdersByClient(1L);
 
@@ -0,0 +1,125 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.OutboxEvent;
+import com.smartshop.entity.OutboxEventType;
+import com.smartshop.events.DomainEvent;
+import com.smartshop.events.DomainEventListener;
+import com.smartshop.events.EventBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private ObjectProvider<DomainEventListener> listenerProvider;
+
+    private final List<DomainEvent> received = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private EventBus eventBus;
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        DomainEventListener listener = new DomainEventListener() {
+            @Override
+            public boolean supports(DomainEvent event) {
+                return true;
+            }
+
+            @Override
+            public void onEvent(DomainEvent event) {
+                received.add(event);
+            }
+        };
+        given(listenerProvider.orderedStream()).willReturn(Stream.of(listener));
+        meterRegistry = new SimpleMeterRegistry();
+        eventBus = new EventBus(listenerProvider, meterRegistry, 4);
+        dispatcher = new OutboxDispatcher(outboxService, eventBus, meterRegistry,
+                200, Duration.ofDays(7), LEASE);
+    }
+
+    @Test
+    void dispatch_PublishesAndAcknowledgesAfterListeners() {
+        given(outboxService.claim(anyInt(), eq(LEASE))).willReturn(events(1, 2));
+
+        assertThat(dispatcher.dispatch()).isEqualTo(2);
+        assertThat(eventBus.drain()).isEqualTo(2);
+
+        assertThat(received).extracting(DomainEvent::id).containsExactly(1L, 2L);
+        verify(outboxService).markPublished(List.of(1L, 2L));
+        assertThat(meterRegistry.counter("smartshop.outbox.dispatched").count()).isEqualTo(2);
+        assertThat(meterRegistry.timer("smartshop.outbox.dispatch.lag").count()).isEqualTo(2);
+    }
+
+    @Test
+    void dispatch_InFlightEventsAreNotPublishedTwice() {
+        given(outboxService.claim(anyInt(), eq(LEASE))).willReturn(events(1, 2), events(1, 2, 3));
+
+        dispatcher.dispatch();
+        assertThat(dispatcher.dispatch()).isEqualTo(1);
+        eventBus.drain();
+
+        assertThat(received).extracting(DomainEvent::id).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void dispatch_FullRing_LeavesRemainingEventsForNextPoll() {
+        given(outboxService.claim(4, LEASE)).willReturn(events(1, 2, 3, 4, 5, 6));
+
+        assertThat(dispatcher.dispatch()).isEqualTo(4);
+        assertThat(dispatcher.dispatch()).isZero();
+        // les événements réservés mais non transmis sont rendus sans attendre la fin du bail
+        verify(outboxService).releaseClaims(List.of(5L, 6L));
+
+        eventBus.drain();
+        assertThat(received).hasSize(4);
+    }
+
+    @Test
+    void dispatch_FailedAcknowledgement_EventsBecomeEligibleAgain() {
+        given(outboxService.claim(anyInt(), eq(LEASE))).willReturn(events(1), events(1));
+        doThrow(new IllegalStateException("base indisponible")).when(outboxService).markPublished(List.of(1L));
+
+        dispatcher.dispatch();
+        eventBus.drain();
+
+        assertThat(dispatcher.dispatch()).isEqualTo(1);
+    }
+
+    private static List<OutboxEvent> events(long... ids) {
+        return LongStream.of(ids)
+                .mapToObj(id -> OutboxEvent.builder()
+                        .id(id)
+                        .eventType(OutboxEventType.ORDER_CREATED)
+                        .aggregateId(id)
+                        .payload("{}")
+                        .createdAt(LocalDateTime.now().minusSeconds(1))
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,159 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.OrderItemRepository;
+import com.smartshop.repositories.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+@Slf4j
+class ProductAutocompleteTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    private ProductAutocomplete autocomplete;
+
+    @BeforeEach
+    void setUp() {
+        autocomplete = new ProductAutocomplete(productRepository, orderItemRepository);
+    }
+
+    @Test
+    void complete_OrdersByPopularityThenName() {
+        build(List.of(
+                        new Object[]{1L, "Souris sans fil"},
+                        new Object[]{2L, "Souris"},
+                        new Object[]{3L, "Sous-main"},
+                        new Object[]{4L, "Clavier"},
+                        new Object[]{5L, "Souris gamer"}),
+                List.of(
+                        new Object[]{1L, null, 40L, null},
+                        new Object[]{3L, null, 90L, null},
+                        new Object[]{4L, null, 500L, null}));
+
+        assertThat(autocomplete.complete("SOU", 10))
+                .containsExactly("Sous-main", "Souris sans fil", "Souris", "Souris gamer");
+        assertThat(autocomplete.complete("souris", 2)).containsExactly("Souris sans fil", "Souris");
+        assertThat(autocomplete.complete("x", 10)).isEmpty();
+        assertThat(autocomplete.complete("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void build_ReplaysWritesMadeWhileReadingTheDatabase() {
+        given(productRepository.findAllActiveNames()).willAnswer(invocation -> {
+            // Validées après la lecture : absentes des lignes rendues
+            autocomplete.index(6L, "Souris verticale");
+            autocomplete.index(2L, "Souris filaire");
+            autocomplete.remove(3L);
+            return List.of(new Object[]{1L, "Souris sans fil"}, new Object[]{2L, "Souris"},
+                    new Object[]{3L, "Sous-main"});
+        });
+        given(orderItemRepository.sumSalesByProduct()).willReturn(List.of());
+
+        autocomplete.build();
+
+        assertThat(autocomplete.complete("sou", 10))
+                .containsExactly("Souris filaire", "Souris sans fil", "Souris verticale");
+    }
+
+    @Test
+    void indexAndRemove_PublishNewSnapshotKeepingPopularity() {
+        build(List.of(
+                        new Object[]{1L, "Souris"},
+                        new Object[]{2L, "Clavier"}),
+                List.<Object[]>of(new Object[]{2L, null, 7L, null}));
+
+        autocomplete.index(2L, "Souris ergonomique");
+        autocomplete.index(3L, "Soundbar");
+        autocomplete.remove(1L);
+
+        assertThat(autocomplete.complete("sou", 10)).containsExactly("Souris ergonomique", "Soundbar");
+        assertThat(autocomplete.complete("cla", 10)).isEmpty();
+        assertThat(autocomplete.size()).isEqualTo(2);
+    }
+
+    @Test
+    void compact_MergesPendingWritesWithoutChangingResults() {
+        autocomplete = new ProductAutocomplete(productRepository, orderItemRepository, 2);
+        build(List.of(
+                        new Object[]{1L, "Souris"},
+                        new Object[]{2L, "Clavier"},
+                        new Object[]{3L, "Sous-main"}),
+                List.<Object[]>of(new Object[]{3L, null, 5L, null}));
+
+        autocomplete.index(2L, "Souris ergonomique");
+        autocomplete.remove(1L);
+        autocomplete.index(4L, "Soundbar");
+        List<String> avant = autocomplete.complete("sou", 10);
+        autocomplete.compact();
+        autocomplete.index(5L, "Souris verticale");
+
+        assertThat(avant).containsExactly("Sous-main", "Soundbar", "Souris ergonomique");
+        assertThat(autocomplete.complete("sou", 10))
+                .containsExactly("Sous-main", "Soundbar", "Souris ergonomique", "Souris verticale");
+        assertThat(autocomplete.complete("cla", 10)).isEmpty();
+        assertThat(autocomplete.size()).isEqualTo(4);
+    }
+
+    /**
+     * Latence sur un catalogue d'un million de noms (désactivé par défaut) :
+     * mvn test -Dtest=ProductAutocompleteTest -Dsmartshop.benchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "smartshop.benchmark", matches = "true")
+    void complete_MillionProducts_P99UnderOneMillisecond() {
+        Random random = new Random(42);
+        List<Object[]> produits = new ArrayList<>();
+        List<Object[]> ventes = new ArrayList<>();
+        String[] mots = {"souris", "clavier", "ecran", "casque", "cable", "chargeur", "tapis", "support"};
+        for (long id = 1; id <= 1_000_000; id++) {
+            produits.add(new Object[]{id, mots[random.nextInt(mots.length)] + " " + Long.toString(id, 36)});
+            ventes.add(new Object[]{id, null, (long) random.nextInt(10_000), null});
+        }
+        build(produits, ventes);
+
+        String[] prefixes = {"s", "so", "sou", "c", "ca", "cla", "ecran 1", "tapis a", "support z"};
+        long[] durees = new long[20_000];
+        for (int i = 0; i < 5_000; i++) {
+            autocomplete.complete(prefixes[i % prefixes.length], 10);
+        }
+        for (int i = 0; i < durees.length; i++) {
+            long debut = System.nanoTime();
+            autocomplete.complete(prefixes[i % prefixes.length], 10);
+            durees[i] = System.nanoTime() - debut;
+        }
+        Arrays.sort(durees);
+        long p99 = durees[(int) (durees.length * 0.99)];
+        log.info("autocomplete 1M: p50={}µs p99={}µs", durees[durees.length / 2] / 1000, p99 / 1000);
+
+        long debut = System.nanoTime();
+        autocomplete.index(2_000_000L, "souris de test");
+        log.info("autocomplete 1M: insertion={}ms", (System.nanoTime() - debut) / 1_000_000);
+
+        assertThat(p99).isLessThan(1_000_000L);
+        assertThat(autocomplete.complete("souris de t", 10)).containsExactly("souris de test");
+    }
+
+    private void build(List<Object[]> produits, List<Object[]> ventes) {
+        given(productRepository.findAllActiveNames()).willReturn(produits);
+        given(orderItemRepository.sumSalesByProduct()).willReturn(ventes);
+        autocomplete.build();
+    }
+}
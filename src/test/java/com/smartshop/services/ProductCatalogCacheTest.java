@@ -0,0 +1,169 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductDTO;
+import com.smartshop.entity.Product;
+import com.smartshop.mappers.ProductMapperImpl;
+import com.smartshop.repositories.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCatalogCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ProductCatalogCache cache;
+    private Product clavier;
+    private Product souris;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = newCache(100, Duration.ofMinutes(10));
+        clavier = Product.builder().id(1L).nom("Clavier").prix(new BigDecimal("300.00")).stock(10).deleted(false).build();
+        souris = Product.builder().id(2L).nom("Souris").prix(new BigDecimal("120.00")).stock(4).deleted(false).build();
+    }
+
+    @Test
+    void getById_SecondCallIsServedFromCache() {
+        given(productRepository.findById(1L)).willReturn(Optional.of(clavier));
+
+        cache.getById(1L);
+        ProductDTO dto = cache.getById(1L).orElseThrow();
+
+        assertThat(dto.getNom()).isEqualTo("Clavier");
+        assertThat(dto.getStock()).isEqualTo(10);
+        verify(productRepository, times(1)).findById(1L);
+        assertThat(requests("product", "hit")).isEqualTo(1);
+        assertThat(requests("product", "miss")).isEqualTo(1);
+    }
+
+    @Test
+    void evictStock_ReloadsStockOnlyAndKeepsDescription() {
+        given(productRepository.findById(1L)).willReturn(Optional.of(clavier));
+        given(productRepository.findStockByIds(List.of(1L))).willReturn(List.<Object[]>of(new Object[]{1L, 7}));
+        cache.getById(1L);
+
+        cache.evictStockAfterCommit(List.of(1L));
+        ProductDTO dto = cache.getById(1L).orElseThrow();
+
+        assertThat(dto.getStock()).isEqualTo(7);
+        assertThat(dto.getPrix()).isEqualByComparingTo("300.00");
+        verify(productRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void stockMoveDuringLoad_StillCachesDescription() {
+        given(productRepository.findById(1L)).willAnswer(invocation -> {
+            // mouvement de stock validé pendant la lecture : le stock lu n'est pas gardé, la description l'est
+            cache.evictStockAfterCommit(List.of(1L, 2L));
+            return Optional.of(clavier);
+        });
+        given(productRepository.findStockByIds(List.of(1L))).willReturn(List.<Object[]>of(new Object[]{1L, 9}));
+
+        cache.getById(1L);
+        ProductDTO dto = cache.getById(1L).orElseThrow();
+
+        assertThat(dto.getStock()).isEqualTo(9);
+        verify(productRepository, times(1)).findById(1L);
+        assertThat(requests("product", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void evict_RenamedProductIsNoLongerFoundUnderOldName() {
+        given(productRepository.findByNomAndActive("Clavier")).willReturn(Optional.of(clavier), Optional.empty());
+        cache.getByNom("Clavier");
+
+        cache.evictAfterCommit(1L);
+
+        assertThat(cache.getByNom("Clavier")).isEmpty();
+        verify(productRepository, times(2)).findByNomAndActive("Clavier");
+    }
+
+    @Test
+    void getActivePage_SlicesCachedActiveList() {
+        given(productRepository.findAllActive()).willReturn(List.of(clavier, souris));
+        cache.getAllActive();
+
+        Page<ProductDTO> page = cache.getActivePage(PageRequest.of(1, 1)).orElseThrow();
+
+        assertThat(page.getContent()).extracting(ProductDTO::getNom).containsExactly("Souris");
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(cache.getActivePage(PageRequest.of(0, 1, Sort.by("prix")))).isEmpty();
+        verify(productRepository, times(1)).findAllActive();
+        verify(productRepository, never()).findAllById(List.of(1L, 2L));
+    }
+
+    @Test
+    void sizeBound_EvictsLeastRecentlyUsed() {
+        cache = newCache(1, Duration.ofMinutes(10));
+        given(productRepository.findById(1L)).willReturn(Optional.of(clavier));
+        given(productRepository.findById(2L)).willReturn(Optional.of(souris));
+
+        cache.getById(1L);
+        cache.getById(2L);
+        cache.getById(1L);
+
+        verify(productRepository, times(2)).findById(1L);
+        verify(productRepository, times(1)).findById(2L);
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    void activeListLargerThanSizeBound_IsServedWithoutReloadingDescriptions() {
+        cache = newCache(1, Duration.ofMinutes(10));
+        given(productRepository.findAllActive()).willReturn(List.of(clavier, souris));
+        cache.getAllActive();
+
+        assertThat(cache.getAllActive()).extracting(ProductDTO::getStock).containsExactly(10, 4);
+        assertThat(cache.getById(2L).orElseThrow().getNom()).isEqualTo("Souris");
+        verify(productRepository, times(1)).findAllActive();
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    void getByIds_LooksUpMissingIdsInChunks() {
+        List<Long> ids = LongStream.rangeClosed(1, 2500).boxed().toList();
+        given(productRepository.findAllById(anyList())).willReturn(List.of());
+        given(productRepository.findStockByIds(anyList())).willReturn(List.of());
+
+        cache.getByIds(ids);
+
+        verify(productRepository).findAllById(ids.subList(0, 1000));
+        verify(productRepository).findAllById(ids.subList(1000, 2000));
+        verify(productRepository).findAllById(ids.subList(2000, 2500));
+        verify(productRepository, times(3)).findStockByIds(anyList());
+    }
+
+    private ProductCatalogCache newCache(int maxEntries, Duration ttl) {
+        return new ProductCatalogCache(productRepository, new ProductMapperImpl(), new CatalogVersion(), meterRegistry,
+                maxEntries, ttl, Duration.ofSeconds(30));
+    }
+
+    private double requests(String cacheName, String result) {
+        return meterRegistry.counter("smartshop.catalog.cache.requests", "cache", cacheName, "result", result).count();
+    }
+}
@@ -0,0 +1,150 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductImportJobDTO;
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willCallRealMethod;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductCatalogCache catalogCache;
+
+    @Mock
+    private ProductSearchIndex searchIndex;
+
+    @Mock
+    private ProductAutocomplete autocomplete;
+
+    @Mock
+    private ProductPriceIndex priceIndex;
+
+    @Mock
+    private ChangeHorizon changeHorizon;
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private ProductImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:import;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (id BIGINT AUTO_INCREMENT PRIMARY KEY, nom VARCHAR(150) NOT NULL, " +
+                "prix DECIMAL(12, 2) NOT NULL, stock INT NOT NULL, reserved_stock INT NOT NULL, deleted BOOLEAN NOT NULL, " +
+                "created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP, description VARCHAR(500))");
+        importService = new ProductImportService(productService, productRepository, jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                catalogCache, searchIndex, autocomplete, priceIndex, changeHorizon);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE products");
+    }
+
+    @Test
+    void run_ImportsValidRowsAndReportsRejectedOnes() throws IOException {
+        willCallRealMethod().given(productService).validateProductData(any());
+        given(productRepository.findAllActiveNames()).willReturn(List.<Object[]>of(new Object[]{1L, "Souris"}));
+        Path csv = write("""
+                nom,prix,stock,description
+                Clavier,49.90,10,"Clavier ""AZERTY"", rétroéclairé"
+                Souris,19.99,5,
+                Écran 27 pouces,1299.00,3,"Dalle IPS
+                sur deux lignes"
+
+                Ab,10,1,
+                Câble HDMI,abc,4,
+                Clavier,12.00,2,
+                Casque,89.999,7,
+                """);
+
+        ProductImportJobDTO job = runImport(csv);
+
+        assertThat(job.getStatut()).isEqualTo(ProductImportJobDTO.Statut.TERMINE);
+        assertThat(job.getLignesLues()).isEqualTo(7);
+        assertThat(job.getImportees()).isEqualTo(2);
+        assertThat(job.getRejetees()).isEqualTo(5);
+        assertThat(job.getProgression()).isEqualTo(100);
+        assertThat(job.getErreurs()).extracting(ProductImportJobDTO.ErreurLigne::getLigne)
+                .containsExactly(3L, 7L, 8L, 9L, 10L);
+        assertThat(jdbcTemplate.queryForList("SELECT description FROM products ORDER BY id", String.class))
+                .containsExactly("Clavier \"AZERTY\", rétroéclairé", "Dalle IPS\nsur deux lignes");
+        assertThat(Files.readAllLines(importService.getErrorReport(job.getId()))).hasSize(6)
+                .contains("3,\"Un produit 'Souris' existe déjà\"");
+        verify(searchIndex).build();
+    }
+
+    @Test
+    void run_RejectsNamesCreatedAfterTheInitialLoad() throws IOException {
+        willCallRealMethod().given(productService).validateProductData(any());
+        given(productRepository.findAllActiveNames()).willReturn(List.of());
+        // Créé par l'API après le chargement des noms, avant l'insertion du lot
+        jdbcTemplate.update("INSERT INTO products (nom, prix, stock, reserved_stock, deleted, created_at) " +
+                "VALUES ('Souris', 19.99, 5, 0, false, CURRENT_TIMESTAMP)");
+        Path csv = write("nom,prix,stock\nClavier,49.90,10\nSouris,21.00,3\n");
+
+        ProductImportJobDTO job = runImport(csv);
+
+        assertThat(job.getImportees()).isEqualTo(1);
+        assertThat(job.getErreurs()).extracting(ProductImportJobDTO.ErreurLigne::getLigne).containsExactly(3L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products WHERE nom = 'Souris'", Long.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void run_MissingRequiredColumn_FailsWithoutInserting() throws IOException {
+        Path csv = write("nom,stock\nClavier,10\n");
+
+        ProductImportJobDTO job = runImport(csv);
+
+        assertThat(job.getStatut()).isEqualTo(ProductImportJobDTO.Statut.ECHOUE);
+        assertThat(job.getMessage()).contains("prix");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products", Long.class)).isZero();
+        verify(searchIndex, never()).build();
+    }
+
+    private ProductImportJobDTO runImport(Path csv) throws IOException {
+        ProductImportService.ImportJob job = importService.register("produits.csv", Files.size(csv));
+        importService.run(job, csv);
+        return importService.getJob(job.id);
+    }
+
+    private Path write(String contenu) throws IOException {
+        Path csv = tempDir.resolve("produits.csv");
+        Files.writeString(csv, contenu, StandardCharsets.UTF_8);
+        return csv;
+    }
+}
@@ -0,0 +1,111 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ProductPriceIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductPriceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        given(productRepository.findAllActivePrices()).willReturn(List.of(
+                new Object[]{1L, new BigDecimal("19.99")},
+                new Object[]{2L, new BigDecimal("5.00")},
+                new Object[]{3L, new BigDecimal("19.99")},
+                new Object[]{4L, new BigDecimal("120.50")},
+                new Object[]{5L, new BigDecimal("49.90")}));
+        index = new ProductPriceIndex(productRepository);
+        index.build();
+    }
+
+    @Test
+    void range_BoundsAreInclusiveAndOrderedByPriceThenId() {
+        assertThat(index.range(new BigDecimal("19.99"), new BigDecimal("49.90"))).containsExactly(1L, 3L, 5L);
+        assertThat(index.range(new BigDecimal("19.995"), new BigDecimal("49.899"))).isEmpty();
+        assertThat(index.range(new BigDecimal("200"), new BigDecimal("10"))).isEmpty();
+    }
+
+    @Test
+    void range_PaginatesInMemory() {
+        Page<Long> page = index.range(new BigDecimal("0"), new BigDecimal("1000"), PageRequest.of(1, 2));
+        Page<Long> desc = index.range(null, null, PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "prix")));
+
+        assertThat(page.getContent()).containsExactly(3L, 5L);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(desc.getContent()).containsExactly(4L, 5L);
+        assertThat(ProductPriceIndex.sortsByPrix(PageRequest.of(0, 2, Sort.by("prix")))).isTrue();
+        assertThat(ProductPriceIndex.sortsByPrix(PageRequest.of(0, 2, Sort.by("nom")))).isFalse();
+    }
+
+    @Test
+    void indexAndRemove_MoveProductsWithoutRebuild() {
+        index.index(2L, new BigDecimal("30.00"));
+        index.index(6L, new BigDecimal("19.99"));
+        index.remove(1L);
+
+        assertThat(index.range(new BigDecimal("10"), new BigDecimal("50"))).containsExactly(3L, 6L, 2L, 5L);
+        assertThat(index.range(null, new BigDecimal("10"))).isEmpty();
+        assertThat(index.size()).isEqualTo(5);
+    }
+
+    @Test
+    void range_PaginatesAcrossPendingWritesAndAfterCompaction() {
+        index = new ProductPriceIndex(productRepository, 1_000_000);
+        index.build();
+        index.index(6L, new BigDecimal("1.00"));
+        index.index(3L, new BigDecimal("200.00"));
+        index.index(7L, new BigDecimal("19.99"));
+        index.remove(5L);
+        index.index(5L, new BigDecimal("49.90"));
+
+        List<Long> attendu = List.of(6L, 2L, 1L, 7L, 5L, 4L, 3L);
+        for (int taille = 1; taille <= 3; taille++) {
+            for (int page = 0; page * taille < attendu.size(); page++) {
+                List<Long> tranche = attendu.subList(page * taille, Math.min((page + 1) * taille, attendu.size()));
+                assertThat(index.range(null, null, PageRequest.of(page, taille)).getContent()).isEqualTo(tranche);
+            }
+        }
+        assertThat(index.range(null, null, PageRequest.of(0, 3, Sort.by(Sort.Direction.DESC, "prix"))).getContent())
+                .containsExactly(3L, 4L, 5L);
+        assertThat(index.range(new BigDecimal("19.99"), new BigDecimal("19.99"), PageRequest.of(0, 10)).getTotalElements())
+                .isEqualTo(2);
+
+        index.compact();
+        index.index(1L, new BigDecimal("300.00"));
+        index.compact();
+        assertThat(index.range(null, null)).containsExactly(6L, 2L, 7L, 5L, 4L, 3L, 1L);
+        assertThat(index.size()).isEqualTo(7);
+    }
+
+    @Test
+    void build_ReplaysWritesMadeWhileReadingTheDatabase() {
+        given(productRepository.findAllActivePrices()).willAnswer(invocation -> {
+            // Validées après la lecture : absentes des lignes rendues
+            index.index(6L, new BigDecimal("7.00"));
+            index.remove(2L);
+            return List.of(new Object[]{1L, new BigDecimal("19.99")}, new Object[]{2L, new BigDecimal("5.00")});
+        });
+
+        index.build();
+
+        assertThat(index.range(null, null)).containsExactly(6L, 1L);
+    }
+}
@@ -0,0 +1,168 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.ProductSalesDTO;
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.Product;
+import com.smartshop.repositories.OrderItemRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSalesCountersTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Africa/Casablanca");
+
+    @Mock
+    private OrderItemRepository orderItemRepository;
+
+    private Instant now = LocalDateTime.of(2025, 6, 1, 12, 0).atZone(ZONE).toInstant();
+    private ProductSalesCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZONE;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now;
+            }
+        };
+        counters = new ProductSalesCounters(orderItemRepository, clock);
+    }
+
+    @Test
+    void load_ThenConfirmations_UpdateTotalsAndTop() {
+        given(orderItemRepository.sumSalesByProduct()).willReturn(List.of(
+                new Object[]{1L, "Souris", 10L, new BigDecimal("199.90")},
+                new Object[]{2L, "Clavier", 4L, new BigDecimal("200.00")}));
+        given(orderItemRepository.streamConfirmedLines(any())).willReturn(Stream.empty());
+        counters.load();
+
+        counters.recordConfirmedAfterCommit(order(line(2L, "Clavier", 7, "350.00"), line(3L, "Écran", 1, "1299.00")));
+
+        assertThat(counters.top(10, SalesPeriod.TOUT)).extracting(ProductSalesDTO::getProductId)
+                .containsExactly(2L, 1L, 3L);
+        assertThat(counters.top(1, SalesPeriod.TOUT).get(0).getQuantite()).isEqualTo(11);
+        assertThat(counters.getTotalQuantitySoldByProduct(2L)).isEqualTo(11);
+        assertThat(counters.getTotalRevenueByProduct(2L)).isEqualByComparingTo("550.00");
+        assertThat(counters.getTotalRevenueByProduct(99L)).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void load_Periodic_ReplacesCountersWithSalesConfirmedOnOtherInstances() {
+        given(orderItemRepository.streamConfirmedLines(any())).willAnswer(invocation -> Stream.empty());
+        given(orderItemRepository.sumSalesByProduct()).willReturn(
+                List.<Object[]>of(new Object[]{1L, "Souris", 10L, new BigDecimal("199.90")}),
+                List.of(new Object[]{1L, "Souris", 10L, new BigDecimal("199.90")},
+                        new Object[]{2L, "Clavier", 25L, new BigDecimal("1250.00")}));
+        counters.load();
+        assertThat(counters.top(10, SalesPeriod.TOUT)).extracting(ProductSalesDTO::getProductId).containsExactly(1L);
+
+        // Clavier vendu par une autre instance : visible au rechargement suivant
+        now = now.plus(Duration.ofMinutes(10));
+        counters.load();
+
+        assertThat(counters.top(10, SalesPeriod.TOUT)).extracting(ProductSalesDTO::getProductId)
+                .containsExactly(2L, 1L);
+        assertThat(counters.getTotalRevenueByProduct(2L)).isEqualByComparingTo("1250.00");
+    }
+
+    @Test
+    void load_ReplaysSalesRecordedDuringLoadThatAreMissingFromTheSnapshot() {
+        LocalDateTime avant = LocalDateTime.ofInstant(now, ZONE).minusSeconds(5);
+        given(orderItemRepository.sumSalesByProduct()).willAnswer(invocation -> {
+            // Validées pendant la lecture : la commande 7 est dans l'instantané, la 8 (confirmée
+            // plus tôt mais validée après) n'y est pas
+            counters.record(List.of(new ProductSalesCounters.Sale(7L, 1L, "Souris", 2, 3998, 0)));
+            counters.recordConfirmedAfterCommit(order(8L, avant, line(1L, "Souris", 3, "59.97")));
+            return List.<Object[]>of(new Object[]{1L, "Souris", 12L, new BigDecimal("239.88")});
+        });
+        given(orderItemRepository.streamConfirmedLines(any())).willReturn(
+                Stream.<Object[]>of(new Object[]{1L, avant, 2, 7L}));
+
+        counters.load();
+
+        assertThat(counters.getTotalQuantitySoldByProduct(1L)).isEqualTo(15);
+        assertThat(counters.getTotalRevenueByProduct(1L)).isEqualByComparingTo("299.85");
+        assertThat(counters.getSales(1L, SalesPeriod.HEURE).getQuantite()).isEqualTo(5);
+    }
+
+    @Test
+    void windows_DropSalesOnceTheirBucketLeavesTheWindow() {
+        counters.recordConfirmedAfterCommit(order(line(1L, "Souris", 5, "99.95")));
+        now = now.plus(Duration.ofMinutes(30));
+        counters.recordConfirmedAfterCommit(order(line(2L, "Clavier", 3, "150.00")));
+
+        assertThat(counters.top(5, SalesPeriod.HEURE)).extracting(ProductSalesDTO::getQuantite)
+                .containsExactly(5L, 3L);
+
+        now = now.plus(Duration.ofMinutes(45));
+        assertThat(counters.top(5, SalesPeriod.HEURE)).extracting(ProductSalesDTO::getProductId)
+                .containsExactly(2L);
+        assertThat(counters.getSales(1L, SalesPeriod.JOUR).getQuantite()).isEqualTo(5);
+
+        now = now.plus(Duration.ofDays(31));
+        assertThat(counters.top(5, SalesPeriod.MOIS)).isEmpty();
+        assertThat(counters.getSales(1L, SalesPeriod.TOUT).getQuantite()).isEqualTo(5);
+    }
+
+    @Test
+    void top_KeepsOnlyTopKAndReordersOnIncrease() {
+        for (long id = 1; id <= ProductSalesCounters.TOP_K + 20; id++) {
+            counters.recordConfirmedAfterCommit(order(line(id, "Produit " + id, (int) id, "1.00")));
+        }
+        counters.recordConfirmedAfterCommit(order(line(1L, "Produit 1", 500, "1.00")));
+
+        List<ProductSalesDTO> top = counters.top(ProductSalesCounters.TOP_K, SalesPeriod.TOUT);
+        assertThat(top).hasSize(ProductSalesCounters.TOP_K);
+        assertThat(top.get(0).getProductId()).isEqualTo(1L);
+        assertThat(top.get(1).getProductId()).isEqualTo(ProductSalesCounters.TOP_K + 20L);
+        assertThat(top).extracting(ProductSalesDTO::getQuantite).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    }
+
+    private Order order(OrderItem... items) {
+        return order(null, LocalDateTime.ofInstant(now, ZONE), items);
+    }
+
+    private Order order(Long id, LocalDateTime confirmedAt, OrderItem... items) {
+        Order order = new Order();
+        order.setId(id);
+        order.setConfirmedAt(confirmedAt);
+        order.setOrderItems(new ArrayList<>(List.of(items)));
+        return order;
+    }
+
+    private static OrderItem line(Long productId, String nom, int quantite, String total) {
+        Product product = new Product();
+        product.setId(productId);
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+        item.setProductNom(nom);
+        item.setQuantite(quantite);
+        item.setTotalLigne(new BigDecimal(total));
+        return item;
+    }
+}
@@ -0,0 +1,88 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchIndexTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        given(productRepository.findAllActiveNames()).willReturn(List.of(
+                new Object[]{1L, "Souris sans fil"},
+                new Object[]{2L, "Tapis de souris"},
+                new Object[]{3L, "Souris"},
+                new Object[]{4L, "Clavier mécanique"},
+                new Object[]{5L, "Grosouris"}));
+        index = new ProductSearchIndex(productRepository);
+        index.build();
+    }
+
+    @Test
+    void search_RanksExactThenPrefixThenWordStartThenInfix() {
+        assertThat(index.search("SOURIS")).containsExactly(3L, 1L, 2L, 5L);
+    }
+
+    @Test
+    void search_AllTrigramsPresentButNotContiguous_IsNotAMatch() {
+        // "sou" et "uri" existent, mais aucun nom ne contient "souri x"
+        assertThat(index.search("souri x")).isEmpty();
+        assertThat(index.search("inconnu")).isEmpty();
+    }
+
+    @Test
+    void search_ShortTerm_ScansNames() {
+        assertThat(index.search("cl")).containsExactly(4L);
+        assertThat(index.search("")).hasSize(5);
+    }
+
+    @Test
+    void build_ReplaysWritesMadeWhileReadingTheDatabase() {
+        given(productRepository.findAllActiveNames()).willAnswer(invocation -> {
+            // Validées après la lecture : absentes des lignes rendues
+            index.index(6L, "Souris verticale");
+            index.remove(3L);
+            return List.of(new Object[]{1L, "Souris sans fil"}, new Object[]{3L, "Souris"});
+        });
+
+        index.build();
+
+        assertThat(index.search("souris")).containsExactly(1L, 6L);
+    }
+
+    @Test
+    void index_RenameAndRemove_AreVisibleImmediately() {
+        index.index(4L, "Clavier sans fil");
+        index.remove(1L);
+
+        assertThat(index.search("sans fil")).containsExactly(4L);
+        assertThat(index.search("mécanique")).isEmpty();
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    void compaction_KeepsLiveDocumentsSearchable() {
+        for (long i = 0; i < 3000; i++) {
+            index.index(100L, "Produit temporaire " + i);
+        }
+
+        assertThat(index.search("temporaire 2999")).containsExactly(100L);
+        assertThat(index.search("temporaire 1")).isEmpty();
+        assertThat(index.search("souris")).hasSize(4);
+        assertThat(index.size()).isEqualTo(6);
+    }
+}
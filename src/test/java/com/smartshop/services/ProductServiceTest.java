@@ -0,0 +1,89 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.StockBatchDTO.StockAdjustmentDTO;
+import com.smartshop.dtos.StockBatchResultDTO;
+import com.smartshop.dtos.StockBatchResultDTO.Statut;
+import com.smartshop.exceptions.ProductBusinessException;
+import com.smartshop.mappers.ProductMapper;
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductMapper productMapper;
+
+    @Mock
+    private StockAvailability stockAvailability;
+
+    @Mock
+    private ProductCatalogCache catalogCache;
+
+    @Mock
+    private ProductSearchIndex searchIndex;
+
+    @Mock
+    private ProductAutocomplete autocomplete;
+
+    @Mock
+    private ProductPriceIndex priceIndex;
+
+    @Mock
+    private ProductSalesCounters salesCounters;
+
+    @Mock
+    private ChangeHorizon changeHorizon;
+
+    @InjectMocks
+    private ProductService productService;
+
+    @Test
+    void adjustStockBatch_CumulatesLinesPerProductAndReportsEachLine() {
+        // Produit 1 : deux lignes cumulées ; 2 : stock insuffisant ; 99 : inconnu
+        given(productRepository.adjustStock(Map.of(1L, 7, 2L, -50, 99L, 3))).willReturn(List.of(2L, 99L));
+        given(productRepository.findStockByIds(Set.of(2L, 99L)))
+                .willReturn(List.<Object[]>of(new Object[]{2L, 10}));
+
+        StockBatchResultDTO result = productService.adjustStockBatch(List.of(
+                new StockAdjustmentDTO(1L, 10),
+                new StockAdjustmentDTO(2L, -50),
+                new StockAdjustmentDTO(1L, -3),
+                new StockAdjustmentDTO(99L, 3)));
+
+        assertThat(result.getAppliquees()).isEqualTo(2);
+        assertThat(result.getRejetees()).isEqualTo(2);
+        assertThat(result.getLignes()).extracting(StockBatchResultDTO.LigneResultat::getStatut)
+                .containsExactly(Statut.APPLIQUE, Statut.STOCK_INSUFFISANT, Statut.APPLIQUE, Statut.PRODUIT_INTROUVABLE);
+        assertThat(result.getLignes().get(1).getMessage()).isEqualTo("Stock disponible insuffisant: stock actuel 10");
+        assertThat(result.getLignes().get(3).getMessage()).isEqualTo("Produit non trouvé avec l'ID: 99");
+        then(stockAvailability).should().addAfterCommit(Map.of(1L, 7));
+        then(catalogCache).should().evictStockAfterCommit(Set.of(1L));
+    }
+
+    @Test
+    void adjustStockBatch_CumulOverflow_ThrowsBusinessExceptionWithoutWriting() {
+        assertThatThrownBy(() -> productService.adjustStockBatch(List.of(
+                new StockAdjustmentDTO(1L, Integer.MAX_VALUE),
+                new StockAdjustmentDTO(1L, 1))))
+                .isInstanceOf(ProductBusinessException.class)
+                .hasMessage("Le cumul des ajustements du produit ID=1 dépasse la limite d'un ajustement (2147483647 unités)");
+
+        then(productRepository).should(never()).adjustStock(anyMap());
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.PromoCode;
+import com.smartshop.repositories.PromoCodeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeCacheTest {
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PromoCodeSpace space;
+    private PromoCodeCache cache;
+    private PromoCode ete;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        space = new PromoCodeSpace(promoCodeRepository, 3_600_000);
+        cache = new PromoCodeCache(promoCodeRepository, space, meterRegistry, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        ete = PromoCode.builder().id(1L).code("PROMO-ETE1").discountPercentage(10).maxUses(2).usesCount(1).build();
+    }
+
+    @Test
+    void find_UnknownCodesNeverReachTheDatabase() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-ETE1"));
+        space.load();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(cache.find("PROMO-" + i)).isEmpty();
+        }
+
+        verify(promoCodeRepository, never()).findByCode(anyString());
+        assertThat(requests("unknown")).isEqualTo(100);
+    }
+
+    @Test
+    void find_KnownCodeMissingInDatabaseIsCachedAsNegative() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-SUPP"));
+        given(promoCodeRepository.findByCode("PROMO-SUPP")).willReturn(Optional.empty());
+        space.load();
+
+        assertThat(cache.find("PROMO-SUPP")).isEmpty();
+        assertThat(cache.find("PROMO-SUPP")).isEmpty();
+
+        verify(promoCodeRepository, times(1)).findByCode("PROMO-SUPP");
+        assertThat(requests("negative")).isEqualTo(1);
+    }
+
+    @Test
+    void find_KnownCodeIsServedFromCacheUntilWrittenOrUsed() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-ETE1"));
+        PromoCode utilise = PromoCode.builder().id(1L).code("PROMO-ETE1").discountPercentage(10).maxUses(2).usesCount(2).build();
+        PromoCode desactive = PromoCode.builder().id(1L).code("PROMO-ETE1").discountPercentage(10).active(false).build();
+        given(promoCodeRepository.findByCode("PROMO-ETE1"))
+                .willReturn(Optional.of(ete), Optional.of(utilise), Optional.of(desactive));
+        space.load();
+
+        assertThat(cache.find("PROMO-ETE1").orElseThrow().isValid()).isTrue();
+        assertThat(cache.find("PROMO-ETE1").orElseThrow().isValid()).isTrue();
+        assertThat(requests("lookup")).isEqualTo(1);
+        assertThat(requests("hit")).isEqualTo(1);
+
+        // Dernière utilisation comptée : le plafond atteint est relu
+        cache.usedAfterCommit("PROMO-ETE1");
+        assertThat(cache.find("PROMO-ETE1").orElseThrow().isValid()).isFalse();
+
+        cache.changedAfterCommit("PROMO-ETE1", "PROMO-ETE1");
+        assertThat(cache.find("PROMO-ETE1").orElseThrow().getActive()).isFalse();
+        assertThat(requests("lookup")).isEqualTo(3);
+
+        // Suppression : PromoCodeService retire aussi le code de l'espace
+        cache.changedAfterCommit("PROMO-ETE1", null);
+        space.release(List.of("PROMO-ETE1"));
+        assertThat(cache.find("PROMO-ETE1")).isEmpty();
+        assertThat(requests("lookup")).isEqualTo(3);
+    }
+
+    @Test
+    void find_CachedCodeIsRereadAfterTtl() {
+        cache = new PromoCodeCache(promoCodeRepository, space, meterRegistry, Duration.ZERO, Duration.ofSeconds(30));
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-ETE1"));
+        given(promoCodeRepository.findByCode("PROMO-ETE1")).willReturn(Optional.of(ete));
+        space.load();
+
+        cache.find("PROMO-ETE1");
+        cache.find("PROMO-ETE1");
+
+        verify(promoCodeRepository, times(2)).findByCode("PROMO-ETE1");
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("smartshop.promo-codes.cache.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,96 @@
+package com.smartshop.services;
+
+import com.smartshop.dtos.PromoCodeBatchDTO;
+import com.smartshop.dtos.PromoCodeBatchResultDTO;
+import com.smartshop.dtos.PromoCodeDto;
+import com.smartshop.entity.PromoCode;
+import com.smartshop.exceptions.PromocodeAlreadyExistsException;
+import com.smartshop.exceptions.PromocodeBusinessException;
+import com.smartshop.mappers.PromoCodeMapper;
+import com.smartshop.repositories.PromoCodeRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+
+import static com.smartshop.services.UniquenessGuard.KeySpace.PROMO_CODE;
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeServiceTest {
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    @Mock
+    private PromoCodeMapper promoCodeMapper;
+
+    @Mock
+    private PromoCodeCache promoCodeCache;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private PromoCodeSpace promoCodeSpace;
+
+    @Mock
+    private UniquenessGuard uniquenessGuard;
+
+    @InjectMocks
+    private PromoCodeService promoCodeService;
+
+    @Test
+    void generatePromoCodes_RedrawsCodesTakenByAnotherInstance() {
+        given(promoCodeSpace.allocate(3)).willReturn(List.of("PROMO-AAAA", "PROMO-BBBB", "PROMO-CCCC"));
+        given(promoCodeSpace.allocate(1)).willReturn(List.of("PROMO-DDDD"));
+        given(promoCodeSpace.capacity()).willReturn(PromoCodeSpace.CAPACITY);
+        given(promoCodeRepository.insertCodes(anyList(), eq(10), eq(1), isNull(), isNull()))
+                .willReturn(List.of("PROMO-BBBB"), List.of());
+
+        PromoCodeBatchResultDTO resultat = promoCodeService.generatePromoCodes(lot(3));
+
+        assertThat(resultat.getCodes()).containsExactly("PROMO-AAAA", "PROMO-CCCC", "PROMO-DDDD");
+        then(promoCodeSpace).should().refresh();
+        then(promoCodeRepository).should().insertCodes(eq(List.of("PROMO-DDDD")), eq(10), eq(1), isNull(), isNull());
+        then(promoCodeCache).should().createdAfterCommit(List.of("PROMO-AAAA", "PROMO-CCCC", "PROMO-DDDD"));
+    }
+
+    @Test
+    void generatePromoCodes_GivesUpWhenCodesKeepColliding() {
+        given(promoCodeSpace.allocate(anyInt())).willReturn(List.of("PROMO-AAAA"));
+        given(promoCodeRepository.insertCodes(anyList(), eq(10), eq(1), isNull(), isNull()))
+                .willReturn(List.of("PROMO-AAAA"));
+
+        assertThatThrownBy(() -> promoCodeService.generatePromoCodes(lot(1)))
+                .isInstanceOf(PromocodeBusinessException.class);
+        then(promoCodeRepository).should(times(3)).insertCodes(anyList(), eq(10), eq(1), isNull(), isNull());
+        then(promoCodeCache).shouldHaveNoInteractions();
+    }
+
+    @Test
+    void createPromoCode_MapsUniqueViolationMissedByTheFilterToConflict() {
+        PromoCodeDto dto = PromoCodeDto.builder().code("PROMO-AB12").discountPercentage(15).build();
+        PromoCode entite = new PromoCode();
+        entite.setCode("PROMO-AB12");
+        // Filtre en retard : code créé par une autre instance
+        given(uniquenessGuard.exists(eq(PROMO_CODE), eq("PROMO-AB12"), any())).willReturn(false);
+        given(promoCodeMapper.toEntity(dto)).willReturn(entite);
+        given(promoCodeRepository.saveAndFlush(entite))
+                .willThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint"));
+
+        assertThatThrownBy(() -> promoCodeService.createPromoCode(dto))
+                .isInstanceOf(PromocodeAlreadyExistsException.class);
+        then(promoCodeCache).shouldHaveNoInteractions();
+    }
+
+    private static PromoCodeBatchDTO lot(int nombre) {
+        return PromoCodeBatchDTO.builder().nombre(nombre).discountPercentage(10).build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.smartshop.services;
+
+import com.smartshop.exceptions.PromocodeBusinessException;
+import com.smartshop.repositories.PromoCodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class PromoCodeSpaceTest {
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    private PromoCodeSpace space;
+
+    @BeforeEach
+    void setUp() {
+        space = new PromoCodeSpace(promoCodeRepository, 3_600_000);
+    }
+
+    @Test
+    void permute_IsABijectionOverTheCodeSpace() {
+        int[] keys = {0x1234567, -98765, 42, 0x7FFFFFFF};
+        boolean[] vus = new boolean[PromoCodeSpace.CAPACITY];
+        int doublons = 0;
+        for (int position = 0; position < PromoCodeSpace.CAPACITY; position++) {
+            int index = PromoCodeSpace.permute(position, keys);
+            if (vus[index]) {
+                doublons++;
+            }
+            vus[index] = true;
+        }
+        assertThat(doublons).isZero();
+        assertThat(PromoCodeSpace.codeOf(PromoCodeSpace.indexOf("PROMO-Z9A0"))).isEqualTo("PROMO-Z9A0");
+        assertThat(PromoCodeSpace.indexOf("SUMMER2024")).isEqualTo(-1);
+    }
+
+    @Test
+    void allocate_SkipsTakenCodesAndReportsFill() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-AAAA", "PROMO-0000", "HORS-FORMAT"));
+        space.load();
+        assertThat(space.used()).isEqualTo(2);
+
+        List<String> codes = space.allocate(50_000);
+
+        Set<String> distincts = new HashSet<>(codes);
+        assertThat(distincts).hasSize(50_000).doesNotContain("PROMO-AAAA", "PROMO-0000");
+        assertThat(codes).allMatch(code -> code.matches("^PROMO-[A-Z0-9]{4}$"));
+        assertThat(space.used()).isEqualTo(50_002);
+
+        space.release(codes.subList(0, 10));
+        space.markTaken("PROMO-AAAA");
+        assertThat(space.used()).isEqualTo(49_992);
+    }
+
+    @Test
+    void allocate_RefusesWhenTheSpaceIsTooFull() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-AAAA"));
+        space.load();
+
+        List<String> reste = space.allocate(PromoCodeSpace.CAPACITY - 1);
+
+        assertThat(reste).hasSize(PromoCodeSpace.CAPACITY - 1).doesNotContain("PROMO-AAAA");
+        assertThat(space.used()).isEqualTo(PromoCodeSpace.CAPACITY);
+        assertThatThrownBy(() -> space.allocate(1)).isInstanceOf(PromocodeBusinessException.class);
+    }
+
+    @Test
+    void load_Periodic_PicksUpCodesCreatedByOtherInstancesAndKeepsLocalOnes() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-AAAA"));
+        space.load();
+        List<String> locaux = space.allocate(3);
+
+        // Une autre instance a créé PROMO-BBBB ; les codes locaux sont déjà validés
+        List<String> enBase = new ArrayList<>(locaux);
+        enBase.addAll(List.of("PROMO-AAAA", "PROMO-BBBB"));
+        given(promoCodeRepository.findAllCodes()).willReturn(enBase);
+        space.load();
+
+        assertThat(space.used()).isEqualTo(5);
+        space.markTaken("PROMO-BBBB");
+        assertThat(space.used()).isEqualTo(5);
+    }
+
+    @Test
+    void refresh_AddsRecentCodesAndReloadKeepsBatchesInFlight() {
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-AAAA"));
+        space.refresh();
+        List<String> lot = space.allocate(3);
+
+        // Relevé : seuls les codes modifiés récemment sont lus
+        given(promoCodeRepository.findCodesUpdatedSince(any())).willReturn(List.of("PROMO-BBBB", "ETE2024"));
+        space.refresh();
+        assertThat(space.used()).isEqualTo(5);
+        assertThat(space.mayExist("ETE2024")).isTrue();
+        assertThat(space.mayExist("HIVER2024")).isFalse();
+
+        // Lot encore en cours : absent de la base, il reste pris au rechargement complet
+        given(promoCodeRepository.findAllCodes()).willReturn(List.of("PROMO-AAAA", "PROMO-BBBB", "ETE2024"));
+        space.load();
+        assertThat(space.used()).isEqualTo(5);
+        assertThat(space.allocate(1)).doesNotContainAnyElementsOf(lot);
+
+        space.settle(lot, lot);
+        assertThat(space.used()).isEqualTo(3);
+        assertThat(space.mayExist(lot.get(0))).isFalse();
+        assertThat(space.known()).isEqualTo(4);
+    }
+}
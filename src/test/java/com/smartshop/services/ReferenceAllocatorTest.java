@@ -0,0 +1,62 @@
+package com.smartshop.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Year;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ReferenceAllocatorTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:references;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY, reference VARCHAR(50))");
+        jdbcTemplate.update("INSERT INTO orders (id, reference) VALUES (1, 'CMD-2024-00041'), (2, 'CMD-2024-00042')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+
+    @Test
+    void nextOrderReference_ResumesAfterExistingReferencesAndServesBlocksFromMemory() {
+        ReferenceAllocator allocator = allocator(50);
+        ReferenceAllocator autreNoeud = allocator(50);
+
+        assertThat(allocator.nextOrderReference()).isEqualTo(String.format("CMD-%d-00043", Year.now().getValue()));
+        for (int i = 0; i < 49; i++) {
+            allocator.nextOrderReference();
+        }
+        // Le second nœud a pris le bloc suivant ; le premier, épuisé, prend celui d'après
+        assertThat(autreNoeud.next(ReferenceAllocator.ORDER_SEQUENCE)).isEqualTo(93);
+        assertThat(allocator.next(ReferenceAllocator.ORDER_SEQUENCE)).isEqualTo(143);
+        assertThat(allocator.nextPaymentNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void initSequences_AltersIncrementOnlyWhenBlockSizeChanges() {
+        allocator(50);
+        ReferenceAllocator allocator = allocator(10);
+
+        assertThat(allocator.next(ReferenceAllocator.ORDER_SEQUENCE)).isEqualTo(43);
+        assertThat(allocator.next(ReferenceAllocator.PAYMENT_SEQUENCE)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT increment FROM information_schema.sequences WHERE LOWER(sequence_name) = ?",
+                Long.class, ReferenceAllocator.ORDER_SEQUENCE)).isEqualTo(10);
+    }
+
+    private ReferenceAllocator allocator(int blockSize) {
+        ReferenceAllocator allocator = new ReferenceAllocator(jdbcTemplate, blockSize);
+        allocator.initSequences();
+        return allocator;
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockAvailabilityTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private StockAvailability stockAvailability;
+
+    @BeforeEach
+    void setUp() {
+        stockAvailability = new StockAvailability(productRepository);
+        given(productRepository.findAvailableStock(1L)).willReturn(10);
+    }
+
+    @Test
+    void tryReserve_IsAllOrNothing() {
+        given(productRepository.findAvailableStock(2L)).willReturn(2);
+
+        assertThat(stockAvailability.tryReserve(Map.of(1L, 4, 2L, 3))).containsExactly(2L);
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(10);
+
+        assertThat(stockAvailability.tryReserve(Map.of(1L, 4, 2L, 2))).isEmpty();
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(6);
+        assertThat(stockAvailability.getAvailable(2L)).hasValue(0);
+    }
+
+    @Test
+    void addAfterCommit_IsDroppedOnRollbackWhileRestoreOnRollbackApplies() {
+        stockAvailability.tryReserve(Map.of(1L, 4));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockAvailability.addAfterCommit(Map.of(1L, -3));
+            stockAvailability.restoreOnRollback(Map.of(1L, 4));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(10);
+    }
+}
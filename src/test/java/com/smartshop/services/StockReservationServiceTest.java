@@ -0,0 +1,157 @@
+package com.smartshop.services;
+
+import com.smartshop.entity.Order;
+import com.smartshop.entity.OrderItem;
+import com.smartshop.entity.Product;
+import com.smartshop.entity.ReservationStatus;
+import com.smartshop.repositories.OrderRepository;
+import com.smartshop.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ProductCatalogCache catalogCache;
+
+    @Mock
+    private ChangeHorizon changeHorizon;
+
+    private StockAvailability stockAvailability;
+    private StockReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        stockAvailability = new StockAvailability(productRepository);
+        service = new StockReservationService(productRepository, orderRepository, stockAvailability, catalogCache,
+                changeHorizon);
+        given(productRepository.findAvailableStock(1L)).willReturn(10);
+    }
+
+    @Test
+    void reserve_MarksOrderActiveForSeventyTwoHours() {
+        Order order = order(null, 1L, 4);
+        given(productRepository.reserveStockIfAvailable(Map.of(1L, 4))).willReturn(List.of());
+
+        LocalDateTime avant = LocalDateTime.now();
+        assertThat(service.reserve(order, Map.of(1L, 4))).isEmpty();
+
+        assertThat(order.getReservationStatut()).isEqualTo(ReservationStatus.ACTIVE);
+        assertThat(order.getReservationExpiresAt())
+                .isBetween(avant.plus(Duration.ofHours(72)), LocalDateTime.now().plus(Duration.ofHours(72)));
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(6);
+    }
+
+    @Test
+    void reserve_RefusedByDatabase_ReleasesAppliedLinesAndRestoresAvailable() {
+        given(productRepository.findAvailableStock(2L)).willReturn(10, 0);
+        given(productRepository.reserveStockIfAvailable(Map.of(1L, 4, 2L, 3))).willReturn(List.of(2L));
+        Order order = order(null, 1L, 4);
+
+        assertThat(service.reserve(order, Map.of(1L, 4, 2L, 3))).containsExactly(2L);
+
+        then(productRepository).should().releaseReservedStock(Map.of(1L, 4));
+        assertThat(order.getReservationStatut()).isNull();
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(10);
+        assertThat(stockAvailability.getAvailable(2L)).hasValue(0);
+    }
+
+    @Test
+    void reserve_RolledBack_RestoresAvailableAfterCompletion() {
+        given(productRepository.reserveStockIfAvailable(Map.of(1L, 4))).willReturn(List.of());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.reserve(order(null, 1L, 4), Map.of(1L, 4));
+            assertThat(stockAvailability.getAvailable(1L)).hasValue(6);
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(10);
+    }
+
+    @Test
+    void commit_ActiveReservation_ConsumesReservedStockWithoutTouchingAvailable() {
+        Order order = order(ReservationStatus.ACTIVE, 1L, 4);
+        given(orderRepository.transitionReservation(5L, ReservationStatus.COMMITTED)).willReturn(1);
+        given(productRepository.commitReservedStock(Map.of(1L, 4))).willReturn(List.of());
+
+        assertThat(service.commit(order, Map.of(1L, 4))).isEmpty();
+
+        assertThat(order.getReservationStatut()).isEqualTo(ReservationStatus.COMMITTED);
+        then(productRepository).should(never()).decrementStockIfAvailable(anyMap());
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(10);
+    }
+
+    @Test
+    void commit_ExpiredReservation_DecrementsAvailableStock() {
+        Order order = order(ReservationStatus.RELEASED, 1L, 4);
+        given(productRepository.decrementStockIfAvailable(Map.of(1L, 4))).willReturn(List.of());
+
+        assertThat(service.commit(order, Map.of(1L, 4))).isEmpty();
+
+        then(productRepository).should(never()).commitReservedStock(anyMap());
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(6);
+    }
+
+    @Test
+    void release_ActiveReservation_ReturnsUnitsOnlyOnce() {
+        Order order = order(ReservationStatus.ACTIVE, 1L, 4);
+        given(orderRepository.transitionReservation(5L, ReservationStatus.RELEASED)).willReturn(1);
+
+        service.release(order);
+        service.release(order);
+
+        assertThat(order.getReservationStatut()).isEqualTo(ReservationStatus.RELEASED);
+        then(productRepository).should(times(1)).releaseReservedStock(Map.of(1L, 4));
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(14);
+    }
+
+    @Test
+    void releaseExpiredReservations_ReleasesOrdersPastTheirExpiry() {
+        Order order = order(ReservationStatus.ACTIVE, 1L, 4);
+        order.setReservationExpiresAt(LocalDateTime.now().minusMinutes(1));
+        given(orderRepository.findExpiredReservations(any(LocalDateTime.class), any())).willReturn(List.of(order));
+        given(orderRepository.transitionReservation(5L, ReservationStatus.RELEASED)).willReturn(1);
+
+        service.releaseExpiredReservations();
+
+        then(productRepository).should().releaseReservedStock(Map.of(1L, 4));
+        assertThat(order.getReservationStatut()).isEqualTo(ReservationStatus.RELEASED);
+        assertThat(stockAvailability.getAvailable(1L)).hasValue(14);
+    }
+
+    private static Order order(ReservationStatus statut, Long productId, int quantite) {
+        Order order = Order.builder().id(5L).reference("CMD-5").reservationStatut(statut).build();
+        order.getOrderItems().add(OrderItem.builder()
+                .order(order)
+                .product(Product.builder().id(productId).build())
+                .quantite(quantite)
+                .build());
+        return order;
+    }
+}
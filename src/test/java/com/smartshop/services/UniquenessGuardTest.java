@@ -0,0 +1,102 @@
+package com.smartshop.services;
+
+import com.smartshop.repositories.ClientRepository;
+import com.smartshop.repositories.PromoCodeRepository;
+import com.smartshop.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.smartshop.services.UniquenessGuard.KeySpace.USERNAME;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+@ExtendWith(MockitoExtension.class)
+class UniquenessGuardTest {
+
+    @Mock
+    private ClientRepository clientRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PromoCodeRepository promoCodeRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UniquenessGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new UniquenessGuard(clientRepository, userRepository, promoCodeRepository,
+                meterRegistry, 0.01);
+    }
+
+    @Test
+    void exists_NegativeAnswersSkipTheQuery() {
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            usernames.add("user" + i);
+        }
+        given(userRepository.findAllUsernames()).willReturn(usernames);
+        guard.rebuild(USERNAME);
+
+        AtomicInteger requetes = new AtomicInteger();
+        for (int i = 0; i < 5000; i++) {
+            String username = "user" + i;
+            assertThat(guard.exists(USERNAME, username, () -> {
+                requetes.incrementAndGet();
+                return true;
+            })).isTrue();
+        }
+        assertThat(requetes.get()).isEqualTo(5000);
+
+        requetes.set(0);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(guard.exists(USERNAME, "nouveau" + i, () -> {
+                requetes.incrementAndGet();
+                return false;
+            })).isFalse();
+        }
+        // Filtre dimensionné à 1 % pour 10000 clés, rempli à moitié
+        assertThat(requetes.get()).isLessThan(100);
+        double observe = meterRegistry.get("smartshop.uniqueness.false-positive-rate").tag("space", "USERNAME")
+                .gauge().value();
+        assertThat(observe).isEqualTo(requetes.get() / 10_000.0);
+        assertThat(meterRegistry.get("smartshop.uniqueness.checks").tag("space", "USERNAME").tag("result", "skipped")
+                .counter().count()).isEqualTo(10_000 - requetes.get());
+    }
+
+    @Test
+    void add_IsVisibleImmediatelyAndSurvivesARebuild() {
+        given(userRepository.findAllUsernames()).willReturn(List.of("admin"));
+        assertThat(guard.exists(USERNAME, "alice", () -> false)).isFalse();
+        guard.rebuild(USERNAME);
+
+        // Écriture en cours : la clé n'est pas encore lisible en base quand le filtre est reconstruit
+        guard.add(USERNAME, "alice");
+        guard.rebuild(USERNAME);
+
+        AtomicInteger requetes = new AtomicInteger();
+        assertThat(guard.exists(USERNAME, "alice", () -> {
+            requetes.incrementAndGet();
+            return true;
+        })).isTrue();
+        assertThat(requetes.get()).isEqualTo(1);
+        assertThat(guard.getStats()).filteredOn(stats -> stats.getEspace().equals("USERNAME"))
+                .singleElement()
+                .satisfies(stats -> {
+                    assertThat(stats.isCharge()).isTrue();
+                    assertThat(stats.getCles()).isEqualTo(1);
+                    assertThat(stats.getTauxFauxPositifsAttendu()).isLessThan(0.01);
+                });
+    }
+}